@@ -126,6 +126,10 @@ Refine.DatabaseImportController.prototype.getOptions = function() {
     }
     options.storeBlankRows = this._parsingPanelElmts.storeBlankRowsCheckbox[0].checked;
     options.storeBlankCellsAsNulls = this._parsingPanelElmts.storeBlankCellsAsNullsCheckbox[0].checked;
+    if (this._parsingPanelElmts.partitionCheckbox[0].checked) {
+      options.partitionColumn = $.trim(this._parsingPanelElmts.partitionColumnInput[0].value);
+      options.partitionCount = parseIntDefault(this._parsingPanelElmts.partitionCountInput[0].value, 4);
+    }
 
     return options;
 };
@@ -151,6 +155,8 @@ Refine.DatabaseImportController.prototype._showParsingPanel = function() {
     this._parsingPanelElmts.database_limit.html($.i18n._('database-parsing')["limit"]);
     this._parsingPanelElmts.database_store_row.html($.i18n._('database-parsing')["store-row"]);
     this._parsingPanelElmts.database_store_cell.html($.i18n._('database-parsing')["store-cell"]);
+    this._parsingPanelElmts.database_partition_next.html($.i18n._('database-parsing')["partition-next"]);
+    this._parsingPanelElmts.database_partition.html($.i18n._('database-parsing')["partition"]);
     
     if (this._parsingPanelResizer) {
       $(window).unbind('resize', this._parsingPanelResizer);
@@ -215,6 +221,11 @@ Refine.DatabaseImportController.prototype._showParsingPanel = function() {
     if (this._options.storeBlankCellsAsNulls) {
       this._parsingPanelElmts.storeBlankCellsAsNullsCheckbox.prop("checked", true);
     }
+    if (this._options.partitionColumn) {
+      this._parsingPanelElmts.partitionCheckbox.prop("checked", true);
+      this._parsingPanelElmts.partitionColumnInput[0].value = this._options.partitionColumn;
+      this._parsingPanelElmts.partitionCountInput[0].value = (this._options.partitionCount || 4).toString();
+    }
 
     var onChange = function() {
       self._scheduleUpdatePreview();
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2017, Tony Opara
+ *        All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this 
+ *   list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * Neither the name of Google nor the names of its contributors may be used to 
+ * endorse or promote products derived from this software without specific 
+ * prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR 
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, 
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.google.refine.extension.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.extension.database.model.DatabaseColumn;
+import com.google.refine.extension.database.model.DatabaseQueryInfo;
+import com.google.refine.extension.database.model.DatabaseQueryPartition;
+import com.google.refine.importers.TabularImportingParserBase.TableDataReader;
+import com.google.refine.importing.ImportingJob;
+
+/**
+ * Reads the result of a query for project creation over several connections at
+ * once, each one streaming a range of a numeric or date partition column.
+ * 
+ * Rows are returned partition by partition, in the order of the ranges. The rows
+ * of the first partition are handed over through a queue holding at most one fetch
+ * of rows. All other partitions are read at full speed into spool files in the
+ * job directory, which are read back once the earlier partitions are returned, so
+ * that no cursor is left idle while it waits for its turn and the rows waiting do
+ * not take up the heap. Nothing more is read once the consumer stops at its row
+ * limit and closes the reader.
+ */
+public class DBPartitionedQueryReader implements TableDataReader {
+    
+    private static final Logger logger = LoggerFactory.getLogger("DBPartitionedQueryReader");
+    
+    private static final Object END_OF_PARTITION = new Object();
+    
+    private static final int END_OF_SPOOL = -1;
+    private static final byte NULL_VALUE = 0;
+    private static final byte LONG_VALUE = 1;
+    private static final byte DOUBLE_VALUE = 2;
+    private static final byte BOOLEAN_VALUE = 3;
+    private static final byte STRING_VALUE = 4;
+
+    private final ImportingJob job;
+    private final DatabaseService databaseService;
+    private final String querySource;
+    private final List<DatabaseColumn> dbColumns;
+    private final DatabaseQueryInfo dbQueryInfo;
+    private final String partitionColumn;
+    private final int partitionCount;
+    private final int fetchSize;
+    
+    private boolean usedHeaders = false;
+    private ExecutorService executor;
+    private BlockingQueue<Object> firstQueue;
+    private List<File> spools;
+    private List<Future<IOException>> spooled;
+    private DataInputStream currentSpool;
+    private int currentPartition = 0;
+    private int processedRows = 0;
+    private volatile boolean closed = false;
+    
+    public DBPartitionedQueryReader(
+            ImportingJob job,
+            DatabaseService databaseService,
+            String querySource,
+            List<DatabaseColumn> columns,
+            DatabaseQueryInfo dbQueryInfo,
+            String partitionColumn,
+            int partitionCount,
+            int fetchSize) {
+        
+        this.job = job;
+        this.databaseService = databaseService;
+        this.querySource = querySource;
+        this.dbColumns = columns;
+        this.dbQueryInfo = dbQueryInfo;
+        this.partitionColumn = partitionColumn;
+        this.partitionCount = partitionCount;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public List<Object> getNextRowOfCells() throws IOException {
+        if (!usedHeaders) {
+            List<Object> row = new ArrayList<Object>(dbColumns.size());
+            for (DatabaseColumn cd : dbColumns) {
+                row.add(cd.getName());
+            }
+            usedHeaders = true;
+            return row;
+        }
+        if (closed) {
+            return null;
+        }
+        if (spools == null) {
+            start();
+        }
+        
+        while (currentPartition < spools.size()) {
+            List<Object> row = currentPartition == 0 ? takeQueuedRow() : readSpooledRow();
+            if (row != null) {
+                processedRows++;
+                if (processedRows % 10000 == 0) {
+                    job.setProgress(-1, "Reading " + querySource + " (" + processedRows + " rows, partition "
+                            + (currentPartition + 1) + " of " + spools.size() + ")");
+                }
+                return row;
+            }
+            currentPartition++;
+        }
+        
+        if(logger.isDebugEnabled()) {
+            logger.debug("[[processedRows:{} ]]", processedRows);
+        }
+        close();
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Object> takeQueuedRow() throws IOException {
+        Object next;
+        try {
+            next = firstQueue.take();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading partition 1", e);
+        }
+        if (next == END_OF_PARTITION) {
+            firstQueue = null;
+            return null;
+        } else if (next instanceof IOException) {
+            close();
+            throw (IOException) next;
+        }
+        return (List<Object>) next;
+    }
+    
+    private List<Object> readSpooledRow() throws IOException {
+        if (currentSpool == null) {
+            IOException error;
+            try {
+                error = spooled.get(currentPartition).get();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading partition " + (currentPartition + 1), e);
+            } catch (ExecutionException e) {
+                close();
+                throw new IOException(e.getCause());
+            }
+            if (error != null) {
+                close();
+                throw error;
+            }
+            currentSpool = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(spools.get(currentPartition))));
+        }
+        
+        List<Object> row = readRow(currentSpool);
+        if (row == null) {
+            currentSpool.close();
+            currentSpool = null;
+            spools.get(currentPartition).delete();
+        }
+        return row;
+    }
+    
+    private void start() throws IOException {
+        List<DatabaseQueryPartition> partitions;
+        try {
+            partitions = databaseService.getQueryPartitions(
+                    dbQueryInfo.getDbConfig(), dbQueryInfo.getQuery(), partitionColumn, partitionCount);
+        } catch (DatabaseServiceException e) {
+            logger.error("DatabaseServiceException::{}", e);
+            throw new IOException(e);
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug("Reading {} partitions on {}", partitions.size(), partitionColumn);
+        }
+        
+        spools = new ArrayList<File>(partitions.size());
+        spooled = new ArrayList<Future<IOException>>(partitions.size());
+        executor = Executors.newFixedThreadPool(partitions.size(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "database-partition-reader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (DatabaseQueryPartition partition : partitions) {
+                DBQueryResultStreamReader reader = new DBQueryResultStreamReader(
+                        job, databaseService, querySource, dbColumns, dbQueryInfo, partition, fetchSize);
+                if (spools.isEmpty()) {
+                    firstQueue = new ArrayBlockingQueue<Object>(Math.max(1, fetchSize));
+                    executor.execute(queueRows(reader, firstQueue));
+                    spools.add(null);
+                    spooled.add(null);
+                } else {
+                    File spool = File.createTempFile("partition-", ".rows", job.dir);
+                    spools.add(spool);
+                    spooled.add(executor.submit(spoolRows(reader, spool)));
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        executor.shutdown();
+    }
+    
+    private Runnable queueRows(final DBQueryResultStreamReader reader, final BlockingQueue<Object> queue) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Object last = END_OF_PARTITION;
+                    try {
+                        List<Object> row;
+                        while (!closed && (row = reader.getNextRowOfCells()) != null) {
+                            queue.put(row);
+                        }
+                    } catch (IOException e) {
+                        last = e;
+                    }
+                    queue.put(last);
+                } catch (InterruptedException e) {
+                    // the reader was closed while this partition waited for room
+                } finally {
+                    reader.close();
+                }
+            }
+        };
+    }
+    
+    private Callable<IOException> spoolRows(final DBQueryResultStreamReader reader, final File spool) {
+        return new Callable<IOException>() {
+            @Override
+            public IOException call() {
+                try {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spool)));
+                    try {
+                        List<Object> row;
+                        while (!closed && (row = reader.getNextRowOfCells()) != null) {
+                            writeRow(out, row);
+                        }
+                        out.writeInt(END_OF_SPOOL);
+                    } finally {
+                        out.close();
+                    }
+                    return null;
+                } catch (IOException e) {
+                    return e;
+                } finally {
+                    reader.close();
+                    if (closed) {
+                        spool.delete();
+                    }
+                }
+            }
+        };
+    }
+    
+    static void writeRow(DataOutputStream out, List<Object> row) throws IOException {
+        out.writeInt(row.size());
+        for (Object value : row) {
+            if (value == null) {
+                out.writeByte(NULL_VALUE);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG_VALUE);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE_VALUE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN_VALUE);
+                out.writeBoolean((Boolean) value);
+            } else {
+                // the stream reader only returns strings besides the types above
+                byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                out.writeByte(STRING_VALUE);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+    
+    static List<Object> readRow(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == END_OF_SPOOL) {
+            return null;
+        }
+        List<Object> row = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            byte type = in.readByte();
+            switch (type) {
+            case NULL_VALUE:
+                row.add(null);
+                break;
+            case LONG_VALUE:
+                row.add(in.readLong());
+                break;
+            case DOUBLE_VALUE:
+                row.add(in.readDouble());
+                break;
+            case BOOLEAN_VALUE:
+                row.add(in.readBoolean());
+                break;
+            case STRING_VALUE:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                row.add(new String(bytes, StandardCharsets.UTF_8));
+                break;
+            default:
+                throw new IOException("Unknown value type " + type + " in partition spool file");
+            }
+        }
+        return row;
+    }
+    
+    /**
+     * Stop reading the partitions, for instance when the import has reached its
+     * row limit. The threads reading them are interrupted, which wakes up the one
+     * waiting for room in its queue, and release their cursors and connections.
+     * Spool files are deleted. Safe to call more than once.
+     */
+    public void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (currentSpool != null) {
+            try {
+                currentSpool.close();
+            } catch (IOException e) {
+                logger.warn("Could not close a partition spool file", e);
+            }
+            currentSpool = null;
+        }
+        if (spools != null) {
+            for (File spool : spools) {
+                if (spool != null) {
+                    spool.delete();
+                }
+            }
+        }
+    }
+    
+    public int getProcessedRows() {
+        return processedRows;
+    }
+}
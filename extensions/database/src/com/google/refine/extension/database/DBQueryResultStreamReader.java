@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017, Tony Opara
+ *        All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this 
+ *   list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * Neither the name of Google nor the names of its contributors may be used to 
+ * endorse or promote products derived from this software without specific 
+ * prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR 
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, 
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.google.refine.extension.database;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.refine.extension.database.model.DatabaseColumn;
+import com.google.refine.extension.database.model.DatabaseQueryInfo;
+import com.google.refine.extension.database.model.DatabaseQueryPartition;
+import com.google.refine.importers.TabularImportingParserBase.TableDataReader;
+import com.google.refine.importing.ImportingJob;
+
+/**
+ * Reads the result of a query for project creation by running it once on a
+ * forward-only cursor, instead of paging through it with LIMIT/OFFSET queries
+ * that each make the database skip over every row already read.
+ * 
+ * Numeric and boolean values are taken from the JDBC result with their type
+ * rather than being turned into strings and parsed back.
+ */
+public class DBQueryResultStreamReader implements TableDataReader {
+    
+    private static final Logger logger = LoggerFactory.getLogger("DBQueryResultStreamReader");
+
+    private final ImportingJob job;
+    private final String querySource;
+    private final List<DatabaseColumn> dbColumns;
+    private final DatabaseService databaseService;
+    private final DatabaseQueryInfo dbQueryInfo;
+    private final DatabaseQueryPartition partition;
+    private final int fetchSize;
+
+    private boolean usedHeaders = false;
+    private boolean end = false;
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private int[] sqlTypes;
+    private int processedRows = 0;
+    
+    public DBQueryResultStreamReader(
+            ImportingJob job, 
+            DatabaseService databaseService,
+            String querySource,
+            List<DatabaseColumn> columns,
+            DatabaseQueryInfo dbQueryInfo,
+            int fetchSize) {
+        this(job, databaseService, querySource, columns, dbQueryInfo, null, fetchSize);
+    }
+    
+    /**
+     * Read only one partition of the query, without a header row and without
+     * reporting progress, for {@link DBPartitionedQueryReader}.
+     */
+    DBQueryResultStreamReader(
+            ImportingJob job, 
+            DatabaseService databaseService,
+            String querySource,
+            List<DatabaseColumn> columns,
+            DatabaseQueryInfo dbQueryInfo,
+            DatabaseQueryPartition partition,
+            int fetchSize) {
+        
+        this.job = job;
+        this.querySource = querySource;
+        this.dbColumns = columns;
+        this.databaseService = databaseService;
+        this.dbQueryInfo = dbQueryInfo;
+        this.partition = partition;
+        this.fetchSize = fetchSize;
+        this.usedHeaders = partition != null;
+    }
+
+    @Override
+    public List<Object> getNextRowOfCells() throws IOException {
+        if (!usedHeaders) {
+            List<Object> row = new ArrayList<Object>(dbColumns.size());
+            for (DatabaseColumn cd : dbColumns) {
+                row.add(cd.getName());
+            }
+            usedHeaders = true;
+            return row;
+        }
+        if (end) {
+            return null;
+        }
+        
+        try {
+            if (resultSet == null) {
+                open();
+            }
+            if (!resultSet.next()) {
+                if(logger.isDebugEnabled()) {
+                    logger.debug("[[processedRows:{} ]]", processedRows);
+                }
+                close();
+                return null;
+            }
+            
+            int columnCount = Math.min(sqlTypes.length, dbColumns.size());
+            List<Object> rowOfCells = new ArrayList<Object>(columnCount);
+            for (int j = 0; j < columnCount; j++) {
+                rowOfCells.add(getCellValue(resultSet, j + 1, sqlTypes[j]));
+            }
+            
+            processedRows++;
+            if (partition == null && processedRows % 10000 == 0) {
+                job.setProgress(-1, "Reading " + querySource + " (" + processedRows + " rows)");
+            }
+            return rowOfCells;
+        } catch (SQLException e) {
+            logger.error("SQLException::{}", e);
+            close();
+            throw new IOException(e);
+        } catch (DatabaseServiceException e) {
+            logger.error("DatabaseServiceException::{}", e);
+            close();
+            throw new IOException(e);
+        }
+    }
+    
+    private void open() throws DatabaseServiceException, SQLException {
+        // a cursor is held open on this connection until close(), so it must
+        // not be the one the connection manager shares with other requests
+        connection = databaseService.getPrivateConnection(dbQueryInfo.getDbConfig());
+        if (partition == null) {
+            statement = databaseService.prepareStreamingStatement(connection, dbQueryInfo.getQuery(), fetchSize);
+        } else {
+            statement = databaseService.prepareStreamingStatement(connection, partition.getQuery(), fetchSize);
+            List<Object> parameters = partition.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+        }
+        resultSet = statement.executeQuery();
+        
+        ResultSetMetaData metadata = resultSet.getMetaData();
+        sqlTypes = new int[metadata.getColumnCount()];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            sqlTypes[i] = metadata.getColumnType(i + 1);
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug("Streaming query with fetchSize:{}", fetchSize);
+        }
+    }
+    
+    /**
+     * Convert one value of the current row to a cell value. Empty strings and
+     * non-finite floating point numbers are handled the same way as in
+     * {@link DBQueryResultImportReader}.
+     */
+    static Object getCellValue(ResultSet rs, int index, int sqlType) throws SQLException {
+        switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT: {
+            long l = rs.getLong(index);
+            return rs.wasNull() ? null : (Object) l;
+        }
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE: {
+            double d = rs.getDouble(index);
+            if (rs.wasNull()) {
+                return null;
+            }
+            return Double.isInfinite(d) || Double.isNaN(d) ? (Object) Double.toString(d) : (Object) d;
+        }
+        case Types.NUMERIC:
+        case Types.DECIMAL: {
+            BigDecimal bd = rs.getBigDecimal(index);
+            if (bd == null) {
+                return null;
+            }
+            try {
+                return bd.longValueExact();
+            } catch (ArithmeticException e) {
+                return bd.toPlainString();
+            }
+        }
+        case Types.BIT:
+        case Types.BOOLEAN: {
+            boolean b = rs.getBoolean(index);
+            return rs.wasNull() ? null : (Object) b;
+        }
+        default:
+            String text = rs.getString(index);
+            return text == null || text.isEmpty() ? null : text;
+        }
+    }
+    
+    /**
+     * Release the cursor and its connection. Safe to call more than once, and
+     * needed when the import stops before the end of the result.
+     */
+    public void close() {
+        end = true;
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not close the query cursor", e);
+        } finally {
+            resultSet = null;
+            statement = null;
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.warn("Could not close the import connection", e);
+                }
+                connection = null;
+            }
+        }
+    }
+    
+    public int getProcessedRows() {
+        return processedRows;
+    }
+}
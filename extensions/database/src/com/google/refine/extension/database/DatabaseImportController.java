@@ -63,6 +63,7 @@ import com.google.refine.util.ParsingUtilities;
 public class DatabaseImportController implements ImportingController {
     
     private static final Logger logger = LoggerFactory.getLogger("DatabaseImportController");
+    private static final int DEFAULT_PARTITION_COUNT = 4;
     protected RefineServlet servlet;
     public static int DEFAULT_PREVIEW_LIMIT = 100; 
     public static String OPTIONS_KEY = "options";
@@ -416,16 +417,59 @@ public class DatabaseImportController implements ImportingController {
     
         long startTime = System.currentTimeMillis() ;
         
-        TabularImportingParserBase.readTable(
-                project,
-                metadata,
-                job,
-                new DBQueryResultImportReader(job, databaseService, querySource, columns, dbQueryInfo, getCreateBatchSize()),
-                querySource,
-                limit,
-                options,
-                exceptions
-            );
+        String partitionColumn = JSONUtilities.getString(options, "partitionColumn", "").trim();
+        if (!partitionColumn.isEmpty()) {
+            if (!hasColumn(columns, partitionColumn)) {
+                exceptions.add(new DatabaseServiceException(
+                        "Partition column " + partitionColumn + " is not a column of the query result"));
+                return;
+            }
+            DBPartitionedQueryReader reader = new DBPartitionedQueryReader(
+                    job, databaseService, querySource, columns, dbQueryInfo, partitionColumn,
+                    JSONUtilities.getInt(options, "partitionCount", DEFAULT_PARTITION_COUNT), getCreateBatchSize());
+            try {
+                TabularImportingParserBase.readTable(
+                        project,
+                        metadata,
+                        job,
+                        reader,
+                        querySource,
+                        limit,
+                        options,
+                        exceptions
+                    );
+            } finally {
+                reader.close();
+            }
+        } else if (isCreateStreaming()) {
+            DBQueryResultStreamReader reader = new DBQueryResultStreamReader(
+                    job, databaseService, querySource, columns, dbQueryInfo, getCreateBatchSize());
+            try {
+                TabularImportingParserBase.readTable(
+                        project,
+                        metadata,
+                        job,
+                        reader,
+                        querySource,
+                        limit,
+                        options,
+                        exceptions
+                    );
+            } finally {
+                reader.close();
+            }
+        } else {
+            TabularImportingParserBase.readTable(
+                    project,
+                    metadata,
+                    job,
+                    new DBQueryResultImportReader(job, databaseService, querySource, columns, dbQueryInfo, getCreateBatchSize()),
+                    querySource,
+                    limit,
+                    options,
+                    exceptions
+                );
+        }
         
         long endTime = System.currentTimeMillis() ;
         if(logger.isDebugEnabled()) {
@@ -449,6 +493,19 @@ public class DatabaseImportController implements ImportingController {
         return batchSize;
     }
 
+    private static boolean hasColumn(List<DatabaseColumn> columns, String name) {
+        for (DatabaseColumn column : columns) {
+            if (name.equals(column.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isCreateStreaming() {
+        return !"false".equalsIgnoreCase(DatabaseModuleImpl.getImportCreateStreaming().trim());
+    }
+
     /**
      * @param request
      * @return
@@ -55,6 +55,7 @@ public class DatabaseModuleImpl extends ButterflyModuleImpl implements Jsonizabl
     
     private static String DEFAULT_CREATE_PROJ_BATCH_SIZE = "100";
     private static String DEFAULT_PREVIEW_BATCH_SIZE = "100";
+    private static String DEFAULT_CREATE_PROJ_STREAMING = "true";
     
 
 
@@ -87,6 +88,13 @@ public class DatabaseModuleImpl extends ButterflyModuleImpl implements Jsonizabl
         return extensionProperties.getProperty("preview.batchSize", DEFAULT_PREVIEW_BATCH_SIZE);
     }
 
+    public static String getImportCreateStreaming() {
+        if(extensionProperties == null) {
+            return DEFAULT_CREATE_PROJ_STREAMING;
+        }
+        return extensionProperties.getProperty("create.streaming", DEFAULT_CREATE_PROJ_STREAMING);
+    }
+
     private void readModuleProperty() {
         // The module path
         File f = getPath();
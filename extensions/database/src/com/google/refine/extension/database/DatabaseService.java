@@ -29,6 +29,13 @@
 package com.google.refine.extension.database;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import com.google.refine.extension.database.mariadb.MariaDBDatabaseService;
 import com.google.refine.extension.database.model.DatabaseColumn;
 import com.google.refine.extension.database.model.DatabaseInfo;
+import com.google.refine.extension.database.model.DatabaseQueryPartition;
 import com.google.refine.extension.database.model.DatabaseRow;
 import com.google.refine.extension.database.mysql.MySQLDatabaseService;
 import com.google.refine.extension.database.pgsql.PgSQLDatabaseService;
@@ -107,6 +115,13 @@ public abstract class DatabaseService {
     
     //Database Service APIs
     public abstract Connection getConnection(DatabaseConfiguration dbConfig) throws DatabaseServiceException;
+
+    /**
+     * Open a new connection that is not kept by the connection manager, so that a
+     * reader can hold a streaming cursor on it, and close it, without getting in
+     * the way of the connection shared by the other calls.
+     */
+    public abstract Connection getPrivateConnection(DatabaseConfiguration dbConfig) throws DatabaseServiceException;
     
     public abstract boolean testConnection(DatabaseConfiguration dbConfig) throws DatabaseServiceException;
 
@@ -122,4 +137,106 @@ public abstract class DatabaseService {
     
     public abstract List<DatabaseRow> getRows(DatabaseConfiguration dbConfig, String query) throws DatabaseServiceException;
 
+    /**
+     * Prepare a forward-only, read-only statement on a dedicated connection so that the
+     * whole result of a query can be read in one pass, {@code fetchSize} rows at a time,
+     * without the driver buffering it in memory. Drivers that need more than a fetch size
+     * to use a server-side cursor override this.
+     * 
+     * @param connection
+     * @param query
+     * @param fetchSize
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStreamingStatement(Connection connection, String query, int fetchSize) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    /**
+     * Split the result of a query into at most {@code count} range partitions on a numeric
+     * or date column, so that they can be read over separate connections. The minimum and
+     * maximum of the column are queried first and the range between them is cut into equal
+     * intervals. Rows where the column is null go to the first partition, so that the
+     * partitions together always return every row of the query.
+     * 
+     * @param dbConfig
+     * @param query
+     * @param column name of a column of the query result
+     * @param count
+     * @return the partitions, in the order of their ranges
+     * @throws DatabaseServiceException
+     */
+    public List<DatabaseQueryPartition> getQueryPartitions(DatabaseConfiguration dbConfig, String query,
+            String column, int count) throws DatabaseServiceException {
+        String baseQuery = stripTerminator(query);
+        Connection connection = getConnection(dbConfig);
+        try {
+            String quotedColumn = quoteIdentifier(connection, column);
+            String from = " FROM (" + baseQuery + ") refine_partition";
+            
+            Object min;
+            Object max;
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet rs = statement.executeQuery(
+                        "SELECT MIN(" + quotedColumn + "), MAX(" + quotedColumn + ")" + from);
+                rs.next();
+                min = rs.getObject(1);
+                max = rs.getObject(2);
+                rs.close();
+            } finally {
+                statement.close();
+            }
+            
+            List<Object> bounds = DatabaseQueryPartition.splitRange(min, max, count);
+            List<DatabaseQueryPartition> partitions = new ArrayList<DatabaseQueryPartition>(bounds.size() + 1);
+            if (bounds.isEmpty()) {
+                partitions.add(new DatabaseQueryPartition(baseQuery, Collections.emptyList()));
+                return partitions;
+            }
+            String select = "SELECT *" + from + " WHERE ";
+            partitions.add(new DatabaseQueryPartition(
+                    select + "(" + quotedColumn + " < ? OR " + quotedColumn + " IS NULL)",
+                    Collections.singletonList(bounds.get(0))));
+            for (int i = 1; i < bounds.size(); i++) {
+                partitions.add(new DatabaseQueryPartition(
+                        select + quotedColumn + " >= ? AND " + quotedColumn + " < ?",
+                        Arrays.asList(bounds.get(i - 1), bounds.get(i))));
+            }
+            partitions.add(new DatabaseQueryPartition(
+                    select + quotedColumn + " >= ?",
+                    Collections.singletonList(bounds.get(bounds.size() - 1))));
+            return partitions;
+        } catch (IllegalArgumentException e) {
+            throw new DatabaseServiceException("Partition column " + column + " must be numeric or a date: " + e.getMessage());
+        } catch (SQLException e) {
+            logger.error("SQLException::", e);
+            throw new DatabaseServiceException(true, e.getSQLState(), e.getErrorCode(), e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Could not close the partitioning connection", e);
+            }
+        }
+    }
+    
+    protected String quoteIdentifier(Connection connection, String identifier) throws SQLException {
+        String quote = connection.getMetaData().getIdentifierQuoteString();
+        if (quote == null || quote.trim().isEmpty()) {
+            return identifier;
+        }
+        quote = quote.trim();
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
+    
+    protected static String stripTerminator(String query) {
+        String trimmed = query.trim();
+        return trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
 }
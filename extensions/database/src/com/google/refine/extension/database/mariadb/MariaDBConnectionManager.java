@@ -160,6 +160,34 @@ public class MariaDBConnectionManager {
         } 
     }
 
+
+    /**
+     * Open a connection that is never handed out to other callers, for a reader
+     * that keeps a cursor open on it. The caller closes it.
+     *
+     * @return a new connection
+     */
+    public  Connection getPrivateConnection(DatabaseConfiguration databaseConfiguration) throws DatabaseServiceException{
+        try {
+            Class.forName(type.getClassPath());
+            DriverManager.setLoginTimeout(10);
+            String dbURL = getDatabaseUrl(databaseConfiguration);
+            Connection privateConnection = DriverManager.getConnection(dbURL, databaseConfiguration.getDatabaseUser(),
+                    databaseConfiguration.getDatabasePassword());
+
+            if(logger.isDebugEnabled()) {
+                logger.debug("*** Acquired private connection for ::{} **** ", dbURL);
+            }
+            return privateConnection;
+        } catch (ClassNotFoundException e) {
+            logger.error("Jdbc Driver not found", e);
+            throw new DatabaseServiceException(e.getMessage());
+        } catch (SQLException e) {
+            logger.error("SQLException::Couldn't get a Connection!", e);
+            throw new DatabaseServiceException(true, e.getSQLState(), e.getErrorCode(), e.getMessage());
+        }
+    }
+
  
     public  void shutdown() {
 
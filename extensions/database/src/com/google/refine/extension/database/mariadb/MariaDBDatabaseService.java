@@ -287,6 +287,12 @@ public class MariaDBDatabaseService extends DatabaseService {
         return MariaDBConnectionManager.getInstance().getConnection(dbConfig, true);
     }
 
+    @Override
+    public Connection getPrivateConnection(DatabaseConfiguration dbConfig)
+            throws DatabaseServiceException {
+        return MariaDBConnectionManager.getInstance().getPrivateConnection(dbConfig);
+    }
+
     @Override
     public DatabaseInfo testQuery(DatabaseConfiguration dbConfig, String query)
             throws DatabaseServiceException {
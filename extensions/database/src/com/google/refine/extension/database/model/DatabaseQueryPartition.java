@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2017, Tony Opara
+ *        All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this 
+ *   list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * Neither the name of Google nor the names of its contributors may be used to 
+ * endorse or promote products derived from this software without specific 
+ * prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR 
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, 
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.google.refine.extension.database.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One range of a query that is read over its own connection: the query text, with
+ * placeholders for the bounds of the range, and the values of those bounds.
+ */
+public class DatabaseQueryPartition {
+    
+    private final String query;
+    
+    private final List<Object> parameters;
+
+    public DatabaseQueryPartition(String query, List<Object> parameters) {
+        this.query = query;
+        this.parameters = parameters;
+    }
+    
+    public String getQuery() {
+        return query;
+    }
+    
+    public List<Object> getParameters() {
+        return parameters;
+    }
+    
+    @Override
+    public String toString() {
+        return "DatabaseQueryPartition [query=" + query + ", parameters=" + parameters + "]";
+    }
+    
+    /**
+     * Cut the range between {@code min} and {@code max} into {@code count} equal
+     * intervals and return the bounds between them, in ascending order and without
+     * duplicates. Integral ranges get integral bounds and date ranges get bounds of
+     * the same date type, so that they compare naturally with the column.
+     * 
+     * @param min smallest value of the column, or null if it has no values
+     * @param max largest value of the column
+     * @param count
+     * @return count - 1 bounds at most, none if the range cannot be split
+     * @throws IllegalArgumentException if the values are neither numbers nor dates
+     */
+    public static List<Object> splitRange(Object min, Object max, int count) {
+        List<Object> bounds = new ArrayList<Object>();
+        if (min == null || max == null || count < 2) {
+            return bounds;
+        }
+        
+        if (min instanceof Date && max instanceof Date) {
+            long low = ((Date) min).getTime();
+            long high = ((Date) max).getTime();
+            long previous = low;
+            for (int i = 1; i < count; i++) {
+                long bound = low + (long) ((double) (high - low) * i / count);
+                if (bound > previous) {
+                    bounds.add(min instanceof java.sql.Date ? new java.sql.Date(bound) : new Timestamp(bound));
+                    previous = bound;
+                }
+            }
+        } else if (min instanceof Number && max instanceof Number) {
+            BigDecimal low = toBigDecimal((Number) min);
+            BigDecimal high = toBigDecimal((Number) max);
+            boolean integral = isIntegral((Number) min) && isIntegral((Number) max);
+            BigDecimal range = high.subtract(low);
+            BigDecimal previous = low;
+            for (int i = 1; i < count; i++) {
+                BigDecimal bound = low.add(range.multiply(BigDecimal.valueOf(i)).divide(
+                        BigDecimal.valueOf(count), MathContext.DECIMAL64));
+                if (integral) {
+                    bound = bound.setScale(0, BigDecimal.ROUND_FLOOR);
+                }
+                if (bound.compareTo(previous) > 0) {
+                    bounds.add(toParameter(bound, integral));
+                    previous = bound;
+                }
+            }
+        } else {
+            throw new IllegalArgumentException(
+                    "Cannot partition on values of type " + min.getClass().getSimpleName());
+        }
+        return bounds;
+    }
+    
+    private static boolean isIntegral(Number n) {
+        if (n instanceof BigDecimal) {
+            return ((BigDecimal) n).scale() <= 0;
+        }
+        return n instanceof Long || n instanceof Integer || n instanceof Short
+                || n instanceof Byte || n instanceof BigInteger;
+    }
+    
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal) {
+            return (BigDecimal) n;
+        } else if (n instanceof BigInteger) {
+            return new BigDecimal((BigInteger) n);
+        } else if (n instanceof Double || n instanceof Float) {
+            return BigDecimal.valueOf(n.doubleValue());
+        } else {
+            return BigDecimal.valueOf(n.longValue());
+        }
+    }
+    
+    private static Object toParameter(BigDecimal bound, boolean integral) {
+        if (integral && bound.unscaledValue().bitLength() < 64) {
+            return bound.longValueExact();
+        }
+        return bound;
+    }
+}
@@ -29,6 +29,7 @@
 package com.google.refine.extension.database.mysql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -295,6 +296,18 @@ public class MySQLDatabaseService extends DatabaseService {
     }
     
     
+    /**
+     * Connector/J reads the whole result into memory unless the fetch size is
+     * Integer.MIN_VALUE, in which case rows are streamed one at a time.
+     */
+    @Override
+    public PreparedStatement prepareStreamingStatement(Connection connection, String query, int fetchSize) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(Integer.MIN_VALUE);
+        return statement;
+    }
+
     @Override
     public Connection getConnection(DatabaseConfiguration dbConfig)
             throws DatabaseServiceException {
@@ -302,6 +315,12 @@ public class MySQLDatabaseService extends DatabaseService {
         return  MySQLConnectionManager.getInstance().getConnection(dbConfig, true);
     }
 
+    @Override
+    public Connection getPrivateConnection(DatabaseConfiguration dbConfig)
+            throws DatabaseServiceException {
+        return MySQLConnectionManager.getInstance().getPrivateConnection(dbConfig);
+    }
+
     @Override
     public DatabaseInfo testQuery(DatabaseConfiguration dbConfig, String query)
             throws DatabaseServiceException {
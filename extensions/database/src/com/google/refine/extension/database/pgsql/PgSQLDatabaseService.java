@@ -29,6 +29,7 @@
 package com.google.refine.extension.database.pgsql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -277,12 +278,28 @@ public class PgSQLDatabaseService extends DatabaseService {
         
     }
 
+    /**
+     * The PostgreSQL driver only honours the fetch size, and so only uses a
+     * cursor, inside a transaction.
+     */
+    @Override
+    public PreparedStatement prepareStreamingStatement(Connection connection, String query, int fetchSize) throws SQLException {
+        connection.setAutoCommit(false);
+        return super.prepareStreamingStatement(connection, query, fetchSize);
+    }
+
     @Override
     public Connection getConnection(DatabaseConfiguration dbConfig)
             throws DatabaseServiceException {
         return PgSQLConnectionManager.getInstance().getConnection(dbConfig, true);
     }
 
+    @Override
+    public Connection getPrivateConnection(DatabaseConfiguration dbConfig)
+            throws DatabaseServiceException {
+        return PgSQLConnectionManager.getInstance().getPrivateConnection(dbConfig);
+    }
+
     @Override
     public DatabaseInfo testQuery(DatabaseConfiguration dbConfig, String query)
             throws DatabaseServiceException {
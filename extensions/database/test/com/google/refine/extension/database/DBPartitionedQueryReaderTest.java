@@ -0,0 +1,213 @@
+package com.google.refine.extension.database;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.extension.database.model.DatabaseColumn;
+import com.google.refine.extension.database.model.DatabaseQueryInfo;
+import com.google.refine.extension.database.model.DatabaseQueryPartition;
+import com.google.refine.importing.ImportingJob;
+
+public class DBPartitionedQueryReaderTest {
+
+    @Test
+    public void splitIntegralRange() {
+        Assert.assertEquals(DatabaseQueryPartition.splitRange(0L, 100L, 4), Arrays.<Object>asList(25L, 50L, 75L));
+        Assert.assertEquals(DatabaseQueryPartition.splitRange(1, 3, 4), Arrays.<Object>asList(2L));
+        Assert.assertEquals(DatabaseQueryPartition.splitRange(5L, 5L, 4), Collections.emptyList());
+        Assert.assertEquals(DatabaseQueryPartition.splitRange(null, null, 4), Collections.emptyList());
+    }
+
+    @Test
+    public void splitDecimalAndDateRanges() {
+        Assert.assertEquals(DatabaseQueryPartition.splitRange(0.0d, 1.0d, 2), Arrays.<Object>asList(new BigDecimal("0.5")));
+        List<Object> bounds = DatabaseQueryPartition.splitRange(new Timestamp(0L), new Timestamp(300L), 3);
+        Assert.assertEquals(bounds, Arrays.<Object>asList(new Timestamp(100L), new Timestamp(200L)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void splitRejectsStrings() {
+        DatabaseQueryPartition.splitRange("a", "z", 2);
+    }
+
+    @Test
+    public void returnsPartitionsInRangeOrder() throws Exception {
+        DatabaseService databaseService = mockService(mock(Connection.class), 3, null, null);
+        DBPartitionedQueryReader reader = new DBPartitionedQueryReader(
+                mock(ImportingJob.class), databaseService, "test", COLUMNS, DB_QUERY_INFO, "id", 3, 100);
+
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList("id"));
+        List<Object> ids = new ArrayList<Object>();
+        List<Object> row;
+        while ((row = reader.getNextRowOfCells()) != null) {
+            ids.add(row.get(0));
+        }
+        Assert.assertEquals(ids, Arrays.<Object>asList(0L, 1L, 2L, 10L, 11L, 12L, 20L, 21L, 22L));
+        Assert.assertEquals(reader.getProcessedRows(), 9);
+    }
+
+    @Test
+    public void partitionsAreReadConcurrentlyIntoSpoolFiles() throws Exception {
+        File dir = Files.createTempDirectory("partitioned-import").toFile();
+        AtomicInteger[] reads = { new AtomicInteger(), new AtomicInteger(), new AtomicInteger() };
+        CountDownLatch started = new CountDownLatch(3);
+        DatabaseService databaseService = mockService(mock(Connection.class), 1000, reads, started);
+        DBPartitionedQueryReader reader = new DBPartitionedQueryReader(
+                new ImportingJob(1, dir), databaseService, "test", COLUMNS, DB_QUERY_INFO, "id", 3, 2);
+
+        reader.getNextRowOfCells();
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList(0L));
+        // every partition has started before any of them could return a row
+        Assert.assertEquals(started.getCount(), 0);
+        // the later partitions are read to the end while the first one waits for the consumer
+        waitFor(reads[1], 1001);
+        waitFor(reads[2], 1001);
+        Assert.assertTrue(reads[0].get() < 10, "read " + reads[0].get() + " rows of the first partition");
+
+        long expected = 1;
+        List<Object> row;
+        while ((row = reader.getNextRowOfCells()) != null) {
+            Assert.assertEquals(row, Arrays.<Object>asList(expected++));
+        }
+        Assert.assertEquals(reader.getProcessedRows(), 3000);
+        Assert.assertEquals(dir.list(), new String[0]);
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void closingStopsThePartitionsAndDeletesTheirSpoolFiles() throws Exception {
+        File dir = Files.createTempDirectory("partitioned-import").toFile();
+        Connection connection = mock(Connection.class);
+        DatabaseService databaseService = mockService(connection, 1000, null, null);
+        DBPartitionedQueryReader reader = new DBPartitionedQueryReader(
+                new ImportingJob(1, dir), databaseService, "test", COLUMNS, DB_QUERY_INFO, "id", 3, 2);
+
+        reader.getNextRowOfCells();
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList(0L));
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList(1L));
+        reader.close();
+
+        verify(connection, timeout(5000).times(3)).close();
+        Assert.assertNull(reader.getNextRowOfCells());
+        for (int i = 0; i < 500 && dir.list().length > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(dir.list(), new String[0]);
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void spooledRowsKeepTheirTypes() throws Exception {
+        List<Object> row = Arrays.<Object>asList(null, 12L, 1.5d, true, "\u00e9t\u00e9", "");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DBPartitionedQueryReader.writeRow(out, row);
+        out.writeInt(-1);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Assert.assertEquals(DBPartitionedQueryReader.readRow(in), row);
+        Assert.assertNull(DBPartitionedQueryReader.readRow(in));
+    }
+
+    private static void waitFor(AtomicInteger counter, int value) throws InterruptedException {
+        for (int i = 0; i < 500 && counter.get() < value; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(counter.get(), value);
+    }
+
+    private static final DatabaseQueryInfo DB_QUERY_INFO =
+            new DatabaseQueryInfo(new DatabaseConfiguration(), "SELECT * FROM test_table");
+
+    private static final List<DatabaseColumn> COLUMNS =
+            Arrays.asList(new DatabaseColumn("id", "id", DatabaseColumnType.NUMBER, 10));
+
+    /**
+     * A service splitting the query into three partitions starting at 0, 10 and 20
+     * (or further apart with more rows per partition), all read over one connection.
+     * Calls to next() are counted per partition in {@code reads}, and each partition
+     * waits for the others to count down {@code started} before its first row.
+     */
+    private static DatabaseService mockService(Connection connection, final int rows,
+            final AtomicInteger[] reads, final CountDownLatch started) throws Exception {
+        DatabaseService databaseService = mock(DatabaseService.class);
+        List<DatabaseQueryPartition> partitions = new ArrayList<DatabaseQueryPartition>();
+        for (int i = 0; i < 3; i++) {
+            partitions.add(new DatabaseQueryPartition("partition " + i, Collections.emptyList()));
+        }
+        when(databaseService.getQueryPartitions(any(DatabaseConfiguration.class), anyString(), anyString(), anyInt()))
+                .thenReturn(partitions);
+        when(databaseService.getPrivateConnection(any(DatabaseConfiguration.class))).thenReturn(connection);
+        when(databaseService.prepareStreamingStatement(any(Connection.class), anyString(), anyInt()))
+                .thenAnswer(new Answer<PreparedStatement>() {
+                    @Override
+                    public PreparedStatement answer(InvocationOnMock invocation) throws Throwable {
+                        String query = (String) invocation.getArguments()[1];
+                        long partition = Long.parseLong(query.substring(query.length() - 1));
+                        return mockStatement(partition * Math.max(10, rows), rows,
+                                reads == null ? new AtomicInteger() : reads[(int) partition], started);
+                    }
+                });
+        return databaseService;
+    }
+
+    private static PreparedStatement mockStatement(final long first, final int rows,
+            final AtomicInteger reads, final CountDownLatch started) throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metadata = mock(ResultSetMetaData.class);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.getMetaData()).thenReturn(metadata);
+        when(metadata.getColumnCount()).thenReturn(1);
+        when(metadata.getColumnType(1)).thenReturn(Types.BIGINT);
+        final long[] current = { first - 1 };
+        when(resultSet.next()).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws InterruptedException {
+                if (reads.incrementAndGet() == 1 && started != null) {
+                    started.countDown();
+                    started.await(5, TimeUnit.SECONDS);
+                }
+                return ++current[0] < first + rows;
+            }
+        });
+        when(resultSet.getLong(1)).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                return current[0];
+            }
+        });
+        return statement;
+    }
+}
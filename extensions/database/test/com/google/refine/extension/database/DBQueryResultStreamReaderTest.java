@@ -0,0 +1,115 @@
+package com.google.refine.extension.database;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.extension.database.model.DatabaseColumn;
+import com.google.refine.extension.database.model.DatabaseQueryInfo;
+import com.google.refine.importing.ImportingJob;
+
+public class DBQueryResultStreamReaderTest {
+
+    private DatabaseService databaseService;
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private DatabaseQueryInfo dbQueryInfo;
+    private List<DatabaseColumn> columns;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        databaseService = mock(DatabaseService.class);
+        connection = mock(Connection.class);
+        statement = mock(PreparedStatement.class);
+        resultSet = mock(ResultSet.class);
+        ResultSetMetaData metadata = mock(ResultSetMetaData.class);
+
+        dbQueryInfo = new DatabaseQueryInfo(new DatabaseConfiguration(), "SELECT * FROM test_table");
+        when(databaseService.getPrivateConnection(any(DatabaseConfiguration.class))).thenReturn(connection);
+        when(databaseService.prepareStreamingStatement(connection, "SELECT * FROM test_table", 500)).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.getMetaData()).thenReturn(metadata);
+        when(metadata.getColumnCount()).thenReturn(4);
+        when(metadata.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(metadata.getColumnType(2)).thenReturn(Types.DOUBLE);
+        when(metadata.getColumnType(3)).thenReturn(Types.NUMERIC);
+        when(metadata.getColumnType(4)).thenReturn(Types.VARCHAR);
+
+        columns = Arrays.asList(
+                new DatabaseColumn("id", "id", DatabaseColumnType.NUMBER, 10),
+                new DatabaseColumn("score", "score", DatabaseColumnType.DOUBLE, 10),
+                new DatabaseColumn("amount", "amount", DatabaseColumnType.NUMBER, 10),
+                new DatabaseColumn("name", "name", DatabaseColumnType.STRING, 10));
+    }
+
+    @Test
+    public void readsTypedValuesFromOneCursor() throws Exception {
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong(1)).thenReturn(1L, 2L);
+        when(resultSet.getDouble(2)).thenReturn(0.5d, 0d);
+        when(resultSet.wasNull()).thenReturn(false, false, false, true);
+        when(resultSet.getBigDecimal(3)).thenReturn(new BigDecimal("12"), new BigDecimal("1.50"));
+        when(resultSet.getString(4)).thenReturn("alpha", "");
+
+        DBQueryResultStreamReader reader = new DBQueryResultStreamReader(
+                mock(ImportingJob.class), databaseService, "test", columns, dbQueryInfo, 500);
+
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList("id", "score", "amount", "name"));
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList(1L, 0.5d, 12L, "alpha"));
+        Assert.assertEquals(reader.getNextRowOfCells(), Arrays.<Object>asList(2L, null, "1.50", null));
+        Assert.assertNull(reader.getNextRowOfCells());
+        Assert.assertNull(reader.getNextRowOfCells());
+
+        verify(statement).executeQuery();
+        verify(databaseService, never()).buildLimitQuery(anyInt(), anyInt(), anyString());
+        verify(resultSet).close();
+        verify(connection).close();
+        verify(databaseService, never()).getConnection(any(DatabaseConfiguration.class));
+        Assert.assertEquals(reader.getProcessedRows(), 2);
+    }
+
+    @Test
+    public void decimalAndBitColumnsKeepTheirType() throws Exception {
+        when(resultSet.getBigDecimal(1)).thenReturn(new BigDecimal("7"), new BigDecimal("0.25"));
+        when(resultSet.getBoolean(2)).thenReturn(true);
+        when(resultSet.wasNull()).thenReturn(false);
+
+        Assert.assertEquals(DBQueryResultStreamReader.getCellValue(resultSet, 1, Types.DECIMAL), 7L);
+        Assert.assertEquals(DBQueryResultStreamReader.getCellValue(resultSet, 1, Types.DECIMAL), "0.25");
+        Assert.assertEquals(DBQueryResultStreamReader.getCellValue(resultSet, 2, Types.BIT), true);
+    }
+
+    @Test
+    public void closeReleasesCursorWhenStoppedEarly() throws Exception {
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getString(4)).thenReturn("beta");
+
+        DBQueryResultStreamReader reader = new DBQueryResultStreamReader(
+                mock(ImportingJob.class), databaseService, "test", columns, dbQueryInfo, 500);
+        reader.getNextRowOfCells();
+        reader.getNextRowOfCells();
+        reader.close();
+
+        verify(statement).close();
+        verify(connection).close();
+        Assert.assertNull(reader.getNextRowOfCells());
+    }
+}
@@ -33,6 +33,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.LocalDateTime;
@@ -162,6 +163,16 @@ public abstract class ProjectManager {
      */
     protected abstract Project loadProject(long id);
 
+    /**
+     * Gets the directory where a project whose rows don't fit in memory
+     * keeps them. Managers with a workspace on disk should put it there.
+     * @param projectID
+     * @return
+     */
+    public File getRowStoreDir(long projectID) {
+        return new File(System.getProperty("java.io.tmpdir"), "openrefine-rows-" + projectID);
+    }
+
     /**
      * Import project from a Refine archive
      * @param projectID
@@ -0,0 +1,113 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+/**
+ * Constants of the Arrow IPC format (Message.fbs and Schema.fbs) used by
+ * {@link ArrowStreamWriter} and {@link ArrowStreamReader}.
+ */
+final class ArrowFormat {
+    static final int CONTINUATION = 0xFFFFFFFF;
+    
+    // MetadataVersion
+    static final short VERSION_V4 = 3;
+    static final short VERSION_V5 = 4;
+    
+    // MessageHeader union
+    static final byte HEADER_SCHEMA = 1;
+    static final byte HEADER_DICTIONARY_BATCH = 2;
+    static final byte HEADER_RECORD_BATCH = 3;
+    
+    // Type union
+    static final byte TYPE_NULL = 1;
+    static final byte TYPE_INT = 2;
+    static final byte TYPE_FLOATING_POINT = 3;
+    static final byte TYPE_UTF8 = 5;
+    static final byte TYPE_BOOL = 6;
+    static final byte TYPE_DATE = 8;
+    static final byte TYPE_TIMESTAMP = 10;
+    static final byte TYPE_LARGE_UTF8 = 20;
+    
+    // Precision
+    static final short PRECISION_SINGLE = 1;
+    static final short PRECISION_DOUBLE = 2;
+    
+    // DateUnit
+    static final short DATE_UNIT_DAY = 0;
+    static final short DATE_UNIT_MILLISECOND = 1;
+    
+    // TimeUnit
+    static final short TIME_UNIT_SECOND = 0;
+    static final short TIME_UNIT_MILLISECOND = 1;
+    static final short TIME_UNIT_MICROSECOND = 2;
+    static final short TIME_UNIT_NANOSECOND = 3;
+    
+    // Field slots of the tables we read and write
+    static final int MESSAGE_VERSION = 0;
+    static final int MESSAGE_HEADER_TYPE = 1;
+    static final int MESSAGE_HEADER = 2;
+    static final int MESSAGE_BODY_LENGTH = 3;
+    
+    static final int SCHEMA_ENDIANNESS = 0;
+    static final int SCHEMA_FIELDS = 1;
+    
+    static final int FIELD_NAME = 0;
+    static final int FIELD_NULLABLE = 1;
+    static final int FIELD_TYPE_TYPE = 2;
+    static final int FIELD_TYPE = 3;
+    static final int FIELD_DICTIONARY = 4;
+    static final int FIELD_CHILDREN = 5;
+    
+    static final int INT_BIT_WIDTH = 0;
+    static final int INT_IS_SIGNED = 1;
+    static final int FLOATING_POINT_PRECISION = 0;
+    static final int DATE_UNIT = 0;
+    static final int TIMESTAMP_UNIT = 0;
+    static final int TIMESTAMP_TIMEZONE = 1;
+    
+    static final int RECORD_BATCH_LENGTH = 0;
+    static final int RECORD_BATCH_NODES = 1;
+    static final int RECORD_BATCH_BUFFERS = 2;
+    static final int RECORD_BATCH_COMPRESSION = 3;
+    
+    private ArrowFormat() {
+    }
+    
+    /**
+     * @return n rounded up to a multiple of 8, the alignment of Arrow buffers
+     */
+    static long pad(long n) {
+        return (n + 7) & ~7L;
+    }
+}
@@ -0,0 +1,344 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads rows from an Arrow IPC stream, or from an Arrow file read front to back,
+ * decoding one record batch at a time. Integer, floating point, boolean, date,
+ * timestamp and string columns are supported; values are returned as Long,
+ * Double, Boolean, OffsetDateTime (in UTC) and String.
+ */
+public class ArrowStreamReader {
+    
+    static final private byte[] FILE_MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    
+    static private class Field {
+        String name;
+        byte type;
+        int bitWidth;
+        boolean signed;
+        short unit;
+    }
+    
+    final private InputStream in;
+    final private List<Field> fields = new ArrayList<Field>();
+    private Object[][] batch = new Object[0][];
+    private int batchLength = 0;
+    private int next = 0;
+    private boolean ended = false;
+    
+    // the metadata and body of the last message read
+    private FlatBufferTable message;
+    private ByteBuffer body;
+    
+    public ArrowStreamReader(InputStream inputStream) throws IOException {
+        in = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        
+        // the file format is the stream format between a magic header and a footer
+        in.mark(8);
+        byte[] magic = new byte[8];
+        int read = readFully(magic);
+        if (read < 8 || !Arrays.equals(Arrays.copyOf(magic, FILE_MAGIC.length), FILE_MAGIC)) {
+            in.reset();
+        }
+        
+        if (!readMessage()) {
+            throw new IOException("Empty Arrow stream");
+        }
+        if (message.getByte(ArrowFormat.MESSAGE_HEADER_TYPE, (byte) 0) != ArrowFormat.HEADER_SCHEMA) {
+            throw new IOException("Arrow stream does not start with a schema");
+        }
+        readSchema(message.getTable(ArrowFormat.MESSAGE_HEADER));
+    }
+    
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<String>(fields.size());
+        for (Field field : fields) {
+            names.add(field.name);
+        }
+        return names;
+    }
+    
+    /**
+     * @return the values of the next row, or null at the end of the stream
+     */
+    public List<Object> getNextRow() throws IOException {
+        while (next >= batchLength) {
+            if (ended || !readMessage()) {
+                ended = true;
+                return null;
+            }
+            byte headerType = message.getByte(ArrowFormat.MESSAGE_HEADER_TYPE, (byte) 0);
+            if (headerType == ArrowFormat.HEADER_RECORD_BATCH) {
+                readBatch(message.getTable(ArrowFormat.MESSAGE_HEADER));
+            } else if (headerType == ArrowFormat.HEADER_DICTIONARY_BATCH) {
+                throw new IOException("Dictionary encoded Arrow columns are not supported");
+            }
+        }
+        
+        List<Object> row = new ArrayList<Object>(fields.size());
+        for (Object[] column : batch) {
+            row.add(column[next]);
+        }
+        next++;
+        return row;
+    }
+    
+    private int readFully(byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+    
+    private int readInt() throws IOException {
+        byte[] bytes = new byte[4];
+        int read = readFully(bytes);
+        if (read == 0) {
+            return 0; // end of stream without an end of stream marker
+        } else if (read < 4) {
+            throw new EOFException("Truncated Arrow stream");
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+    
+    /**
+     * @return false at the end of the stream
+     */
+    private boolean readMessage() throws IOException {
+        int length = readInt();
+        if (length == ArrowFormat.CONTINUATION) {
+            length = readInt();
+        }
+        if (length <= 0) {
+            return false;
+        }
+        
+        byte[] metadata = new byte[length];
+        if (readFully(metadata) < length) {
+            throw new EOFException("Truncated Arrow stream");
+        }
+        message = FlatBufferTable.getRoot(metadata);
+        short version = message.getShort(ArrowFormat.MESSAGE_VERSION, (short) 0);
+        if (version < ArrowFormat.VERSION_V4) {
+            throw new IOException("Unsupported Arrow format version " + version);
+        }
+        
+        long bodyLength = message.getLong(ArrowFormat.MESSAGE_BODY_LENGTH, 0);
+        if (bodyLength > Integer.MAX_VALUE) {
+            throw new IOException("Arrow record batch too large: " + bodyLength + " bytes");
+        }
+        byte[] bytes = new byte[(int) bodyLength];
+        if (readFully(bytes) < bytes.length) {
+            throw new EOFException("Truncated Arrow stream");
+        }
+        body = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return true;
+    }
+    
+    private void readSchema(FlatBufferTable schema) throws IOException {
+        int count = schema.getVectorLength(ArrowFormat.SCHEMA_FIELDS);
+        for (int i = 0; i < count; i++) {
+            FlatBufferTable f = schema.getTableElement(ArrowFormat.SCHEMA_FIELDS, i);
+            Field field = new Field();
+            field.name = f.getString(ArrowFormat.FIELD_NAME);
+            if (field.name == null) {
+                field.name = "";
+            }
+            field.type = f.getByte(ArrowFormat.FIELD_TYPE_TYPE, (byte) 0);
+            FlatBufferTable type = f.getTable(ArrowFormat.FIELD_TYPE);
+            
+            boolean supported = type != null && !f.has(ArrowFormat.FIELD_DICTIONARY);
+            if (supported) {
+                switch (field.type) {
+                case ArrowFormat.TYPE_INT:
+                    field.bitWidth = type.getInt(ArrowFormat.INT_BIT_WIDTH, 0);
+                    field.signed = type.getBoolean(ArrowFormat.INT_IS_SIGNED, false);
+                    supported = field.bitWidth == 8 || field.bitWidth == 16 ||
+                        field.bitWidth == 32 || field.bitWidth == 64;
+                    break;
+                case ArrowFormat.TYPE_FLOATING_POINT:
+                    field.unit = type.getShort(ArrowFormat.FLOATING_POINT_PRECISION, (short) 0);
+                    supported = field.unit == ArrowFormat.PRECISION_SINGLE ||
+                        field.unit == ArrowFormat.PRECISION_DOUBLE;
+                    break;
+                case ArrowFormat.TYPE_DATE:
+                    field.unit = type.getShort(ArrowFormat.DATE_UNIT, ArrowFormat.DATE_UNIT_MILLISECOND);
+                    break;
+                case ArrowFormat.TYPE_TIMESTAMP:
+                    field.unit = type.getShort(ArrowFormat.TIMESTAMP_UNIT, ArrowFormat.TIME_UNIT_SECOND);
+                    break;
+                case ArrowFormat.TYPE_NULL:
+                case ArrowFormat.TYPE_BOOL:
+                case ArrowFormat.TYPE_UTF8:
+                case ArrowFormat.TYPE_LARGE_UTF8:
+                    break;
+                default:
+                    supported = false;
+                }
+            }
+            if (!supported) {
+                throw new IOException("Column '" + field.name + "' has an Arrow type which cannot be imported");
+            }
+            fields.add(field);
+        }
+    }
+    
+    private void readBatch(FlatBufferTable recordBatch) throws IOException {
+        if (recordBatch.has(ArrowFormat.RECORD_BATCH_COMPRESSION)) {
+            throw new IOException("Compressed Arrow record batches are not supported");
+        }
+        int length = (int) recordBatch.getLong(ArrowFormat.RECORD_BATCH_LENGTH, 0);
+        batch = new Object[fields.size()][];
+        int bufferIndex = 0;
+        for (int c = 0; c < fields.size(); c++) {
+            Field field = fields.get(c);
+            Object[] values = new Object[length];
+            batch[c] = values;
+            if (field.type == ArrowFormat.TYPE_NULL) {
+                continue; // no buffers at all
+            }
+            
+            long nullCount = recordBatch.getStructLong(ArrowFormat.RECORD_BATCH_NODES, c, 2, 1);
+            int validity = getBufferOffset(recordBatch, bufferIndex);
+            boolean allValid = nullCount == 0 || getBufferLength(recordBatch, bufferIndex) == 0;
+            int valuesOffset = getBufferOffset(recordBatch, bufferIndex + 1);
+            bufferIndex += 2;
+            int dataOffset = 0;
+            if (field.type == ArrowFormat.TYPE_UTF8 || field.type == ArrowFormat.TYPE_LARGE_UTF8) {
+                dataOffset = getBufferOffset(recordBatch, bufferIndex);
+                bufferIndex++;
+            }
+            
+            for (int i = 0; i < length; i++) {
+                if (allValid || isSet(validity, i)) {
+                    values[i] = getValue(field, valuesOffset, dataOffset, i);
+                }
+            }
+        }
+        batchLength = length;
+        next = 0;
+    }
+    
+    private int getBufferOffset(FlatBufferTable recordBatch, int index) throws IOException {
+        if (index >= recordBatch.getVectorLength(ArrowFormat.RECORD_BATCH_BUFFERS)) {
+            throw new IOException("Malformed Arrow record batch");
+        }
+        return (int) recordBatch.getStructLong(ArrowFormat.RECORD_BATCH_BUFFERS, index, 2, 0);
+    }
+    
+    private long getBufferLength(FlatBufferTable recordBatch, int index) {
+        return recordBatch.getStructLong(ArrowFormat.RECORD_BATCH_BUFFERS, index, 2, 1);
+    }
+    
+    private boolean isSet(int bitmapOffset, int i) {
+        return (body.get(bitmapOffset + (i >> 3)) & (1 << (i & 7))) != 0;
+    }
+    
+    private Object getValue(Field field, int valuesOffset, int dataOffset, int i) {
+        switch (field.type) {
+        case ArrowFormat.TYPE_INT:
+            switch (field.bitWidth) {
+            case 8:
+                byte b = body.get(valuesOffset + i);
+                return field.signed ? (long) b : (long) (b & 0xFF);
+            case 16:
+                short s = body.getShort(valuesOffset + 2 * i);
+                return field.signed ? (long) s : (long) (s & 0xFFFF);
+            case 32:
+                int n = body.getInt(valuesOffset + 4 * i);
+                return field.signed ? (long) n : (n & 0xFFFFFFFFL);
+            default:
+                return body.getLong(valuesOffset + 8 * i);
+            }
+        case ArrowFormat.TYPE_FLOATING_POINT:
+            if (field.unit == ArrowFormat.PRECISION_SINGLE) {
+                return (double) body.getFloat(valuesOffset + 4 * i);
+            }
+            return body.getDouble(valuesOffset + 8 * i);
+        case ArrowFormat.TYPE_BOOL:
+            return isSet(valuesOffset, i);
+        case ArrowFormat.TYPE_DATE:
+            if (field.unit == ArrowFormat.DATE_UNIT_DAY) {
+                return LocalDate.ofEpochDay(body.getInt(valuesOffset + 4 * i))
+                    .atStartOfDay().atOffset(ZoneOffset.UTC);
+            }
+            return toDateTime(Instant.ofEpochMilli(body.getLong(valuesOffset + 8 * i)));
+        case ArrowFormat.TYPE_TIMESTAMP:
+            long t = body.getLong(valuesOffset + 8 * i);
+            switch (field.unit) {
+            case ArrowFormat.TIME_UNIT_SECOND:
+                return toDateTime(Instant.ofEpochSecond(t));
+            case ArrowFormat.TIME_UNIT_MILLISECOND:
+                return toDateTime(Instant.ofEpochMilli(t));
+            case ArrowFormat.TIME_UNIT_MICROSECOND:
+                return toDateTime(Instant.ofEpochSecond(Math.floorDiv(t, 1000000L), Math.floorMod(t, 1000000L) * 1000));
+            default:
+                return toDateTime(Instant.ofEpochSecond(Math.floorDiv(t, 1000000000L), Math.floorMod(t, 1000000000L)));
+            }
+        case ArrowFormat.TYPE_LARGE_UTF8:
+            long start = body.getLong(valuesOffset + 8 * i);
+            long end = body.getLong(valuesOffset + 8 * (i + 1));
+            return new String(body.array(), dataOffset + (int) start, (int) (end - start), StandardCharsets.UTF_8);
+        default:
+            int from = body.getInt(valuesOffset + 4 * i);
+            int to = body.getInt(valuesOffset + 4 * (i + 1));
+            return new String(body.array(), dataOffset + from, to - from, StandardCharsets.UTF_8);
+        }
+    }
+    
+    static private OffsetDateTime toDateTime(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.refine.arrow.FlatBufferBuilder.LongStructVector;
+import com.google.refine.arrow.FlatBufferBuilder.StringNode;
+import com.google.refine.arrow.FlatBufferBuilder.Table;
+import com.google.refine.arrow.FlatBufferBuilder.TableVector;
+
+/**
+ * Writes rows in the Arrow IPC streaming format: a schema message followed by
+ * record batches of a bounded number of rows, so that only one batch is held
+ * in memory at a time.
+ */
+public class ArrowStreamWriter {
+    
+    public enum ColumnType {
+        INT64,
+        FLOAT64,
+        BOOL,
+        TIMESTAMP, // milliseconds since the epoch, in UTC
+        UTF8
+    }
+    
+    static final public int DEFAULT_BATCH_SIZE = 8192;
+    
+    final private OutputStream out;
+    final private int batchSize;
+    final private ColumnBuilder[] columns;
+    private int rowCount = 0;
+    
+    public ArrowStreamWriter(OutputStream out, List<String> names, List<ColumnType> types, int batchSize)
+            throws IOException {
+        this.out = out;
+        this.batchSize = batchSize;
+        this.columns = new ColumnBuilder[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ColumnBuilder(types.get(i));
+        }
+        writeSchema(names, types);
+    }
+    
+    /**
+     * Append a row. Values which do not fit the type of their column are written as nulls.
+     */
+    public void writeRow(List<Object> values) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].add(i < values.size() ? values.get(i) : null);
+        }
+        rowCount++;
+        if (rowCount >= batchSize) {
+            writeBatch();
+        }
+    }
+    
+    /**
+     * Write the pending rows and the end of stream marker.
+     */
+    public void finish() throws IOException {
+        if (rowCount > 0) {
+            writeBatch();
+        }
+        ByteSink eos = new ByteSink(8);
+        eos.putInt(ArrowFormat.CONTINUATION);
+        eos.putInt(0);
+        eos.writeTo(out);
+        out.flush();
+    }
+    
+    private void writeSchema(List<String> names, List<ColumnType> types) throws IOException {
+        List<Table> fields = new ArrayList<Table>(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            Table type;
+            byte typeType;
+            switch (types.get(i)) {
+            case INT64:
+                typeType = ArrowFormat.TYPE_INT;
+                type = new Table(2)
+                    .putInt(ArrowFormat.INT_BIT_WIDTH, 64)
+                    .putBoolean(ArrowFormat.INT_IS_SIGNED, true);
+                break;
+            case FLOAT64:
+                typeType = ArrowFormat.TYPE_FLOATING_POINT;
+                type = new Table(1).putShort(ArrowFormat.FLOATING_POINT_PRECISION, ArrowFormat.PRECISION_DOUBLE);
+                break;
+            case BOOL:
+                typeType = ArrowFormat.TYPE_BOOL;
+                type = new Table(0);
+                break;
+            case TIMESTAMP:
+                typeType = ArrowFormat.TYPE_TIMESTAMP;
+                type = new Table(2)
+                    .putShort(ArrowFormat.TIMESTAMP_UNIT, ArrowFormat.TIME_UNIT_MILLISECOND)
+                    .put(ArrowFormat.TIMESTAMP_TIMEZONE, new StringNode("UTC"));
+                break;
+            default:
+                typeType = ArrowFormat.TYPE_UTF8;
+                type = new Table(0);
+            }
+            fields.add(new Table(7)
+                .put(ArrowFormat.FIELD_NAME, new StringNode(names.get(i)))
+                .putBoolean(ArrowFormat.FIELD_NULLABLE, true)
+                .putByte(ArrowFormat.FIELD_TYPE_TYPE, typeType)
+                .put(ArrowFormat.FIELD_TYPE, type)
+                .put(ArrowFormat.FIELD_CHILDREN, new TableVector(new ArrayList<Table>())));
+        }
+        Table schema = new Table(4)
+            .putShort(ArrowFormat.SCHEMA_ENDIANNESS, 0)
+            .put(ArrowFormat.SCHEMA_FIELDS, new TableVector(fields));
+        
+        writeMessage(ArrowFormat.HEADER_SCHEMA, schema, new ArrayList<ByteSink>());
+    }
+    
+    private void writeBatch() throws IOException {
+        long[] nodes = new long[columns.length * 2];
+        List<ByteSink> buffers = new ArrayList<ByteSink>();
+        for (int i = 0; i < columns.length; i++) {
+            nodes[i * 2] = columns[i].length;
+            nodes[i * 2 + 1] = columns[i].nullCount;
+            columns[i].addBuffers(buffers);
+        }
+        long[] bufferLocations = new long[buffers.size() * 2];
+        long offset = 0;
+        for (int i = 0; i < buffers.size(); i++) {
+            long length = buffers.get(i).size();
+            bufferLocations[i * 2] = offset;
+            bufferLocations[i * 2 + 1] = length;
+            offset += ArrowFormat.pad(length);
+        }
+        
+        Table recordBatch = new Table(4)
+            .putLong(ArrowFormat.RECORD_BATCH_LENGTH, rowCount)
+            .put(ArrowFormat.RECORD_BATCH_NODES, new LongStructVector(nodes, 2))
+            .put(ArrowFormat.RECORD_BATCH_BUFFERS, new LongStructVector(bufferLocations, 2));
+        writeMessage(ArrowFormat.HEADER_RECORD_BATCH, recordBatch, buffers);
+        
+        for (ColumnBuilder column : columns) {
+            column.reset();
+        }
+        rowCount = 0;
+    }
+    
+    private void writeMessage(byte headerType, Table header, List<ByteSink> body) throws IOException {
+        long bodyLength = 0;
+        for (ByteSink buffer : body) {
+            bodyLength += ArrowFormat.pad(buffer.size());
+        }
+        byte[] metadata = FlatBufferBuilder.finish(new Table(5)
+            .putShort(ArrowFormat.MESSAGE_VERSION, ArrowFormat.VERSION_V5)
+            .putByte(ArrowFormat.MESSAGE_HEADER_TYPE, headerType)
+            .put(ArrowFormat.MESSAGE_HEADER, header)
+            .putLong(ArrowFormat.MESSAGE_BODY_LENGTH, bodyLength));
+        
+        ByteSink prefix = new ByteSink(8);
+        prefix.putInt(ArrowFormat.CONTINUATION);
+        prefix.putInt(metadata.length);
+        prefix.writeTo(out);
+        out.write(metadata);
+        for (ByteSink buffer : body) {
+            buffer.align(8);
+            buffer.writeTo(out);
+        }
+    }
+    
+    static private class ColumnBuilder {
+        final ColumnType type;
+        final ByteSink validity = new ByteSink(1024);
+        final ByteSink values;
+        final ByteSink data;
+        int length = 0;
+        int nullCount = 0;
+        
+        ColumnBuilder(ColumnType type) {
+            this.type = type;
+            values = new ByteSink(type == ColumnType.BOOL ? 1024 : 8192);
+            data = type == ColumnType.UTF8 ? new ByteSink(8192) : null;
+            reset();
+        }
+        
+        void reset() {
+            validity.clear();
+            values.clear();
+            if (data != null) {
+                data.clear();
+                values.putInt(0); // first string offset
+            }
+            length = 0;
+            nullCount = 0;
+        }
+        
+        void add(Object value) {
+            int bit = 1 << (length % 8);
+            if (bit == 1) {
+                validity.put(0);
+                if (type == ColumnType.BOOL) {
+                    values.put(0);
+                }
+            }
+            
+            boolean valid = true;
+            switch (type) {
+            case INT64:
+                if (value instanceof Number) {
+                    values.putLong(((Number) value).longValue());
+                } else {
+                    values.putLong(0);
+                    valid = false;
+                }
+                break;
+            case FLOAT64:
+                if (value instanceof Number) {
+                    values.putLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+                } else {
+                    values.putLong(0);
+                    valid = false;
+                }
+                break;
+            case BOOL:
+                if (value instanceof Boolean) {
+                    if ((Boolean) value) {
+                        values.orLast(bit);
+                    }
+                } else {
+                    valid = false;
+                }
+                break;
+            case TIMESTAMP:
+                if (value instanceof OffsetDateTime) {
+                    values.putLong(((OffsetDateTime) value).toInstant().toEpochMilli());
+                } else {
+                    values.putLong(0);
+                    valid = false;
+                }
+                break;
+            default:
+                if (value != null) {
+                    data.put(value.toString().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    valid = false;
+                }
+                values.putInt(data.size());
+            }
+            
+            if (valid) {
+                validity.orLast(bit);
+            } else {
+                nullCount++;
+            }
+            length++;
+        }
+        
+        void addBuffers(List<ByteSink> buffers) {
+            if (nullCount > 0) {
+                buffers.add(validity);
+            } else {
+                // all values are valid, which Arrow allows to leave out
+                buffers.add(new ByteSink(0));
+            }
+            buffers.add(values);
+            if (data != null) {
+                buffers.add(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable little endian byte buffer.
+ */
+final class ByteSink {
+    private byte[] data;
+    private int size = 0;
+    
+    ByteSink(int capacity) {
+        data = new byte[Math.max(capacity, 16)];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    void clear() {
+        size = 0;
+    }
+    
+    private void ensure(int extra) {
+        if (size + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+        }
+    }
+    
+    void put(int b) {
+        ensure(1);
+        data[size++] = (byte) b;
+    }
+    
+    void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, data, size, bytes.length);
+        size += bytes.length;
+    }
+    
+    void putShort(int v) {
+        ensure(2);
+        data[size++] = (byte) v;
+        data[size++] = (byte) (v >>> 8);
+    }
+    
+    void putInt(int v) {
+        ensure(4);
+        setInt(size, v);
+        size += 4;
+    }
+    
+    void putLong(long v) {
+        putInt((int) v);
+        putInt((int) (v >>> 32));
+    }
+    
+    void setInt(int pos, int v) {
+        data[pos] = (byte) v;
+        data[pos + 1] = (byte) (v >>> 8);
+        data[pos + 2] = (byte) (v >>> 16);
+        data[pos + 3] = (byte) (v >>> 24);
+    }
+    
+    /**
+     * Set bits of the last byte, as used for bitmaps.
+     */
+    void orLast(int mask) {
+        data[size - 1] |= mask;
+    }
+    
+    /**
+     * Append zero bytes until the size is a multiple of alignment.
+     */
+    void align(int alignment) {
+        while (size % alignment != 0) {
+            put(0);
+        }
+    }
+    
+    void writeTo(OutputStream out) throws IOException {
+        out.write(data, 0, size);
+    }
+    
+    byte[] toByteArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
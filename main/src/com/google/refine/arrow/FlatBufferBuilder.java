@@ -0,0 +1,247 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Just enough of a FlatBuffers encoder to write Arrow IPC metadata. Objects are
+ * described as a tree and laid out front to back on {@link #finish}, each
+ * object placed after the ones referring to it so that all offsets are positive.
+ */
+final class FlatBufferBuilder {
+    
+    static abstract class Node {
+    }
+    
+    static final class Table extends Node {
+        // per slot: null, a boxed scalar, or a Node
+        final Object[] fields;
+        
+        Table(int slots) {
+            fields = new Object[slots];
+        }
+        
+        Table putByte(int slot, int v) {
+            fields[slot] = Byte.valueOf((byte) v);
+            return this;
+        }
+        
+        Table putBoolean(int slot, boolean v) {
+            return putByte(slot, v ? 1 : 0);
+        }
+        
+        Table putShort(int slot, int v) {
+            fields[slot] = Short.valueOf((short) v);
+            return this;
+        }
+        
+        Table putInt(int slot, int v) {
+            fields[slot] = Integer.valueOf(v);
+            return this;
+        }
+        
+        Table putLong(int slot, long v) {
+            fields[slot] = Long.valueOf(v);
+            return this;
+        }
+        
+        Table put(int slot, Node node) {
+            fields[slot] = node;
+            return this;
+        }
+    }
+    
+    static final class StringNode extends Node {
+        final byte[] bytes;
+        
+        StringNode(String s) {
+            bytes = s.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    static final class TableVector extends Node {
+        final List<Table> tables;
+        
+        TableVector(List<Table> tables) {
+            this.tables = tables;
+        }
+    }
+    
+    /**
+     * A vector of structs made of longs, such as FieldNode and Buffer.
+     */
+    static final class LongStructVector extends Node {
+        final long[] values;
+        final int longsPerStruct;
+        
+        LongStructVector(long[] values, int longsPerStruct) {
+            this.values = values;
+            this.longsPerStruct = longsPerStruct;
+        }
+    }
+    
+    private FlatBufferBuilder() {
+    }
+    
+    /**
+     * Encode the tree, padded to a multiple of 8 bytes.
+     */
+    static byte[] finish(Table root) {
+        ByteSink out = new ByteSink(256);
+        out.putInt(0);
+        out.setInt(0, write(out, root));
+        out.align(8);
+        return out.toByteArray();
+    }
+    
+    static private int write(ByteSink out, Node node) {
+        if (node instanceof Table) {
+            return writeTable(out, (Table) node);
+        } else if (node instanceof StringNode) {
+            byte[] bytes = ((StringNode) node).bytes;
+            out.align(4);
+            int pos = out.size();
+            out.putInt(bytes.length);
+            out.put(bytes);
+            out.put(0);
+            return pos;
+        } else if (node instanceof TableVector) {
+            List<Table> tables = ((TableVector) node).tables;
+            out.align(4);
+            int pos = out.size();
+            out.putInt(tables.size());
+            int first = out.size();
+            for (int i = 0; i < tables.size(); i++) {
+                out.putInt(0);
+            }
+            for (int i = 0; i < tables.size(); i++) {
+                int slotPos = first + i * 4;
+                out.setInt(slotPos, writeTable(out, tables.get(i)) - slotPos);
+            }
+            return pos;
+        } else {
+            LongStructVector vector = (LongStructVector) node;
+            // the structs themselves must be 8 byte aligned
+            while ((out.size() + 4) % 8 != 0) {
+                out.put(0);
+            }
+            int pos = out.size();
+            out.putInt(vector.values.length / vector.longsPerStruct);
+            for (long v : vector.values) {
+                out.putLong(v);
+            }
+            return pos;
+        }
+    }
+    
+    static private int sizeOf(Object field) {
+        if (field instanceof Long) {
+            return 8;
+        } else if (field instanceof Short) {
+            return 2;
+        } else if (field instanceof Byte) {
+            return 1;
+        }
+        return 4; // Integer or offset to a Node
+    }
+    
+    static private int writeTable(ByteSink out, Table table) {
+        int slots = table.fields.length;
+        
+        // lay out the fields by decreasing size after the vtable offset
+        Integer[] order = new Integer[slots];
+        for (int i = 0; i < slots; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> sizeOf(table.fields[b]) - sizeOf(table.fields[a]));
+        int[] offsets = new int[slots];
+        int inlineSize = 4;
+        for (int slot : order) {
+            Object field = table.fields[slot];
+            if (field != null) {
+                int size = sizeOf(field);
+                inlineSize = (inlineSize + size - 1) / size * size;
+                offsets[slot] = inlineSize;
+                inlineSize += size;
+            }
+        }
+        
+        out.align(2);
+        int vtablePos = out.size();
+        out.putShort(4 + 2 * slots);
+        out.putShort(inlineSize);
+        for (int i = 0; i < slots; i++) {
+            out.putShort(offsets[i]);
+        }
+        
+        out.align(8);
+        int tablePos = out.size();
+        out.putInt(tablePos - vtablePos);
+        List<Integer> childSlots = new ArrayList<Integer>();
+        for (int slot : order) {
+            Object field = table.fields[slot];
+            if (field == null) {
+                continue;
+            }
+            while (out.size() < tablePos + offsets[slot]) {
+                out.put(0);
+            }
+            if (field instanceof Long) {
+                out.putLong((Long) field);
+            } else if (field instanceof Integer) {
+                out.putInt((Integer) field);
+            } else if (field instanceof Short) {
+                out.putShort((Short) field);
+            } else if (field instanceof Byte) {
+                out.put((Byte) field);
+            } else {
+                out.putInt(0);
+                childSlots.add(slot);
+            }
+        }
+        while (out.size() < tablePos + inlineSize) {
+            out.put(0);
+        }
+        
+        for (int slot : childSlots) {
+            int fieldPos = tablePos + offsets[slot];
+            out.setInt(fieldPos, write(out, (Node) table.fields[slot]) - fieldPos);
+        }
+        return tablePos;
+    }
+}
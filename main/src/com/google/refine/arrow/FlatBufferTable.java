@@ -0,0 +1,136 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.arrow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read access to a table of a FlatBuffers encoded buffer.
+ */
+final class FlatBufferTable {
+    final private ByteBuffer bb;
+    final private int pos;
+    
+    private FlatBufferTable(ByteBuffer bb, int pos) {
+        this.bb = bb;
+        this.pos = pos;
+    }
+    
+    static FlatBufferTable getRoot(byte[] bytes) {
+        ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return new FlatBufferTable(bb, bb.getInt(0));
+    }
+    
+    /**
+     * @return the absolute position of the field, or 0 if it is absent
+     */
+    private int fieldPos(int slot) {
+        int vtable = pos - bb.getInt(pos);
+        int vtableSize = bb.getShort(vtable) & 0xFFFF;
+        int entry = 4 + 2 * slot;
+        if (entry >= vtableSize) {
+            return 0;
+        }
+        int offset = bb.getShort(vtable + entry) & 0xFFFF;
+        return offset == 0 ? 0 : pos + offset;
+    }
+    
+    private int indirect(int fieldPos) {
+        return fieldPos + bb.getInt(fieldPos);
+    }
+    
+    boolean has(int slot) {
+        return fieldPos(slot) != 0;
+    }
+    
+    byte getByte(int slot, byte def) {
+        int p = fieldPos(slot);
+        return p == 0 ? def : bb.get(p);
+    }
+    
+    boolean getBoolean(int slot, boolean def) {
+        int p = fieldPos(slot);
+        return p == 0 ? def : bb.get(p) != 0;
+    }
+    
+    short getShort(int slot, short def) {
+        int p = fieldPos(slot);
+        return p == 0 ? def : bb.getShort(p);
+    }
+    
+    int getInt(int slot, int def) {
+        int p = fieldPos(slot);
+        return p == 0 ? def : bb.getInt(p);
+    }
+    
+    long getLong(int slot, long def) {
+        int p = fieldPos(slot);
+        return p == 0 ? def : bb.getLong(p);
+    }
+    
+    String getString(int slot) {
+        int p = fieldPos(slot);
+        if (p == 0) {
+            return null;
+        }
+        int start = indirect(p);
+        int length = bb.getInt(start);
+        return new String(bb.array(), start + 4, length, StandardCharsets.UTF_8);
+    }
+    
+    FlatBufferTable getTable(int slot) {
+        int p = fieldPos(slot);
+        return p == 0 ? null : new FlatBufferTable(bb, indirect(p));
+    }
+    
+    int getVectorLength(int slot) {
+        int p = fieldPos(slot);
+        return p == 0 ? 0 : bb.getInt(indirect(p));
+    }
+    
+    FlatBufferTable getTableElement(int slot, int index) {
+        int element = indirect(fieldPos(slot)) + 4 + 4 * index;
+        return new FlatBufferTable(bb, indirect(element));
+    }
+    
+    /**
+     * Read a long of an element of a vector of structs made of longs.
+     */
+    long getStructLong(int slot, int index, int longsPerStruct, int field) {
+        int start = indirect(fieldPos(slot)) + 4;
+        return bb.getLong(start + 8 * (index * longsPerStruct + field));
+    }
+}
@@ -134,6 +134,48 @@ public class Engine implements Jsonizable {
         throw new InternalError("Unknown mode.");
     }
 
+    /**
+     * Returns the rows matching the current facets, restricted to the given
+     * candidate rows. Callers which already know which rows they are interested
+     * in (for instance from a precomputed index) can use this to avoid scanning
+     * the whole project. In record mode, candidate rows are visited if their
+     * record matches.
+     * 
+     * @param rowIndices candidate row indices, in increasing order
+     */
+    public FilteredRows getFilteredRowsAmong(final int[] rowIndices) {
+        if (_mode == Mode.RecordBased) {
+            final ConjunctiveFilteredRecords cfr = new ConjunctiveFilteredRecords();
+            for (Facet facet : _facets) {
+                RecordFilter recordFilter = facet.getRecordFilter(_project);
+                if (recordFilter != null) {
+                    cfr.add(recordFilter);
+                }
+            }
+            return new FilteredRows() {
+                @Override
+                public void accept(Project project, RowVisitor visitor) {
+                    cfr.acceptRows(project, visitor, rowIndices);
+                }
+            };
+        } else if (_mode == Mode.RowBased) {
+            final ConjunctiveFilteredRows cfr = new ConjunctiveFilteredRows();
+            for (Facet facet : _facets) {
+                RowFilter rowFilter = facet.getRowFilter(_project);
+                if (rowFilter != null) {
+                    cfr.add(rowFilter);
+                }
+            }
+            return new FilteredRows() {
+                @Override
+                public void accept(Project project, RowVisitor visitor) {
+                    cfr.acceptRows(project, visitor, rowIndices);
+                }
+            };
+        }
+        throw new InternalError("Unknown mode.");
+    }
+
     public FilteredRecords getAllRecords() {
         return new FilteredRecords() {
             @Override
@@ -0,0 +1,129 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.browsing.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * An inverted index from the values of the cells of a column to the indices of
+ * the rows containing them. Operations which act on all cells containing a given
+ * value (such as judging similar cells) use it to visit only the matching rows
+ * instead of scanning the whole project.
+ * 
+ * The index is built lazily and cached as a precompute of the column, so it is
+ * discarded along with the other precomputes whenever the column's cells change.
+ * Changes which only touch reconciliation data keep it around, since they leave
+ * cell values untouched.
+ */
+public class CellValueRowIndex {
+    static final public String PRECOMPUTE_KEY = "cell-value-row-index";
+    
+    static final private int[] EMPTY = new int[0];
+    
+    final protected int                 _rowCount;
+    final protected Map<String, int[]>  _rowIndices;
+    
+    static public CellValueRowIndex get(Project project, Column column) {
+        Object o = column.getPrecompute(PRECOMPUTE_KEY);
+        if (o instanceof CellValueRowIndex && ((CellValueRowIndex) o)._rowCount == project.rows.size()) {
+            return (CellValueRowIndex) o;
+        }
+        
+        CellValueRowIndex index = new CellValueRowIndex(project, column.getCellIndex());
+        column.setPrecompute(PRECOMPUTE_KEY, index);
+        return index;
+    }
+    
+    /**
+     * The key under which a cell value is indexed. This is the same string
+     * representation that the similar cells operations compare against.
+     */
+    static public String toKey(Object value) {
+        return value instanceof String ? (String) value : value.toString();
+    }
+    
+    protected CellValueRowIndex(Project project, int cellIndex) {
+        Map<String, RowList> lists = new HashMap<String, RowList>();
+        
+        int c = project.rows.size();
+        for (int rowIndex = 0; rowIndex < c; rowIndex++) {
+            Row row = project.rows.get(rowIndex);
+            Cell cell = row.getCell(cellIndex);
+            if (cell != null && cell.value != null) {
+                String key = toKey(cell.value);
+                RowList list = lists.get(key);
+                if (list == null) {
+                    list = new RowList();
+                    lists.put(key, list);
+                }
+                list.add(rowIndex);
+            }
+        }
+        
+        _rowCount = c;
+        _rowIndices = new HashMap<String, int[]>(lists.size() * 4 / 3 + 1);
+        for (Map.Entry<String, RowList> entry : lists.entrySet()) {
+            RowList list = entry.getValue();
+            _rowIndices.put(entry.getKey(), Arrays.copyOf(list.rows, list.size));
+        }
+    }
+    
+    /**
+     * @return the indices of the rows whose cell has the given value, in
+     *         increasing order. The returned array must not be modified.
+     */
+    public int[] getRowIndices(String value) {
+        int[] rowIndices = _rowIndices.get(value);
+        return rowIndices != null ? rowIndices : EMPTY;
+    }
+    
+    static private class RowList {
+        int[] rows = new int[1];
+        int   size = 0;
+        
+        void add(int rowIndex) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = rowIndex;
+        }
+    }
+}
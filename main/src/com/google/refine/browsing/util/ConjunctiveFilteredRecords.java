@@ -39,6 +39,7 @@ import java.util.List;
 import com.google.refine.browsing.FilteredRecords;
 import com.google.refine.browsing.RecordFilter;
 import com.google.refine.browsing.RecordVisitor;
+import com.google.refine.browsing.RowVisitor;
 import com.google.refine.model.Project;
 import com.google.refine.model.Record;
 
@@ -71,6 +72,38 @@ public class ConjunctiveFilteredRecords implements FilteredRecords {
         }
     }
     
+    /**
+     * Visit only those of the given rows that belong to records matching all
+     * the record filters.
+     * 
+     * @param rowIndices candidate row indices, in increasing order
+     */
+    public void acceptRows(Project project, RowVisitor visitor, int[] rowIndices) {
+        try {
+            visitor.start(project);
+            
+            Record lastRecord = null;
+            boolean lastRecordMatches = false;
+            for (int rowIndex : rowIndices) {
+                Record record = project.recordModel.getRecordOfRow(rowIndex);
+                if (record == null) {
+                    continue;
+                }
+                if (record != lastRecord) {
+                    lastRecord = record;
+                    lastRecordMatches = matchRecord(project, record);
+                }
+                if (lastRecordMatches) {
+                    if (visitor.visit(project, rowIndex, project.rows.get(rowIndex))) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            visitor.end(project);
+        }
+    }
+    
     protected boolean matchRecord(Project project, Record record) {
         for (RecordFilter recordFilter : _recordFilters) {
             if (!recordFilter.filterRecord(project, record)) {
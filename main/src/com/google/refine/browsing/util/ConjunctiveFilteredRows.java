@@ -72,6 +72,28 @@ public class ConjunctiveFilteredRows implements FilteredRows {
         }
     }
     
+    /**
+     * Visit only those of the given rows that match all the row filters.
+     * 
+     * @param rowIndices candidate row indices, in increasing order
+     */
+    public void acceptRows(Project project, RowVisitor visitor, int[] rowIndices) {
+        try {
+            visitor.start(project);
+            
+            for (int rowIndex : rowIndices) {
+                Row row = project.rows.get(rowIndex);
+                if (matchRow(project, rowIndex, row)) {
+                    if (visitRow(project, visitor, rowIndex, row)) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            visitor.end(project);
+        }
+    }
+    
     protected boolean visitRow(Project project, RowVisitor visitor, int rowIndex, Row row) {
         return visitor.visit(project, rowIndex, row);
     }
@@ -43,6 +43,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.stream.IntStream;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -67,6 +68,8 @@ public class BinningClusterer extends Clusterer {
     final static Logger logger = LoggerFactory.getLogger("binning_clusterer");
     
     List<Map<String,Integer>> _clusters;
+    
+    static final private int PARALLEL_KEYING_THRESHOLD = 10000;
      
     static {
         _keyers.put("fingerprint", new FingerprintKeyer());
@@ -78,28 +81,13 @@ public class BinningClusterer extends Clusterer {
         _keyers.put("cologne-phonetic", new ColognePhoneticKeyer());
     }
 
+    /**
+     * Counts the occurrences of each distinct value of the column, so that the
+     * keyer only needs to run once per distinct value rather than once per row.
+     */
     class BinningRowVisitor implements RowVisitor {
 
-        Keyer _keyer;
-        Object[] _params;
-        JSONObject _config;
-        
-        Map<String,Map<String,Integer>> _map = new HashMap<String,Map<String,Integer>>();
-        
-        public BinningRowVisitor(Keyer k, JSONObject o) {
-            _keyer = k;
-            _config = o;
-            if (k instanceof NGramFingerprintKeyer) {
-                try {
-                    int size = _config.getJSONObject("params").getInt("ngram-size");
-                    logger.debug("Using ngram size: {}", size);
-                    _params = new Object[1];
-                    _params[0] = size;
-                } catch (JSONException e) {
-                    //Refine.warn("No params specified, using default");
-                }
-            }
-        }
+        Map<String,int[]> _counts = new HashMap<String,int[]>();
         
         @Override
         public void start(Project project) {
@@ -117,25 +105,18 @@ public class BinningClusterer extends Clusterer {
             if (cell != null && cell.value != null) {
                 Object v = cell.value;
                 String s = (v instanceof String) ? ((String) v) : v.toString();
-                String key = _keyer.key(s,_params);
-                if (_map.containsKey(key)) {
-                    Map<String,Integer> m = _map.get(key);
-                    if (m.containsKey(s)) {
-                        m.put(s, m.get(s) + 1);
-                    } else {
-                        m.put(s,1);
-                    }
+                int[] count = _counts.get(s);
+                if (count == null) {
+                    _counts.put(s, new int[] { 1 });
                 } else {
-                    Map<String,Integer> m = new TreeMap<String,Integer>();
-                    m.put(s,1);
-                    _map.put(key, m);
+                    count[0]++;
                 }
             }
             return false;
         }
         
-        public Map<String,Map<String,Integer>> getMap() {
-            return _map;
+        public Map<String,int[]> getCounts() {
+            return _counts;
         }
     }
             
@@ -177,15 +158,70 @@ public class BinningClusterer extends Clusterer {
 
     @Override
     public void computeClusters(Engine engine) {
-        BinningRowVisitor visitor = new BinningRowVisitor(_keyer,_config);
+        BinningRowVisitor visitor = new BinningRowVisitor();
         FilteredRows filteredRows = engine.getAllFilteredRows();
         filteredRows.accept(_project, visitor);
-     
-        Map<String,Map<String,Integer>> map = visitor.getMap();
+        
+        Map<String,int[]> counts = visitor.getCounts();
+        final String[] values = counts.keySet().toArray(new String[counts.size()]);
+        final String[] keys = computeKeys(values, getKeyerParams());
+        
+        // count the distinct values of each key first, so that we only build
+        // clusters for the keys which actually group several values together
+        Map<String,int[]> clusterSizes = new HashMap<String,int[]>();
+        for (String key : keys) {
+            int[] size = clusterSizes.get(key);
+            if (size == null) {
+                clusterSizes.put(key, new int[] { 1 });
+            } else {
+                size[0]++;
+            }
+        }
+        
+        Map<String,Map<String,Integer>> map = new HashMap<String,Map<String,Integer>>();
+        for (int i = 0; i < values.length; i++) {
+            if (clusterSizes.get(keys[i])[0] > 1) {
+                Map<String,Integer> m = map.get(keys[i]);
+                if (m == null) {
+                    m = new TreeMap<String,Integer>();
+                    map.put(keys[i], m);
+                }
+                m.put(values[i], counts.get(values[i])[0]);
+            }
+        }
+        
         _clusters = new ArrayList<Map<String,Integer>>(map.values());
         Collections.sort(_clusters, new SizeComparator());
     }
     
+    protected Object[] getKeyerParams() {
+        if (_keyer instanceof NGramFingerprintKeyer) {
+            try {
+                int size = _config.getJSONObject("params").getInt("ngram-size");
+                logger.debug("Using ngram size: {}", size);
+                return new Object[] { size };
+            } catch (JSONException e) {
+                //Refine.warn("No params specified, using default");
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Key each of the given distinct values, spreading the work across all
+     * available cores when there are enough values to make it worthwhile.
+     * Keyers are stateless, so they can be shared between threads.
+     */
+    protected String[] computeKeys(final String[] values, final Object[] params) {
+        final String[] keys = new String[values.length];
+        IntStream indices = IntStream.range(0, values.length);
+        if (values.length >= PARALLEL_KEYING_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> keys[i] = _keyer.key(values[i], params));
+        return keys;
+    }
+    
     @Override
     public void write(JSONWriter writer, Properties options) throws JSONException {
         EntriesComparator c = new EntriesComparator();
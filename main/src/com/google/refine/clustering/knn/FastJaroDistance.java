@@ -0,0 +1,135 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.clustering.knn;
+
+/**
+ * Case-insensitive Jaro similarity, optionally rescored with Winkler's common
+ * prefix bonus, giving the same results as vicino's {@code JaroDistance} and
+ * {@code JaroWinklerDistance} without building intermediate strings. Like
+ * those, it returns a similarity (1 for identical strings), so it cannot stop
+ * early when exceeding the radius.
+ * <p>
+ * Matched characters are flagged in a separate array rather than overwritten
+ * with a marker character, so strings containing '*' are compared correctly.
+ */
+public class FastJaroDistance extends PreparedDistance {
+    
+    static private class Scratch {
+        boolean[] matched1 = new boolean[0];
+        boolean[] matched2 = new boolean[0];
+        char[] common1 = new char[0];
+        char[] common2 = new char[0];
+    }
+    
+    static final private ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+    
+    final protected boolean _winkler;
+    
+    public FastJaroDistance(boolean winkler) {
+        _winkler = winkler;
+    }
+    
+    @Override
+    public double d(char[] a, char[] b, double radius) {
+        double score = jaro(a, b);
+        if (_winkler) {
+            int prefix = 0;
+            int maxPrefix = Math.min(4, Math.min(a.length, b.length));
+            while (prefix < maxPrefix && a[prefix] == b[prefix]) {
+                prefix++;
+            }
+            score = score + prefix * 0.1 * (1 - score);
+        }
+        return score;
+    }
+    
+    protected double jaro(char[] a, char[] b) {
+        int halfLength = (a.length > b.length ? b.length : a.length) / 2 + 1;
+        
+        Scratch s = scratch.get();
+        int maxLength = Math.max(a.length, b.length);
+        if (s.common1.length < maxLength) {
+            s.matched1 = new boolean[maxLength];
+            s.matched2 = new boolean[maxLength];
+            s.common1 = new char[maxLength];
+            s.common2 = new char[maxLength];
+        }
+        
+        int count1 = commonChars(a, b, halfLength, s.matched1, s.common1);
+        int count2 = commonChars(b, a, halfLength, s.matched2, s.common2);
+        if (count1 != count2 || count1 == 0) {
+            return 0;
+        }
+        
+        int transpositions = 0;
+        for (int i = 0; i < count1; i++) {
+            if (s.common1[i] != s.common2[i]) {
+                transpositions++;
+            }
+        }
+        transpositions /= 2;
+        
+        return (count1 / (double) a.length + count1 / (double) b.length
+                + (count1 - transpositions) / (double) count1) / 3.0;
+    }
+    
+    /**
+     * Collect the characters of a which match a character of b within the
+     * given distance, each character of b being matched at most once.
+     */
+    protected int commonChars(char[] a, char[] b, int halfLength, boolean[] matched, char[] common) {
+        for (int j = 0; j < b.length; j++) {
+            matched[j] = false;
+        }
+        
+        int count = 0;
+        for (int i = 0; i < a.length; i++) {
+            char c = a[i];
+            int end = Math.min(i + halfLength, b.length);
+            for (int j = Math.max(0, i - halfLength); j < end; j++) {
+                if (!matched[j] && b[j] == c) {
+                    matched[j] = true;
+                    common[count++] = c;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
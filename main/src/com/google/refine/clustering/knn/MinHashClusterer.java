@@ -0,0 +1,279 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.clustering.knn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.json.JSONObject;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.browsing.FilteredRows;
+import com.google.refine.browsing.RowVisitor;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+import edu.mit.simile.vicino.distances.MetricDistance;
+
+/**
+ * Nearest neighbor clusterer for columns with too many distinct values to
+ * compare within n-gram blocks.
+ * <p>
+ * Each distinct value gets a MinHash signature of the character shingles of
+ * its normalized form, computed as rows are visited. Signatures are cut into
+ * bands of a few rows, and values with an identical band are candidate
+ * neighbors, which are then compared with the configured distance. Values
+ * whose shingle sets have a Jaccard similarity s are candidates with a
+ * probability of 1 - (1 - s^rows)^bands, so more bands find more neighbors
+ * and more rows per band yield fewer, closer candidates.
+ */
+public class MinHashClusterer extends kNNClusterer {
+
+    static final private long SEED = 0x5DEECE66DL;
+    
+    class MinHashClusteringRowVisitor implements RowVisitor {
+
+        final double _radius;
+        final int _shingleSize;
+        final int _bands;
+        final int _rows;
+        final long[] _hashSeeds;
+        
+        final Set<String> _seen = new HashSet<String>();
+        final List<String> _values = new ArrayList<String>();
+        final List<int[]> _bandHashes = new ArrayList<int[]>();
+        
+        public MinHashClusteringRowVisitor(JSONObject o) {
+            JSONObject params = o.optJSONObject("params");
+            if (params == null) {
+                params = new JSONObject();
+            }
+            _radius = params.optDouble("radius", 1.0d);
+            _shingleSize = Math.max(1, params.optInt("shingle-size", 3));
+            _bands = Math.max(1, params.optInt("bands", 20));
+            _rows = Math.max(1, params.optInt("rows", 4));
+            logger.debug("Use {} bands of {} rows", _bands, _rows);
+            
+            Random random = new Random(SEED);
+            _hashSeeds = new long[_bands * _rows];
+            for (int i = 0; i < _hashSeeds.length; i++) {
+                _hashSeeds[i] = random.nextLong();
+            }
+        }
+        
+        @Override
+        public void start(Project project) {
+            // nothing to do
+        }
+
+        @Override
+        public void end(Project project) {
+            // nothing to do
+        }
+        
+        @Override
+        public boolean visit(Project project, int rowIndex, Row row) {
+            Cell cell = row.getCell(_colindex);
+            if (cell != null && cell.value != null) {
+                Object v = cell.value;
+                String s = (v instanceof String) ? ((String) v) : v.toString();
+                if (_seen.add(s)) {
+                    int[] bandHashes = hashBands(NGramBlockingClusterer.normalize(s));
+                    if (bandHashes != null) {
+                        _values.add(s);
+                        _bandHashes.add(bandHashes);
+                    }
+                }
+                count(s);
+            }
+            return false;
+        }
+        
+        protected int[] hashBands(String s) {
+            if (s.isEmpty()) {
+                return null;
+            }
+            
+            long[] signature = new long[_hashSeeds.length];
+            Arrays.fill(signature, Long.MAX_VALUE);
+            int shingleCount = Math.max(1, s.length() - _shingleSize + 1);
+            for (int i = 0; i < shingleCount; i++) {
+                long shingle = hashShingle(s, i, Math.min(s.length(), i + _shingleSize));
+                for (int h = 0; h < signature.length; h++) {
+                    long hash = mix(shingle ^ _hashSeeds[h]);
+                    if (hash < signature[h]) {
+                        signature[h] = hash;
+                    }
+                }
+            }
+            
+            int[] bandHashes = new int[_bands];
+            for (int b = 0; b < _bands; b++) {
+                long hash = b;
+                for (int r = 0; r < _rows; r++) {
+                    hash = mix(hash * 31 + signature[b * _rows + r]);
+                }
+                bandHashes[b] = (int) (hash >>> 32);
+            }
+            return bandHashes;
+        }
+        
+        public List<long[]> getNeighbors() {
+            final String[] values = _values.toArray(new String[_values.size()]);
+            final int[][] bandHashes = _bandHashes.toArray(new int[_bandHashes.size()][]);
+            
+            final char[][] prepared;
+            if (_distance instanceof PreparedDistance) {
+                final PreparedDistance distance = (PreparedDistance) _distance;
+                prepared = new char[values.length][];
+                IntStream.range(0, values.length).parallel().forEach(v -> {
+                    prepared[v] = distance.prepare(values[v]);
+                });
+            } else {
+                prepared = null;
+            }
+            
+            return IntStream.range(0, _bands).parallel()
+                .mapToObj(b -> compareBand(b, values, bandHashes, prepared))
+                .filter(pairs -> pairs.length > 0)
+                .collect(Collectors.toList());
+        }
+        
+        protected long[] compareBand(int band, String[] values, int[][] bandHashes, char[][] prepared) {
+            // sort value ids by band hash, so that buckets are contiguous
+            long[] keys = new long[values.length];
+            for (int v = 0; v < values.length; v++) {
+                keys[v] = ((long) bandHashes[v][band] << 32) | v;
+            }
+            Arrays.sort(keys);
+            
+            long[] pairs = new long[0];
+            int count = 0;
+            for (int start = 0, end; start < keys.length; start = end) {
+                end = start + 1;
+                while (end < keys.length && (keys[end] >>> 32) == (keys[start] >>> 32)) {
+                    end++;
+                }
+                for (int i = start; i < end; i++) {
+                    for (int j = i + 1; j < end; j++) {
+                        int a = (int) keys[i];
+                        int b = (int) keys[j];
+                        if (collidedBefore(band, bandHashes[a], bandHashes[b])) {
+                            continue;
+                        }
+                        if (values[a].compareTo(values[b]) > 0) {
+                            int t = a;
+                            a = b;
+                            b = t;
+                        }
+                        
+                        long pair;
+                        if (_radius < 0 || distance(a, b, values, prepared) <= _radius) {
+                            pair = ((long) a << 32) | b;
+                        } else if (prepared == null && !(_distance instanceof MetricDistance) &&
+                                _distance.d(values[b], values[a]) <= _radius) {
+                            pair = ((long) b << 32) | a;
+                        } else {
+                            continue;
+                        }
+                        
+                        if (count == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, Math.max(8, count * 2));
+                        }
+                        pairs[count++] = pair;
+                    }
+                }
+            }
+            return count == pairs.length ? pairs : Arrays.copyOf(pairs, count);
+        }
+        
+        /**
+         * Candidates colliding in several bands are only compared in the first one.
+         */
+        protected boolean collidedBefore(int band, int[] a, int[] b) {
+            for (int i = 0; i < band; i++) {
+                if (a[i] == b[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        protected double distance(int a, int b, String[] values, char[][] prepared) {
+            if (prepared != null) {
+                return ((PreparedDistance) _distance).d(prepared[a], prepared[b], _radius);
+            } else {
+                return _distance.d(values[a], values[b]);
+            }
+        }
+        
+        public String[] getValues() {
+            return _values.toArray(new String[_values.size()]);
+        }
+    }
+    
+    static protected long hashShingle(String s, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+    
+    static protected long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    @Override
+    public void computeClusters(Engine engine) {
+        MinHashClusteringRowVisitor visitor = new MinHashClusteringRowVisitor(_config);
+        FilteredRows filteredRows = engine.getAllFilteredRows();
+        filteredRows.accept(_project, visitor);
+        
+        _clusters = NGramBlockingClusterer.buildClusters(visitor.getValues(), visitor.getNeighbors());
+    }
+}
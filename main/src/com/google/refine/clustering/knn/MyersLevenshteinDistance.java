@@ -0,0 +1,196 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.clustering.knn;
+
+/**
+ * Case-insensitive Levenshtein edit distance, giving the same results as
+ * vicino's {@code LevenshteinDistance}.
+ * <p>
+ * When the shorter string fits in 64 characters (the common case for cell
+ * values), it uses Myers' bit-parallel algorithm, which processes a whole
+ * column of the dynamic programming matrix per character of the longer
+ * string. Longer strings fall back to the row-by-row matrix computation.
+ * Both give up as soon as the distance is bound to exceed the radius, and
+ * neither allocates: scratch space is kept per thread.
+ */
+public class MyersLevenshteinDistance extends PreparedDistance {
+
+    static private class Scratch {
+        // match masks of the pattern characters, for characters below 256
+        final long[] latinMasks = new long[256];
+        // and for the other ones, which are looked up linearly
+        final char[] wideChars = new char[64];
+        final long[] wideMasks = new long[64];
+        int wideCount;
+        
+        int[] previousRow = new int[0];
+        int[] currentRow = new int[0];
+    }
+    
+    static final private ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+    
+    @Override
+    public double d(char[] a, char[] b, double radius) {
+        // the pattern is the shorter string
+        char[] pattern = a.length <= b.length ? a : b;
+        char[] text = a.length <= b.length ? b : a;
+        int m = pattern.length;
+        int n = text.length;
+        
+        int maxDistance = radius >= n ? n : (int) Math.floor(radius);
+        if (n - m > maxDistance) {
+            return n - m;
+        } else if (m == 0) {
+            return n;
+        }
+        
+        Scratch s = scratch.get();
+        return m <= 64 ?
+                myers(pattern, text, maxDistance, s) :
+                matrix(pattern, text, maxDistance, s);
+    }
+    
+    protected int myers(char[] pattern, char[] text, int maxDistance, Scratch s) {
+        int m = pattern.length;
+        int n = text.length;
+        
+        s.wideCount = 0;
+        for (int i = 0; i < m; i++) {
+            char c = pattern[i];
+            if (c < 256) {
+                s.latinMasks[c] |= 1L << i;
+            } else {
+                int w = 0;
+                while (w < s.wideCount && s.wideChars[w] != c) {
+                    w++;
+                }
+                if (w == s.wideCount) {
+                    s.wideChars[w] = c;
+                    s.wideMasks[w] = 0;
+                    s.wideCount++;
+                }
+                s.wideMasks[w] |= 1L << i;
+            }
+        }
+        
+        long pv = -1L;
+        long mv = 0L;
+        long last = 1L << (m - 1);
+        int score = m;
+        
+        for (int j = 0; j < n; j++) {
+            char c = text[j];
+            long eq = 0L;
+            if (c < 256) {
+                eq = s.latinMasks[c];
+            } else {
+                for (int w = 0; w < s.wideCount; w++) {
+                    if (s.wideChars[w] == c) {
+                        eq = s.wideMasks[w];
+                        break;
+                    }
+                }
+            }
+            
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            
+            // each remaining character can lower the score by one at most
+            if (score - (n - j - 1) > maxDistance) {
+                break;
+            }
+            
+            ph = (ph << 1) | 1L;
+            mh = mh << 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+        
+        for (int i = 0; i < m; i++) {
+            if (pattern[i] < 256) {
+                s.latinMasks[pattern[i]] = 0L;
+            }
+        }
+        return score;
+    }
+    
+    protected int matrix(char[] pattern, char[] text, int maxDistance, Scratch s) {
+        int m = pattern.length;
+        int n = text.length;
+        
+        if (s.previousRow.length <= m) {
+            s.previousRow = new int[m + 1];
+            s.currentRow = new int[m + 1];
+        }
+        int[] previous = s.previousRow;
+        int[] current = s.currentRow;
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+        
+        for (int j = 1; j <= n; j++) {
+            current[0] = j;
+            int rowMin = j;
+            char c = text[j - 1];
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern[i - 1] == c ? 0 : 1;
+                int d = Math.min(Math.min(current[i - 1], previous[i]) + 1, previous[i - 1] + cost);
+                current[i] = d;
+                if (d < rowMin) {
+                    rowMin = d;
+                }
+            }
+            if (rowMin > maxDistance) {
+                return rowMin;
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[m];
+    }
+}
@@ -0,0 +1,278 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.clustering.knn;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import edu.mit.simile.vicino.distances.Distance;
+import edu.mit.simile.vicino.distances.MetricDistance;
+
+/**
+ * Nearest neighbor clusterer which only compares values sharing an n-gram
+ * of their normalized form, producing the same clusters as vicino's
+ * {@code NGramClusterer}.
+ * <p>
+ * Distinct values are numbered once and blocks are kept as arrays of value
+ * ids, so that blocks can be compared concurrently on all cores. A pair of
+ * values sharing several n-grams is only compared in the first block they
+ * have in common.
+ */
+public class NGramBlockingClusterer {
+
+    static final private Pattern PUNCTUATION = Pattern.compile("\\p{Cntrl}|\\p{Punct}");
+    static final private Pattern WHITESPACE = Pattern.compile("\\p{Space}+");
+    
+    /**
+     * Blocks smaller than this are compared on the calling thread
+     */
+    static final protected int PARALLEL_COMPARISON_THRESHOLD = 1000;
+    
+    final protected Distance _distance;
+    final protected int _blockSize;
+    final protected Set<String> _values = new HashSet<String>();
+    
+    public NGramBlockingClusterer(Distance distance, int blockSize) {
+        _distance = distance;
+        _blockSize = blockSize;
+    }
+    
+    public void populate(String s) {
+        _values.add(s);
+    }
+    
+    public List<Set<Serializable>> getClusters(final double radius) {
+        final String[] values = _values.toArray(new String[_values.size()]);
+        Arrays.sort(values);
+        
+        final int[][] ngrams = new int[values.length][];
+        int ngramCount = indexNGrams(values, ngrams);
+        
+        // blocks as lists of value ids, in increasing order
+        int[] blockStarts = new int[ngramCount + 1];
+        for (int[] valueNGrams : ngrams) {
+            for (int ngram : valueNGrams) {
+                blockStarts[ngram + 1]++;
+            }
+        }
+        for (int b = 0; b < ngramCount; b++) {
+            blockStarts[b + 1] += blockStarts[b];
+        }
+        int[] blockValues = new int[blockStarts[ngramCount]];
+        int[] fill = Arrays.copyOf(blockStarts, ngramCount);
+        for (int v = 0; v < values.length; v++) {
+            for (int ngram : ngrams[v]) {
+                blockValues[fill[ngram]++] = v;
+            }
+        }
+        
+        final char[][] prepared;
+        if (_distance instanceof PreparedDistance) {
+            final PreparedDistance distance = (PreparedDistance) _distance;
+            prepared = new char[values.length][];
+            IntStream.range(0, values.length).parallel().forEach(v -> {
+                prepared[v] = distance.prepare(values[v]);
+            });
+        } else {
+            prepared = null;
+        }
+        
+        boolean parallel = blockValues.length >= PARALLEL_COMPARISON_THRESHOLD;
+        IntStream blocks = IntStream.range(0, ngramCount);
+        List<long[]> neighbors = (parallel ? blocks.parallel() : blocks)
+            .mapToObj(b -> compareBlock(b, blockStarts, blockValues, ngrams, values, prepared, radius))
+            .filter(pairs -> pairs.length > 0)
+            .collect(Collectors.toList());
+        
+        return buildClusters(values, neighbors);
+    }
+    
+    /**
+     * Group neighbors into clusters, each value being clustered with the
+     * values it is close to.
+     * 
+     * @param neighbors
+     *            pairs of value ids, the id of a value in the upper 32 bits and
+     *            the id of one of its neighbors in the lower 32 bits
+     */
+    static List<Set<Serializable>> buildClusters(String[] values, List<long[]> neighbors) {
+        Map<Integer, Set<Serializable>> clusterMap = new HashMap<Integer, Set<Serializable>>();
+        for (long[] pairs : neighbors) {
+            for (long pair : pairs) {
+                int a = (int) (pair >>> 32);
+                int b = (int) pair;
+                Set<Serializable> cluster = clusterMap.get(a);
+                if (cluster == null) {
+                    cluster = new TreeSet<Serializable>();
+                    cluster.add(values[a]);
+                    clusterMap.put(a, cluster);
+                }
+                cluster.add(values[b]);
+            }
+        }
+        
+        Set<Set<Serializable>> clusters = new HashSet<Set<Serializable>>(clusterMap.values());
+        List<Set<Serializable>> sortedClusters = new ArrayList<Set<Serializable>>(clusters);
+        Collections.sort(sortedClusters, new Comparator<Set<Serializable>>() {
+            @Override
+            public int compare(Set<Serializable> o1, Set<Serializable> o2) {
+                return o2.size() - o1.size();
+            }
+        });
+        return sortedClusters;
+    }
+    
+    /**
+     * Normalize a value like vicino's {@code NGramTokenizer} does.
+     */
+    static String normalize(String value) {
+        String s = value.trim();
+        s = PUNCTUATION.matcher(s).replaceAll("");
+        s = WHITESPACE.matcher(s).replaceAll("");
+        return s.toLowerCase();
+    }
+    
+    /**
+     * Normalize the values like vicino's {@code NGramTokenizer} does and
+     * number their distinct n-grams.
+     * 
+     * @return the number of distinct n-grams
+     */
+    protected int indexNGrams(final String[] values, int[][] ngrams) {
+        final String[] normalized = new String[values.length];
+        IntStream.range(0, values.length).parallel().forEach(v -> {
+            normalized[v] = normalize(values[v]);
+        });
+        
+        Map<String, Integer> ngramIds = new HashMap<String, Integer>();
+        int[] buffer = new int[16];
+        for (int v = 0; v < values.length; v++) {
+            String s = normalized[v];
+            int count = Math.max(0, s.length() - _blockSize + 1);
+            if (buffer.length < count) {
+                buffer = new int[count];
+            }
+            for (int i = 0; i < count; i++) {
+                String ngram = s.substring(i, i + _blockSize);
+                Integer id = ngramIds.get(ngram);
+                if (id == null) {
+                    id = ngramIds.size();
+                    ngramIds.put(ngram, id);
+                }
+                buffer[i] = id;
+            }
+            Arrays.sort(buffer, 0, count);
+            
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || buffer[unique - 1] != buffer[i]) {
+                    buffer[unique++] = buffer[i];
+                }
+            }
+            ngrams[v] = Arrays.copyOf(buffer, unique);
+        }
+        return ngramIds.size();
+    }
+    
+    protected long[] compareBlock(
+        int block, int[] blockStarts, int[] blockValues, int[][] ngrams,
+        String[] values, char[][] prepared, double radius
+    ) {
+        int start = blockStarts[block];
+        int end = blockStarts[block + 1];
+        boolean symmetric = prepared != null || _distance instanceof MetricDistance;
+        
+        long[] pairs = new long[0];
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            int a = blockValues[i];
+            for (int j = i + 1; j < end; j++) {
+                int b = blockValues[j];
+                if (firstCommonNGram(ngrams[a], ngrams[b]) != block) {
+                    continue;
+                }
+                
+                long pair;
+                if (radius < 0 || distance(a, b, values, prepared, radius) <= radius) {
+                    pair = ((long) a << 32) | b;
+                } else if (!symmetric && _distance.d(values[b], values[a]) <= radius) {
+                    pair = ((long) b << 32) | a;
+                } else {
+                    continue;
+                }
+                
+                if (count == pairs.length) {
+                    pairs = Arrays.copyOf(pairs, Math.max(8, count * 2));
+                }
+                pairs[count++] = pair;
+            }
+        }
+        return count == pairs.length ? pairs : Arrays.copyOf(pairs, count);
+    }
+    
+    protected double distance(int a, int b, String[] values, char[][] prepared, double radius) {
+        if (prepared != null) {
+            return ((PreparedDistance) _distance).d(prepared[a], prepared[b], radius);
+        } else {
+            return _distance.d(values[a], values[b]);
+        }
+    }
+    
+    static protected int firstCommonNGram(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                return a[i];
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+}
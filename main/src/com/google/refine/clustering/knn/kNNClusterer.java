@@ -59,21 +59,17 @@ import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 
-import edu.mit.simile.vicino.clustering.NGramClusterer;
 import edu.mit.simile.vicino.clustering.VPTreeClusterer;
 import edu.mit.simile.vicino.distances.BZip2Distance;
 import edu.mit.simile.vicino.distances.Distance;
 import edu.mit.simile.vicino.distances.GZipDistance;
 import edu.mit.simile.vicino.distances.JaccardDistance;
-import edu.mit.simile.vicino.distances.JaroDistance;
-import edu.mit.simile.vicino.distances.JaroWinklerDistance;
 import edu.mit.simile.vicino.distances.JaroWinklerTFIDFDistance;
-import edu.mit.simile.vicino.distances.LevenshteinDistance;
 import edu.mit.simile.vicino.distances.PPMDistance;
 
 public class kNNClusterer extends Clusterer {
 
-    private Distance _distance;
+    protected Distance _distance;
     
     static final protected Map<String, Distance> _distances = new HashMap<String, Distance>();
 
@@ -84,10 +80,10 @@ public class kNNClusterer extends Clusterer {
     final static Logger logger = LoggerFactory.getLogger("kNN_clusterer");
     
     static {
-        _distances.put("levenshtein", new LevenshteinDistance());
+        _distances.put("levenshtein", new MyersLevenshteinDistance());
         _distances.put("jaccard", new JaccardDistance());
-        _distances.put("jaro", new JaroDistance());
-        _distances.put("jaro-winkler", new JaroWinklerDistance());
+        _distances.put("jaro", new FastJaroDistance(false));
+        _distances.put("jaro-winkler", new FastJaroDistance(true));
         _distances.put("jaro-winkler-tfidf", new JaroWinklerTFIDFDistance());
         _distances.put("gzip", new GZipDistance());
         _distances.put("bzip2", new BZip2Distance());
@@ -147,7 +143,7 @@ public class kNNClusterer extends Clusterer {
         double _radius = 1.0d;
         int _blockingNgramSize = 6;
         HashSet<String> _data;
-        NGramClusterer _clusterer;
+        NGramBlockingClusterer _clusterer;
         
         public BlockingClusteringRowVisitor(Distance d, JSONObject o) {
             _distance = d;
@@ -162,7 +158,7 @@ public class kNNClusterer extends Clusterer {
             } catch (JSONException e) {
                 logger.debug("No parameters found, using defaults");
             }
-            _clusterer = new NGramClusterer(_distance, _blockingNgramSize);
+            _clusterer = new NGramBlockingClusterer(_distance, _blockingNgramSize);
         }
         
         @Override
@@ -240,7 +236,7 @@ public class kNNClusterer extends Clusterer {
         writer.endArray();
     }
     
-    private void count(Serializable s) {
+    protected void count(Serializable s) {
         if (_counts.containsKey(s)) {
             _counts.put(s, _counts.get(s) + 1);
         } else {
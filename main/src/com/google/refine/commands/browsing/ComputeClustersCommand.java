@@ -46,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import com.google.refine.browsing.Engine;
 import com.google.refine.clustering.Clusterer;
 import com.google.refine.clustering.binning.BinningClusterer;
+import com.google.refine.clustering.knn.MinHashClusterer;
 import com.google.refine.clustering.knn.kNNClusterer;
 import com.google.refine.commands.Command;
 import com.google.refine.model.Project;
@@ -69,6 +70,8 @@ public class ComputeClustersCommand extends Command {
             
             if ("knn".equals(type)) {
                 clusterer = new kNNClusterer();
+            } else if ("minhash".equals(type)) {
+                clusterer = new MinHashClusterer();
             } else  {
                 clusterer = new BinningClusterer();
             }
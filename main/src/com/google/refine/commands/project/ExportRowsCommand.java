@@ -39,6 +39,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -57,12 +58,20 @@ import com.google.refine.exporters.ExporterRegistry;
 import com.google.refine.exporters.StreamExporter;
 import com.google.refine.exporters.WriterExporter;
 import com.google.refine.exporters.sql.SqlExporterException;
+import com.google.refine.io.ZstdOutputStream;
 
 import com.google.refine.model.Project;
+import com.google.refine.util.MeteredOutputStream;
 
 public class ExportRowsCommand extends Command {
     private  static final Logger logger = LoggerFactory.getLogger("ExportRowsCommand");
 
+    /**
+     * Number of uncompressed bytes after which the response is flushed, so that
+     * large exports are sent in chunks as they are produced.
+     */
+    static final public int FLUSH_INTERVAL = 64 * 1024;
+
     @SuppressWarnings("unchecked")
     static public Properties getRequestParameters(HttpServletRequest request) {
         Properties options = new Properties();
@@ -79,6 +88,13 @@ public class ExportRowsCommand extends Command {
     public void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
 
+        String compression = request.getParameter("compression");
+        if (compression != null && compression.length() > 0
+                && !"gzip".equals(compression) && !"zstd".equals(compression)) {
+            response.sendError(HttpStatus.SC_BAD_REQUEST, "Unsupported compression: " + compression);
+            return;
+        }
+
         ProjectManager.singleton.setBusy(true);
        
         try {
@@ -98,23 +114,36 @@ public class ExportRowsCommand extends Command {
             }
             response.setHeader("Content-Type", contentType);
             
-            if (exporter instanceof WriterExporter) {
-                String encoding = params.getProperty("encoding");
-                
-                response.setCharacterEncoding(encoding != null ? encoding : "UTF-8");
-                Writer writer = encoding == null ?
-                    response.getWriter() :
-                    new OutputStreamWriter(response.getOutputStream(), encoding);
-                
-                ((WriterExporter) exporter).export(project, params, engine, writer);
-                writer.close();
-            }
-            else if (exporter instanceof StreamExporter) {
-                response.setCharacterEncoding("UTF-8");
-                
-                OutputStream stream = response.getOutputStream();
-                ((StreamExporter) exporter).export(project, params, engine, stream);
-                stream.close();
+            if (exporter instanceof WriterExporter || exporter instanceof StreamExporter) {
+                MeteredOutputStream sent = new MeteredOutputStream(response.getOutputStream());
+                OutputStream compressed = sent;
+                if ("gzip".equals(compression)) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    compressed = new GZIPOutputStream(sent, 8192, true);
+                } else if ("zstd".equals(compression)) {
+                    response.setHeader("Content-Encoding", "zstd");
+                    compressed = new ZstdOutputStream(sent);
+                }
+                MeteredOutputStream stream = new MeteredOutputStream(compressed, FLUSH_INTERVAL);
+
+                if (exporter instanceof WriterExporter) {
+                    String encoding = params.getProperty("encoding");
+                    
+                    response.setCharacterEncoding(encoding != null ? encoding : "UTF-8");
+                    Writer writer = new OutputStreamWriter(stream, encoding != null ? encoding : "UTF-8");
+                    
+                    ((WriterExporter) exporter).export(project, params, engine, writer);
+                    writer.close();
+                } else {
+                    response.setCharacterEncoding("UTF-8");
+                    
+                    ((StreamExporter) exporter).export(project, params, engine, stream);
+                    stream.close();
+                }
+                long millis = Math.max(1, stream.getElapsedMillis());
+                logger.info("{} export of project {}: {} bytes ({} sent) in {} ms, {} KB/s", new Object[] {
+                        format, project.id, stream.getBytesWritten(), sent.getBytesWritten(), millis,
+                        sent.getBytesWritten() * 1000 / 1024 / millis });
 //          } else if (exporter instanceof UrlExporter) {
 //              ((UrlExporter) exporter).export(project, options, engine);
                 
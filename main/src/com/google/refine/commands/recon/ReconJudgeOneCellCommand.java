@@ -34,6 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.commands.recon;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Properties;
 
 import javax.servlet.ServletException;
@@ -52,7 +53,6 @@ import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
 import com.google.refine.model.Recon.Judgment;
 import com.google.refine.model.ReconCandidate;
-import com.google.refine.model.ReconStats;
 import com.google.refine.model.changes.CellChange;
 import com.google.refine.model.changes.ReconChange;
 import com.google.refine.process.QuickHistoryEntryProcess;
@@ -166,8 +166,6 @@ public class ReconJudgeOneCellCommand extends Command {
                 throw new Exception("No such column");
             }
 
-            Judgment oldJudgment = cell.recon == null ? Judgment.None : cell.recon.judgment;
-            
             Recon newRecon = null;
             if (cell.recon != null) {
                 newRecon = cell.recon.dup(historyEntryID);
@@ -224,37 +222,12 @@ public class ReconJudgeOneCellCommand extends Command {
                     cellDescription;
             }
 
-            ReconStats stats = column.getReconStats();
-            if (stats == null) {
-                stats = ReconStats.create(_project, cellIndex);
-            } else {
-                int newChange = 0;
-                int matchChange = 0;
-
-                if (oldJudgment == Judgment.New) {
-                    newChange--;
-                }
-                if (oldJudgment == Judgment.Matched) {
-                    matchChange--;
-                }
-                if (newCell.recon.judgment == Judgment.New) {
-                    newChange++;
-                }
-                if (newCell.recon.judgment == Judgment.Matched) {
-                    matchChange++;
-                }
-
-                stats = new ReconStats(
-                    stats.nonBlanks,
-                    stats.newTopics + newChange,
-                    stats.matchedTopics + matchChange);
-            }
-
+            CellChange cellChange = new CellChange(rowIndex, cellIndex, cell, newCell);
             Change change = new ReconChange(
-                new CellChange(rowIndex, cellIndex, cell, newCell),
+                cellChange,
                 column.getName(),
                 column.getReconConfig(),
-                stats
+                ReconChange.updateReconStats(column, Collections.singletonList(cellChange))
             );
 
             return new HistoryEntry(
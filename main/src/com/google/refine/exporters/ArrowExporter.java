@@ -0,0 +1,176 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.exporters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.json.JSONObject;
+
+import com.google.refine.arrow.ArrowStreamWriter;
+import com.google.refine.arrow.ArrowStreamWriter.ColumnType;
+import com.google.refine.browsing.Engine;
+import com.google.refine.model.Project;
+
+/**
+ * Exports the rows in the Arrow IPC streaming format. A first pass over the
+ * rows settles the type of each column, then the rows are written as record
+ * batches as they are visited.
+ */
+public class ArrowExporter implements StreamExporter {
+
+    @Override
+    public String getContentType() {
+        return "application/vnd.apache.arrow.stream";
+    }
+
+    @Override
+    public void export(final Project project, Properties params, Engine engine,
+            final OutputStream outputStream) throws IOException {
+        
+        final List<String> names = new ArrayList<String>();
+        final List<ColumnType> types = new ArrayList<ColumnType>();
+        CustomizableTabularExporterUtilities.exportRows(project, engine, params, new TabularSerializer() {
+            @Override
+            public void startFile(JSONObject options) {
+            }
+
+            @Override
+            public void endFile() {
+            }
+
+            @Override
+            public void addRow(List<CellData> cells, boolean isHeader) {
+                for (int i = 0; i < cells.size(); i++) {
+                    CellData cellData = cells.get(i);
+                    if (i == names.size()) {
+                        names.add(null);
+                        types.add(null);
+                    }
+                    if (isHeader) {
+                        names.set(i, cellData.text);
+                    } else if (cellData != null) {
+                        if (names.get(i) == null) {
+                            names.set(i, cellData.columnName);
+                        }
+                        types.set(i, mergeTypes(types.get(i), getType(cellData)));
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < types.size(); i++) {
+            if (names.get(i) == null) {
+                names.set(i, "Column " + (i + 1));
+            }
+            if (types.get(i) == null) {
+                types.set(i, ColumnType.UTF8);
+            }
+        }
+        
+        final ArrowStreamWriter writer = new ArrowStreamWriter(
+                outputStream, names, types, ArrowStreamWriter.DEFAULT_BATCH_SIZE);
+        final IOException[] writeError = new IOException[1];
+        CustomizableTabularExporterUtilities.exportRows(project, engine, params, new TabularSerializer() {
+            @Override
+            public void startFile(JSONObject options) {
+            }
+
+            @Override
+            public void endFile() {
+            }
+
+            @Override
+            public void addRow(List<CellData> cells, boolean isHeader) {
+                if (isHeader || writeError[0] != null) {
+                    return;
+                }
+                List<Object> values = new ArrayList<Object>(cells.size());
+                for (int i = 0; i < cells.size(); i++) {
+                    CellData cellData = cells.get(i);
+                    if (cellData == null) {
+                        values.add(null);
+                    } else if (types.get(i) == ColumnType.UTF8) {
+                        values.add(cellData.text);
+                    } else {
+                        values.add(cellData.value);
+                    }
+                }
+                try {
+                    writer.writeRow(values);
+                } catch (IOException e) {
+                    writeError[0] = e;
+                }
+            }
+        });
+        if (writeError[0] != null) {
+            throw writeError[0];
+        }
+        writer.finish();
+    }
+    
+    /**
+     * The type of a single cell. Values whose exported text is not what their
+     * type would print, such as reconciled cells exported by name, are strings.
+     */
+    static ColumnType getType(TabularSerializer.CellData cellData) {
+        Object value = cellData.value;
+        if (value instanceof OffsetDateTime) {
+            return ColumnType.TIMESTAMP;
+        } else if (value == null || cellData.text == null || !cellData.text.equals(value.toString())) {
+            return ColumnType.UTF8;
+        } else if (value instanceof Long || value instanceof Integer ||
+                value instanceof Short || value instanceof Byte) {
+            return ColumnType.INT64;
+        } else if (value instanceof Double || value instanceof Float) {
+            return ColumnType.FLOAT64;
+        } else if (value instanceof Boolean) {
+            return ColumnType.BOOL;
+        }
+        return ColumnType.UTF8;
+    }
+    
+    static ColumnType mergeTypes(ColumnType a, ColumnType b) {
+        if (a == null || a == b) {
+            return b;
+        } else if ((a == ColumnType.INT64 && b == ColumnType.FLOAT64) ||
+                (a == ColumnType.FLOAT64 && b == ColumnType.INT64)) {
+            return ColumnType.FLOAT64;
+        }
+        return ColumnType.UTF8;
+    }
+}
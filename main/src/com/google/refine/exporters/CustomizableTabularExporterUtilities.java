@@ -39,12 +39,20 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.UrlValidator;
@@ -67,11 +75,30 @@ import com.google.refine.util.JSONUtilities;
 import com.google.refine.util.ParsingUtilities;
 
 abstract public class CustomizableTabularExporterUtilities {
+    /**
+     * Number of rows formatted together by one worker thread.
+     */
+    static final int ROWS_PER_CHUNK = 1024;
+    
     static public void exportRows(
         final Project project,
         final Engine engine,
         Properties params,
         final TabularSerializer serializer) {
+        exportRows(project, engine, params, serializer, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Export the filtered rows of the project through the serializer. Cells are
+     * formatted on up to the given number of threads, in chunks of rows, while
+     * the serializer is always called from the calling thread and in row order.
+     */
+    static public void exportRows(
+        final Project project,
+        final Engine engine,
+        Properties params,
+        final TabularSerializer serializer,
+        int threads) {
         
         String optionsString = (params != null) ? params.getProperty("options") : null;
         JSONObject optionsTemp = null;
@@ -122,8 +149,18 @@ abstract public class CustomizableTabularExporterUtilities {
             }
         }
         
+        final RowFormatter rowFormatter = new RowFormatter(project, columnNames, columnNameToFormatter, outputEmptyRows);
+        // A limit is only used for previews, where stopping early matters more
+        // than formatting in parallel.
+        final int formattingThreads = limit > 0 ? 1 : threads;
+        
         RowVisitor visitor = new RowVisitor() {
             int rowCount = 0;
+            List<Row> chunk = new ArrayList<Row>(ROWS_PER_CHUNK);
+            ExecutorService executor;
+            boolean failed = false;
+            // keep a few chunks ahead of the one being serialized, but not the whole project
+            Deque<Future<List<List<CellData>>>> chunks = new ArrayDeque<Future<List<List<CellData>>>>();
             
             @Override
             public void start(Project project) {
@@ -139,41 +176,150 @@ abstract public class CustomizableTabularExporterUtilities {
 
             @Override
             public boolean visit(Project project, int rowIndex, Row row) {
-                List<CellData> cells = new ArrayList<TabularSerializer.CellData>(columnNames.size());
-                int nonNullCount = 0;
-                
-                for (String columnName : columnNames) {
-                    Column column = project.columnModel.getColumnByName(columnName);
-                    CellFormatter formatter = columnNameToFormatter.get(columnName);
-                    CellData cellData = formatter.format(
-                        project,
-                        column,
-                        row.getCell(column.getCellIndex()));
-                    
-                    cells.add(cellData);
-                    if (cellData != null) {
-                        nonNullCount++;
+                if (formattingThreads <= 1) {
+                    List<CellData> cells = rowFormatter.format(project, row);
+                    if (cells != null) {
+                        serializer.addRow(cells, false);
+                        rowCount++;
                     }
+                    return limit > 0 && rowCount >= limit;
                 }
                 
-                if (nonNullCount > 0 || outputEmptyRows) {
-                    serializer.addRow(cells, false);
-                    rowCount++;
+                chunk.add(row);
+                if (chunk.size() >= ROWS_PER_CHUNK) {
+                    try {
+                        if (executor == null) {
+                            executor = Executors.newFixedThreadPool(formattingThreads, new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r, "tabular-exporter");
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                        }
+                        if (chunks.size() >= formattingThreads * 2) {
+                            serializeChunk(chunks.removeFirst());
+                        }
+                        chunks.addLast(submitChunk(project, chunk));
+                        chunk = new ArrayList<Row>(ROWS_PER_CHUNK);
+                    } catch (RuntimeException e) {
+                        failed = true;
+                        throw e;
+                    }
                 }
-                
-                return limit > 0 && rowCount >= limit;
+                return false;
             }
 
             @Override
             public void end(Project project) {
+                try {
+                    // end() is also called when visiting failed, in which case the
+                    // remaining rows are dropped
+                    if (!failed) {
+                        while (!chunks.isEmpty()) {
+                            serializeChunk(chunks.removeFirst());
+                        }
+                        for (Row row : chunk) {
+                            List<CellData> cells = rowFormatter.format(project, row);
+                            if (cells != null) {
+                                serializer.addRow(cells, false);
+                            }
+                        }
+                    }
+                } finally {
+                    if (executor != null) {
+                        executor.shutdownNow();
+                    }
+                }
                 serializer.endFile();
             }
+            
+            Future<List<List<CellData>>> submitChunk(final Project project, final List<Row> rows) {
+                return executor.submit(new Callable<List<List<CellData>>>() {
+                    @Override
+                    public List<List<CellData>> call() throws Exception {
+                        List<List<CellData>> formatted = new ArrayList<List<CellData>>(rows.size());
+                        for (Row row : rows) {
+                            List<CellData> cells = rowFormatter.format(project, row);
+                            if (cells != null) {
+                                formatted.add(cells);
+                            }
+                        }
+                        return formatted;
+                    }
+                });
+            }
+            
+            void serializeChunk(Future<List<List<CellData>>> future) {
+                List<List<CellData>> formatted;
+                try {
+                    formatted = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+                for (List<CellData> cells : formatted) {
+                    serializer.addRow(cells, false);
+                }
+            }
         };
 
         FilteredRows filteredRows = engine.getAllFilteredRows();
         filteredRows.accept(project, visitor);
     }
     
+    /**
+     * Formats the cells of the exported columns of a row. Safe to share between threads.
+     */
+    static private class RowFormatter {
+        final Column[] columns;
+        final CellFormatter[] formatters;
+        final boolean outputEmptyRows;
+        
+        RowFormatter(Project project, List<String> columnNames, Map<String, CellFormatter> columnNameToFormatter,
+                boolean outputEmptyRows) {
+            // resolved once, rather than through the column model for every cell
+            this.columns = new Column[columnNames.size()];
+            this.formatters = new CellFormatter[columnNames.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String columnName = columnNames.get(i);
+                columns[i] = project.columnModel.getColumnByName(columnName);
+                formatters[i] = columnNameToFormatter.get(columnName);
+            }
+            this.outputEmptyRows = outputEmptyRows;
+        }
+        
+        /**
+         * @return the formatted cells, or null if the row is empty and should be skipped
+         */
+        List<CellData> format(Project project, Row row) {
+            List<CellData> cells = new ArrayList<TabularSerializer.CellData>(columns.length);
+            int nonNullCount = 0;
+            
+            for (int i = 0; i < columns.length; i++) {
+                Column column = columns[i];
+                CellData cellData = formatters[i].format(
+                    project,
+                    column,
+                    row.getCell(column.getCellIndex()));
+                
+                cells.add(cellData);
+                if (cellData != null) {
+                    nonNullCount++;
+                }
+            }
+            
+            return (nonNullCount > 0 || outputEmptyRows) ? cells : null;
+        }
+    }
+    
     static public int[] countColumnsRows(
             final Project project,
             final Engine engine,
@@ -377,7 +523,7 @@ abstract public class CustomizableTabularExporterUtilities {
             return null;
         }
         
-        void buildIdentifierSpaceToUrlMap() {
+        synchronized void buildIdentifierSpaceToUrlMap() {
             if (identifierSpaceToUrl != null) {
                 return;
             }
@@ -36,18 +36,20 @@ package com.google.refine.exporters;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
 import org.apache.poi.hssf.usermodel.HSSFHyperlink;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.WorkbookUtil;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.json.JSONObject;
 
 import com.google.refine.ProjectManager;
@@ -67,23 +69,45 @@ public class XlsExporter implements StreamExporter {
         return xml ? "application/xlsx" : "application/xls";
     }
 
+    /**
+     * Number of rows the streaming .xlsx workbook keeps in memory; older rows
+     * are flushed to a compressed temporary file.
+     */
+    static final int XLSX_ROW_WINDOW = 1000;
+
+    /**
+     * Maximum number of rows in a sheet, including the repeated header row,
+     * before the export continues on a new sheet.
+     */
+    protected int getMaxRowsPerSheet() {
+        return (xml ? SpreadsheetVersion.EXCEL2007 : SpreadsheetVersion.EXCEL97).getMaxRows();
+    }
+
     @Override
     public void export(final Project project, Properties params, Engine engine,
             OutputStream outputStream) throws IOException {
 
-        final Workbook wb = xml ? new XSSFWorkbook() : new HSSFWorkbook();
+        final Workbook wb;
+        if (xml) {
+            SXSSFWorkbook swb = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+            swb.setCompressTempFiles(true);
+            wb = swb;
+        } else {
+            wb = new HSSFWorkbook();
+        }
+        final int maxRows = getMaxRowsPerSheet();
         
         TabularSerializer serializer = new TabularSerializer() {
             Sheet s;
             int rowCount = 0;
             CellStyle dateStyle;
+            String sheetName;
+            List<CellData> header;
             
             @Override
             public void startFile(JSONObject options) {
-                s = wb.createSheet();
-                String sheetName = WorkbookUtil.createSafeSheetName(
-                        ProjectManager.singleton.getProjectMetadata(project.id).getName());
-                wb.setSheetName(0, sheetName);
+                sheetName = ProjectManager.singleton.getProjectMetadata(project.id).getName();
+                s = createSheet();
 
                 dateStyle = wb.createCellStyle();
                 dateStyle.setDataFormat(
@@ -96,6 +120,36 @@ public class XlsExporter implements StreamExporter {
 
             @Override
             public void addRow(List<CellData> cells, boolean isHeader) {
+                if (isHeader) {
+                    header = new ArrayList<CellData>(cells);
+                } else if (rowCount >= maxRows) {
+                    // Continue on a new sheet, repeating the column headers
+                    s = createSheet();
+                    rowCount = 0;
+                    if (header != null) {
+                        writeRow(header);
+                    }
+                }
+                writeRow(cells);
+            }
+
+            Sheet createSheet() {
+                int index = wb.getNumberOfSheets();
+                String name = sheetName;
+                if (index > 0) {
+                    String suffix = " (" + (index + 1) + ")";
+                    name = WorkbookUtil.createSafeSheetName(name);
+                    if (name.length() + suffix.length() > 31) {
+                        name = name.substring(0, 31 - suffix.length());
+                    }
+                    name = name + suffix;
+                }
+                Sheet sheet = wb.createSheet();
+                wb.setSheetName(index, WorkbookUtil.createSafeSheetName(name));
+                return sheet;
+            }
+
+            void writeRow(List<CellData> cells) {
                 Row r = s.createRow(rowCount++);
                 
                 for (int i = 0; i < cells.size(); i++) {
@@ -136,11 +190,17 @@ public class XlsExporter implements StreamExporter {
             }
         };
         
-        CustomizableTabularExporterUtilities.exportRows(
-                project, engine, params, serializer);
-        
-        wb.write(outputStream);
-        outputStream.flush();
+        try {
+            CustomizableTabularExporterUtilities.exportRows(
+                    project, engine, params, serializer);
+            
+            wb.write(outputStream);
+            outputStream.flush();
+        } finally {
+            if (wb instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) wb).dispose();
+            }
+        }
     }
 
 }
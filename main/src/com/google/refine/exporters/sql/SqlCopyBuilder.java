@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018, Tony Opara
+ *        All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice, this 
+ *   list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, 
+ *   this list of conditions and the following disclaimer in the documentation 
+ *   and/or other materials provided with the distribution.
+ * 
+ * Neither the name of Google nor the names of its contributors may be used to 
+ * endorse or promote products derived from this software without specific 
+ * prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, 
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR 
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR 
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, 
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, 
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; 
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR 
+ * OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF 
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.google.refine.exporters.sql;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Writes the rows as a PostgreSQL {@code COPY ... FROM STDIN} block in text format,
+ * which psql loads much faster than INSERT statements.
+ */
+public class SqlCopyBuilder extends SqlInsertBuilder {
+
+    private boolean started = false;
+
+    public SqlCopyBuilder(String table, List<String> columns, JSONObject options) {
+        super(table, columns, options);
+    }
+
+    @Override
+    public void writeRow(Writer writer, List<SqlData> sqlRow) throws IOException {
+        String rowValString = getRowValues(sqlRow, "\t");
+        if(!started) {
+            writer.write("COPY " + table + " (" + getColumnNames() + ") FROM STDIN;\n");
+            started = true;
+        }
+        writer.write(rowValString);
+        writer.write("\n");
+    }
+
+    @Override
+    public void end(Writer writer) throws IOException {
+        if(started) {
+            writer.write("\\.\n");
+            started = false;
+        }
+    }
+
+    @Override
+    protected void appendValue(StringBuilder rowValue, String value, boolean quote) {
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+            case '\\':
+                rowValue.append("\\\\");
+                break;
+            case '\t':
+                rowValue.append("\\t");
+                break;
+            case '\n':
+                rowValue.append("\\n");
+                break;
+            case '\r':
+                rowValue.append("\\r");
+                break;
+            default:
+                rowValue.append(c);
+            }
+        }
+    }
+
+    @Override
+    protected void appendNull(StringBuilder rowValue) {
+        rowValue.append("\\N");
+    }
+
+}
@@ -56,10 +56,8 @@ public class SqlExporter implements WriterExporter {
     public static final String JSON_INCLUDE_STRUCTURE = "includeStructure";
     public static final String JSON_INCLUDE_CONTENT = "includeContent";
     public static final String JSON_TABLE_NAME = "tableName";
- 
-    private List<String> columnNames = new ArrayList<String>();
-    private List<ArrayList<SqlData>> sqlDataList = new ArrayList<ArrayList<SqlData>>();
-    private JSONObject sqlOptions;
+    public static final String JSON_INSERT_BATCH_SIZE = "insertBatchSize";
+    public static final String JSON_USE_POSTGRES_COPY = "usePostgresCopy";
  
 
     @Override
@@ -74,96 +72,107 @@ public class SqlExporter implements WriterExporter {
             logger.debug("export sql with params: {}", params);
         }
        
+        // Rows are written out as they are visited so that memory use does not
+        // grow with the size of the project.
+        final IOException[] writeError = new IOException[1];
         TabularSerializer serializer = new TabularSerializer() {
+            
+            private List<String> columnNames = new ArrayList<String>();
+            private JSONObject sqlOptions;
+            private SqlInsertBuilder insertBuilder;
 
             @Override
             public void startFile(JSONObject options) {
                 sqlOptions = options;
-                //logger.info("setting options::{}", sqlOptions);
             }
 
             @Override
             public void endFile() {
-                try {
-                    if (columnNames.isEmpty()) {
-                        logger.error("No Columns Selected!!");
-                        throw new SqlExporterException(NO_COL_SELECTED_ERROR);
-                 
-                    }
-                    if (sqlOptions == null) {
-                        logger.error("No Options Selected!!");
-                        throw new SqlExporterException(NO_OPTIONS_PRESENT_ERROR);
-                       
-                    }
-                    String tableName = ProjectManager.singleton.getProjectMetadata(project.id).getName();
-
-                    Object tableNameManual = sqlOptions.get(JSON_TABLE_NAME);
-
-                    if (tableNameManual != null && !tableNameManual.toString().isEmpty()) {
-                        tableName = tableNameManual.toString();
-                    }
-
-                    SqlCreateBuilder createBuilder = new SqlCreateBuilder(tableName, columnNames, sqlOptions);
-                    SqlInsertBuilder insertBuilder = new SqlInsertBuilder(tableName, columnNames, sqlDataList,
-                            sqlOptions);
-
-                    final boolean includeStructure = sqlOptions == null ? true
-                            : JSONUtilities.getBoolean(sqlOptions, JSON_INCLUDE_STRUCTURE, true);
-
-                    final boolean includeContent = sqlOptions == null ? true
-                            : JSONUtilities.getBoolean(sqlOptions, JSON_INCLUDE_CONTENT, true);
-
-                    if (includeStructure) {
-                        String sqlCreateStr = createBuilder.getCreateSQL();
-                        writer.write(sqlCreateStr);
-                    }
-
-                    if (includeContent) {
-                        String sqlInsertStr = insertBuilder.getInsertSQL();
-                        writer.write(sqlInsertStr);
-                    }
-
-                    if (logger.isDebugEnabled()) {
-                        logger.debug("sqlOptions::{}", sqlOptions);
+                if (columnNames.isEmpty()) {
+                    logger.error("No Columns Selected!!");
+                    throw new SqlExporterException(NO_COL_SELECTED_ERROR);
+                }
+                if (insertBuilder != null && writeError[0] == null) {
+                    try {
+                        insertBuilder.end(writer);
+                    } catch (IOException e) {
+                        writeError[0] = e;
                     }
-
-                    columnNames = new ArrayList<String>();
-                    sqlDataList = new ArrayList<ArrayList<SqlData>>();
-
-                } catch (IOException e) {
-                    e.printStackTrace();
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("sqlOptions::{}", sqlOptions);
                 }
             }
 
             @Override
             public void addRow(List<CellData> cells, boolean isHeader) {
-
-                if (isHeader) {
-                    for (CellData cellData : cells) {
-                        columnNames.add(cellData.text);
+                if (writeError[0] != null) {
+                    return;
+                }
+                try {
+                    if (isHeader) {
+                        for (CellData cellData : cells) {
+                            columnNames.add(cellData.text);
+                        }
+                        startTable();
+    
+                    } else if (insertBuilder != null) {
+                        List<SqlData> values = new ArrayList<>(cells.size());
+                        for (CellData cellData : cells) {
+    
+                            if (cellData != null) {
+                               if(cellData.text == null || cellData.text.isEmpty()) {
+                                   values.add(new SqlData(cellData.columnName, "", ""));
+                               }else {
+                                   values.add(new SqlData(cellData.columnName, cellData.value, cellData.text)); 
+                               }
+    
+                            }
+    
+                        }
+                        insertBuilder.writeRow(writer, values);
                     }
+                } catch (IOException e) {
+                    writeError[0] = e;
+                }
+            }
+            
+            private void startTable() throws IOException {
+                if (columnNames.isEmpty()) {
+                    return;
+                }
+                if (sqlOptions == null) {
+                    logger.error("No Options Selected!!");
+                    throw new SqlExporterException(NO_OPTIONS_PRESENT_ERROR);
+                }
+                String tableName = ProjectManager.singleton.getProjectMetadata(project.id).getName();
 
-                } else {
-                    ArrayList<SqlData> values = new ArrayList<>();
-                    for (CellData cellData : cells) {
+                Object tableNameManual = sqlOptions.opt(JSON_TABLE_NAME);
 
-                        if (cellData != null) {
-                           if(cellData.text == null || cellData.text.isEmpty()) {
-                               values.add(new SqlData(cellData.columnName, "", ""));
-                           }else {
-                               values.add(new SqlData(cellData.columnName, cellData.value, cellData.text)); 
-                           }
+                if (tableNameManual != null && !tableNameManual.toString().isEmpty()) {
+                    tableName = tableNameManual.toString();
+                }
 
-                        }
+                final boolean includeStructure = JSONUtilities.getBoolean(sqlOptions, JSON_INCLUDE_STRUCTURE, true);
+                final boolean includeContent = JSONUtilities.getBoolean(sqlOptions, JSON_INCLUDE_CONTENT, true);
+                final boolean usePostgresCopy = JSONUtilities.getBoolean(sqlOptions, JSON_USE_POSTGRES_COPY, false);
 
-                    }
-                    sqlDataList.add(values);
+                if (includeStructure) {
+                    SqlCreateBuilder createBuilder = new SqlCreateBuilder(tableName, columnNames, sqlOptions);
+                    writer.write(createBuilder.getCreateSQL());
                 }
 
+                if (includeContent) {
+                    insertBuilder = usePostgresCopy ? new SqlCopyBuilder(tableName, columnNames, sqlOptions)
+                            : new SqlInsertBuilder(tableName, columnNames, sqlOptions);
+                }
             }
         };
 
         CustomizableTabularExporterUtilities.exportRows(project, engine, params, serializer);
+        if (writeError[0] != null) {
+            throw writeError[0];
+        }
     }
   
 
@@ -29,13 +29,13 @@
 
 package com.google.refine.exporters.sql;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -48,162 +48,191 @@ public class SqlInsertBuilder {
     
     private  static final Logger logger = LoggerFactory.getLogger("SQLInsertBuilder");
 
-    private String table;
+    /**
+     * Number of rows per INSERT statement when the options do not say otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    protected String table;
+
+    protected List<String> columns;
+
+    protected JSONObject options;
+
+    private Map<String, JSONObject> colOptionsMap = new HashMap<String, JSONObject>();
 
-    private List<String> columns;
+    private boolean nullValueNull;
 
-    private List<ArrayList<SqlData>> sqlDataList;
+    private int batchSize;
 
-    private JSONObject options;
+    private int rowsInStatement = 0;
+
+    private int rowCount = 0;
 
     
     /**
      * 
      * @param table
      * @param columns
-     * @param rows
      * @param options
-     * @param sqlErrors 
      */
-    public SqlInsertBuilder(String table, List<String> columns, List<ArrayList<SqlData>> rows, JSONObject options
-            ) {
+    public SqlInsertBuilder(String table, List<String> columns, JSONObject options) {
         this.table = table;
         this.columns = columns;
-        this.sqlDataList = rows;
         this.options = options;
-        //logger.info("Column Size:{}", columns.size());
-    
-    }
-
-   /**
-    * Get Insert Sql
-    * @return
-    */
-    public String getInsertSQL(){
-        if(logger.isDebugEnabled()) {
-            logger.debug("Insert SQL with columns: {}", columns);
-        }
         
         JSONArray colOptionArray = options == null ? null : JSONUtilities.getArray(options, "columns");
-        Map<String, JSONObject> colOptionsMap = new HashMap<String, JSONObject>();
         if(colOptionArray != null) {
             colOptionArray.forEach(c -> {
                 JSONObject json = (JSONObject)c;  
                 colOptionsMap.put("" + json.get("name"), json);
             });
         }
-      
-        boolean nullValueNull = options == null ? true : JSONUtilities.getBoolean(options, "convertNulltoEmptyString", true);
-               
-        StringBuffer values = new StringBuffer();
-       
-        int idx = 0;
-        for(ArrayList<SqlData> sqlRow : sqlDataList) {
-            StringBuilder rowValue = new StringBuilder();
+        nullValueNull = options == null ? true : JSONUtilities.getBoolean(options, "convertNulltoEmptyString", true);
+        batchSize = options == null ? DEFAULT_BATCH_SIZE
+                : JSONUtilities.getInt(options, SqlExporter.JSON_INSERT_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Write one row to the writer. Rows are grouped into multi-row INSERT statements
+     * of at most the configured batch size; a batch size of zero or less puts every
+     * row into a single statement.
+     * @param writer
+     * @param sqlRow
+     * @throws IOException
+     */
+    public void writeRow(Writer writer, List<SqlData> sqlRow) throws IOException {
+        String rowValString = getRowValues(sqlRow, ",");
+        if(rowsInStatement == 0) {
+            writer.write("INSERT INTO " + table + " (" + getColumnNames() + ") VALUES \n");
+        } else {
+            writer.write(",\n");
+        }
+        writer.write("( " + rowValString + " )");
+        rowsInStatement++;
+        rowCount++;
+        if(batchSize > 0 && rowsInStatement >= batchSize) {
+            writer.write(";\n");
+            rowsInStatement = 0;
+        }
+    }
+
+    /**
+     * Terminate the pending statement, if any.
+     * @param writer
+     * @throws IOException
+     */
+    public void end(Writer writer) throws IOException {
+        if(rowsInStatement > 0) {
+            writer.write(";\n");
+            rowsInStatement = 0;
+        }
+        if(logger.isDebugEnabled()) {
+            logger.debug("Insert statements generated successfully for {} rows", rowCount);
+        }
+    }
+
+    protected String getColumnNames() {
+        boolean trimColNames = options == null ? false : JSONUtilities.getBoolean(options, "trimColumnNames", false);
+        if(trimColNames) {
+            return columns.stream().map(col -> col.replaceAll("\\s", "")).collect(Collectors.joining(","));
+        }
+        return columns.stream().collect(Collectors.joining(","));
+    }
+
+    /**
+     * Format the values of one row, checking each against the type of its column.
+     * @param sqlRow
+     * @param separator
+     * @return
+     */
+    protected String getRowValues(List<SqlData> sqlRow, String separator) {
+        StringBuilder rowValue = new StringBuilder();
+        
+        boolean first = true;
+        for(SqlData val : sqlRow) {
+            if(!first) {
+                rowValue.append(separator);
+            }
+            first = false;
+         
+            JSONObject jsonOb = colOptionsMap.get(val.getColumnName());
+            String type = (String)jsonOb.get("type");
             
-            //int fieldCount = 0;
-            for(SqlData val : sqlRow) {
+            String defaultValue = JSONUtilities.getString(jsonOb, "defaultValue", null);
+          
+            boolean allowNullChkBox = JSONUtilities.getBoolean(jsonOb, "defaultValue", true);;
+            if(type == null) {
+                type = SqlData.SQL_TYPE_VARCHAR;
+            }
+            //Character Types
+            if(type.equals(SqlData.SQL_TYPE_VARCHAR) || type.equals(SqlData.SQL_TYPE_CHAR) || type.equals(SqlData.SQL_TYPE_TEXT)) {
+
+                if((val.getText() == null || val.getText().isEmpty()) ) {
+                  
+                    handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, true);
+                    
+                }else {
+                    appendValue(rowValue, val.getText(), true);
+                    
+                }
              
-                JSONObject jsonOb = colOptionsMap.get(val.getColumnName());
-                String type = (String)jsonOb.get("type");
+            }else if(type.equals(SqlData.SQL_TYPE_INT) || type.equals(SqlData.SQL_TYPE_INTEGER) || type.equals(SqlData.SQL_TYPE_NUMERIC)) {//Numeric Types : INT, NUMERIC
                 
-                String defaultValue = JSONUtilities.getString(jsonOb, "defaultValue", null);
-              
-                boolean allowNullChkBox = JSONUtilities.getBoolean(jsonOb, "defaultValue", true);;
-                if(type == null) {
-                    type = SqlData.SQL_TYPE_VARCHAR;
-                }
-                //Character Types
-                if(type.equals(SqlData.SQL_TYPE_VARCHAR) || type.equals(SqlData.SQL_TYPE_CHAR) || type.equals(SqlData.SQL_TYPE_TEXT)) {
-
-                    if((val.getText() == null || val.getText().isEmpty()) ) {
-                      
-                        handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, true);
-                        
-                    }else {
-                        rowValue.append("'" + val.getText() + "'"); 
-                        
-                    }
-                 
-                }else if(type.equals(SqlData.SQL_TYPE_INT) || type.equals(SqlData.SQL_TYPE_INTEGER) || type.equals(SqlData.SQL_TYPE_NUMERIC)) {//Numeric Types : INT, NUMERIC
+                if((val.getText() == null || val.getText().isEmpty())) {
                     
-                    if((val.getText() == null || val.getText().isEmpty())) {
-                        
-                        handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, false);
-                 
-                    }else {//value not null
-                        
-                        if(type.equals(SqlData.SQL_TYPE_NUMERIC)) {//test if number is numeric (decimal(p,s) number is valid)
-                           
-                            if(!NumberUtils.isNumber(val.getText())){
-                                throw new SqlExporterException(
-                                        val.getText() + " is not compatible with column type :" + type);
-                            }
-                        }else {
-                            
-                            try { //number should be an integer
-                                Integer.parseInt(val.getText());
-                            } catch (NumberFormatException nfe) {
-                                throw new SqlExporterException(
-                                        val.getText() + " is not compatible with column type :" + type);
-                            }
-                            
-                        }
-                       
-                        rowValue.append(val.getText());
-                       
-                    }
+                    handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, false);
+             
+                }else {//value not null
                     
-                }else if(type.equals(SqlData.SQL_TYPE_DATE) || type.equals(SqlData.SQL_TYPE_TIMESTAMP)) {
-                    if((val.getText() == null || val.getText().isEmpty())) {
-                        handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, true);
+                    if(type.equals(SqlData.SQL_TYPE_NUMERIC)) {//test if number is numeric (decimal(p,s) number is valid)
+                       
+                        if(!NumberUtils.isNumber(val.getText())){
+                            throw new SqlExporterException(
+                                    val.getText() + " is not compatible with column type :" + type);
+                        }
                     }else {
-                        rowValue.append("'" + val.getText() + "'"); 
+                        
+                        try { //number should be an integer
+                            Integer.parseInt(val.getText());
+                        } catch (NumberFormatException nfe) {
+                            throw new SqlExporterException(
+                                    val.getText() + " is not compatible with column type :" + type);
+                        }
+                        
                     }
+                   
+                    appendValue(rowValue, val.getText(), false);
+                   
                 }
                 
-                rowValue.append(",");
-            
-            }
-       
-            idx++;
-            String rowValString = rowValue.toString();
-//            logger.info("rowValString::" + rowValString);
-            rowValString = rowValString.substring(0, rowValString.length() - 1);
-            
-            values.append("( ");
-            values.append(rowValString);
-            values.append(" )");
-            if(idx < sqlDataList.size()) {
-                values.append(","); 
+            }else if(type.equals(SqlData.SQL_TYPE_DATE) || type.equals(SqlData.SQL_TYPE_TIMESTAMP)) {
+                if((val.getText() == null || val.getText().isEmpty())) {
+                    handleNullField(allowNullChkBox, defaultValue, nullValueNull, val.getColumnName(), rowValue, true);
+                }else {
+                    appendValue(rowValue, val.getText(), true);
+                }
             }
-            values.append("\n");
-           
         }
+        return rowValue.toString();
+    }
 
-        boolean trimColNames = options == null ? false : JSONUtilities.getBoolean(options, "trimColumnNames", false);
-        String colNamesWithSep = columns.stream().map(col -> col.replaceAll("\\s", "")).collect(Collectors.joining(","));;
-        if(!trimColNames) {
-           colNamesWithSep = columns.stream().collect(Collectors.joining(","));  
+    /**
+     * Append a non-null value, quoted as a literal when the column type needs it.
+     * @param rowValue
+     * @param value
+     * @param quote
+     */
+    protected void appendValue(StringBuilder rowValue, String value, boolean quote) {
+        if(quote) {
+            rowValue.append("'").append(value).append("'");
+        }else {
+            rowValue.append(value);
         }
-        
-        String valuesString = values.toString();
-        valuesString = valuesString.substring(0, valuesString.length() - 1);
-        
-        
-        StringBuffer sql = new StringBuffer();
+    }
 
-        sql.append("INSERT INTO ").append(table);
-        sql.append(" (");
-        sql.append(colNamesWithSep);
-        sql.append(") VALUES ").append("\n");
-        sql.append(valuesString);
-        
-        String sqlString = sql.toString();
-        if(logger.isDebugEnabled()) {
-            logger.debug("Insert Statement Generated Successfully...{}", sqlString);
-        }
-        return sqlString;
+    protected void appendNull(StringBuilder rowValue) {
+        rowValue.append("null");
     }
 
     /**
@@ -214,7 +243,6 @@ public class SqlInsertBuilder {
      * @param col
      * @param rowValue
      * @param quote
-     * @param fieldCount
      */
     public void handleNullField(
             boolean allowNullChkBox, 
@@ -227,15 +255,11 @@ public class SqlInsertBuilder {
 
         if(allowNullChkBox) {//cell nullable
             if(defaultValue != null && !defaultValue.isEmpty()) {
-                if(quote) {
-                    rowValue.append("'" + defaultValue + "'");  
-                }else {
-                    rowValue.append(defaultValue);
-                } 
+                appendValue(rowValue, defaultValue, quote);
                
             }else {
                 if(nullValueNull) {
-                    rowValue.append("null"); 
+                    appendNull(rowValue);
                    
                 }else {
                     throw new SqlExporterException("Null value not allowed for Field :" + col); 
@@ -245,11 +269,7 @@ public class SqlInsertBuilder {
             
         }else {
             if(defaultValue != null && !defaultValue.isEmpty()) {
-                if(quote) {
-                    rowValue.append("'" + defaultValue + "'"); 
-                }else {
-                    rowValue.append(defaultValue);
-                }    
+                appendValue(rowValue, defaultValue, quote);
                
             }else {
                 throw new SqlExporterException("Null value not allowed for Field :" + col);
@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
 import com.google.refine.Jsonizable;
 import com.google.refine.ProjectManager;
 import com.google.refine.model.AbstractOperation;
+import com.google.refine.model.ChunkedRowStore;
 import com.google.refine.model.Project;
 import com.google.refine.operations.OperationRegistry;
 import com.google.refine.util.ParsingUtilities;
@@ -133,19 +134,24 @@ public class HistoryEntry implements Jsonizable {
         }
 
         synchronized (project) {
-            getChange().apply(project);
+            beginChanges(project);
+            try {
+                getChange().apply(project);
 
-            // When a change is applied, it can hang on to old data (in order to be able
-            // to revert later). Hence, we need to save the change out.
+                // When a change is applied, it can hang on to old data (in order to be able
+                // to revert later). Hence, we need to save the change out.
 
-            try {
-                _manager.saveChange(this);
-            } catch (Exception e) {
-                e.printStackTrace();
+                try {
+                    _manager.saveChange(this);
+                } catch (Exception e) {
+                    e.printStackTrace();
 
-                getChange().revert(project);
+                    getChange().revert(project);
 
-                throw new RuntimeException("Failed to apply change", e);
+                    throw new RuntimeException("Failed to apply change", e);
+                }
+            } finally {
+                endChanges(project);
             }
         }
     }
@@ -154,7 +160,28 @@ public class HistoryEntry implements Jsonizable {
         if (getChange() == null) {
             _manager.loadChange(this);
         }
-        getChange().revert(project);
+        beginChanges(project);
+        try {
+            getChange().revert(project);
+        } finally {
+            endChanges(project);
+        }
+    }
+
+    /**
+     * Changes modify rows in place, so rows kept on disk must be told to
+     * write back whatever the change touches.
+     */
+    static protected void beginChanges(Project project) {
+        if (project.rows instanceof ChunkedRowStore) {
+            ((ChunkedRowStore) project.rows).beginChanges();
+        }
+    }
+
+    static protected void endChanges(Project project) {
+        if (project.rows instanceof ChunkedRowStore) {
+            ((ChunkedRowStore) project.rows).endChanges();
+        }
     }
 
     static public HistoryEntry load(Project project, String s) throws Exception {
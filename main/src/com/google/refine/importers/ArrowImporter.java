@@ -0,0 +1,106 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+
+import com.google.refine.arrow.ArrowStreamReader;
+import com.google.refine.importing.ImportingJob;
+import com.google.refine.model.Project;
+import com.google.refine.model.metadata.ProjectMetadata;
+import com.google.refine.util.JSONUtilities;
+
+/**
+ * Imports Arrow IPC streams and files. The Arrow schema gives the column
+ * names and the values keep their types; record batches are decoded one at
+ * a time as rows are added to the project.
+ */
+public class ArrowImporter extends TabularImportingParserBase {
+
+    public ArrowImporter() {
+        super(true);
+    }
+    
+    @Override
+    public JSONObject createParserUIInitializationData(
+            ImportingJob job, List<JSONObject> fileRecords, String format) {
+        JSONObject options = super.createParserUIInitializationData(job, fileRecords, format);
+        JSONUtilities.safePut(options, "guessCellValueTypes", false);
+        return options;
+    }
+
+    @Override
+    public void parseOneFile(
+        Project project,
+        ProjectMetadata metadata,
+        ImportingJob job,
+        String fileSource,
+        InputStream inputStream,
+        int limit,
+        JSONObject options,
+        List<Exception> exceptions
+    ) {
+        final ArrowStreamReader arrowReader;
+        try {
+            arrowReader = new ArrowStreamReader(inputStream);
+        } catch (IOException e) {
+            exceptions.add(new ImportException(
+                "Attempted to parse as an Arrow stream but failed: " + e.getMessage(), e));
+            return;
+        }
+        
+        // the column names from the schema make up the first row
+        TableDataReader dataReader = new TableDataReader() {
+            boolean header = true;
+            
+            @Override
+            public List<Object> getNextRowOfCells() throws IOException {
+                if (header) {
+                    header = false;
+                    return new ArrayList<Object>(arrowReader.getColumnNames());
+                }
+                return arrowReader.getNextRow();
+            }
+        };
+        
+        TabularImportingParserBase.readTable(project, metadata, job, dataReader, fileSource, limit, options, exceptions);
+        
+        super.parseOneFile(project, metadata, job, fileSource, inputStream, limit, options, exceptions);
+    }
+}
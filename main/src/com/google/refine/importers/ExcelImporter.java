@@ -44,22 +44,27 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.poi.POIXMLDocument;
 import org.apache.poi.POIXMLException;
 import org.apache.poi.common.usermodel.Hyperlink;
 import org.apache.poi.hssf.usermodel.HSSFDateUtil;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.refine.importers.ImporterUtilities.MultiFileReadingProgress;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingUtilities;
 import com.google.refine.model.Cell;
@@ -95,26 +100,20 @@ public class ExcelImporter extends TabularImportingParserBase {
                 }
 
                 try {
-                    Workbook wb = POIXMLDocument.hasOOXMLHeader(is) ?
-                            new XSSFWorkbook(is) :
-                                new HSSFWorkbook(new POIFSFileSystem(is));
-
-                            int sheetCount = wb.getNumberOfSheets();
-                            for (int i = 0; i < sheetCount; i++) {
-                                Sheet sheet = wb.getSheetAt(i);
-                                int rows = sheet.getLastRowNum() - sheet.getFirstRowNum() + 1;
-
-                                JSONObject sheetRecord = new JSONObject();
-                                JSONUtilities.safePut(sheetRecord, "name",  file.getName() + "#" + sheet.getSheetName());
-                                JSONUtilities.safePut(sheetRecord, "fileNameAndSheetIndex", file.getName() + "#" + i);
-                                JSONUtilities.safePut(sheetRecord, "rows", rows);
-                                if (rows > 1) {
-                                    JSONUtilities.safePut(sheetRecord, "selected", true);
-                                } else {
-                                    JSONUtilities.safePut(sheetRecord, "selected", false);
-                                }
-                                JSONUtilities.append(sheetRecords, sheetRecord);
-                            }
+                    if (POIXMLDocument.hasOOXMLHeader(is)) {
+                        appendXlsxSheetRecords(sheetRecords, file);
+                        continue;
+                    }
+                    
+                    Workbook wb = new HSSFWorkbook(new POIFSFileSystem(is));
+                    
+                    int sheetCount = wb.getNumberOfSheets();
+                    for (int i = 0; i < sheetCount; i++) {
+                        Sheet sheet = wb.getSheetAt(i);
+                        int rows = sheet.getLastRowNum() - sheet.getFirstRowNum() + 1;
+                        
+                        appendSheetRecord(sheetRecords, file, i, sheet.getSheetName(), rows);
+                    }
                 } finally {
                     is.close();
                 }
@@ -125,11 +124,105 @@ public class ExcelImporter extends TabularImportingParserBase {
             logger.error("Error generating parser UI initialization data for Excel file (only Excel 97 & later supported)", e);
         } catch (POIXMLException e) {
             logger.error("Error generating parser UI initialization data for Excel file - invalid XML", e);
+        } catch (InvalidFormatException e) {
+            logger.error("Error generating parser UI initialization data for Excel file - invalid XML", e);
+        } catch (XMLStreamException e) {
+            logger.error("Error generating parser UI initialization data for Excel file - invalid XML", e);
         }
         
         return options;
     }
     
+    static private void appendSheetRecord(JSONArray sheetRecords, File file, int index, String sheetName, int rows) {
+        JSONObject sheetRecord = new JSONObject();
+        JSONUtilities.safePut(sheetRecord, "name",  file.getName() + "#" + sheetName);
+        JSONUtilities.safePut(sheetRecord, "fileNameAndSheetIndex", file.getName() + "#" + index);
+        JSONUtilities.safePut(sheetRecord, "rows", rows);
+        if (rows > 1) {
+            JSONUtilities.safePut(sheetRecord, "selected", true);
+        } else {
+            JSONUtilities.safePut(sheetRecord, "selected", false);
+        }
+        JSONUtilities.append(sheetRecords, sheetRecord);
+    }
+    
+    /**
+     * List the sheets of an .xlsx file without loading them, their row counts
+     * being read from the sheet dimensions.
+     */
+    static private void appendXlsxSheetRecords(JSONArray sheetRecords, File file)
+            throws IOException, InvalidFormatException, XMLStreamException {
+        OPCPackage pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+        try {
+            List<XlsxSheetDataReader.Sheet> sheets = XlsxSheetDataReader.readSheets(pkg);
+            for (int i = 0; i < sheets.size(); i++) {
+                XlsxSheetDataReader.Sheet sheet = sheets.get(i);
+                InputStream sheetData = sheet.part.getInputStream();
+                try {
+                    int rows = XlsxSheetDataReader.readRowCount(sheetData);
+                    appendSheetRecord(sheetRecords, file, i, sheet.name, rows);
+                } finally {
+                    sheetData.close();
+                }
+            }
+        } finally {
+            pkg.revert();
+        }
+    }
+    
+    @Override
+    public void parseOneFile(
+        Project project,
+        ProjectMetadata metadata,
+        ImportingJob job,
+        JSONObject fileRecord,
+        int limit,
+        JSONObject options,
+        List<Exception> exceptions,
+        MultiFileReadingProgress progress
+    ) throws IOException {
+        final File file = ImportingUtilities.getFile(job, fileRecord);
+        if (!isOOXMLFile(file)) {
+            super.parseOneFile(project, metadata, job, fileRecord, limit, options, exceptions, progress);
+            return;
+        }
+        
+        // .xlsx files are opened in place rather than through a stream,
+        // which would have to be unzipped in memory
+        final String fileSource = ImportingUtilities.getFileSource(fileRecord);
+        progress.startFile(fileSource);
+        try {
+            OPCPackage pkg;
+            try {
+                pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+            } catch (InvalidFormatException e) {
+                exceptions.add(new ImportException(
+                    "Attempted to parse as an Excel file but failed. " +
+                    "Invalid XML.",
+                    e
+                ));
+                return;
+            }
+            try {
+                parseXlsx(project, metadata, job, fileSource, pkg, limit, options, exceptions);
+            } finally {
+                pkg.revert();
+            }
+            pushImportingOptions(metadata, fileSource, options);
+        } finally {
+            progress.endFile(fileSource, file.length());
+        }
+    }
+    
+    static private boolean isOOXMLFile(File file) throws IOException {
+        InputStream is = new PushbackInputStream(new FileInputStream(file), 8);
+        try {
+            return POIXMLDocument.hasOOXMLHeader(is);
+        } finally {
+            is.close();
+        }
+    }
+    
     @Override
     public void parseOneFile(
         Project project,
@@ -147,9 +240,17 @@ public class ExcelImporter extends TabularImportingParserBase {
         }
         
         try {
-            wb = POIXMLDocument.hasOOXMLHeader(inputStream) ?
-                new XSSFWorkbook(inputStream) :
-                new HSSFWorkbook(new POIFSFileSystem(inputStream));
+            if (POIXMLDocument.hasOOXMLHeader(inputStream)) {
+                OPCPackage pkg = OPCPackage.open(inputStream);
+                try {
+                    parseXlsx(project, metadata, job, fileSource, pkg, limit, options, exceptions);
+                } finally {
+                    pkg.revert();
+                }
+                super.parseOneFile(project, metadata, job, fileSource, inputStream, limit, options, exceptions);
+                return;
+            }
+            wb = new HSSFWorkbook(new POIFSFileSystem(inputStream));
         } catch (IOException e) {
             exceptions.add(new ImportException(
                 "Attempted to parse as an Excel file but failed. " +
@@ -180,24 +281,17 @@ public class ExcelImporter extends TabularImportingParserBase {
                     e
                 ));
                 return;
+        } catch (InvalidFormatException e) {
+            exceptions.add(new ImportException(
+                    "Attempted to parse as an Excel file but failed. " +
+                    "Invalid XML.",
+                    e
+                ));
+                return;
         }
         
-        JSONArray sheets = JSONUtilities.getArray(options, "sheets");
-        
-        for(int i=0;i<sheets.length();i++)  {
-            String[] fileNameAndSheetIndex = new String[2];
-            try {
-                JSONObject sheetObj = sheets.getJSONObject(i);
-                // value is fileName#sheetIndex
-                fileNameAndSheetIndex = sheetObj.getString("fileNameAndSheetIndex").split("#");
-            } catch (JSONException e) {
-                logger.error(ExceptionUtils.getStackTrace(e));
-            }
-            
-            if (!fileNameAndSheetIndex[0].equals(fileSource))
-                continue;
-            
-            final Sheet sheet = wb.getSheetAt(Integer.parseInt(fileNameAndSheetIndex[1]));
+        for (int sheetIndex : getSelectedSheets(options, fileSource)) {
+            final Sheet sheet = wb.getSheetAt(sheetIndex);
             final int lastRow = sheet.getLastRowNum();
             
             TableDataReader dataReader = new TableDataReader() {
@@ -232,7 +326,7 @@ public class ExcelImporter extends TabularImportingParserBase {
                 project,
                 metadata,
                 job,
-                dataReader,
+                cacheForPreview(job, getClass(), fileSource + "#" + sheet.getSheetName(), limit, options, dataReader),
                 fileSource + "#" + sheet.getSheetName(),
                 limit,
                 options,
@@ -243,6 +337,113 @@ public class ExcelImporter extends TabularImportingParserBase {
         super.parseOneFile(project, metadata, job, fileSource, inputStream, limit, options, exceptions);
     }
     
+    /**
+     * Read the selected sheets of an .xlsx file one row at a time, keeping
+     * only the shared strings and styles of the workbook in memory.
+     */
+    protected void parseXlsx(
+        Project project,
+        ProjectMetadata metadata,
+        ImportingJob job,
+        String fileSource,
+        OPCPackage pkg,
+        int limit,
+        JSONObject options,
+        List<Exception> exceptions
+    ) {
+        List<XlsxSheetDataReader.Sheet> sheets;
+        List<String> strings;
+        boolean[] dateStyles;
+        try {
+            sheets = XlsxSheetDataReader.readSheets(pkg);
+            strings = XlsxSheetDataReader.readSharedStrings(pkg);
+            dateStyles = XlsxSheetDataReader.readDateStyles(pkg);
+        } catch (IOException e) {
+            exceptions.add(new ImportException(
+                "Attempted to parse as an Excel file but failed. " +
+                "Try to use Excel to re-save the file as a different Excel version or as TSV and upload again.",
+                e
+            ));
+            return;
+        } catch (InvalidFormatException e) {
+            exceptions.add(new ImportException(
+                    "Attempted to parse as an Excel file but failed. " +
+                    "Invalid XML.",
+                    e
+                ));
+                return;
+        } catch (XMLStreamException e) {
+            exceptions.add(new ImportException(
+                    "Attempted to parse as an Excel file but failed. " +
+                    "Invalid XML.",
+                    e
+                ));
+                return;
+        }
+        
+        for (int sheetIndex : getSelectedSheets(options, fileSource)) {
+            XlsxSheetDataReader.Sheet sheet = sheets.get(sheetIndex);
+            try {
+                InputStream sheetData = sheet.part.getInputStream();
+                try {
+                    TableDataReader dataReader = new XlsxSheetDataReader(
+                        sheetData,
+                        strings,
+                        dateStyles,
+                        XlsxSheetDataReader.readHyperlinks(sheet.part),
+                        new HashMap<String, Recon>());
+                    
+                    TabularImportingParserBase.readTable(
+                        project,
+                        metadata,
+                        job,
+                        cacheForPreview(job, getClass(), fileSource + "#" + sheet.name, limit, options, dataReader),
+                        fileSource + "#" + sheet.name,
+                        limit,
+                        options,
+                        exceptions
+                    );
+                } finally {
+                    sheetData.close();
+                }
+            } catch (IOException e) {
+                exceptions.add(e);
+            } catch (XMLStreamException e) {
+                exceptions.add(new ImportException(
+                        "Attempted to parse as an Excel file but failed. " +
+                        "Invalid XML.",
+                        e
+                    ));
+            }
+        }
+    }
+    
+    /**
+     * @return the indices of the sheets of the given file selected in the
+     *         options, in the order in which they were selected
+     */
+    static protected List<Integer> getSelectedSheets(JSONObject options, String fileSource) {
+        List<Integer> sheetIndices = new ArrayList<Integer>();
+        JSONArray sheets = JSONUtilities.getArray(options, "sheets");
+        
+        for(int i=0;i<sheets.length();i++)  {
+            String[] fileNameAndSheetIndex = new String[2];
+            try {
+                JSONObject sheetObj = sheets.getJSONObject(i);
+                // value is fileName#sheetIndex
+                fileNameAndSheetIndex = sheetObj.getString("fileNameAndSheetIndex").split("#");
+            } catch (JSONException e) {
+                logger.error(ExceptionUtils.getStackTrace(e));
+            }
+            
+            if (!fileNameAndSheetIndex[0].equals(fileSource))
+                continue;
+            
+            sheetIndices.add(Integer.parseInt(fileNameAndSheetIndex[1]));
+        }
+        return sheetIndices;
+    }
+    
     static protected Serializable extractCell(org.apache.poi.ss.usermodel.Cell cell) {
         int cellType = cell.getCellType();
         if (cellType == org.apache.poi.ss.usermodel.Cell.CELL_TYPE_FORMULA) {
@@ -285,53 +486,53 @@ public class ExcelImporter extends TabularImportingParserBase {
         Serializable value = extractCell(cell);
         
         if (value != null) {
-            Recon recon = null;
-            
             Hyperlink hyperlink = cell.getHyperlink();
-            if (hyperlink != null) {
-                String url = hyperlink.getAddress();
+            return createCell(value, hyperlink != null ? hyperlink.getAddress() : null, reconMap);
+        } else {
+            return null;
+        }
+    }
+    
+    static protected Cell createCell(Serializable value, String url, Map<String, Recon> reconMap) {
+        Recon recon = null;
+        
+        if (url != null && (url.startsWith("http://") ||
+            url.startsWith("https://"))) {
+            
+            final String sig = "freebase.com/view";
+            
+            int i = url.indexOf(sig);
+            if (i > 0) {
+                String id = url.substring(i + sig.length());
                 
-                if (url != null && (url.startsWith("http://") ||
-                    url.startsWith("https://"))) {
-                    
-                    final String sig = "freebase.com/view";
+                int q = id.indexOf('?');
+                if (q > 0) {
+                    id = id.substring(0, q);
+                }
+                int h = id.indexOf('#');
+                if (h > 0) {
+                    id = id.substring(0, h);
+                }
+                
+                if (reconMap.containsKey(id)) {
+                    recon = reconMap.get(id);
+                    recon.judgmentBatchSize++;
+                } else {
+                    recon = new Recon(0, null, null);
+                    recon.service = "import";
+                    recon.match = new ReconCandidate(id, value.toString(), new String[0], 100);
+                    recon.matchRank = 0;
+                    recon.judgment = Judgment.Matched;
+                    recon.judgmentAction = "auto";
+                    recon.judgmentBatchSize = 1;
+                    recon.addCandidate(recon.match);
                     
-                    int i = url.indexOf(sig);
-                    if (i > 0) {
-                        String id = url.substring(i + sig.length());
-                        
-                        int q = id.indexOf('?');
-                        if (q > 0) {
-                            id = id.substring(0, q);
-                        }
-                        int h = id.indexOf('#');
-                        if (h > 0) {
-                            id = id.substring(0, h);
-                        }
-                        
-                        if (reconMap.containsKey(id)) {
-                            recon = reconMap.get(id);
-                            recon.judgmentBatchSize++;
-                        } else {
-                            recon = new Recon(0, null, null);
-                            recon.service = "import";
-                            recon.match = new ReconCandidate(id, value.toString(), new String[0], 100);
-                            recon.matchRank = 0;
-                            recon.judgment = Judgment.Matched;
-                            recon.judgmentAction = "auto";
-                            recon.judgmentBatchSize = 1;
-                            recon.addCandidate(recon.match);
-                            
-                            reconMap.put(id, recon);
-                        }
-                        
-                    }
+                    reconMap.put(id, recon);
                 }
+                
             }
-            
-            return new Cell(value, recon);
-        } else {
-            return null;
         }
+        
+        return new Cell(value, recon);
     }
 }
@@ -1,10 +1,7 @@
 package com.google.refine.importers;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
@@ -14,6 +11,7 @@ import java.util.List;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.google.refine.importing.FileSample;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingUtilities;
 import com.google.refine.model.Project;
@@ -35,12 +33,17 @@ public class FixedWidthImporter extends TabularImportingParserBase {
             String encoding = ImportingUtilities.getEncoding(firstFileRecord);
             String location = JSONUtilities.getString(firstFileRecord, "location", null);
             if (location != null) {
-                File file = new File(job.getRawDataDir(), location);
-                int[] columnWidthsA = guessColumnWidths(file, encoding);
-                if (columnWidthsA != null) {
-                    for (int w : columnWidthsA) {
-                        JSONUtilities.append(columnWidths, w);
+                try {
+                    File file = ImportingUtilities.getFile(job, firstFileRecord);
+                    int[] columnWidthsA = guessColumnWidths(file, encoding);
+                    if (columnWidthsA != null) {
+                        for (int w : columnWidthsA) {
+                            JSONUtilities.append(columnWidths, w);
+                        }
                     }
+                } catch (IOException e) {
+                    // the error is reported when the file is parsed
+                    logger.warn("Could not guess column widths", e);
                 }
             }
 
@@ -152,8 +155,7 @@ public class FixedWidthImporter extends TabularImportingParserBase {
     
     static public int[] guessColumnWidths(File file, String encoding) {
         try {
-            InputStream is = new FileInputStream(file);
-            Reader reader = (encoding != null) ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
+            Reader reader = FileSample.get(file, encoding).getReader();
             LineNumberReader lineNumberReader = new LineNumberReader(reader);
 
             try {
@@ -214,7 +216,6 @@ public class FixedWidthImporter extends TabularImportingParserBase {
             } finally {
                 lineNumberReader.close();
                 reader.close();
-                is.close();
             }
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
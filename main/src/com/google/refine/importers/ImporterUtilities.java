@@ -36,6 +36,7 @@ package com.google.refine.importers;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.HashMap;
@@ -200,8 +201,11 @@ public class ImporterUtilities {
             final ImportingJob job, List<JSONObject> fileRecords) {
         long totalSize = 0;
         for (JSONObject fileRecord : fileRecords) {
-            File file = ImportingUtilities.getFile(job, fileRecord);
-            totalSize += file.length();
+            try {
+                totalSize += ImportingUtilities.getFile(job, fileRecord).length();
+            } catch (IOException e) {
+                // the error is reported when the file is parsed
+            }
         }
         
         final long totalSize2 = totalSize;
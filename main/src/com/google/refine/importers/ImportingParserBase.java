@@ -37,8 +37,20 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -48,9 +60,12 @@ import com.google.refine.importers.ImporterUtilities.MultiFileReadingProgress;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingParser;
 import com.google.refine.importing.ImportingUtilities;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ChunkedRowStore;
 import com.google.refine.model.Column;
 import com.google.refine.model.ModelException;
 import com.google.refine.model.Project;
+import com.google.refine.model.Row;
 import com.google.refine.model.metadata.ProjectMetadata;
 import com.google.refine.util.JSONUtilities;
 
@@ -59,6 +74,12 @@ abstract public class ImportingParserBase implements ImportingParser {
 
     final protected boolean useInputStream;
     
+    /**
+     * Set on the threads of {@link #parseConcurrently}, so that the files they
+     * parse do not each start parsing threads of their own
+     */
+    static final private ThreadLocal<Boolean> parsingFilesConcurrently = new ThreadLocal<Boolean>();
+    
     /**
      * @param useInputStream true if parser takes an InputStream, false if it takes a Reader.
      */
@@ -80,6 +101,13 @@ abstract public class ImportingParserBase implements ImportingParser {
             final ImportingJob job, List<JSONObject> fileRecords, String format,
             int limit, JSONObject options, List<Exception> exceptions) {
         MultiFileReadingProgress progress = ImporterUtilities.createMultiFileReadingProgress(job, fileRecords);
+        int threads = Math.min(getFileParsingThreads(), fileRecords.size());
+        // files parsed concurrently are held in memory until merged
+        if (threads > 1 && !(project.rows instanceof ChunkedRowStore)) {
+            parseConcurrently(project, metadata, job, fileRecords, limit, options, exceptions, progress, threads);
+            return;
+        }
+        
         for (JSONObject fileRecord : fileRecords) {
             if (job.canceled) {
                 break;
@@ -97,6 +125,211 @@ abstract public class ImportingParserBase implements ImportingParser {
         }
     }
     
+    /**
+     * @return the number of files to parse at the same time when a job has
+     *         several of them
+     */
+    protected int getFileParsingThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * @return true on the threads parsing the files of a job concurrently, on
+     *         which a single file should be parsed on one thread
+     */
+    static protected boolean isParsingFilesConcurrently() {
+        return Boolean.TRUE.equals(parsingFilesConcurrently.get());
+    }
+    
+    /**
+     * The rows, columns and import options read from one file into a project
+     * of its own, before they are merged into the project being created.
+     */
+    static protected class FileParsingResult {
+        final public Project project = new Project();
+        final public ProjectMetadata metadata = new ProjectMetadata();
+        final public List<Exception> exceptions = new ArrayList<Exception>();
+    }
+    
+    /**
+     * Parse each file into a project of its own on a bounded pool, then
+     * append them to the given project in the order of the file records, so
+     * that columns and rows come out as they would have from parsing the
+     * files one after another.
+     */
+    protected void parseConcurrently(
+        Project project,
+        ProjectMetadata metadata,
+        final ImportingJob job,
+        List<JSONObject> fileRecords,
+        final int limit,
+        final JSONObject options,
+        List<Exception> exceptions,
+        MultiFileReadingProgress progress,
+        int threads
+    ) {
+        final MultiFileReadingProgress sharedProgress = synchronizedProgress(progress);
+        int limit2 = JSONUtilities.getInt(options, "limit", -1);
+        if (limit > 0) {
+            limit2 = limit2 > 0 ? Math.min(limit, limit2) : limit;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "importing-parser");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // keep a few files ahead of the one being merged, but not all of them
+        Deque<Future<FileParsingResult>> pending = new ArrayDeque<Future<FileParsingResult>>();
+        Iterator<JSONObject> toParse = fileRecords.iterator();
+        try {
+            while (pending.size() < threads * 2 && toParse.hasNext()) {
+                pending.addLast(submitFile(executor, job, toParse.next(), limit, options, sharedProgress));
+            }
+            while (!pending.isEmpty() && !job.canceled) {
+                FileParsingResult result = getResult(pending.removeFirst());
+                if (toParse.hasNext()) {
+                    pending.addLast(submitFile(executor, job, toParse.next(), limit, options, sharedProgress));
+                }
+                
+                mergeFileResult(project, metadata, result, limit2);
+                exceptions.addAll(result.exceptions);
+                
+                if (limit2 > 0 && project.rows.size() >= limit2) {
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    protected Future<FileParsingResult> submitFile(
+        ExecutorService executor,
+        final ImportingJob job,
+        final JSONObject fileRecord,
+        final int limit,
+        final JSONObject options,
+        final MultiFileReadingProgress progress
+    ) {
+        return executor.submit(new Callable<FileParsingResult>() {
+            @Override
+            public FileParsingResult call() throws Exception {
+                FileParsingResult result = new FileParsingResult();
+                if (!job.canceled) {
+                    // parsers record the file source in their options
+                    String[] names = JSONObject.getNames(options);
+                    JSONObject fileOptions = names != null ? new JSONObject(options, names) : new JSONObject();
+                    parsingFilesConcurrently.set(Boolean.TRUE);
+                    try {
+                        parseOneFile(result.project, result.metadata, job, fileRecord,
+                                limit, fileOptions, result.exceptions, progress);
+                    } catch (IOException e) {
+                        result.exceptions.add(e);
+                    } finally {
+                        parsingFilesConcurrently.remove();
+                    }
+                }
+                return result;
+            }
+        });
+    }
+    
+    static protected FileParsingResult getResult(Future<FileParsingResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+    
+    /**
+     * Append the columns of a file missing from the project, matching the
+     * others by name, then its rows with their cells moved to the project's
+     * cell indices.
+     */
+    static protected void mergeFileResult(
+            Project project, ProjectMetadata metadata, FileParsingResult result, int limit) {
+        List<Column> fileColumns = result.project.columnModel.columns;
+        int[] cellIndices = new int[result.project.columnModel.getMaxCellIndex() + 1];
+        Arrays.fill(cellIndices, -1);
+        boolean sameCellIndices = true;
+        for (Column fileColumn : fileColumns) {
+            Column column = project.columnModel.getColumnByName(fileColumn.getName());
+            if (column == null) {
+                column = new Column(project.columnModel.allocateNewCellIndex(), fileColumn.getName());
+                column.setReconConfig(fileColumn.getReconConfig());
+                column.setReconStats(fileColumn.getReconStats());
+                try {
+                    project.columnModel.addColumn(project.columnModel.columns.size(), column, false);
+                } catch (ModelException e) {
+                    // Shouldn't happen: We already checked for duplicate name.
+                    logger.error("ModelException merging imported column", e);
+                }
+            }
+            cellIndices[fileColumn.getCellIndex()] = column.getCellIndex();
+            sameCellIndices &= column.getCellIndex() == fileColumn.getCellIndex();
+        }
+        
+        for (Row fileRow : result.project.rows) {
+            if (limit > 0 && project.rows.size() >= limit) {
+                break;
+            }
+            if (sameCellIndices) {
+                project.rows.add(fileRow);
+            } else {
+                Row row = new Row(fileRow.cells.size());
+                for (int c = 0; c < fileRow.cells.size() && c < cellIndices.length; c++) {
+                    Cell cell = fileRow.cells.get(c);
+                    if (cell != null && cellIndices[c] >= 0) {
+                        row.setCell(cellIndices[c], cell);
+                    }
+                }
+                project.rows.add(row);
+            }
+        }
+        
+        JSONArray importOptions = result.metadata.getImportOptionMetadata();
+        for (int i = 0; i < importOptions.length(); i++) {
+            metadata.appendImportOptionMetadata(importOptions.optJSONObject(i));
+        }
+        if (result.metadata.getName() != null && !result.metadata.getName().isEmpty()) {
+            metadata.setName(result.metadata.getName());
+        }
+    }
+    
+    static protected MultiFileReadingProgress synchronizedProgress(final MultiFileReadingProgress progress) {
+        return new MultiFileReadingProgress() {
+            @Override
+            synchronized public void startFile(String fileSource) {
+                progress.startFile(fileSource);
+            }
+
+            @Override
+            synchronized public void readingFile(String fileSource, long bytesRead) {
+                progress.readingFile(fileSource, bytesRead);
+            }
+
+            @Override
+            synchronized public void endFile(String fileSource, long bytesRead) {
+                progress.endFile(fileSource, bytesRead);
+            }
+        };
+    }
+    
     public void parseOneFile(
         Project project,
         ProjectMetadata metadata,
@@ -148,7 +381,7 @@ abstract public class ImportingParserBase implements ImportingParser {
         pushImportingOptions(metadata, fileSource, options);
     }
 
-    private void pushImportingOptions(ProjectMetadata metadata, String fileSource, JSONObject options) {
+    protected void pushImportingOptions(ProjectMetadata metadata, String fileSource, JSONObject options) {
         try {
             options.put("fileSource", fileSource);
         } catch (JSONException e) {
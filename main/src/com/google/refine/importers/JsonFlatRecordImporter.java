@@ -0,0 +1,393 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importers;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import com.google.refine.importers.JsonImporter.JSONTreeReader;
+import com.google.refine.importers.tree.ImportColumn;
+import com.google.refine.importers.tree.ImportColumnGroup;
+import com.google.refine.importers.tree.ImportParameters;
+import com.google.refine.importers.tree.TreeImportUtilities;
+import com.google.refine.importers.tree.XmlImportUtilities;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Imports JSON records whose fields are all scalar values without going
+ * through the generic tree import: each record is read with the streaming
+ * parser into names and cell values, and becomes one row with its cells at
+ * the indices of the columns of the anonymous record group, looked up by
+ * field name.
+ * <p>
+ * Records with nested objects or arrays, repeated field names, or that do
+ * not parse, are handed to {@link XmlImportUtilities#importTreeData} on their
+ * own, so the project comes out the same as when the whole file goes through
+ * the tree import.
+ */
+class JsonFlatRecordImporter {
+    static final int MAX_BLOCK_LINES = 4096;
+    
+    static private final String[] LINE_RECORD_PATH = { JsonImporter.ANONYMOUS };
+    static private final String[] ARRAY_RECORD_PATH = { JsonImporter.ANONYMOUS, JsonImporter.ANONYMOUS };
+    
+    /**
+     * The fields of one record, or its JSON text and record path if it must
+     * be imported as a tree
+     */
+    static class ParsedRecord {
+        String[] names;
+        Serializable[] values;
+        int size;
+        String treeText;
+        String[] treePath;
+    }
+    
+    final protected Project _project;
+    final protected ImportColumnGroup _rootColumnGroup;
+    final protected ImportParameters _parameters;
+    final protected boolean _storeEmptyStrings;
+    final protected boolean _guessCellValueTypes;
+    final protected boolean _includeFileSources;
+    final protected String _fileSource;
+    final protected JsonFactory _factory = new JsonFactory();
+    
+    protected ImportColumnGroup _recordGroup;
+    
+    JsonFlatRecordImporter(
+        Project project,
+        ImportColumnGroup rootColumnGroup,
+        boolean trimStrings,
+        boolean storeEmptyStrings,
+        boolean guessCellValueTypes,
+        boolean includeFileSources,
+        String fileSource
+    ) {
+        _project = project;
+        _rootColumnGroup = rootColumnGroup;
+        _storeEmptyStrings = storeEmptyStrings;
+        _guessCellValueTypes = guessCellValueTypes;
+        _includeFileSources = includeFileSources;
+        _fileSource = fileSource;
+        _parameters = new ImportParameters(trimStrings, storeEmptyStrings, guessCellValueTypes,
+                includeFileSources, fileSource);
+    }
+    
+    /**
+     * Import one record per non-blank line, parsing blocks of lines on the
+     * given number of threads.
+     * 
+     * @param limit the number of records to import, or -1 for all
+     */
+    void importLines(Reader reader, int limit, int threads) throws IOException {
+        BufferedReader lineReader = reader instanceof BufferedReader ?
+                (BufferedReader) reader : new BufferedReader(reader);
+        lineReader.mark(1);
+        if (lineReader.read() != '\uFEFF') {
+            lineReader.reset();
+        }
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        
+        List<String> first = readBlock(lineReader, Math.min(remaining, MAX_BLOCK_LINES));
+        if (threads <= 1 || first.size() < MAX_BLOCK_LINES || remaining <= MAX_BLOCK_LINES) {
+            while (!first.isEmpty() && remaining > 0) {
+                remaining -= addRecords(parseLines(first), remaining);
+                first = readBlock(lineReader, Math.min(remaining, MAX_BLOCK_LINES));
+            }
+            return;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "json-lines-importer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // keep a few blocks ahead of the one being added, but not the whole file
+        Deque<Future<List<ParsedRecord>>> blocks = new ArrayDeque<Future<List<ParsedRecord>>>();
+        try {
+            int toRead = remaining - first.size();
+            blocks.addLast(submitBlock(executor, first));
+            boolean endOfFile = false;
+            while (!blocks.isEmpty() && remaining > 0) {
+                while (!endOfFile && toRead > 0 && blocks.size() < threads * 2) {
+                    List<String> lines = readBlock(lineReader, Math.min(toRead, MAX_BLOCK_LINES));
+                    if (lines.isEmpty()) {
+                        endOfFile = true;
+                    } else {
+                        toRead -= lines.size();
+                        blocks.addLast(submitBlock(executor, lines));
+                    }
+                }
+                remaining -= addRecords(getBlock(blocks.removeFirst()), remaining);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Import each element of the top level array the parser is positioned on
+     * as one record. Later top level values, if any, go through the tree import.
+     * 
+     * @param limit the number of records to import, or -1 for all
+     */
+    void importArray(JsonParser parser, int limit) throws IOException {
+        int remaining = limit > 0 ? limit : Integer.MAX_VALUE;
+        JsonToken token;
+        while (remaining > 0 && (token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+            TokenBuffer buffer = new TokenBuffer(parser);
+            buffer.copyCurrentStructure(parser);
+            
+            ParsedRecord record = parseRecord(buffer.asParser());
+            if (record == null) {
+                record = new ParsedRecord();
+                record.treeText = "[" + toText(buffer) + "]";
+                record.treePath = ARRAY_RECORD_PATH;
+            }
+            remaining -= addRecords(Arrays.asList(record), remaining);
+        }
+        
+        while (remaining > 0 && parser.nextToken() != null) {
+            TokenBuffer buffer = new TokenBuffer(parser);
+            buffer.copyCurrentStructure(parser);
+            importTree(toText(buffer), ARRAY_RECORD_PATH, remaining);
+            remaining--;
+        }
+    }
+    
+    private String toText(TokenBuffer buffer) throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = _factory.createGenerator(writer);
+        buffer.serialize(generator);
+        generator.close();
+        return writer.toString();
+    }
+    
+    static private List<String> readBlock(BufferedReader reader, int maxLines) throws IOException {
+        List<String> lines = new ArrayList<String>(Math.min(maxLines, MAX_BLOCK_LINES));
+        String line;
+        while (lines.size() < maxLines && (line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+    
+    private Future<List<ParsedRecord>> submitBlock(ExecutorService executor, final List<String> lines) {
+        return executor.submit(new Callable<List<ParsedRecord>>() {
+            @Override
+            public List<ParsedRecord> call() throws Exception {
+                return parseLines(lines);
+            }
+        });
+    }
+    
+    static private List<ParsedRecord> getBlock(Future<List<ParsedRecord>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    
+    List<ParsedRecord> parseLines(List<String> lines) {
+        List<ParsedRecord> records = new ArrayList<ParsedRecord>(lines.size());
+        for (String line : lines) {
+            ParsedRecord record = null;
+            try {
+                JsonParser parser = _factory.createParser(line);
+                record = parseRecord(parser);
+                if (record != null && parser.nextToken() != null) {
+                    record = null; // more than one value on the line
+                }
+                parser.close();
+            } catch (IOException e) {
+                record = null; // the tree import reports it
+            }
+            if (record == null) {
+                record = new ParsedRecord();
+                record.treeText = line;
+                record.treePath = LINE_RECORD_PATH;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+    
+    /**
+     * Read one object with scalar fields from the parser, converting values
+     * as the tree import would.
+     * 
+     * @return the record, or null if it is anything else
+     */
+    ParsedRecord parseRecord(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+        ParsedRecord record = new ParsedRecord();
+        record.names = new String[8];
+        record.values = new Serializable[8];
+        
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token == null || !token.isScalarValue()) {
+                return null;
+            }
+            for (int i = 0; i < record.size; i++) {
+                if (record.names[i].equals(name)) {
+                    return null; // the tree import puts repeated fields on another row
+                }
+            }
+            
+            Serializable value = JSONTreeReader.getValue(parser, token);
+            if (value instanceof String) {
+                String text = (String) value;
+                if (!_storeEmptyStrings && text.isEmpty()) {
+                    continue;
+                }
+                if (_guessCellValueTypes) {
+                    value = ImporterUtilities.parseCellValue(text);
+                }
+            }
+            if (record.size == record.names.length) {
+                record.names = Arrays.copyOf(record.names, record.size * 2);
+                record.values = Arrays.copyOf(record.values, record.size * 2);
+            }
+            record.names[record.size] = name;
+            record.values[record.size] = value;
+            record.size++;
+        }
+        return token == JsonToken.END_OBJECT ? record : null;
+    }
+    
+    /**
+     * Add records to the project in order, up to the given number.
+     * 
+     * @return the number of records added
+     */
+    int addRecords(List<ParsedRecord> records, int max) {
+        int count = Math.min(records.size(), max);
+        for (int r = 0; r < count; r++) {
+            ParsedRecord record = records.get(r);
+            if (record.treeText != null) {
+                importTree(record.treeText, record.treePath, -1);
+            } else {
+                addRecord(record);
+            }
+        }
+        return count;
+    }
+    
+    protected void addRecord(ParsedRecord record) {
+        ImportColumnGroup group = getRecordGroup();
+        group.nextRowIndex = Math.max(group.nextRowIndex, _rootColumnGroup.nextRowIndex);
+        if (record.size == 0) {
+            return;
+        }
+        
+        int rowIndex = group.nextRowIndex;
+        ImportColumn[] columns = new ImportColumn[record.size];
+        int cellCount = 0;
+        for (int i = 0; i < record.size; i++) {
+            ImportColumn column = TreeImportUtilities.getColumn(_project, group, record.names[i]);
+            rowIndex = Math.max(rowIndex, column.nextRowIndex);
+            columns[i] = column;
+            cellCount = Math.max(cellCount, column.cellIndex + 1);
+        }
+        
+        Row row = new Row(cellCount);
+        for (int i = 0; i < record.size; i++) {
+            row.setCell(columns[i].cellIndex, new Cell(record.values[i], null));
+            columns[i].nextRowIndex = rowIndex + 1;
+            columns[i].nonBlankCount++;
+        }
+        if (_includeFileSources) {
+            row.setCell(0, new Cell(_fileSource, null));
+        }
+        group.nextRowIndex = rowIndex + 1;
+        _project.rows.add(row);
+    }
+    
+    private ImportColumnGroup getRecordGroup() {
+        if (_recordGroup == null) {
+            _recordGroup = TreeImportUtilities.getColumnGroup(_project, _rootColumnGroup, JsonImporter.ANONYMOUS);
+        }
+        return _recordGroup;
+    }
+    
+    protected void importTree(String text, String[] recordPath, int limit) {
+        XmlImportUtilities.importTreeData(
+                new JSONTreeReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+                _project, recordPath, _rootColumnGroup, limit, _parameters);
+    }
+}
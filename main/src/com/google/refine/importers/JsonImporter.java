@@ -33,10 +33,16 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.google.refine.importers;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 import com.fasterxml.jackson.core.JsonFactory;
@@ -63,9 +69,23 @@ public class JsonImporter extends TreeImportingParserBase {
     static final Logger logger = LoggerFactory.getLogger(JsonImporter.class);
 
     public final static String ANONYMOUS = "_";
+    
+    public enum Mode {
+        /** a single JSON value */
+        JSON,
+        /** one JSON value per line */
+        JSON_LINES
+    }
+    
+    final private Mode mode;
 
     public JsonImporter() {
+        this(Mode.JSON);
+    }
+    
+    public JsonImporter(Mode mode) {
         super(true);
+        this.mode = mode;
     }
     
     static private class PreviewParsingState {
@@ -197,12 +217,87 @@ public class JsonImporter extends TreeImportingParserBase {
             ImportingJob job, String fileSource, InputStream is,
             ImportColumnGroup rootColumnGroup, int limit, JSONObject options, List<Exception> exceptions) {
         
-        parseOneFile(project, metadata, job, fileSource,
-            new JSONTreeReader(is), rootColumnGroup, limit, options, exceptions);
+        String[] recordPath = JSONUtilities.getStringArray(options, "recordPath");
+        boolean flatRecords = false;
+        try {
+            if (mode == Mode.JSON_LINES && Arrays.equals(recordPath, new String[] { ANONYMOUS })) {
+                String encoding = JSONUtilities.getString(options, "encoding", null);
+                Reader reader = new InputStreamReader(is, encoding == null || encoding.isEmpty() ?
+                        StandardCharsets.UTF_8 : Charset.forName(encoding));
+                createFlatRecordImporter(project, rootColumnGroup, fileSource, options)
+                    .importLines(reader, getRecordLimit(limit, options),
+                            isParsingFilesConcurrently() ? 1 : getParsingThreads());
+                flatRecords = true;
+            } else if (mode == Mode.JSON && Arrays.equals(recordPath, new String[] { ANONYMOUS, ANONYMOUS })) {
+                if (!is.markSupported()) {
+                    is = new BufferedInputStream(is);
+                }
+                if (startsWithArray(is)) {
+                    JsonParser parser = new JsonFactory().createParser(is);
+                    if (parser.nextToken() == JsonToken.START_ARRAY) {
+                        createFlatRecordImporter(project, rootColumnGroup, fileSource, options)
+                            .importArray(parser, getRecordLimit(limit, options));
+                        flatRecords = true;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            exceptions.add(e);
+            flatRecords = true;
+        }
+        
+        if (!flatRecords) {
+            parseOneFile(project, metadata, job, fileSource,
+                new JSONTreeReader(is), rootColumnGroup, limit, options, exceptions);
+        }
         
         super.parseOneFile(project, metadata, job, fileSource, is, rootColumnGroup, limit, options, exceptions);
     }
     
+    /**
+     * @return the number of threads parsing the lines of JSON lines files, or 1
+     *         to parse them on the importing thread. Not used when the files of
+     *         a job are parsed concurrently.
+     */
+    protected int getParsingThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    private JsonFlatRecordImporter createFlatRecordImporter(Project project, ImportColumnGroup rootColumnGroup,
+            String fileSource, JSONObject options) {
+        // same defaults as the tree import
+        boolean trimStrings = JSONUtilities.getBoolean(options, "trimStrings", true);
+        boolean storeEmptyStrings = JSONUtilities.getBoolean(options, "storeEmptyStrings", false);
+        boolean guessCellValueTypes = JSONUtilities.getBoolean(options, "guessCellValueTypes", true);
+        boolean includeFileSources = JSONUtilities.getBoolean(options, "includeFileSources", false);
+        if (includeFileSources) {
+            addFilenameColumn(project);
+        }
+        return new JsonFlatRecordImporter(project, rootColumnGroup, trimStrings, storeEmptyStrings,
+                guessCellValueTypes, includeFileSources, fileSource);
+    }
+    
+    /**
+     * Check whether the first character after any whitespace is the start
+     * of an array, leaving the stream where it was.
+     */
+    static private boolean startsWithArray(InputStream is) throws IOException {
+        is.mark(4096);
+        try {
+            for (int i = 0; i < 4096; i++) {
+                int b = is.read();
+                if (b == '[') {
+                    return true;
+                } else if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    return false;
+                }
+            }
+            return false;
+        } finally {
+            is.reset();
+        }
+    }
+    
     static public class JSONTreeReader implements TreeReader {
         final static Logger logger = LoggerFactory.getLogger("JsonParser");
         
@@ -294,7 +389,7 @@ public class JsonImporter extends TreeImportingParserBase {
             return next != null;
         }
         
-        private Serializable getValue(JsonParser parser, JsonToken token) throws IOException {
+        static Serializable getValue(JsonParser parser, JsonToken token) throws IOException {
             if (token != null) {
                 switch (token) {
                 case VALUE_STRING:
@@ -61,11 +61,10 @@ public class MarcImporter extends XmlImporter {
     public JSONObject createParserUIInitializationData(ImportingJob job, java.util.List<JSONObject> fileRecords, String format) {
         if (fileRecords.size() > 0) {
             JSONObject firstFileRecord = fileRecords.get(0);
-            File file = ImportingUtilities.getFile(job, firstFileRecord);
-            File tempFile = new File(file.getAbsolutePath()+".xml");
-
-
             try {
+                File file = ImportingUtilities.getFile(job, firstFileRecord);
+                File tempFile = new File(file.getAbsolutePath()+".xml");
+
                 InputStream inputStream = new FileInputStream(file);
                 OutputStream outputStream = new FileOutputStream(tempFile);
                 try {
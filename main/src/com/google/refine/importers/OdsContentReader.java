@@ -0,0 +1,342 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.google.refine.importers.TabularImportingParserBase.TableDataReader;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Recon;
+
+/**
+ * Reads the sheets of an OpenDocument spreadsheet one row at a time from its
+ * {@code content.xml}, so that memory use is proportional to a row rather
+ * than to the document.
+ * <p>
+ * Repeated rows and cells are expanded as they are returned. Empty ones are
+ * only returned when followed by non-empty ones, so the blank rows and
+ * columns which spreadsheet applications write up to the sheet limits are
+ * left out.
+ */
+public class OdsContentReader implements TableDataReader {
+    static final private String OFFICE_NS = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
+    static final private String TABLE_NS = "urn:oasis:names:tc:opendocument:xmlns:table:1.0";
+    static final private String TEXT_NS = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
+    static final private String XLINK_NS = "http://www.w3.org/1999/xlink";
+    
+    static final private XMLInputFactory factory = XMLInputFactory.newInstance();
+    static {
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+    
+    final protected XMLStreamReader _parser;
+    final protected Map<String, Recon> _reconMap = new HashMap<String, Recon>();
+    
+    protected int _sheetIndex = -1;
+    protected String _sheetName;
+    protected boolean _inSheet;
+    
+    protected long _emptyRowsToReturn;
+    protected long _pendingEmptyRows;
+    protected List<Object> _repeatedRow;
+    protected long _repeatsToReturn;
+    
+    protected String _href;
+    
+    // created on the first date cell, then shared by the rest of the document
+    protected DatatypeFactory _datatypeFactory;
+    
+    public OdsContentReader(InputStream contentXml) throws XMLStreamException {
+        _parser = factory.createXMLStreamReader(contentXml);
+    }
+    
+    /**
+     * Move on to the next sheet, skipping the rest of the current one.
+     * 
+     * @return false if there are no more sheets
+     */
+    public boolean nextSheet() throws XMLStreamException {
+        if (_inSheet) {
+            while (nextRow()) {
+                skipElement();
+            }
+        }
+        _inSheet = false;
+        _emptyRowsToReturn = 0;
+        _pendingEmptyRows = 0;
+        _repeatsToReturn = 0;
+        _reconMap.clear();
+        while (_parser.hasNext()) {
+            if (_parser.next() == XMLStreamConstants.START_ELEMENT &&
+                    isElement(TABLE_NS, "table")) {
+                _sheetIndex++;
+                _sheetName = _parser.getAttributeValue(TABLE_NS, "name");
+                _inSheet = true;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public int getSheetIndex() {
+        return _sheetIndex;
+    }
+    
+    public String getSheetName() {
+        return _sheetName;
+    }
+    
+    public void close() throws XMLStreamException {
+        _parser.close();
+    }
+    
+    /**
+     * @return the number of rows left in the current sheet
+     */
+    public int countRows() throws IOException {
+        int rows = 0;
+        while (getNextRowOfCells() != null) {
+            rows++;
+        }
+        return rows;
+    }
+    
+    @Override
+    public List<Object> getNextRowOfCells() throws IOException {
+        try {
+            while (true) {
+                if (_emptyRowsToReturn > 0) {
+                    _emptyRowsToReturn--;
+                    return new ArrayList<Object>();
+                } else if (_repeatsToReturn > 0) {
+                    _repeatsToReturn--;
+                    return new ArrayList<Object>(_repeatedRow);
+                } else if (!_inSheet || !nextRow()) {
+                    _inSheet = false;
+                    return null;
+                }
+                
+                long repeat = getRepeat("number-rows-repeated");
+                List<Object> cells = readCells();
+                if (cells.isEmpty()) {
+                    _pendingEmptyRows += repeat;
+                } else {
+                    _emptyRowsToReturn = _pendingEmptyRows;
+                    _pendingEmptyRows = 0;
+                    _repeatedRow = cells;
+                    _repeatsToReturn = repeat;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    /**
+     * Move to the start of the next row of the current sheet.
+     * 
+     * @return false at the end of the sheet
+     */
+    protected boolean nextRow() throws XMLStreamException {
+        while (_parser.hasNext()) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement(TABLE_NS, "table-row")) {
+                    return true;
+                } else if (isElement(TABLE_NS, "table")) {
+                    skipElement(); // sub-tables are not part of the sheet
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && isElement(TABLE_NS, "table")) {
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    protected List<Object> readCells() throws XMLStreamException {
+        List<Object> cells = new ArrayList<Object>();
+        long pendingNulls = 0;
+        while (_parser.hasNext()) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.END_ELEMENT && isElement(TABLE_NS, "table-row")) {
+                break;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement(TABLE_NS, "table-cell") || isElement(TABLE_NS, "covered-table-cell")) {
+                    long repeat = getRepeat("number-columns-repeated");
+                    Cell cell = readCell();
+                    if (cell == null) {
+                        pendingNulls += repeat;
+                    } else {
+                        for (; pendingNulls > 0; pendingNulls--) {
+                            cells.add(null);
+                        }
+                        for (long i = 0; i < repeat; i++) {
+                            cells.add(cell);
+                        }
+                    }
+                } else {
+                    skipElement();
+                }
+            }
+        }
+        return cells;
+    }
+    
+    protected Cell readCell() throws XMLStreamException {
+        String type = _parser.getAttributeValue(OFFICE_NS, "value-type");
+        String value = null;
+        if ("float".equals(type) || "currency".equals(type) || "percentage".equals(type)) {
+            value = _parser.getAttributeValue(OFFICE_NS, "value");
+        } else if ("date".equals(type)) {
+            value = _parser.getAttributeValue(OFFICE_NS, "date-value");
+        } else if ("boolean".equals(type)) {
+            value = _parser.getAttributeValue(OFFICE_NS, "boolean-value");
+        } else if ("string".equals(type)) {
+            value = _parser.getAttributeValue(OFFICE_NS, "string-value");
+        }
+        
+        _href = null;
+        String text = readText();
+        
+        Serializable cellValue;
+        if (value != null && ("float".equals(type) || "currency".equals(type) || "percentage".equals(type))) {
+            cellValue = Double.parseDouble(value);
+        } else if (value != null && "date".equals(type)) {
+            cellValue = parseDate(value);
+        } else if (value != null && "boolean".equals(type)) {
+            cellValue = Boolean.parseBoolean(value);
+        } else if ("string".equals(type)) {
+            cellValue = value != null ? value : text;
+        } else {
+            cellValue = "".equals(text) ? null : text;
+        }
+        
+        return cellValue != null ? ExcelImporter.createCell(cellValue, _href, _reconMap) : null;
+    }
+    
+    /**
+     * Read the paragraphs of the current cell as they are displayed.
+     */
+    protected String readText() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int paragraphs = 0;
+        int depth = 1;
+        while (depth > 0) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement(TEXT_NS, "p") || isElement(TEXT_NS, "h")) {
+                    if (paragraphs++ > 0) {
+                        sb.append('\n');
+                    }
+                    depth++;
+                } else if (isElement(TEXT_NS, "s")) {
+                    String count = _parser.getAttributeValue(TEXT_NS, "c");
+                    for (int i = count != null ? Integer.parseInt(count) : 1; i > 0; i--) {
+                        sb.append(' ');
+                    }
+                    depth++;
+                } else if (isElement(TEXT_NS, "tab")) {
+                    sb.append('\t');
+                    depth++;
+                } else if (isElement(TEXT_NS, "line-break")) {
+                    sb.append('\n');
+                    depth++;
+                } else if (isElement(TEXT_NS, "a")) {
+                    if (_href == null) {
+                        _href = _parser.getAttributeValue(XLINK_NS, "href");
+                    }
+                    depth++;
+                } else if (isElement(OFFICE_NS, "annotation")) {
+                    skipElement();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS && paragraphs > 0) {
+                sb.append(_parser.getText());
+            }
+        }
+        return sb.toString();
+    }
+    
+    protected long getRepeat(String attribute) {
+        String repeat = _parser.getAttributeValue(TABLE_NS, attribute);
+        return repeat != null ? Long.parseLong(repeat) : 1;
+    }
+    
+    protected boolean isElement(String namespace, String localName) {
+        return localName.equals(_parser.getLocalName()) && namespace.equals(_parser.getNamespaceURI());
+    }
+    
+    protected void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+    
+    protected Calendar parseDate(String value) {
+        try {
+            if (_datatypeFactory == null) {
+                _datatypeFactory = DatatypeFactory.newInstance();
+            }
+            return _datatypeFactory.newXMLGregorianCalendar(value).toGregorianCalendar();
+        } catch (DatatypeConfigurationException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -34,35 +34,26 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.importers;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.odftoolkit.odfdom.doc.OdfDocument;
-import org.odftoolkit.odfdom.doc.table.OdfTable;
-import org.odftoolkit.odfdom.doc.table.OdfTableCell;
-import org.odftoolkit.odfdom.doc.table.OdfTableRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.refine.importers.ImporterUtilities.MultiFileReadingProgress;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingUtilities;
-import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
-import com.google.refine.model.Recon;
-import com.google.refine.model.Recon.Judgment;
 import com.google.refine.model.metadata.ProjectMetadata;
-import com.google.refine.model.ReconCandidate;
 import com.google.refine.util.JSONUtilities;
 
 
@@ -81,45 +72,66 @@ public class OdsImporter extends TabularImportingParserBase {
 
         JSONArray sheetRecords = new JSONArray();
         JSONUtilities.safePut(options, "sheetRecords", sheetRecords);
-        OdfDocument odfDoc = null;
         try {
             for (int index = 0;index < fileRecords.size();index++) {
                 JSONObject fileRecord = fileRecords.get(index);
                 File file = ImportingUtilities.getFile(job, fileRecord);
-                InputStream is = new FileInputStream(file);
-                odfDoc = OdfDocument.loadDocument(is);
-                List<OdfTable> tables = odfDoc.getTableList();
-                int sheetCount = tables.size();
-    
-                for (int i = 0; i < sheetCount; i++) {
-                    OdfTable sheet = tables.get(i);
-                    int rows = sheet.getRowCount();
+                ZipFile zip = new ZipFile(file);
+                try {
+                    OdsContentReader reader = openContent(zip);
+                    try {
+                        while (reader.nextSheet()) {
+                            int rows = reader.countRows();
     
-                    JSONObject sheetRecord = new JSONObject();
-                    JSONUtilities.safePut(sheetRecord, "name",  file.getName() + "#" + sheet.getTableName());
-                    JSONUtilities.safePut(sheetRecord, "fileNameAndSheetIndex", file.getName() + "#" + i);
-                    JSONUtilities.safePut(sheetRecord, "rows", rows);
-                    if (rows > 0) {
-                        JSONUtilities.safePut(sheetRecord, "selected", true);
-                    } else {
-                        JSONUtilities.safePut(sheetRecord, "selected", false);
+                            JSONObject sheetRecord = new JSONObject();
+                            JSONUtilities.safePut(sheetRecord, "name",  file.getName() + "#" + reader.getSheetName());
+                            JSONUtilities.safePut(sheetRecord, "fileNameAndSheetIndex", file.getName() + "#" + reader.getSheetIndex());
+                            JSONUtilities.safePut(sheetRecord, "rows", rows);
+                            if (rows > 0) {
+                                JSONUtilities.safePut(sheetRecord, "selected", true);
+                            } else {
+                                JSONUtilities.safePut(sheetRecord, "selected", false);
+                            }
+                            JSONUtilities.append(sheetRecords, sheetRecord);
+                        }
+                    } finally {
+                        reader.close();
                     }
-                    JSONUtilities.append(sheetRecords, sheetRecord);
+                } finally {
+                    zip.close();
                 }
             }
-        } catch (FileNotFoundException e) {
-            logger.info("File not found",e);
-        } catch (Exception e) {
-            // ODF throws *VERY* wide exceptions
+        } catch (IOException e) {
+            logger.info("Error reading ODF spreadsheet",e);
+        } catch (XMLStreamException e) {
             logger.info("Error reading ODF spreadsheet",e);
-        } finally {
-            if (odfDoc != null) {
-                odfDoc.close();
-            }
         }
         return options;
     }
     
+    @Override
+    public void parseOneFile(
+        Project project,
+        ProjectMetadata metadata,
+        ImportingJob job,
+        JSONObject fileRecord,
+        int limit,
+        JSONObject options,
+        List<Exception> exceptions,
+        MultiFileReadingProgress progress
+    ) throws IOException {
+        // the document is read in place so that only content.xml gets
+        // unzipped, and only as it is parsed
+        final File file = ImportingUtilities.getFile(job, fileRecord);
+        final String fileSource = ImportingUtilities.getFileSource(fileRecord);
+        progress.startFile(fileSource);
+        try {
+            parseOds(project, metadata, job, fileSource, file, limit, options, exceptions);
+            pushImportingOptions(metadata, fileSource, options);
+        } finally {
+            progress.endFile(fileSource, file.length());
+        }
+    }
 
     @Override
     public void parseOneFile(
@@ -132,159 +144,100 @@ public class OdsImporter extends TabularImportingParserBase {
             JSONObject options,
             List<Exception> exceptions
     ) {
-        OdfDocument odfDoc;
+        File file = null;
         try {
-            odfDoc = OdfDocument.loadDocument(inputStream);
-        } catch (Exception e) { // Ugh! could they throw any wider exception?
+            // zip entries can only be read in order from a stream, so spool
+            // it to a file and read it like an uploaded one
+            file = File.createTempFile("refine-ods-", ".ods");
+            Files.copy(inputStream, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            parseOds(project, metadata, job, fileSource, file, limit, options, exceptions);
+        } catch (IOException e) {
             exceptions.add(e);
             return;
-        }
-
-        List<OdfTable> tables = odfDoc.getTableList();
-
-        JSONArray sheets = JSONUtilities.getArray(options, "sheets");
-        for(int i=0;i<sheets.length();i++)  {
-            String[] fileNameAndSheetIndex = new String[2];
-            try {
-                JSONObject sheetObj = sheets.getJSONObject(i);
-                // value is fileName#sheetIndex
-                fileNameAndSheetIndex = sheetObj.getString("fileNameAndSheetIndex").split("#");
-            } catch (JSONException e) {
-                logger.error(ExceptionUtils.getStackTrace(e));
+        } finally {
+            if (file != null) {
+                file.delete();
             }
-            
-            if (!fileNameAndSheetIndex[0].equals(fileSource))
-                continue;
-            
-            final OdfTable table = tables.get(Integer.parseInt(fileNameAndSheetIndex[1]));
-            final int lastRow = table.getRowCount();
-
-            TableDataReader dataReader = new TableDataReader() {
-                int nextRow = 0;
-                Map<String, Recon> reconMap = new HashMap<String, Recon>();
-
-                @Override
-                public List<Object> getNextRowOfCells() throws IOException {
-                    if (nextRow > lastRow) {
-                        return null;
-                    }
-
-                    List<Object> cells = new ArrayList<Object>();
-                    OdfTableRow row = table.getRowByIndex(nextRow++);
-                    if (row != null) {
-                        int lastCell = row.getCellCount();
-                        for (int cellIndex = 0; cellIndex <= lastCell; cellIndex++) {
-                            Cell cell = null;
-
-                            OdfTableCell sourceCell = row.getCellByIndex(cellIndex);
-                            if (sourceCell != null) {
-                                cell = extractCell(sourceCell, reconMap);
-                            }
-                            cells.add(cell);
-                        }
-                    }
-                    return cells;
-                }
-            };
-
-            TabularImportingParserBase.readTable(
-                    project,
-                    metadata,
-                    job,
-                    dataReader,
-                    fileSource + "#" + table.getTableName(),
-                    limit,
-                    options,
-                    exceptions
-            );
         }
         
         super.parseOneFile(project, metadata, job, fileSource, inputStream, limit, options, exceptions);
     }
 
-    static protected Serializable extractCell(OdfTableCell cell) {
-        // TODO: how can we tell if a cell contains an error?
-        //String formula = cell.getFormula();
-
-        Serializable value = null;
-        // "boolean", "currency", "date", "float", "percentage", "string" or "time"
-        String cellType = cell.getValueType();
-        if ("boolean".equals(cellType)) {
-            value = cell.getBooleanValue();
-        } else if ("float".equals(cellType)) {
-            value = cell.getDoubleValue();
-        } else if ("date".equals(cellType)) {
-            value = cell.getDateValue();
-        } else if ("currency".equals(cellType)) {
-            value = cell.getCurrencyValue();
-        } else if ("percentage".equals(cellType)) {
-            value = cell.getPercentageValue();
-        } else if ("string".equals(cellType)) {
-            value = cell.getStringValue();
-        } else if (cellType == null) {
-            value = cell.getDisplayText();
-            if ("".equals(value)) {
-                value = null;
-            } else {
-                logger.info("Null cell type with non-empty value: " + value);                
-            }
-        } else {
-            logger.info("Unexpected cell type " + cellType);
-            value = cell.getDisplayText();
+    protected void parseOds(
+            Project project,
+            ProjectMetadata metadata,
+            ImportingJob job,
+            String fileSource,
+            File file,
+            int limit,
+            JSONObject options,
+            List<Exception> exceptions
+    ) {
+        ZipFile zip;
+        try {
+            zip = new ZipFile(file);
+        } catch (IOException e) {
+            exceptions.add(new ImportException(
+                "Attempted to parse as an OpenDocument spreadsheet but failed. " +
+                "The file is not a valid zip archive.",
+                e
+            ));
+            return;
         }
-        return value;
-    }
-
-    static protected Cell extractCell(OdfTableCell cell, Map<String, Recon> reconMap) {
-        Serializable value = extractCell(cell);
-
-        if (value != null) {
-            Recon recon = null;
-
-            String hyperlink = ""; // TODO: cell.getHyperlink();
-            if (hyperlink != null) {
-                String url = hyperlink; // TODO: hyperlink.getAddress();
-
-                if (url.startsWith("http://") ||
-                        url.startsWith("https://")) {
-
-                    final String sig = "freebase.com/view";
-
-                    int i = url.indexOf(sig);
-                    if (i > 0) {
-                        String id = url.substring(i + sig.length());
-
-                        int q = id.indexOf('?');
-                        if (q > 0) {
-                            id = id.substring(0, q);
-                        }
-                        int h = id.indexOf('#');
-                        if (h > 0) {
-                            id = id.substring(0, h);
-                        }
-
-                        if (reconMap.containsKey(id)) {
-                            recon = reconMap.get(id);
-                            recon.judgmentBatchSize++;
-                        } else {
-                            recon = new Recon(0, null, null);
-                            recon.service = "import";
-                            recon.match = new ReconCandidate(id, value.toString(), new String[0], 100);
-                            recon.matchRank = 0;
-                            recon.judgment = Judgment.Matched;
-                            recon.judgmentAction = "auto";
-                            recon.judgmentBatchSize = 1;
-                            recon.addCandidate(recon.match);
-
-                            reconMap.put(id, recon);
-                        }
+        
+        OdsContentReader reader = null;
+        try {
+            for (int sheetIndex : ExcelImporter.getSelectedSheets(options, fileSource)) {
+                // sheets selected out of document order need a fresh pass
+                if (reader == null || reader.getSheetIndex() >= sheetIndex) {
+                    if (reader != null) {
+                        reader.close();
                     }
+                    reader = openContent(zip);
+                }
+                while (reader.getSheetIndex() < sheetIndex && reader.nextSheet()) {
+                    // skip to the selected sheet
+                }
+                if (reader.getSheetIndex() != sheetIndex) {
+                    continue;
                 }
+
+                TabularImportingParserBase.readTable(
+                        project,
+                        metadata,
+                        job,
+                        cacheForPreview(job, getClass(), fileSource + "#" + reader.getSheetName(), limit, options, reader),
+                        fileSource + "#" + reader.getSheetName(),
+                        limit,
+                        options,
+                        exceptions
+                );
+            }
+        } catch (IOException e) {
+            exceptions.add(e);
+        } catch (XMLStreamException e) {
+            exceptions.add(new ImportException(
+                "Attempted to parse as an OpenDocument spreadsheet but failed. " +
+                "Invalid XML.",
+                e
+            ));
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+                zip.close();
+            } catch (Exception e) {
+                logger.warn("Error closing ODF spreadsheet", e);
             }
-            return new Cell(value, recon);
-        } else {
-            return null;
         }
     }
 
-} 
\ No newline at end of file
+    static protected OdsContentReader openContent(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry("content.xml");
+        if (entry == null) {
+            throw new IOException("No content.xml in OpenDocument spreadsheet");
+        }
+        return new OdsContentReader(zip.getInputStream(entry));
+    }
+}
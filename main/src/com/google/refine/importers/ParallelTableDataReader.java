@@ -0,0 +1,313 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importers;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import au.com.bytecode.opencsv.CSVParser;
+
+import com.google.refine.importers.TabularImportingParserBase.TypeGuessingTableDataReader;
+import com.google.refine.model.Cell;
+
+/**
+ * Reads the records of a separator-based file, parsing blocks of lines on
+ * several threads and returning the records in file order.
+ * <p>
+ * Lines are read on the calling thread, which keeps decoding and progress
+ * tracking as they are, and grouped into blocks that are parsed concurrently,
+ * each one as if it started a new record. When a quoted value spans the end
+ * of a block, the parser of that block is carried over to finish the record
+ * with the first lines of the next block, and the rest of that block is parsed
+ * again from the actual record boundary. The records are therefore the same
+ * as when parsing the whole file on one thread.
+ * <p>
+ * When cell value types are guessed, cells are converted on the parsing
+ * threads too, except for the first records which may be ignored lines or
+ * column headers.
+ */
+class ParallelTableDataReader implements TypeGuessingTableDataReader {
+    static final int MAX_BLOCK_LINES = 4096;
+    static final int MAX_BLOCK_CHARS = 1 << 20;
+    
+    /**
+     * Creates the parsers, always on the thread reading the lines
+     */
+    static interface ParserFactory {
+        public CSVParser createParser();
+    }
+    
+    static private class Block {
+        final String[] lines;
+        final List<List<Object>> records = new ArrayList<List<Object>>();
+        final List<List<Object>> convertedRecords;
+        final CSVParser parser;
+        List<Object> pendingCells;
+        
+        Block(String[] lines, CSVParser parser, boolean convert) {
+            this.lines = lines;
+            this.parser = parser;
+            this.convertedRecords = convert ? new ArrayList<List<Object>>() : null;
+        }
+    }
+    
+    final protected LineNumberReader _lnReader;
+    final protected ParserFactory _parserFactory;
+    final protected int _threads;
+    protected boolean _guessCellValueTypes = false;
+    protected int _rawRecordCount = 0;
+    
+    protected ExecutorService _executor;
+    final protected Deque<Future<Block>> _blocks = new ArrayDeque<Future<Block>>();
+    protected boolean _endOfFile = false;
+    
+    protected Block _currentBlock;
+    protected int _nextRecord;
+    protected List<Object> _carriedRecord;
+    protected long _recordsReturned;
+    
+    ParallelTableDataReader(LineNumberReader lnReader, ParserFactory parserFactory, int threads) {
+        _lnReader = lnReader;
+        _parserFactory = parserFactory;
+        _threads = threads;
+    }
+    
+    @Override
+    public void setGuessCellValueTypes(boolean guessCellValueTypes, int rawRowCount) {
+        _guessCellValueTypes = guessCellValueTypes;
+        _rawRecordCount = rawRowCount;
+    }
+    
+    @Override
+    public List<Object> getNextRowOfCells() throws IOException {
+        while (_currentBlock == null || _nextRecord >= _currentBlock.records.size()) {
+            if (!nextBlock()) {
+                return null;
+            } else if (_carriedRecord != null) {
+                // the record was completed at the start of the new block
+                List<Object> cells = _carriedRecord;
+                _carriedRecord = null;
+                return returnRecord(cells, null);
+            }
+        }
+        
+        int r = _nextRecord++;
+        return returnRecord(
+            _currentBlock.records.get(r),
+            _currentBlock.convertedRecords != null ? _currentBlock.convertedRecords.get(r) : null);
+    }
+    
+    public void close() {
+        if (_executor != null) {
+            _executor.shutdownNow();
+        }
+    }
+    
+    protected List<Object> returnRecord(List<Object> cells, List<Object> convertedCells) {
+        boolean raw = !_guessCellValueTypes || _recordsReturned < _rawRecordCount;
+        _recordsReturned++;
+        if (raw) {
+            return cells;
+        } else {
+            return convertedCells != null ? convertedCells : convert(cells);
+        }
+    }
+    
+    /**
+     * Move on to the next parsed block, finishing any record left pending by
+     * the previous one.
+     * 
+     * @return false if there are no more records
+     */
+    protected boolean nextBlock() throws IOException {
+        Block previous = _currentBlock;
+        _currentBlock = null;
+        _nextRecord = 0;
+        
+        readBlocks();
+        if (_blocks.isEmpty()) {
+            if (previous != null && previous.pendingCells != null) {
+                // unterminated quote at the end of the file
+                previous.pendingCells.addAll(Arrays.asList(previous.parser.parseLineMulti(null)));
+                _carriedRecord = previous.pendingCells;
+                _currentBlock = new Block(new String[0], null, false);
+                return true;
+            }
+            return false;
+        }
+        
+        Block block = getBlock(_blocks.removeFirst());
+        if (previous != null && previous.pendingCells != null) {
+            CSVParser parser = previous.parser;
+            List<Object> cells = previous.pendingCells;
+            int line = 0;
+            while (line < block.lines.length && parser.isPending()) {
+                cells.addAll(Arrays.asList(parser.parseLineMulti(block.lines[line++])));
+            }
+            
+            if (parser.isPending()) {
+                // the record takes up the whole block
+                Block empty = new Block(block.lines, parser, false);
+                empty.pendingCells = cells;
+                _currentBlock = empty;
+            } else {
+                _carriedRecord = cells;
+                _currentBlock = parseBlock(block.lines, line, _parserFactory.createParser(), _guessCellValueTypes);
+            }
+        } else {
+            _currentBlock = block;
+        }
+        return true;
+    }
+    
+    /**
+     * Read lines ahead and submit them for parsing, keeping a bounded
+     * number of blocks in flight.
+     */
+    protected void readBlocks() throws IOException {
+        while (!_endOfFile && _blocks.size() < _threads * 2) {
+            List<String> lines = new ArrayList<String>();
+            int chars = 0;
+            String line;
+            while (lines.size() < MAX_BLOCK_LINES && chars < MAX_BLOCK_CHARS) {
+                line = _lnReader.readLine();
+                if (line == null) {
+                    _endOfFile = true;
+                    break;
+                }
+                lines.add(line);
+                chars += line.length();
+            }
+            
+            if (lines.size() > 0) {
+                final String[] blockLines = lines.toArray(new String[lines.size()]);
+                final CSVParser parser = _parserFactory.createParser();
+                final boolean convert = _guessCellValueTypes;
+                FutureTask<Block> task = new FutureTask<Block>(new Callable<Block>() {
+                    @Override
+                    public Block call() throws Exception {
+                        return parseBlock(blockLines, 0, parser, convert);
+                    }
+                });
+                if (_endOfFile && _executor == null && _blocks.isEmpty()) {
+                    // small files are parsed on the calling thread
+                    task.run();
+                } else {
+                    getExecutor().execute(task);
+                }
+                _blocks.addLast(task);
+            }
+        }
+    }
+    
+    protected ExecutorService getExecutor() {
+        if (_executor == null) {
+            _executor = Executors.newFixedThreadPool(_threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "separator-based-importer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return _executor;
+    }
+    
+    static protected Block getBlock(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+    
+    /**
+     * Parse lines from the given one as if a new record started there, like
+     * {@link SeparatorBasedImporter#getCells} does.
+     */
+    static protected Block parseBlock(String[] lines, int from, CSVParser parser, boolean convert) throws IOException {
+        Block block = new Block(lines, parser, convert);
+        List<Object> cells = null;
+        for (int i = from; i < lines.length; i++) {
+            if (cells == null) {
+                cells = new ArrayList<Object>();
+            }
+            cells.addAll(Arrays.asList(parser.parseLineMulti(lines[i])));
+            if (!parser.isPending()) {
+                block.records.add(cells);
+                if (convert) {
+                    block.convertedRecords.add(convert(cells));
+                }
+                cells = null;
+            }
+        }
+        block.pendingCells = cells;
+        return block;
+    }
+    
+    static protected List<Object> convert(List<Object> cells) {
+        List<Object> converted = new ArrayList<Object>(cells.size());
+        for (Object value : cells) {
+            if (value instanceof String && ((String) value).length() > 0) {
+                converted.add(new Cell(ImporterUtilities.parseCellValue((String) value), null));
+            } else {
+                converted.add(value);
+            }
+        }
+        return converted;
+    }
+}
@@ -34,10 +34,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.google.refine.importers;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
@@ -56,6 +53,7 @@ import org.json.JSONObject;
 
 import au.com.bytecode.opencsv.CSVParser;
 
+import com.google.refine.importing.FileSample;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingUtilities;
 import com.google.refine.model.Project;
@@ -93,6 +91,61 @@ public class SeparatorBasedImporter extends TabularImportingParserBase {
         JSONObject options,
         List<Exception> exceptions
     ) {
+        final JSONObject parserOptions = options;
+        final LineNumberReader lnReader = new LineNumberReader(reader);
+        
+        // a limited read, such as a preview, would only waste the blocks
+        // parsed ahead of the limit
+        int threads = isParsingFilesConcurrently() ? 1 : getParsingThreads();
+        if (threads > 1 && limit <= 0) {
+            ParallelTableDataReader dataReader = new ParallelTableDataReader(
+                lnReader,
+                new ParallelTableDataReader.ParserFactory() {
+                    @Override
+                    public CSVParser createParser() {
+                        return SeparatorBasedImporter.createParser(parserOptions);
+                    }
+                },
+                threads);
+            try {
+                TabularImportingParserBase.readTable(project, metadata, job,
+                    cacheForPreview(job, getClass(), fileSource, limit, options, dataReader),
+                    fileSource, limit, options, exceptions);
+            } finally {
+                dataReader.close();
+            }
+        } else {
+            final CSVParser parser = createParser(options);
+            
+            TableDataReader dataReader = new TableDataReader() {
+                @Override
+                public List<Object> getNextRowOfCells() throws IOException {
+                    String line = lnReader.readLine();
+                    if (line == null) {
+                        return null;
+                    } else {
+                        return getCells(line, parser, lnReader);
+                    }
+                }
+            };
+            
+            TabularImportingParserBase.readTable(project, metadata, job,
+                cacheForPreview(job, getClass(), fileSource, limit, options, dataReader),
+                fileSource, limit, options, exceptions);
+        }
+        super.parseOneFile(project, metadata, job, fileSource, lnReader, limit, options, exceptions);
+    }
+    
+    /**
+     * @return the number of threads parsing lines, or 1 to parse them on the
+     *         importing thread. Not used when the files of a job are parsed
+     *         concurrently.
+     */
+    protected int getParsingThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    static protected CSVParser createParser(JSONObject options) {
         String sep = JSONUtilities.getString(options, "separator", "\\t");
         if (sep == null || "".equals(sep)) {
             sep = "\\t";
@@ -107,30 +160,13 @@ public class SeparatorBasedImporter extends TabularImportingParserBase {
             quote = quoteCharacter.trim().charAt(0);
         }
         
-        final CSVParser parser = new CSVParser(
+        return new CSVParser(
             sep,
             quote,
             (char) 0, // we don't want escape processing
             strictQuotes,
             CSVParser.DEFAULT_IGNORE_LEADING_WHITESPACE,
             !processQuotes);
-        
-        final LineNumberReader lnReader = new LineNumberReader(reader);
-        
-        TableDataReader dataReader = new TableDataReader() {
-            @Override
-            public List<Object> getNextRowOfCells() throws IOException {
-                String line = lnReader.readLine();
-                if (line == null) {
-                    return null;
-                } else {
-                    return getCells(line, parser, lnReader);
-                }
-            }
-        };
-        
-        TabularImportingParserBase.readTable(project, metadata, job, dataReader, fileSource, limit, options, exceptions);
-        super.parseOneFile(project, metadata, job, fileSource, lnReader, limit, options, exceptions);
     }
     
     static protected ArrayList<Object> getCells(String line, CSVParser parser, LineNumberReader lnReader)
@@ -153,7 +189,14 @@ public class SeparatorBasedImporter extends TabularImportingParserBase {
             String location = JSONUtilities.getString(fileRecord, "location", null);
             
             if (location != null) {
-                File file = new File(job.getRawDataDir(), location);
+                File file;
+                try {
+                    file = ImportingUtilities.getFile(job, fileRecord);
+                } catch (IOException e) {
+                    // the error is reported when the file is parsed
+                    logger.warn("Could not guess a separator", e);
+                    continue;
+                }
                 // Quotes are turned on by default, so use that for guessing
                 Separator separator = guessSeparator(file, encoding, true);
                 if (separator != null) {
@@ -181,8 +224,7 @@ public class SeparatorBasedImporter extends TabularImportingParserBase {
     // TODO: Move this to the CSV project?
     static public Separator guessSeparator(File file, String encoding, boolean handleQuotes) {
         try {
-            InputStream is = new FileInputStream(file);
-            Reader reader = encoding != null ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
+            Reader reader = FileSample.get(file, encoding).getReader();
             LineNumberReader lineNumberReader = new LineNumberReader(reader);
 
             try {
@@ -260,7 +302,6 @@ public class SeparatorBasedImporter extends TabularImportingParserBase {
             } finally {
                 lineNumberReader.close();
                 reader.close();
-                is.close();
             }
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
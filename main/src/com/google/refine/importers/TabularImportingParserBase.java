@@ -37,12 +37,16 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.json.JSONObject;
 
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.importing.ImportingJob;
+import com.google.refine.importing.PreviewRecordCache;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
@@ -55,6 +59,110 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
         public List<Object> getNextRowOfCells() throws IOException;
     }
     
+    /**
+     * A reader which guesses cell value types itself, returning {@link Cell}s
+     * for the data rows, so that it can do so ahead of time or concurrently.
+     */
+    static public interface TypeGuessingTableDataReader extends TableDataReader {
+        /**
+         * Called before reading any row.
+         * 
+         * @param rawRowCount
+         *            number of rows to return unconverted since they are
+         *            ignored or hold column names
+         */
+        public void setGuessCellValueTypes(boolean guessCellValueTypes, int rawRowCount);
+    }
+    
+    /**
+     * Options which readTable applies to the rows it gets, rather than the
+     * parsers to the way they split their files into rows.
+     */
+    static final protected Set<String> ROW_OPTIONS = new HashSet<String>(Arrays.asList(
+        "ignoreLines", "headerLines", "skipDataLines", "limit", "guessCellValueTypes",
+        "storeBlankRows", "storeBlankCellsAsNulls", "includeFileSources", "fileSource", "sheets"));
+    
+    /**
+     * Returns rows recorded by previous previews of the same file with the
+     * same parsing options, reading on from the given reader only past them.
+     * The rows are returned as read, leaving type guessing to readTable.
+     */
+    static protected class PreviewCachingTableDataReader implements TableDataReader {
+        final protected PreviewRecordCache.Records _cached;
+        final protected TableDataReader _reader;
+        protected int _next = 0;
+        protected int _read = 0;
+        
+        public PreviewCachingTableDataReader(PreviewRecordCache.Records cached, TableDataReader reader) {
+            _cached = cached;
+            _reader = reader;
+        }
+        
+        @Override
+        public List<Object> getNextRowOfCells() throws IOException {
+            synchronized (_cached) {
+                if (_next < _cached.records.size()) {
+                    return _cached.records.get(_next++);
+                } else if (_cached.complete) {
+                    return null;
+                }
+            }
+            
+            for (; _read < _next; _read++) {
+                if (_reader.getNextRowOfCells() == null) {
+                    return null;
+                }
+            }
+            List<Object> cells = _reader.getNextRowOfCells();
+            _read++;
+            synchronized (_cached) {
+                if (_cached.records.size() == _next) {
+                    if (cells == null) {
+                        _cached.complete = true;
+                    } else if (_next < PreviewRecordCache.MAX_RECORDS) {
+                        _cached.records.add(cells);
+                    }
+                }
+            }
+            if (cells != null) {
+                _next++;
+            }
+            return cells;
+        }
+    }
+    
+    /**
+     * Wrap the reader of a file so that previews (with a positive limit)
+     * reuse the rows read by earlier ones while only row options change.
+     * 
+     * @param parser the parser splitting the file into rows
+     */
+    static protected TableDataReader cacheForPreview(
+        ImportingJob job,
+        Class<?> parser,
+        String fileSource,
+        int limit,
+        JSONObject options,
+        TableDataReader reader
+    ) {
+        if (limit <= 0) {
+            return reader;
+        }
+        
+        StringBuilder key = new StringBuilder(parser.getName()).append('#').append(fileSource);
+        String[] names = JSONObject.getNames(options);
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (!ROW_OPTIONS.contains(name)) {
+                    key.append('\n').append(name).append('=').append(options.opt(name));
+                }
+            }
+        }
+        return new PreviewCachingTableDataReader(
+            job.getPreviewRecordCache().get(key.toString()), reader);
+    }
+    
     @Override
     public JSONObject createParserUIInitializationData(ImportingJob job,
             List<JSONObject> fileRecords, String format) {
@@ -101,6 +209,10 @@ abstract public class TabularImportingParserBase extends ImportingParserBase {
         }
         
         boolean guessCellValueTypes = JSONUtilities.getBoolean(options, "guessCellValueTypes", false);
+        if (reader instanceof TypeGuessingTableDataReader) {
+            ((TypeGuessingTableDataReader) reader).setGuessCellValueTypes(
+                guessCellValueTypes, Math.max(0, ignoreLines) + Math.max(0, headerLines));
+        }
         
         boolean storeBlankRows = JSONUtilities.getBoolean(options, "storeBlankRows", true);
         boolean storeBlankCellsAsNulls = JSONUtilities.getBoolean(options, "storeBlankCellsAsNulls", true);
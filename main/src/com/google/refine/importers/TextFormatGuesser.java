@@ -1,13 +1,11 @@
 package com.google.refine.importers;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 
+import com.google.refine.importing.FileSample;
 import com.google.refine.importing.FormatGuesser;
 
 public class TextFormatGuesser implements FormatGuesser {
@@ -15,8 +13,7 @@ public class TextFormatGuesser implements FormatGuesser {
     @Override
     public String guess(File file, String encoding, String seedFormat) {
         try {
-            InputStream is = new FileInputStream(file);
-            Reader reader = encoding != null ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
+            Reader reader = FileSample.get(file, encoding).getReader();
 
             try {
                 int totalBytes = 0;
@@ -70,7 +67,6 @@ public class TextFormatGuesser implements FormatGuesser {
                 return "text/line-based";
             } finally {
                 reader.close();
-                is.close();
             }
         } catch (UnsupportedEncodingException e) {
             e.printStackTrace();
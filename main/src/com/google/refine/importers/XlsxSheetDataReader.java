@@ -0,0 +1,456 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+
+import com.google.refine.importers.TabularImportingParserBase.TableDataReader;
+import com.google.refine.model.Recon;
+
+/**
+ * Reads the rows of an .xlsx worksheet one at a time from the sheet's XML,
+ * so that memory use does not depend on the size of the sheet. Only the
+ * shared strings and the date styles of the workbook are kept in memory.
+ * <p>
+ * Cells get the same values as when reading the sheet with
+ * {@code XSSFWorkbook}: formulas give their cached results, numbers in a
+ * date format give dates, and the cells covered by a merged region other
+ * than its top left one are blank.
+ */
+public class XlsxSheetDataReader implements TableDataReader {
+    
+    static final private String RELATION_SHARED_STRINGS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings";
+    static final private String RELATION_STYLES =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles";
+    static final private String RELATION_HYPERLINK =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/hyperlink";
+    
+    static public class Sheet {
+        final public String name;
+        final public PackagePart part;
+        
+        Sheet(String name, PackagePart part) {
+            this.name = name;
+            this.part = part;
+        }
+    }
+    
+    static final private XMLInputFactory factory = XMLInputFactory.newInstance();
+    static {
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+    
+    final protected XMLStreamReader _parser;
+    final protected List<String> _strings;
+    final protected boolean[] _dateStyles;
+    final protected Map<String, String> _hyperlinks;
+    final protected Map<String, Recon> _reconMap;
+    
+    protected int _nextRow = 0;
+    protected int _pendingRowIndex = -1;
+    protected List<Object> _pendingRow;
+    
+    public XlsxSheetDataReader(
+        InputStream sheetData,
+        List<String> strings,
+        boolean[] dateStyles,
+        Map<String, String> hyperlinks,
+        Map<String, Recon> reconMap
+    ) throws XMLStreamException {
+        _parser = factory.createXMLStreamReader(sheetData);
+        _strings = strings;
+        _dateStyles = dateStyles;
+        _hyperlinks = hyperlinks;
+        _reconMap = reconMap;
+    }
+    
+    @Override
+    public List<Object> getNextRowOfCells() throws IOException {
+        try {
+            if (_pendingRow == null && !readRow()) {
+                return null;
+            }
+            
+            List<Object> cells;
+            if (_pendingRowIndex > _nextRow) {
+                // rows without any cell are missing from the sheet
+                cells = new ArrayList<Object>();
+            } else {
+                cells = _pendingRow;
+                _pendingRow = null;
+            }
+            _nextRow++;
+            return cells;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    protected boolean readRow() throws XMLStreamException {
+        while (_parser.hasNext()) {
+            if (_parser.next() == XMLStreamConstants.START_ELEMENT && "row".equals(_parser.getLocalName())) {
+                String r = _parser.getAttributeValue(null, "r");
+                _pendingRowIndex = r != null ? Integer.parseInt(r) - 1 : _nextRow;
+                _pendingRow = readCells();
+                return true;
+            }
+        }
+        _parser.close();
+        return false;
+    }
+    
+    protected List<Object> readCells() throws XMLStreamException {
+        List<Object> cells = new ArrayList<Object>();
+        int column = -1;
+        while (_parser.hasNext()) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(_parser.getLocalName())) {
+                break;
+            } else if (event == XMLStreamConstants.START_ELEMENT && "c".equals(_parser.getLocalName())) {
+                String ref = _parser.getAttributeValue(null, "r");
+                column = ref != null ? new CellReference(ref).getCol() : column + 1;
+                
+                Serializable value = readCellValue();
+                while (cells.size() <= column) {
+                    cells.add(null);
+                }
+                if (value != null) {
+                    String url = null;
+                    if (_hyperlinks != null && !_hyperlinks.isEmpty()) {
+                        url = _hyperlinks.get(ref != null ? ref :
+                            new CellReference(_pendingRowIndex, column).formatAsString());
+                    }
+                    cells.set(column, ExcelImporter.createCell(value, url, _reconMap));
+                }
+            }
+        }
+        return cells;
+    }
+    
+    /**
+     * Read the value of the current {@code c} element.
+     */
+    protected Serializable readCellValue() throws XMLStreamException {
+        String type = _parser.getAttributeValue(null, "t");
+        String style = _parser.getAttributeValue(null, "s");
+        
+        String text = null;
+        StringBuilder inlineText = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = _parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = _parser.getLocalName();
+                if ("v".equals(name)) {
+                    text = _parser.getElementText();
+                } else if ("f".equals(name)) {
+                    _parser.getElementText();
+                } else if ("is".equals(name)) {
+                    inlineText = new StringBuilder();
+                    depth++;
+                } else if ("t".equals(name) && inlineText != null) {
+                    inlineText.append(_parser.getElementText());
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        
+        if ("inlineStr".equals(type)) {
+            return inlineText != null && inlineText.length() > 0 ? inlineText.toString() : null;
+        } else if (text == null || "e".equals(type)) {
+            return null;
+        } else if ("s".equals(type)) {
+            String s = _strings.get(Integer.parseInt(text.trim()));
+            return s != null && s.length() > 0 ? s : null;
+        } else if ("str".equals(type)) {
+            return text.length() > 0 ? text : null;
+        } else if ("b".equals(type)) {
+            return "1".equals(text.trim());
+        } else if (text.trim().isEmpty()) {
+            return null;
+        } else {
+            double d = Double.parseDouble(text);
+            // like XSSFCell, cells without a style have the default one
+            if (DateUtil.isValidExcelDate(d) && isDateStyle(style != null ? Integer.parseInt(style) : 0)) {
+                return DateUtil.getJavaDate(d);
+            }
+            return d;
+        }
+    }
+    
+    protected boolean isDateStyle(int styleIndex) {
+        return styleIndex < _dateStyles.length && _dateStyles[styleIndex];
+    }
+    
+    /**
+     * @return the sheets of the workbook, in order
+     */
+    static public List<Sheet> readSheets(OPCPackage pkg) throws IOException, InvalidFormatException, XMLStreamException {
+        PackagePart workbookPart = getWorkbookPart(pkg);
+        List<Sheet> sheets = new ArrayList<Sheet>();
+        InputStream is = workbookPart.getInputStream();
+        try {
+            XMLStreamReader parser = factory.createXMLStreamReader(is);
+            while (parser.hasNext()) {
+                if (parser.next() == XMLStreamConstants.START_ELEMENT && "sheet".equals(parser.getLocalName())) {
+                    String id = getRelationshipId(parser);
+                    PackageRelationship relationship = id != null ? workbookPart.getRelationship(id) : null;
+                    if (relationship != null) {
+                        sheets.add(new Sheet(
+                            parser.getAttributeValue(null, "name"),
+                            workbookPart.getRelatedPart(relationship)));
+                    }
+                }
+            }
+            parser.close();
+        } finally {
+            is.close();
+        }
+        return sheets;
+    }
+    
+    static public List<String> readSharedStrings(OPCPackage pkg) throws IOException, InvalidFormatException, XMLStreamException {
+        List<String> strings = new ArrayList<String>();
+        PackagePart part = getWorkbookRelatedPart(pkg, RELATION_SHARED_STRINGS);
+        if (part == null) {
+            return strings;
+        }
+        
+        InputStream is = part.getInputStream();
+        try {
+            XMLStreamReader parser = factory.createXMLStreamReader(is);
+            StringBuilder sb = null;
+            int phoneticDepth = 0;
+            while (parser.hasNext()) {
+                int event = parser.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = parser.getLocalName();
+                    if ("si".equals(name)) {
+                        sb = new StringBuilder();
+                    } else if ("rPh".equals(name)) {
+                        phoneticDepth++;
+                    } else if ("t".equals(name) && sb != null && phoneticDepth == 0) {
+                        sb.append(parser.getElementText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = parser.getLocalName();
+                    if ("si".equals(name)) {
+                        strings.add(sb.toString());
+                        sb = null;
+                    } else if ("rPh".equals(name)) {
+                        phoneticDepth--;
+                    }
+                }
+            }
+            parser.close();
+        } finally {
+            is.close();
+        }
+        return strings;
+    }
+    
+    /**
+     * @return for each cell style of the workbook, whether its number format
+     *         is a date format
+     */
+    static public boolean[] readDateStyles(OPCPackage pkg) throws IOException, InvalidFormatException, XMLStreamException {
+        PackagePart part = getWorkbookRelatedPart(pkg, RELATION_STYLES);
+        if (part == null) {
+            return new boolean[0];
+        }
+        
+        Map<Integer, String> formats = new HashMap<Integer, String>();
+        List<Boolean> dateStyles = new ArrayList<Boolean>();
+        InputStream is = part.getInputStream();
+        try {
+            XMLStreamReader parser = factory.createXMLStreamReader(is);
+            boolean inCellStyles = false;
+            while (parser.hasNext()) {
+                int event = parser.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = parser.getLocalName();
+                    if ("numFmt".equals(name)) {
+                        formats.put(
+                            Integer.parseInt(parser.getAttributeValue(null, "numFmtId")),
+                            parser.getAttributeValue(null, "formatCode"));
+                    } else if ("cellXfs".equals(name)) {
+                        inCellStyles = true;
+                    } else if ("xf".equals(name) && inCellStyles) {
+                        String id = parser.getAttributeValue(null, "numFmtId");
+                        int formatId = id != null ? Integer.parseInt(id) : 0;
+                        String format = formats.containsKey(formatId) ?
+                                formats.get(formatId) : BuiltinFormats.getBuiltinFormat(formatId);
+                        dateStyles.add(DateUtil.isADateFormat(formatId, format));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "cellXfs".equals(parser.getLocalName())) {
+                    inCellStyles = false;
+                }
+            }
+            parser.close();
+        } finally {
+            is.close();
+        }
+        
+        boolean[] result = new boolean[dateStyles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = dateStyles.get(i);
+        }
+        return result;
+    }
+    
+    static private PackagePart getWorkbookPart(OPCPackage pkg) throws InvalidFormatException {
+        PackageRelationshipCollection relationships =
+                pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT);
+        if (relationships.size() == 0) {
+            throw new InvalidFormatException("No workbook found in the package");
+        }
+        return pkg.getPart(relationships.getRelationship(0));
+    }
+    
+    static private PackagePart getWorkbookRelatedPart(OPCPackage pkg, String relationshipType)
+            throws InvalidFormatException {
+        PackagePart workbookPart = getWorkbookPart(pkg);
+        PackageRelationshipCollection relationships = workbookPart.getRelationshipsByType(relationshipType);
+        return relationships.size() > 0 ? workbookPart.getRelatedPart(relationships.getRelationship(0)) : null;
+    }
+    
+    static private String getRelationshipId(XMLStreamReader parser) {
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if ("id".equals(parser.getAttributeLocalName(i))) {
+                return parser.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Collect the external hyperlinks of a sheet, by the reference of the
+     * cell they are attached to. This takes an extra pass over the sheet,
+     * since hyperlinks come after the cells, so it is only done for sheets
+     * which have any.
+     */
+    static public Map<String, String> readHyperlinks(PackagePart sheetPart) throws IOException, XMLStreamException {
+        PackageRelationshipCollection relationships;
+        try {
+            relationships = sheetPart.getRelationshipsByType(RELATION_HYPERLINK);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+        if (relationships.size() == 0) {
+            return Collections.emptyMap();
+        }
+        
+        Map<String, String> hyperlinks = new HashMap<String, String>();
+        InputStream is = sheetPart.getInputStream();
+        try {
+            XMLStreamReader parser = factory.createXMLStreamReader(is);
+            while (parser.hasNext()) {
+                if (parser.next() == XMLStreamConstants.START_ELEMENT && "hyperlink".equals(parser.getLocalName())) {
+                    String ref = parser.getAttributeValue(null, "ref");
+                    String id = getRelationshipId(parser);
+                    PackageRelationship relationship = id != null ? relationships.getRelationshipByID(id) : null;
+                    if (ref != null && relationship != null) {
+                        hyperlinks.put(ref, relationship.getTargetURI().toString());
+                    }
+                }
+            }
+            parser.close();
+        } finally {
+            is.close();
+        }
+        return hyperlinks;
+    }
+    
+    /**
+     * @return the number of rows of a sheet, from its first row to its last
+     *         one, as recorded in its dimension or else by going through them
+     */
+    static public int readRowCount(InputStream sheetData) throws XMLStreamException {
+        XMLStreamReader parser = factory.createXMLStreamReader(sheetData);
+        try {
+            int firstRow = -1;
+            int lastRow = -1;
+            while (parser.hasNext()) {
+                if (parser.next() == XMLStreamConstants.START_ELEMENT) {
+                    String name = parser.getLocalName();
+                    if ("dimension".equals(name)) {
+                        String ref = parser.getAttributeValue(null, "ref");
+                        if (ref != null) {
+                            String[] corners = ref.split(":");
+                            int first = new CellReference(corners[0]).getRow();
+                            int last = new CellReference(corners[corners.length - 1]).getRow();
+                            return last - first + 1;
+                        }
+                    } else if ("row".equals(name)) {
+                        String r = parser.getAttributeValue(null, "r");
+                        lastRow = r != null ? Integer.parseInt(r) - 1 : lastRow + 1;
+                        if (firstRow < 0) {
+                            firstRow = lastRow;
+                        }
+                    }
+                }
+            }
+            return firstRow < 0 ? 1 : lastRow - firstRow + 1;
+        } finally {
+            parser.close();
+        }
+    }
+}
@@ -168,7 +168,7 @@ public abstract class TreeImportUtilities {
     }
 
 
-    static protected ImportColumn getColumn(
+    static public ImportColumn getColumn(
             Project project,
             ImportColumnGroup columnGroup,
             String localName
@@ -200,7 +200,7 @@ public abstract class TreeImportUtilities {
         return newColumn;
     }
 
-    static protected ImportColumnGroup getColumnGroup(
+    static public ImportColumnGroup getColumnGroup(
             Project project,
             ImportColumnGroup columnGroup,
             String localName
@@ -194,17 +194,7 @@ abstract public class TreeImportingParserBase extends ImportingParserBase {
         List<Exception> exceptions
     ) {
         String[] recordPath = JSONUtilities.getStringArray(options, "recordPath");
-        int limit2 = JSONUtilities.getInt(options, "limit", -1);
-        if (limit > 0) {
-            if (limit2 > 0) {
-                limit2 = Math.min(limit, limit2);
-            } else {
-                limit2 = limit;
-            }
-        }
-        if (limit2 == 0) { // shouldn't really happen, but be sure since 0 is stop signal
-            limit2 = -1;
-        }
+        int limit2 = getRecordLimit(limit, options);
 
         // NOTE: these defaults are solely to preserve historical behavior.
         // All new code should override them to keep input data from being modified
@@ -224,4 +214,23 @@ abstract public class TreeImportingParserBase extends ImportingParserBase {
                 new ImportParameters(trimStrings, storeEmptyStrings, guessCellValueTypes, includeFileSources,
                         fileSource));
     }
+    
+    /**
+     * @return the number of records to import from one file, combining the
+     *         limit of the caller with the one of the options, or -1 for all
+     */
+    static protected int getRecordLimit(int limit, JSONObject options) {
+        int limit2 = JSONUtilities.getInt(options, "limit", -1);
+        if (limit > 0) {
+            if (limit2 > 0) {
+                limit2 = Math.min(limit, limit2);
+            } else {
+                limit2 = limit;
+            }
+        }
+        if (limit2 == 0) { // shouldn't really happen, but be sure since 0 is stop signal
+            limit2 = -1;
+        }
+        return limit2;
+    }
 }
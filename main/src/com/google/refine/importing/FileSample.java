@@ -0,0 +1,136 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The decoded head of a file, which format guessers and the separator and
+ * column width guessers read instead of opening the file themselves. The
+ * sample is decoded once and cached, so however many guessers look at a
+ * file it costs a single small read.
+ */
+public class FileSample {
+    /**
+     * Number of characters decoded from the start of the file. The sample then
+     * runs on to the end of the line it stopped in, up to twice this size.
+     */
+    static final public int SAMPLE_SIZE = 64 * 1024;
+
+    static final private int MAX_CACHED_SAMPLES = 8;
+
+    static final private Map<String, FileSample> samples = new LinkedHashMap<String, FileSample>(16, 0.75f, true) {
+        private static final long serialVersionUID = 2816377440271523658L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileSample> eldest) {
+            return size() > MAX_CACHED_SAMPLES;
+        }
+    };
+
+    final protected String text;
+
+    protected FileSample(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Reader getReader() {
+        return new StringReader(text);
+    }
+
+    /**
+     * Returns the sample of a file decoded with the given encoding, or the
+     * platform default if it is null. A file that has changed since it was
+     * sampled is read again.
+     */
+    static public FileSample get(File file, String encoding) throws IOException {
+        String key = file.getAbsolutePath() + "\u0000" + (encoding == null ? "" : encoding)
+                + "\u0000" + file.length() + "\u0000" + file.lastModified();
+
+        synchronized (samples) {
+            FileSample sample = samples.get(key);
+            if (sample != null) {
+                return sample;
+            }
+        }
+
+        FileSample sample = new FileSample(read(file, encoding));
+        synchronized (samples) {
+            samples.put(key, sample);
+        }
+        return sample;
+    }
+
+    static protected String read(File file, String encoding) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            Reader reader = encoding != null ? new InputStreamReader(is, encoding) : new InputStreamReader(is);
+            try {
+                StringBuilder sb = new StringBuilder();
+                char[] chars = new char[4096];
+                int c;
+                while (sb.length() < SAMPLE_SIZE && (c = reader.read(chars)) > 0) {
+                    sb.append(chars, 0, c);
+                }
+                // finish the last line so line-based guessers see it whole
+                if (sb.length() >= SAMPLE_SIZE && sb.charAt(sb.length() - 1) != '\n') {
+                    int ch;
+                    while (sb.length() < 2 * SAMPLE_SIZE && (ch = reader.read()) >= 0) {
+                        sb.append((char) ch);
+                        if (ch == '\n') {
+                            break;
+                        }
+                    }
+                }
+                return sb.toString();
+            } finally {
+                reader.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -67,6 +67,8 @@ public class ImportingJob implements Jsonizable {
     
     final private Object lock = new Object();
     
+    private PreviewRecordCache previewRecordCache;
+    
     public ImportingJob(long id, File dir) {
         this.id = id;
         this.dir = dir;
@@ -187,7 +189,25 @@ public class ImportingJob implements Jsonizable {
         metadata = new ProjectMetadata();
     }
     
+    /**
+     * @return the records kept from previous previews of this job
+     */
+    public PreviewRecordCache getPreviewRecordCache() {
+        synchronized (lock) {
+            if (previewRecordCache == null) {
+                previewRecordCache = new PreviewRecordCache();
+            }
+            return previewRecordCache;
+        }
+    }
+    
     public void dispose() {
+        synchronized (lock) {
+            if (previewRecordCache != null) {
+                previewRecordCache.clear();
+                previewRecordCache = null;
+            }
+        }
         if (project != null) {
             project.dispose();
             project = null;
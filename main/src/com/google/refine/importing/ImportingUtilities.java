@@ -45,18 +45,24 @@ import java.io.UnsupportedEncodingException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.Random;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import javax.servlet.ServletException;
@@ -93,6 +99,7 @@ import com.google.refine.RefineServlet;
 import com.google.refine.importing.ImportingManager.Format;
 import com.google.refine.importing.UrlRewriter.Result;
 import com.google.refine.model.Cell;
+import com.google.refine.model.ChunkedRowStore;
 import com.google.refine.model.Column;
 import com.google.refine.model.ColumnModel;
 import com.google.refine.model.Project;
@@ -119,6 +126,11 @@ public class ImportingUtilities {
 
     private static final int INFER_ROW_LIMIT = 100;
     
+    /**
+     * Custom metadata key of the column types inferred at import, by column name
+     */
+    static final public String INFERRED_COLUMN_TYPES = "inferredColumnTypes";
+    
     static public interface Progress {
         public void setProgress(String message, int percent);
         public boolean isCanceled();
@@ -321,7 +333,7 @@ public class ImportingUtilities {
                         "Saving file " + fileName + " locally (" + formatBytes(fileSize) + " bytes)",
                         calculateProgressPercent(update.totalExpectedSize, update.totalRetrievedSize));
                     
-                    JSONUtilities.safePut(fileRecord, "size", saveStreamToFile(stream, file, null));
+                    JSONUtilities.safePut(fileRecord, "size", saveFileItemToFile(fileItem, stream, file));
                     if (postProcessRetrievedFile(rawDataDir, file, fileRecord, fileRecords, progress)) {
                         JSONUtilities.safeInc(retrievalRecord, "archiveCount");
                     }
@@ -539,9 +551,9 @@ public class ImportingUtilities {
     }
     
     static public Reader getFileReader(ImportingJob job, JSONObject fileRecord, String commonEncoding)
-        throws FileNotFoundException {
+        throws IOException {
         
-        return getFileReader(getFile(job, JSONUtilities.getString(fileRecord, "location", "")), fileRecord, commonEncoding);
+        return getFileReader(getFile(job, fileRecord), fileRecord, commonEncoding);
     }
     
     static public Reader getFileReader(File file, JSONObject fileRecord, String commonEncoding) throws FileNotFoundException {
@@ -563,8 +575,21 @@ public class ImportingUtilities {
         return new InputStreamReader(inputStream);
     }
     
-    static public File getFile(ImportingJob job, JSONObject fileRecord) {
-        return getFile(job, JSONUtilities.getString(fileRecord, "location", ""));
+    /**
+     * Returns the file holding the content of a file record, first extracting
+     * it if it is a zip member that nothing has read yet.
+     * 
+     * @throws IOException if the member could not be extracted, rather than
+     * leaving its empty placeholder to be read as if the member were empty
+     */
+    static public File getFile(ImportingJob job, JSONObject fileRecord) throws IOException {
+        File file = getFile(job, JSONUtilities.getString(fileRecord, "location", ""));
+        try {
+            extractArchiveMember(job.getRawDataDir(), fileRecord, file);
+        } catch (IOException e) {
+            throw new IOException("Could not extract " + getFileSource(fileRecord) + ": " + e.getMessage(), e);
+        }
+        return file;
     }
     
     static public File getFile(ImportingJob job, String location) {
@@ -586,14 +611,37 @@ public class ImportingUtilities {
         abstract public void savedMore();
         abstract public boolean isCanceled();
     }
+    /**
+     * Number of bytes moved per channel transfer, between which progress is
+     * reported and cancellation is checked.
+     */
+    static final private long TRANSFER_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Saves an uploaded file. An upload that the file upload library has
+     * already spooled to disk is moved into place rather than copied.
+     */
+    static private long saveFileItemToFile(FileItem fileItem, InputStream stream, File file) throws Exception {
+        if (fileItem.isInMemory()) {
+            return saveStreamToFile(stream, file, null);
+        }
+        // the temp file can't be renamed on every platform while it is open
+        stream.close();
+        fileItem.write(file);
+        return file.length();
+    }
+
     static public long saveStreamToFile(InputStream stream, File file, SavingUpdate update) throws IOException {
         long length = 0;
         FileOutputStream fos = new FileOutputStream(file);
         try {
-            byte[] bytes = new byte[16*1024];
-            int c;
-            while ((update == null || !update.isCanceled()) && (c = stream.read(bytes)) > 0) {
-                fos.write(bytes, 0, c);
+            FileChannel out = fos.getChannel();
+            // a file on disk can be copied by the kernel without passing through the heap
+            ReadableByteChannel in = stream instanceof FileInputStream ?
+                    ((FileInputStream) stream).getChannel() : Channels.newChannel(stream);
+            long c;
+            while ((update == null || !update.isCanceled())
+                    && (c = out.transferFrom(in, length, TRANSFER_CHUNK_SIZE)) > 0) {
                 length += c;
 
                 if (update != null) {
@@ -613,6 +661,10 @@ public class ImportingUtilities {
         String mimeType = JSONUtilities.getString(fileRecord, "declaredMimeType", null);
         String contentEncoding = JSONUtilities.getString(fileRecord, "declaredEncoding", null);
         
+        if (isZipArchive(file.getName(), contentEncoding) && listZipArchive(rawDataDir, file, fileRecord, fileRecords)) {
+            return true;
+        }
+        
         InputStream archiveIS = tryOpenAsArchive(file, mimeType, contentEncoding);
         if (archiveIS != null) {
             try {
@@ -676,13 +728,7 @@ public class ImportingUtilities {
                 return new TarInputStream(new CBZip2InputStream(new FileInputStream(file)));
             } else if (fileName.endsWith(".tar") || "application/x-tar".equals(contentType)) {
                 return new TarInputStream(new FileInputStream(file));
-            } else if (fileName.endsWith(".zip") 
-                    || "application/x-zip-compressed".equals(contentType)
-                    || "application/zip".equals(contentType) 
-                    || "application/x-compressed".equals(contentType)
-                    || "multipar/x-zip".equals(contentType)) {
-                return new ZipInputStream(new FileInputStream(file));
-            } else if (fileName.endsWith(".kmz")) {
+            } else if (isZipArchive(fileName, contentType)) {
                 return new ZipInputStream(new FileInputStream(file));
             }
         } catch (IOException e) {
@@ -690,6 +736,115 @@ public class ImportingUtilities {
         return null;
     }
     
+    static private boolean isZipArchive(String fileName, String contentType) {
+        return fileName.endsWith(".zip") 
+                || fileName.endsWith(".kmz")
+                || "application/x-zip-compressed".equals(contentType)
+                || "application/zip".equals(contentType) 
+                || "application/x-compressed".equals(contentType)
+                || "multipar/x-zip".equals(contentType);
+    }
+    
+    /**
+     * Adds a file record for each member of a zip archive, reading only the
+     * archive's central directory. Each member gets an empty file reserving its
+     * location and is extracted by {@link #getFile(ImportingJob, JSONObject)}
+     * the first time it is read, so members that are never selected are never
+     * decompressed. The archive itself is kept for that purpose.
+     * 
+     * @return false if the file could not be read as a zip archive
+     */
+    static public boolean listZipArchive(
+        File rawDataDir,
+        File archiveFile,
+        JSONObject archiveFileRecord,
+        JSONArray fileRecords
+    ) {
+        ZipFile zipFile;
+        try {
+            zipFile = new ZipFile(archiveFile);
+        } catch (IOException e) {
+            return false;
+        }
+        List<JSONObject> memberRecords = new ArrayList<JSONObject>();
+        List<File> memberFiles = new ArrayList<File>();
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry ze = entries.nextElement();
+                if (!ze.isDirectory()) {
+                    String fileName2 = ze.getName();
+                    File file2 = allocateFile(rawDataDir, fileName2);
+                    memberFiles.add(file2);
+                    file2.createNewFile();
+                    
+                    JSONObject fileRecord2 = new JSONObject();
+                    JSONUtilities.safePut(fileRecord2, "origin", JSONUtilities.getString(archiveFileRecord, "origin", null));
+                    JSONUtilities.safePut(fileRecord2, "declaredEncoding", (String) null);
+                    JSONUtilities.safePut(fileRecord2, "declaredMimeType", (String) null);
+                    JSONUtilities.safePut(fileRecord2, "fileName", fileName2);
+                    JSONUtilities.safePut(fileRecord2, "archiveFileName", JSONUtilities.getString(archiveFileRecord, "fileName", null));
+                    JSONUtilities.safePut(fileRecord2, "archiveLocation", getRelativePath(archiveFile, rawDataDir));
+                    JSONUtilities.safePut(fileRecord2, "archiveEntry", fileName2);
+                    JSONUtilities.safePut(fileRecord2, "location", getRelativePath(file2, rawDataDir));
+                    JSONUtilities.safePut(fileRecord2, "size", Math.max(0, ze.getSize()));
+                    postProcessSingleRetrievedFile(file2, fileRecord2);
+                    
+                    memberRecords.add(fileRecord2);
+                }
+            }
+        } catch (IOException e) {
+            // leave the archive to be read as a stream rather than list part of it
+            logger.error("Could not list the members of zip archive " + archiveFile.getName(), e);
+            for (File file2 : memberFiles) {
+                file2.delete();
+            }
+            return false;
+        } finally {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        for (JSONObject fileRecord2 : memberRecords) {
+            JSONUtilities.append(fileRecords, fileRecord2);
+        }
+        return true;
+    }
+    
+    /**
+     * Extracts a member listed by {@link #listZipArchive} into its reserved
+     * file, unless that has already been done.
+     */
+    static protected void extractArchiveMember(File rawDataDir, JSONObject fileRecord, File file) throws IOException {
+        synchronized (fileRecord) {
+            String archiveLocation = JSONUtilities.getString(fileRecord, "archiveLocation", null);
+            String entryName = JSONUtilities.getString(fileRecord, "archiveEntry", null);
+            if (archiveLocation == null || entryName == null) {
+                return;
+            }
+            
+            ZipFile zipFile = new ZipFile(new File(rawDataDir, archiveLocation));
+            try {
+                ZipEntry ze = zipFile.getEntry(entryName);
+                if (ze == null) {
+                    throw new IOException("Missing archive member " + entryName);
+                }
+                InputStream is = zipFile.getInputStream(ze);
+                try {
+                    JSONUtilities.safePut(fileRecord, "size", saveStreamToFile(is, file, null));
+                } finally {
+                    is.close();
+                }
+            } finally {
+                zipFile.close();
+            }
+            fileRecord.remove("archiveLocation");
+            fileRecord.remove("archiveEntry");
+        }
+    }
+    
     static public boolean explodeArchive(
         File rawDataDir,
         InputStream archiveIS,
@@ -943,7 +1098,14 @@ public class ImportingUtilities {
             String location = JSONUtilities.getString(firstFileRecord, "location", null);
             
             if (location != null) {
-                File file = new File(job.getRawDataDir(), location);
+                File file;
+                try {
+                    file = getFile(job, firstFileRecord);
+                } catch (IOException e) {
+                    // the error is reported when the file is parsed
+                    logger.warn("Could not guess a better format", e);
+                    return bestFormat;
+                }
                 
                 while (true) {
                     String betterFormat = null;
@@ -1065,7 +1227,7 @@ public class ImportingUtilities {
         
         job.setState("creating-project");
         
-        final Project project = new Project();
+        final Project project = createImportProject(job, optionObj);
         if (synchronous) {
             createProjectSynchronously(
                 job, format, optionObj, exceptions, record, project);
@@ -1090,31 +1252,48 @@ public class ImportingUtilities {
         final Project project
     ) {
         ProjectMetadata pm = createProjectMetadata(optionObj);
-        record.parser.parse(
-            project,
-            pm,
-            job,
-            job.getSelectedFileRecords(),
-            format,
-            -1,
-            optionObj,
-            exceptions
-        );
+        // some parsers fill in rows after adding them
+        ChunkedRowStore rowStore = project.rows instanceof ChunkedRowStore ? (ChunkedRowStore) project.rows : null;
+        if (rowStore != null) {
+            rowStore.beginChanges();
+        }
+        try {
+            record.parser.parse(
+                project,
+                pm,
+                job,
+                job.getSelectedFileRecords(),
+                format,
+                -1,
+                optionObj,
+                exceptions
+            );
+        } finally {
+            if (rowStore != null) {
+                rowStore.endChanges();
+            }
+        }
+        
+        boolean hasMetadataFileRecord = ((JSONObject)job.getRetrievalRecord()).has(METADATA_FILE_KEY);
+        File metadataFile = null;
+        if (hasMetadataFileRecord && !job.canceled && exceptions.size() == 0) {
+            try {
+                metadataFile = getFile(job, (JSONObject) job.getRetrievalRecord().get(METADATA_FILE_KEY));
+            } catch (IOException e) {
+                exceptions.add(e);
+            }
+        }
         
         if (!job.canceled) {
             if (exceptions.size() == 0) {
                 project.update(); // update all internal models, indexes, caches, etc.
                 
-                boolean hasMetadataFileRecord = ((JSONObject)job.getRetrievalRecord()).has(METADATA_FILE_KEY);
-                
                 if (hasMetadataFileRecord) {
                     JSONObject metadataFileRecord = (JSONObject) job.getRetrievalRecord().get(METADATA_FILE_KEY);
                     
                     String metadataFormat = (String)metadataFileRecord.get("metaDataFormat");
                     IMetadata metadata = MetadataFactory.buildMetadata(MetadataFormat.valueOf(metadataFormat));
                     
-                    String relativePath = metadataFileRecord.getString("location");
-                    File metadataFile = new File(job.getRawDataDir(), relativePath);
                     metadata.loadFromFile(metadataFile);
                     
                     // process the data package metadata
@@ -1124,10 +1303,14 @@ public class ImportingUtilities {
                     logger.info(metadataFileRecord.get("metaDataFormat") + " metadata is set for project " + project.id);
                 }
                 
+                if (rowStore != null) {
+                    // so that the project is loaded back into a row store
+                    pm.setCustomMetadata(Project.ROWS_ON_DISK, Boolean.TRUE);
+                }
                 ProjectManager.singleton.registerProject(project, pm);
                 
                 // infer the column type
-                inferColumnType(project);
+                inferColumnType(project, pm);
                 
                 job.setProjectID(project.id);
                 job.setState("created-project");
@@ -1139,34 +1322,128 @@ public class ImportingUtilities {
         }
     }
 
+    /**
+     * Create the project to import into, keeping its rows on disk rather
+     * than in memory if the "rowsOnDisk" option says so or, by default, if
+     * the selected files take more than a quarter of the heap.
+     */
+    static protected Project createImportProject(ImportingJob job, JSONObject optionObj) {
+        long totalSize = 0;
+        for (JSONObject fileRecord : job.getSelectedFileRecords()) {
+            try {
+                totalSize += getFile(job, fileRecord).length();
+            } catch (IOException e) {
+                // the error is reported when the file is parsed
+            }
+        }
+        boolean rowsOnDisk = JSONUtilities.getBoolean(optionObj, "rowsOnDisk",
+                totalSize > Runtime.getRuntime().maxMemory() / 4);
+        if (!rowsOnDisk) {
+            return new Project();
+        }
+        
+        long id = Project.generateID();
+        File dir = ProjectManager.singleton.getRowStoreDir(id);
+        logger.info("Keeping the rows of project " + id + " in " + dir.getPath());
+        return new Project(id, new ChunkedRowStore(dir));
+    }
+    
     public static void inferColumnType(final Project project) {
-        if (project.columnModel.columns.get(0).getType().isEmpty()) {
-            List<Object[]> listCells = new ArrayList<Object[]>(INFER_ROW_LIMIT);
-            List<Row> rows = project.rows
-                     .stream()
-                     .limit(INFER_ROW_LIMIT)
-                     .map(Row::dup)
-                     .collect(Collectors.toList());
-            // convert the null object to prevent the NPE
-            for (Row row : rows) {
-                for (int i = 0; i < row.cells.size(); i++) {
-                    Cell cell = row.cells.get(i);
-                    if (cell == null) {
-                        row.cells.set(i, new Cell(StringUtils.EMPTY, null));
-                    }
-                }
-                listCells.add(row.cells.toArray());
+        inferColumnType(project, null);
+    }
+    
+    /**
+     * Infer the types of the columns which don't have one yet from a sample
+     * of rows drawn from the whole project, so that sorted data doesn't get
+     * typed by its first rows only. Types inferred earlier and recorded in
+     * the metadata are reused.
+     * 
+     * @param metadata where inferred types are recorded, or null
+     */
+    public static void inferColumnType(final Project project, ProjectMetadata metadata) {
+        JSONObject inferred = new JSONObject();
+        if (metadata != null && metadata.getCustomMetadata(INFERRED_COLUMN_TYPES) != null) {
+            inferred = new JSONObject((String) metadata.getCustomMetadata(INFERRED_COLUMN_TYPES));
+        }
+        
+        List<Column> columns = new ArrayList<Column>();
+        for (Column column : project.columnModel.columns) {
+            if (!column.getType().isEmpty()) {
+                continue;
             }
-           
-            try {
-                JSONObject fieldsJSON = TypeInferrer.getInstance().infer(listCells, 
-                        project.columnModel.getColumnNames().toArray(new String[0]),
-                        100);
-                populateColumnTypes(project.columnModel, fieldsJSON.getJSONArray(Schema.JSON_KEY_FIELDS));
-            } catch (TypeInferringException e) {
-               logger.error("infer column type exception.", ExceptionUtils.getStackTrace(e));
+            JSONObject field = inferred.optJSONObject(column.getName());
+            if (field != null) {
+                populateColumnType(column, field);
+            } else {
+                columns.add(column);
+            }
+        }
+        if (columns.isEmpty() || project.rows.isEmpty()) {
+            return;
+        }
+        
+        int[] sample = sampleRowIndices(project.rows.size(), INFER_ROW_LIMIT);
+        List<Object[]> listCells = new ArrayList<Object[]>(sample.length);
+        for (int r : sample) {
+            Row row = project.rows.get(r);
+            Object[] values = new Object[columns.size()];
+            for (int c = 0; c < values.length; c++) {
+                // blank cells are inferred as empty strings
+                Cell cell = row.getCell(columns.get(c).getCellIndex());
+                values[c] = cell == null ? StringUtils.EMPTY : cell.toString();
+            }
+            listCells.add(values);
+        }
+        
+        String[] names = new String[columns.size()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = columns.get(c).getName();
+        }
+        
+        try {
+            JSONObject fieldsJSON = TypeInferrer.getInstance().infer(listCells, names, INFER_ROW_LIMIT);
+            JSONArray fields = fieldsJSON.getJSONArray(Schema.JSON_KEY_FIELDS);
+            for (int c = 0; c < fields.length() && c < columns.size(); c++) {
+                populateColumnType(columns.get(c), fields.getJSONObject(c));
+                inferred.put(names[c], fields.getJSONObject(c));
             }
+        } catch (TypeInferringException e) {
+           logger.error("infer column type exception.", ExceptionUtils.getStackTrace(e));
+           return;
         }
+        if (metadata != null) {
+            metadata.setCustomMetadata(INFERRED_COLUMN_TYPES, inferred.toString());
+        }
+    }
+    
+    /**
+     * Reservoir sampling of row indices, seeded so that a project is always
+     * sampled the same way.
+     * 
+     * @return up to size indices among 0 to rowCount - 1, in increasing order
+     */
+    static int[] sampleRowIndices(int rowCount, int size) {
+        if (rowCount <= size) {
+            int[] sample = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                sample[i] = i;
+            }
+            return sample;
+        }
+        
+        int[] sample = new int[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = i;
+        }
+        Random random = new Random(rowCount);
+        for (int i = size; i < rowCount; i++) {
+            int j = random.nextInt(i + 1);
+            if (j < size) {
+                sample[j] = i;
+            }
+        }
+        Arrays.sort(sample);
+        return sample;
     }
     
     private static void populateDataPackageMetadata(Project project, ProjectMetadata pmd, DataPackageMetadata metadata) {
@@ -1206,18 +1483,19 @@ public class ImportingUtilities {
         Iterator<Object> iter = fieldsJSON.iterator();
         while(iter.hasNext()){
             JSONObject fieldJsonObj = (JSONObject)iter.next();
-            Field field = new Field(fieldJsonObj);
-            
-            Column column = columnModel.getColumnByCellIndex(cellIndex);
-            column.setType(field.getType());
-            column.setFormat(field.getFormat());
-            column.setDescription(field.getDescription());
-            column.setTitle(field.getTitle());
-            column.setConstraints(field.getConstraints());
-            
+            populateColumnType(columnModel.getColumnByCellIndex(cellIndex), fieldJsonObj);
             cellIndex++;
         }  
     }
+    
+    private static void populateColumnType(Column column, JSONObject fieldJsonObj) {
+        Field field = new Field(fieldJsonObj);
+        column.setType(field.getType());
+        column.setFormat(field.getFormat());
+        column.setDescription(field.getDescription());
+        column.setTitle(field.getTitle());
+        column.setConstraints(field.getConstraints());
+    }
 
     /**
      * Create project metadata. pull the "USER_NAME" from the PreferenceStore as the creator
@@ -0,0 +1,91 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.importing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Raw records read from the files of an importing job while previewing it,
+ * kept so that option changes which don't affect how the files are split
+ * into records can be previewed without reading the files again.
+ */
+public class PreviewRecordCache {
+    /**
+     * Maximum number of records kept for one file (or sheet) and set of options.
+     */
+    static final public int MAX_RECORDS = 5000;
+    
+    /**
+     * Maximum number of sets of records kept, the least recently used ones
+     * being dropped first.
+     */
+    static final public int MAX_ENTRIES = 8;
+    
+    static public class Records {
+        final public List<List<Object>> records = new ArrayList<List<Object>>();
+        /**
+         * True if the records end where the file does.
+         */
+        public boolean complete;
+    }
+    
+    final protected Map<String, Records> _entries = new LinkedHashMap<String, Records>(16, 0.75f, true) {
+        private static final long serialVersionUID = -1874357271637155326L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Records> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    
+    /**
+     * @param key identifies the file, the parser and the options used to
+     *        read the records
+     */
+    synchronized public Records get(String key) {
+        Records records = _entries.get(key);
+        if (records == null) {
+            records = new Records();
+            _entries.put(key, records);
+        }
+        return records;
+    }
+    
+    synchronized public void clear() {
+        _entries.clear();
+    }
+}
@@ -43,8 +43,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.tools.tar.TarEntry;
 import org.apache.tools.tar.TarInputStream;
@@ -68,6 +68,12 @@ import com.google.refine.preference.TopList;
 
 
 public class FileProjectManager extends ProjectManager {
+    /**
+     * Directory within a project's directory where its rows are kept when
+     * they live on disk. It is rebuilt from data.zip whenever the project is
+     * loaded, so it is left out of project archives.
+     */
+    final static public String ROW_STORE_DIR = "rows";
     final static protected String PROJECT_DIR_SUFFIX = ".project";
 
     protected File                       _workspaceDir;
@@ -188,18 +194,33 @@ public class FileProjectManager extends ProjectManager {
 
     @Override
     public void exportProject(long projectId, TarOutputStream tos) throws IOException {
+        exportProject(projectId, tos, null);
+    }
+
+    /**
+     * Tars the project directory into a stream compressed by {@code gos}, storing
+     * files that are already compressed rather than deflating them again.
+     */
+    public void exportProject(long projectId, TarOutputStream tos, ParallelGZIPOutputStream gos) throws IOException {
         File dir = this.getProjectDir(projectId);
-        this.tarDir("", dir, tos);
+        this.tarDir("", dir, tos, gos);
     }
 
     protected void tarDir(String relative, File dir, TarOutputStream tos) throws IOException{
+        tarDir(relative, dir, tos, null);
+    }
+
+    protected void tarDir(String relative, File dir, TarOutputStream tos, ParallelGZIPOutputStream gos) throws IOException{
         File[] files = dir.listFiles();
         for (File file : files) {
+            if (relative.isEmpty() && file.isDirectory() && ROW_STORE_DIR.equals(file.getName())) {
+                continue;
+            }
             if (!file.isHidden()) {
                 String path = relative + file.getName();
 
                 if (file.isDirectory()) {
-                    tarDir(path + File.separator, file, tos);
+                    tarDir(path + File.separator, file, tos, gos);
                 } else {
                     TarEntry entry = new TarEntry(path);
 
@@ -209,6 +230,9 @@ public class FileProjectManager extends ProjectManager {
 
                     tos.putNextEntry(entry);
 
+                    if (gos != null) {
+                        gos.setLevel(isCompressed(file) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                    }
                     copyFile(file, tos);
 
                     tos.closeEntry();
@@ -217,8 +241,13 @@ public class FileProjectManager extends ProjectManager {
         }
     }
 
+    static protected boolean isCompressed(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".gz") || name.endsWith(".tgz") || name.endsWith(".bz2");
+    }
+
     protected void copyFile(File file, OutputStream os) throws IOException {
-        final int buffersize = 4096;
+        final int buffersize = 65536;
 
         FileInputStream fis = new FileInputStream(file);
         try {
@@ -256,7 +285,15 @@ public class FileProjectManager extends ProjectManager {
 
     @Override
     public Project loadProject(long id) {
-        return ProjectUtilities.load(getProjectDir(id), id);
+        ProjectMetadata metadata = getProjectMetadata(id);
+        boolean rowsOnDisk = metadata != null
+                && "true".equals(String.valueOf(metadata.getCustomMetadata(Project.ROWS_ON_DISK)));
+        return ProjectUtilities.load(getProjectDir(id), id, rowsOnDisk ? getRowStoreDir(id) : null);
+    }
+
+    @Override
+    public File getRowStoreDir(long projectID) {
+        return new File(getProjectDir(projectID), ROW_STORE_DIR);
     }
 
 
@@ -475,10 +512,14 @@ public class FileProjectManager extends ProjectManager {
     }
     
     public static void gzipTarToOutputStream(Project project, OutputStream os) throws IOException {
-        GZIPOutputStream gos = new GZIPOutputStream(os);
+        ParallelGZIPOutputStream gos = new ParallelGZIPOutputStream(os);
         TarOutputStream tos = new TarOutputStream(gos);
         try {
-            ProjectManager.singleton.exportProject(project.id, tos);
+            if (ProjectManager.singleton instanceof FileProjectManager) {
+                ((FileProjectManager) ProjectManager.singleton).exportProject(project.id, tos, gos);
+            } else {
+                ProjectManager.singleton.exportProject(project.id, tos);
+            }
         } finally {
             tos.close();
             gos.close();
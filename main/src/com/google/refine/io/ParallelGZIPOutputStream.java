@@ -0,0 +1,266 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream that deflates fixed-size blocks on several threads, in
+ * the manner of pigz. Each block is primed with the tail of the block before
+ * it and ends on a sync flush, so the result is one ordinary gzip member that
+ * any gunzip can read, at nearly the same ratio as a single-threaded deflate.
+ * Compressed blocks are written to the underlying stream in order as soon as
+ * they are ready.
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+    static final public int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    static final private int DICTIONARY_SIZE = 32 * 1024;
+    static final private byte[] HEADER = {
+        (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    final protected int blockSize;
+    final protected int threads;
+    final protected CRC32 crc = new CRC32();
+    final protected Deque<Future<byte[]>> blocks = new ArrayDeque<Future<byte[]>>();
+
+    protected ExecutorService executor;
+    protected byte[] block;
+    protected int blockLength;
+    protected byte[] dictionary;
+    protected int level = Deflater.DEFAULT_COMPRESSION;
+    protected long totalLength;
+    protected boolean closed;
+
+    public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+        this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGZIPOutputStream(OutputStream out, int threads, int blockSize) throws IOException {
+        super(out);
+        this.threads = Math.max(1, threads);
+        this.blockSize = Math.max(DICTIONARY_SIZE, blockSize);
+        this.block = new byte[this.blockSize];
+
+        out.write(HEADER);
+    }
+
+    /**
+     * Sets the deflate level for data written from now on, such as
+     * {@link Deflater#NO_COMPRESSION} for content that is already compressed.
+     * The pending block is cut short so the new level applies straight away.
+     */
+    public void setLevel(int level) throws IOException {
+        if (level != this.level) {
+            if (blockLength > 0) {
+                submitBlock(false);
+            }
+            this.level = level;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Writes out the blocks already compressed, without cutting the pending
+     * block short.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!blocks.isEmpty() && blocks.peekFirst().isDone()) {
+            writeBlock(blocks.removeFirst());
+        }
+        out.flush();
+    }
+
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitBlock(true);
+            while (!blocks.isEmpty()) {
+                writeBlock(blocks.removeFirst());
+            }
+            writeInt((int) crc.getValue());
+            writeInt((int) totalLength);
+            out.flush();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    protected void submitBlock(boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dict = dictionary;
+        final int blockLevel = level;
+        final boolean finish = last;
+
+        crc.update(data, 0, length);
+        totalLength += length;
+
+        if (length >= DICTIONARY_SIZE) {
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+        } else if (length > 0) {
+            byte[] tail = dict == null ? new byte[0] : dict;
+            int keep = Math.min(tail.length, DICTIONARY_SIZE - length);
+            dictionary = new byte[keep + length];
+            System.arraycopy(tail, tail.length - keep, dictionary, 0, keep);
+            System.arraycopy(data, 0, dictionary, keep, length);
+        }
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "parallel-gzip");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        // keep every thread busy without holding the whole archive in memory
+        while (blocks.size() >= threads * 2) {
+            writeBlock(blocks.removeFirst());
+        }
+        blocks.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return deflate(data, length, dict, blockLevel, finish);
+            }
+        }));
+    }
+
+    static protected byte[] deflate(byte[] data, int length, byte[] dict, int level, boolean finish) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dict != null) {
+                deflater.setDictionary(dict);
+            }
+            deflater.setInput(data, 0, length);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buf = new byte[8192];
+            if (finish) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    bytes.write(buf, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    bytes.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return bytes.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    protected void writeBlock(Future<byte[]> future) throws IOException {
+        try {
+            out.write(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    protected void writeInt(int i) throws IOException {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+}
@@ -36,17 +36,22 @@ package com.google.refine.io;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.refine.ProjectManager;
+import com.google.refine.model.ChunkedRowStore;
 import com.google.refine.model.Project;
+import com.google.refine.model.Row;
 import com.google.refine.model.metadata.DataPackageMetadata;
 import com.google.refine.model.metadata.IMetadata;
 import com.google.refine.model.metadata.MetadataFormat;
@@ -117,24 +122,49 @@ public class ProjectUtilities {
     }
     
     static public Project loadDataFile(File dir, String dataFile, long id) {
-        try {
-            File file = new File(dir, dataFile);
-            if (file.exists()) {
-                return loadFromFile(file, id);
+        return loadDataFile(dir, dataFile, id, null);
+    }
+    
+    /**
+     * @param rowStoreDir directory where to keep the rows on disk, or null to
+     *        keep them in memory
+     */
+    static public Project loadDataFile(File dir, String dataFile, long id, File rowStoreDir) {
+        File file = new File(dir, dataFile);
+        if (file.exists()) {
+            List<Row> rows = new ArrayList<Row>();
+            try {
+                if (rowStoreDir != null) {
+                    // the chunks are only a cache of the rows in the data file
+                    FileUtils.deleteDirectory(rowStoreDir);
+                    rows = new ChunkedRowStore(rowStoreDir);
+                }
+                return loadFromFile(file, id, rows);
+            } catch (Exception e) {
+                e.printStackTrace();
+                if (rows instanceof ChunkedRowStore) {
+                    ((ChunkedRowStore) rows).dispose();
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
         
         return null;
     }
     
     static public Project load(File dir, long id) {
+        return load(dir, id, null);
+    }
+    
+    /**
+     * @param rowStoreDir directory where to keep the rows on disk, or null to
+     *        keep them in memory
+     */
+    static public Project load(File dir, long id, File rowStoreDir) {
         Project project =null;
         
-        if ((project = loadDataFile(dir, "data.zip", id)) == null) {
-            if ((project = loadDataFile(dir, "data.temp.zip", id)) == null) {
-                project = loadDataFile(dir, "data.old.zip", id);
+        if ((project = loadDataFile(dir, "data.zip", id, rowStoreDir)) == null) {
+            if ((project = loadDataFile(dir, "data.temp.zip", id, rowStoreDir)) == null) {
+                project = loadDataFile(dir, "data.old.zip", id, rowStoreDir);
             }
         }
         return project;
@@ -174,7 +204,8 @@ public class ProjectUtilities {
     
     static protected Project loadFromFile(
             File file,
-            long id
+            long id,
+            List<Row> rows
     ) throws Exception {
         ZipFile zipFile = new ZipFile(file);
         try {
@@ -187,7 +218,8 @@ public class ProjectUtilities {
             return Project.loadFromInputStream(
                     zipFile.getInputStream(zipFile.getEntry("data.txt")),
                     id,
-                    pool
+                    pool,
+                    rows
             );
         } finally {
             zipFile.close();
@@ -0,0 +1,464 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An output stream writing one Zstandard frame (RFC 8878), in plain Java so
+ * that it needs no native library.
+ * <p>
+ * This is a minimal encoder. Matches are found greedily with one hash table
+ * over the block and up to one block of data before it. Literals are stored
+ * raw, and sequences are coded with the predefined FSE tables. Text such as
+ * CSV compresses well, though less than with the reference zstd. A block
+ * that would not get smaller is stored raw. {@link #flush()} ends the current
+ * block, so that all the data written so far can be decoded.
+ */
+public class ZstdOutputStream extends FilterOutputStream {
+    static final public int BLOCK_SIZE = 128 * 1024;
+
+    // a block and the block before it
+    static final private int WINDOW_LOG = 18;
+    static final private byte[] HEADER = {
+        (byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd, // magic number
+        0,                                                  // no checksum, content size or dictionary
+        (byte) ((WINDOW_LOG - 10) << 3)                     // window descriptor
+    };
+
+    static final private int RAW_BLOCK = 0;
+    static final private int COMPRESSED_BLOCK = 2;
+
+    static final private int MIN_MATCH = 4;
+    static final private int HASH_LOG = 16;
+
+    static final private int[] LL_BASELINES = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+        8192, 16384, 32768, 65536
+    };
+    static final private int[] LL_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16
+    };
+    static final private int[] ML_BASELINES = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+        4099, 8195, 16387, 32771, 65539
+    };
+    static final private int[] ML_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16
+    };
+
+    static final private FseTable LL_TABLE = new FseTable(6, new int[] {
+        4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+        2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+        -1, -1, -1, -1
+    });
+    static final private FseTable ML_TABLE = new FseTable(6, new int[] {
+        1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+        -1, -1, -1, -1, -1
+    });
+    static final private FseTable OF_TABLE = new FseTable(5, new int[] {
+        1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+    });
+
+    /**
+     * A finite state entropy table built from a normalized distribution as the
+     * decoder builds it, with for each symbol the state to encode it from for
+     * every state that follows.
+     */
+    static final private class FseTable {
+        final int accuracyLog;
+        final int[] symbols;
+        final int[] nbBits;
+        final int[] baselines;
+        final int[][] encodingStates;
+
+        FseTable(int accuracyLog, int[] distribution) {
+            int size = 1 << accuracyLog;
+            this.accuracyLog = accuracyLog;
+            symbols = new int[size];
+            nbBits = new int[size];
+            baselines = new int[size];
+
+            int highThreshold = size - 1;
+            int[] next = new int[distribution.length];
+            for (int s = 0; s < distribution.length; s++) {
+                if (distribution[s] == -1) {
+                    symbols[highThreshold--] = s;
+                    next[s] = 1;
+                } else {
+                    next[s] = distribution[s];
+                }
+            }
+            int step = (size >> 1) + (size >> 3) + 3;
+            int position = 0;
+            for (int s = 0; s < distribution.length; s++) {
+                for (int i = 0; i < distribution[s]; i++) {
+                    symbols[position] = s;
+                    do {
+                        position = (position + step) & (size - 1);
+                    } while (position > highThreshold);
+                }
+            }
+
+            encodingStates = new int[distribution.length][size];
+            for (int state = 0; state < size; state++) {
+                int s = symbols[state];
+                int n = next[s]++;
+                nbBits[state] = accuracyLog - highBit(n);
+                baselines[state] = (n << nbBits[state]) - size;
+                for (int i = 0; i < 1 << nbBits[state]; i++) {
+                    encodingStates[s][baselines[state] + i] = state;
+                }
+            }
+        }
+
+        int firstState(int symbol) {
+            for (int state = 0; ; state++) {
+                if (symbols[state] == symbol) {
+                    return state;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bits written from the least significant up, to be read back by the
+     * decoder from the end.
+     */
+    static final private class BitWriter {
+        final ByteArrayOutputStream bytes;
+        long container;
+        int count;
+
+        BitWriter(ByteArrayOutputStream bytes) {
+            this.bytes = bytes;
+        }
+
+        void write(int value, int n) {
+            container |= (long) value << count;
+            count += n;
+            while (count >= 8) {
+                bytes.write((int) container);
+                container >>>= 8;
+                count -= 8;
+            }
+        }
+
+        void finish() {
+            write(1, 1);
+            if (count > 0) {
+                bytes.write((int) container);
+            }
+        }
+    }
+
+    protected byte[] block = new byte[BLOCK_SIZE];
+    protected int blockLength;
+    protected byte[] history = new byte[0];
+    protected boolean closed;
+
+    public ZstdOutputStream(OutputStream out) throws IOException {
+        super(out);
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == BLOCK_SIZE) {
+            writeBlock(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == BLOCK_SIZE) {
+                writeBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Ends the pending block, if any, and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (blockLength > 0) {
+            writeBlock(false);
+        }
+        out.flush();
+    }
+
+    public void finish() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeBlock(true);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    protected void writeBlock(boolean last) throws IOException {
+        byte[] src = new byte[history.length + blockLength];
+        System.arraycopy(history, 0, src, 0, history.length);
+        System.arraycopy(block, 0, src, history.length, blockLength);
+
+        byte[] compressed = compressBlock(src, history.length);
+        if (compressed != null && compressed.length < blockLength) {
+            writeBlockHeader(last, COMPRESSED_BLOCK, compressed.length);
+            out.write(compressed);
+        } else {
+            writeBlockHeader(last, RAW_BLOCK, blockLength);
+            out.write(block, 0, blockLength);
+        }
+
+        history = Arrays.copyOfRange(src, Math.max(0, src.length - BLOCK_SIZE), src.length);
+        blockLength = 0;
+    }
+
+    protected void writeBlockHeader(boolean last, int type, int size) throws IOException {
+        int header = (last ? 1 : 0) | (type << 1) | (size << 3);
+        out.write(header);
+        out.write(header >>> 8);
+        out.write(header >>> 16);
+    }
+
+    /**
+     * Compresses the data of {@code src} from {@code start}, which may refer
+     * back to the data before it.
+     *
+     * @return the literals and sequences sections of a compressed block, or
+     *         null if no match was found
+     */
+    static protected byte[] compressBlock(byte[] src, int start) {
+        int maxSequences = (src.length - start) / MIN_MATCH + 1;
+        int[] literalLengths = new int[maxSequences];
+        int[] matchLengths = new int[maxSequences];
+        int[] offsets = new int[maxSequences];
+        int sequences = 0;
+        ByteArrayOutputStream literals = new ByteArrayOutputStream(src.length - start);
+
+        int[] hashTable = new int[1 << HASH_LOG];
+        Arrays.fill(hashTable, -1);
+        int limit = src.length - MIN_MATCH;
+        for (int p = 0; p < start && p <= limit; p++) {
+            hashTable[hash(src, p)] = p;
+        }
+
+        int anchor = start;
+        int pos = start;
+        while (pos <= limit) {
+            int h = hash(src, pos);
+            int candidate = hashTable[h];
+            hashTable[h] = pos;
+            if (candidate < 0 || readInt(src, candidate) != readInt(src, pos)) {
+                // move faster through data that does not match
+                pos += 1 + ((pos - anchor) >> 6);
+                continue;
+            }
+
+            int length = MIN_MATCH;
+            while (pos + length < src.length && src[candidate + length] == src[pos + length]) {
+                length++;
+            }
+            while (pos > anchor && candidate > 0 && src[candidate - 1] == src[pos - 1]) {
+                pos--;
+                candidate--;
+                length++;
+            }
+
+            literals.write(src, anchor, pos - anchor);
+            literalLengths[sequences] = pos - anchor;
+            matchLengths[sequences] = length;
+            offsets[sequences] = pos - candidate;
+            sequences++;
+
+            int end = pos + length;
+            for (int p = pos + 1; p < end && p <= limit; p++) {
+                hashTable[hash(src, p)] = p;
+            }
+            pos = end;
+            anchor = end;
+        }
+        if (sequences == 0) {
+            return null;
+        }
+        literals.write(src, anchor, src.length - anchor);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(literals.size() + sequences * 4 + 16);
+        writeRawLiterals(bytes, literals.toByteArray());
+        writeSequences(bytes, literalLengths, matchLengths, offsets, sequences);
+        return bytes.toByteArray();
+    }
+
+    static protected void writeRawLiterals(ByteArrayOutputStream bytes, byte[] literals) {
+        int size = literals.length;
+        if (size < 32) {
+            bytes.write(size << 3);
+        } else if (size < 4096) {
+            int header = (1 << 2) | (size << 4);
+            bytes.write(header);
+            bytes.write(header >>> 8);
+        } else {
+            int header = (3 << 2) | (size << 4);
+            bytes.write(header);
+            bytes.write(header >>> 8);
+            bytes.write(header >>> 16);
+        }
+        bytes.write(literals, 0, size);
+    }
+
+    static protected void writeSequences(ByteArrayOutputStream bytes,
+            int[] literalLengths, int[] matchLengths, int[] offsets, int sequences) {
+        if (sequences < 128) {
+            bytes.write(sequences);
+        } else if (sequences < 0x7f00) {
+            bytes.write((sequences >>> 8) + 0x80);
+            bytes.write(sequences);
+        } else {
+            bytes.write(0xff);
+            bytes.write(sequences - 0x7f00);
+            bytes.write((sequences - 0x7f00) >>> 8);
+        }
+        // predefined tables for literal lengths, offsets and match lengths
+        bytes.write(0);
+
+        int[] llCodes = new int[sequences];
+        int[] mlCodes = new int[sequences];
+        int[] ofCodes = new int[sequences];
+        for (int i = 0; i < sequences; i++) {
+            llCodes[i] = literalLengthCode(literalLengths[i]);
+            mlCodes[i] = matchLengthCode(matchLengths[i]);
+            // offsets are always written as new ones rather than repeat codes
+            ofCodes[i] = highBit(offsets[i] + 3);
+        }
+
+        // the decoder reads sequences from first to last, from the end of the bitstream
+        BitWriter bits = new BitWriter(bytes);
+        int last = sequences - 1;
+        int llState = LL_TABLE.firstState(llCodes[last]);
+        int mlState = ML_TABLE.firstState(mlCodes[last]);
+        int ofState = OF_TABLE.firstState(ofCodes[last]);
+        writeExtraBits(bits, literalLengths[last], matchLengths[last], offsets[last],
+                llCodes[last], mlCodes[last], ofCodes[last]);
+        for (int i = last - 1; i >= 0; i--) {
+            ofState = updateState(bits, OF_TABLE, ofCodes[i], ofState);
+            mlState = updateState(bits, ML_TABLE, mlCodes[i], mlState);
+            llState = updateState(bits, LL_TABLE, llCodes[i], llState);
+            writeExtraBits(bits, literalLengths[i], matchLengths[i], offsets[i],
+                    llCodes[i], mlCodes[i], ofCodes[i]);
+        }
+        bits.write(mlState, ML_TABLE.accuracyLog);
+        bits.write(ofState, OF_TABLE.accuracyLog);
+        bits.write(llState, LL_TABLE.accuracyLog);
+        bits.finish();
+    }
+
+    static private int updateState(BitWriter bits, FseTable table, int symbol, int nextState) {
+        int state = table.encodingStates[symbol][nextState];
+        bits.write(nextState - table.baselines[state], table.nbBits[state]);
+        return state;
+    }
+
+    static private void writeExtraBits(BitWriter bits, int literalLength, int matchLength, int offset,
+            int llCode, int mlCode, int ofCode) {
+        bits.write(literalLength - LL_BASELINES[llCode], LL_BITS[llCode]);
+        bits.write(matchLength - ML_BASELINES[mlCode], ML_BITS[mlCode]);
+        bits.write(offset + 3 - (1 << ofCode), ofCode);
+    }
+
+    static protected int literalLengthCode(int literalLength) {
+        if (literalLength >= 64) {
+            return highBit(literalLength) + 19;
+        }
+        int code = LL_BASELINES.length - 1;
+        while (LL_BASELINES[code] > literalLength) {
+            code--;
+        }
+        return code;
+    }
+
+    static protected int matchLengthCode(int matchLength) {
+        if (matchLength - 3 >= 128) {
+            return highBit(matchLength - 3) + 36;
+        }
+        int code = ML_BASELINES.length - 1;
+        while (ML_BASELINES[code] > matchLength) {
+            code--;
+        }
+        return code;
+    }
+
+    static private int highBit(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    static private int readInt(byte[] src, int p) {
+        return (src[p] & 0xff) | (src[p + 1] & 0xff) << 8 | (src[p + 2] & 0xff) << 16 | (src[p + 3] & 0xff) << 24;
+    }
+
+    static private int hash(byte[] src, int p) {
+        return (readInt(src, p) * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
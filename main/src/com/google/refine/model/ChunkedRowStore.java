@@ -0,0 +1,331 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.RandomAccess;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.refine.util.Pool;
+
+/**
+ * A list of rows kept in chunks on disk, of which only the most recently
+ * used ones are held in memory, so that a project can have more rows than
+ * fit in the heap.
+ * <p>
+ * Rows are written as in project files, with their recons kept in a pool in
+ * memory. A chunk taken out of memory is only written back if it is dirty:
+ * if rows were set, added or removed in it, or if any of its rows were handed
+ * out between {@link #beginChanges()} and {@link #endChanges()}, since changes
+ * modify rows in place.
+ */
+public class ChunkedRowStore extends AbstractList<Row> implements RandomAccess {
+    static final public int DEFAULT_CHUNK_SIZE = 10000;
+    static final public int DEFAULT_HOT_CHUNKS = 8;
+    
+    static protected class Chunk {
+        final File file;
+        int count;
+        /**
+         * Whether the rows in memory differ from those in the file
+         */
+        boolean dirty;
+        List<Row> rows; // null unless in memory
+        
+        Chunk(File file) {
+            this.file = file;
+        }
+    }
+    
+    final protected File _dir;
+    final protected int _chunkSize;
+    final protected int _hotChunks;
+    final protected Pool _pool = new Pool();
+    final protected Properties _saveOptions = new Properties();
+    
+    final protected List<Chunk> _chunks = new ArrayList<Chunk>();
+    final protected LinkedHashMap<Chunk, Boolean> _hot;
+    protected int[] _starts = new int[0];
+    protected boolean _startsValid = true;
+    protected int _size;
+    protected int _nextFile;
+    protected int _changing;
+    
+    public ChunkedRowStore(File dir) {
+        this(dir, DEFAULT_CHUNK_SIZE, DEFAULT_HOT_CHUNKS);
+    }
+    
+    /**
+     * @param dir directory to hold the chunks, created if needed
+     * @param chunkSize number of rows written to a chunk when appending
+     * @param hotChunks number of chunks kept in memory
+     */
+    public ChunkedRowStore(File dir, int chunkSize, int hotChunks) {
+        _dir = dir;
+        _chunkSize = chunkSize;
+        _hotChunks = hotChunks;
+        _dir.mkdirs();
+        _saveOptions.setProperty("mode", "save");
+        _saveOptions.put("pool", _pool);
+        _hot = new LinkedHashMap<Chunk, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4389167340207812164L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Chunk, Boolean> eldest) {
+                if (size() > _hotChunks) {
+                    unload(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    @Override
+    synchronized public int size() {
+        return _size;
+    }
+    
+    @Override
+    synchronized public Row get(int index) {
+        checkIndex(index, _size);
+        int c = chunkIndex(index);
+        Chunk chunk = _chunks.get(c);
+        Row row = load(chunk).get(index - _starts[c]);
+        if (_changing > 0) {
+            chunk.dirty = true;
+        }
+        return row;
+    }
+    
+    @Override
+    synchronized public Row set(int index, Row row) {
+        checkIndex(index, _size);
+        int c = chunkIndex(index);
+        Chunk chunk = _chunks.get(c);
+        Row old = load(chunk).set(index - _starts[c], row);
+        chunk.dirty = true;
+        return old;
+    }
+    
+    @Override
+    synchronized public void add(int index, Row row) {
+        checkIndex(index, _size + 1);
+        Chunk chunk;
+        int offset;
+        if (index == _size) {
+            chunk = _chunks.isEmpty() ? null : _chunks.get(_chunks.size() - 1);
+            if (chunk == null || chunk.count >= _chunkSize) {
+                chunk = new Chunk(new File(_dir, "chunk-" + (_nextFile++) + ".rows"));
+                chunk.rows = new ArrayList<Row>(_chunkSize);
+                chunk.dirty = true;
+                _chunks.add(chunk);
+                _hot.put(chunk, Boolean.TRUE);
+            }
+            offset = chunk.count;
+        } else {
+            int c = chunkIndex(index);
+            chunk = _chunks.get(c);
+            offset = index - _starts[c];
+        }
+        load(chunk).add(offset, row);
+        chunk.dirty = true;
+        chunk.count++;
+        _size++;
+        _startsValid = false;
+        modCount++;
+        
+        if (chunk.count > 2 * _chunkSize) {
+            split(chunk);
+        }
+    }
+    
+    @Override
+    synchronized public Row remove(int index) {
+        checkIndex(index, _size);
+        int c = chunkIndex(index);
+        Chunk chunk = _chunks.get(c);
+        Row row = load(chunk).remove(index - _starts[c]);
+        chunk.dirty = true;
+        chunk.count--;
+        _size--;
+        _startsValid = false;
+        modCount++;
+        
+        if (chunk.count == 0) {
+            _hot.remove(chunk);
+            _chunks.remove(c);
+            chunk.file.delete();
+        }
+        return row;
+    }
+    
+    @Override
+    synchronized public void clear() {
+        _hot.clear();
+        for (Chunk chunk : _chunks) {
+            chunk.file.delete();
+        }
+        _chunks.clear();
+        _size = 0;
+        _startsValid = false;
+        modCount++;
+    }
+    
+    /**
+     * Marks the start of code that may change the rows it gets in place, such
+     * as applying or reverting a change. Calls may nest.
+     */
+    synchronized public void beginChanges() {
+        _changing++;
+    }
+    
+    synchronized public void endChanges() {
+        _changing--;
+    }
+    
+    /**
+     * Remove all rows and the directory holding them.
+     */
+    synchronized public void dispose() {
+        clear();
+        try {
+            FileUtils.deleteDirectory(_dir);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+    
+    protected int chunkIndex(int index) {
+        if (!_startsValid) {
+            if (_starts.length != _chunks.size()) {
+                _starts = new int[_chunks.size()];
+            }
+            int start = 0;
+            for (int c = 0; c < _chunks.size(); c++) {
+                _starts[c] = start;
+                start += _chunks.get(c).count;
+            }
+            _startsValid = true;
+        }
+        // chunks are never empty, so their starts are distinct
+        int c = Arrays.binarySearch(_starts, index);
+        return c >= 0 ? c : -c - 2;
+    }
+    
+    protected void split(Chunk chunk) {
+        List<Row> rows = load(chunk);
+        Chunk second = new Chunk(new File(_dir, "chunk-" + (_nextFile++) + ".rows"));
+        second.rows = new ArrayList<Row>(rows.subList(_chunkSize, rows.size()));
+        second.count = second.rows.size();
+        second.dirty = true;
+        rows.subList(_chunkSize, rows.size()).clear();
+        chunk.count = rows.size();
+        chunk.dirty = true;
+        _chunks.add(_chunks.indexOf(chunk) + 1, second);
+        _hot.put(second, Boolean.TRUE);
+        _startsValid = false;
+    }
+    
+    protected List<Row> load(Chunk chunk) {
+        if (chunk.rows == null) {
+            List<Row> rows = new ArrayList<Row>(chunk.count);
+            try {
+                BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(chunk.file), "UTF-8"));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        rows.add(Row.load(line, _pool));
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new RuntimeException("Corrupt row chunk " + chunk.file, e);
+            }
+            chunk.rows = rows;
+        }
+        _hot.put(chunk, Boolean.TRUE);
+        return chunk.rows;
+    }
+    
+    protected void unload(Chunk chunk) {
+        if (chunk.dirty) {
+            try {
+                Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(chunk.file), "UTF-8"));
+                try {
+                    for (Row row : chunk.rows) {
+                        if (row != null) {
+                            row.save(writer, _saveOptions);
+                        }
+                        writer.write('\n');
+                    }
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunk.dirty = false;
+        }
+        chunk.rows = null;
+    }
+    
+    static protected void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
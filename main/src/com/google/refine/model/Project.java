@@ -67,7 +67,7 @@ public class Project {
         s_overlayModelClasses = new HashMap<String, Class<? extends OverlayModel>>();
     
     final public long                       id;
-    final public List<Row>                  rows = new ArrayList<Row>();
+    final public List<Row>                  rows;
     final public ColumnModel                columnModel = new ColumnModel();
     final public RecordModel                recordModel = new RecordModel();
     final public Map<String, OverlayModel>  overlayModels = new HashMap<String, OverlayModel>();
@@ -78,6 +78,12 @@ public class Project {
 
     final static Logger logger = LoggerFactory.getLogger("project");
     
+    /**
+     * Custom metadata flag of projects whose rows are kept in a
+     * {@link ChunkedRowStore} rather than in memory
+     */
+    final static public String ROWS_ON_DISK = "rowsOnDisk";
+    
     static public long generateID() {
         return System.currentTimeMillis() + Math.round(Math.random() * 1000000000000L);
     }
@@ -87,7 +93,16 @@ public class Project {
     }
 
     protected Project(long id) {
+        this(id, new ArrayList<Row>());
+    }
+    
+    /**
+     * @param rows where to keep the rows of the project, such as a
+     *        {@link ChunkedRowStore} for projects larger than memory
+     */
+    public Project(long id, List<Row> rows) {
         this.id = id;
+        this.rows = rows;
         this.history = new History(this);
     }
     
@@ -107,6 +122,9 @@ public class Project {
             }
         }
         ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProject(this.id);
+        if (rows instanceof ChunkedRowStore) {
+            ((ChunkedRowStore) rows).dispose();
+        }
         // The rest of the project should get garbage collected when we return.
     }
 
@@ -177,20 +195,28 @@ public class Project {
     }
     
     static public Project loadFromInputStream(InputStream is, long id, Pool pool) throws Exception {
-        return loadFromReader(new LineNumberReader(new InputStreamReader(is, "UTF-8")), id, pool);
+        return loadFromInputStream(is, id, pool, new ArrayList<Row>());
+    }
+    
+    /**
+     * @param rows where to load the rows of the project
+     */
+    static public Project loadFromInputStream(InputStream is, long id, Pool pool, List<Row> rows) throws Exception {
+        return loadFromReader(new LineNumberReader(new InputStreamReader(is, "UTF-8")), id, pool, rows);
     }
     
     static private Project loadFromReader(
         LineNumberReader reader,
         long id,
-        Pool pool
+        Pool pool,
+        List<Row> rows
     ) throws Exception {
         long start = System.currentTimeMillis();
         
         // version of Refine which wrote the file
         /* String version = */ reader.readLine();
         
-        Project project = new Project(id);
+        Project project = new Project(id, rows);
         int maxCellCount = 0;
         
         String line;
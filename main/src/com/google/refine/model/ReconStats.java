@@ -97,6 +97,43 @@ public class ReconStats implements Jsonizable {
         return new ReconStats(nonBlanks, newTopics, matchedTopics);
     }
     
+    /**
+     * Accumulates the difference made to the stats of a column by replacing some
+     * of its cells, so that the stats can be maintained in time proportional to
+     * the number of changed cells rather than rescanned with {@link #create}.
+     */
+    static public class Delta {
+        protected int nonBlanks = 0;
+        protected int newTopics = 0;
+        protected int matchedTopics = 0;
+        
+        public void replace(Cell oldCell, Cell newCell) {
+            count(oldCell, -1);
+            count(newCell, 1);
+        }
+        
+        protected void count(Cell cell, int sign) {
+            if (cell != null && ExpressionUtils.isNonBlankData(cell.value)) {
+                nonBlanks += sign;
+                
+                if (cell.recon != null) {
+                    if (cell.recon.judgment == Judgment.New) {
+                        newTopics += sign;
+                    } else if (cell.recon.judgment == Judgment.Matched) {
+                        matchedTopics += sign;
+                    }
+                }
+            }
+        }
+        
+        public ReconStats applyTo(ReconStats stats) {
+            return new ReconStats(
+                stats.nonBlanks + nonBlanks,
+                stats.newTopics + newTopics,
+                stats.matchedTopics + matchedTopics);
+        }
+    }
+    
     public void save(Writer writer) {
         JSONWriter jsonWriter = new JSONWriter(writer);
         try {
@@ -37,9 +37,11 @@ import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Writer;
 import java.util.List;
+import java.util.Objects;
 import java.util.Properties;
 
 import com.google.refine.ProjectManager;
+import com.google.refine.browsing.util.CellValueRowIndex;
 import com.google.refine.history.Change;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
@@ -93,7 +95,7 @@ public class MassCellChange implements Change {
             
             if (_commonColumnName != null) {
                 Column column = project.columnModel.getColumnByName(_commonColumnName);
-                column.clearPrecomputes();
+                clearPrecomputes(column);
                 ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProjectColumn(project.id, _commonColumnName);
             }
             
@@ -114,7 +116,7 @@ public class MassCellChange implements Change {
             
             if (_commonColumnName != null) {
                 Column column = project.columnModel.getColumnByName(_commonColumnName);
-                column.clearPrecomputes();
+                clearPrecomputes(column);
                 ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProjectColumn(project.id, _commonColumnName);
             }
             
@@ -124,6 +126,32 @@ public class MassCellChange implements Change {
         }
     }
     
+    /**
+     * Clear the precomputes of the given column, but keep its cell value index
+     * if none of the cell changes alter a cell's value (e.g., recon judgments),
+     * so that successive judgments don't need to rebuild it.
+     */
+    protected void clearPrecomputes(Column column) {
+        Object valueIndex = column.getPrecompute(CellValueRowIndex.PRECOMPUTE_KEY);
+        
+        column.clearPrecomputes();
+        
+        if (valueIndex != null && preservesCellValues()) {
+            column.setPrecompute(CellValueRowIndex.PRECOMPUTE_KEY, valueIndex);
+        }
+    }
+    
+    protected boolean preservesCellValues() {
+        for (CellChange cellChange : _cellChanges) {
+            Object oldValue = cellChange.oldCell != null ? cellChange.oldCell.value : null;
+            Object newValue = cellChange.newCell != null ? cellChange.newCell.value : null;
+            if (!Objects.equals(oldValue, newValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     @Override
     public void save(Writer writer, Properties options) throws IOException {
         if (_commonColumnName != null) {
@@ -47,8 +47,10 @@ import org.json.JSONWriter;
 import com.google.refine.ProjectManager;
 import com.google.refine.history.Change;
 import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
+import com.google.refine.model.ReconStats;
 import com.google.refine.model.Row;
 import com.google.refine.util.Pool;
 
@@ -74,6 +76,7 @@ public class MassReconChange implements Change {
     protected void switchRecons(Project project, Map<Long, Recon> reconMap) {
         synchronized (project) {
             HashSet<String> flushedColumn = new HashSet<String>(); 
+            Map<Integer, ReconStats.Delta> statsDeltas = new HashMap<Integer, ReconStats.Delta>();
             for (Row row : project.rows) {
                 for (int c = 0; c < row.cells.size(); c++) {
                     Cell cell = row.cells.get(c);
@@ -89,11 +92,26 @@ public class MassReconChange implements Change {
                                 flushedColumn.add(columnName);
                             }
                             
-                            row.setCell(c, new Cell(cell.value, reconMap.get(recon.id)));
+                            Cell newCell = new Cell(cell.value, reconMap.get(recon.id));
+                            row.setCell(c, newCell);
+                            
+                            ReconStats.Delta delta = statsDeltas.get(c);
+                            if (delta == null) {
+                                delta = new ReconStats.Delta();
+                                statsDeltas.put(c, delta);
+                            }
+                            delta.replace(cell, newCell);
                         }
                     }
                 }
             }
+            
+            for (Map.Entry<Integer, ReconStats.Delta> entry : statsDeltas.entrySet()) {
+                Column column = project.columnModel.getColumnByCellIndex(entry.getKey());
+                if (column != null && column.getReconStats() != null) {
+                    column.setReconStats(entry.getValue().applyTo(column.getReconStats()));
+                }
+            }
         }
     }
 
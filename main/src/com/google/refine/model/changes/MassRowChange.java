@@ -74,6 +74,9 @@ public class MassRowChange implements Change {
             project.rows.clear();
             project.rows.addAll(_oldRows);
             
+            project.columnModel.clearPrecomputes();
+            ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProject(project.id);
+            
             project.update();
         }
     }
@@ -108,11 +108,32 @@ public class ReconChange extends MassCellChange {
             column.setReconConfig(_newReconConfig);
             column.setReconStats(_newReconStats);
             
-            column.clearPrecomputes();
+            clearPrecomputes(column);
             ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProjectColumn(project.id, _commonColumnName);
         }
     }
     
+    /**
+     * Derive the stats a column will have once some of its cells are replaced,
+     * from its current stats and the old and new versions of those cells, for
+     * changes to a few cells that should not rescan the whole column. Returns
+     * null if the column has no stats yet, so that the change rescans it.
+     */
+    static public ReconStats updateReconStats(Column column, List<CellChange> cellChanges) {
+        ReconStats oldStats = column.getReconStats();
+        if (oldStats == null) {
+            return null;
+        }
+        
+        ReconStats.Delta delta = new ReconStats.Delta();
+        for (CellChange cellChange : cellChanges) {
+            if (cellChange.cellIndex == column.getCellIndex()) {
+                delta.replace(cellChange.oldCell, cellChange.newCell);
+            }
+        }
+        return delta.applyTo(oldStats);
+    }
+    
     @Override
     public void revert(Project project) {
         synchronized (project) {
@@ -122,7 +143,7 @@ public class ReconChange extends MassCellChange {
             column.setReconConfig(_oldReconConfig);
             column.setReconStats(_oldReconStats);
             
-            column.clearPrecomputes();
+            clearPrecomputes(column);
             ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProjectColumn(project.id, _commonColumnName);
         }
     }
@@ -90,6 +90,9 @@ public class RowRemovalChange implements Change {
                 project.rows.add(index, row);
             }
             
+            project.columnModel.clearPrecomputes();
+            ProjectManager.singleton.getInterProjectModel().flushJoinsInvolvingProject(project.id);
+            
             project.update();
         }
     }
@@ -70,7 +70,9 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
         
         List<CellChange> cellChanges = new ArrayList<CellChange>(project.rows.size());
         
-        FilteredRows filteredRows = engine.getAllFilteredRows();
+        int[] candidateRowIndices = getCandidateRowIndices(project, column);
+        FilteredRows filteredRows = candidateRowIndices != null ?
+                engine.getFilteredRowsAmong(candidateRowIndices) : engine.getAllFilteredRows();
         try {
             filteredRows.accept(project, createRowVisitor(project, cellChanges, historyEntryID));
         } catch (Exception e) {
@@ -88,6 +90,17 @@ abstract public class EngineDependentMassCellOperation extends EngineDependentOp
             cellChanges, column.getName(), _updateRowContextDependencies);
     }
     
+    /**
+     * Subclasses which know in advance which rows they can possibly change can
+     * override this to avoid visiting all the rows of the project.
+     * 
+     * @return the indices of the candidate rows in increasing order, or null
+     *         to visit all filtered rows
+     */
+    protected int[] getCandidateRowIndices(Project project, Column column) {
+        return null;
+    }
+    
     abstract protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception;
     abstract protected String createDescription(Column column, List<CellChange> cellChanges);
 }
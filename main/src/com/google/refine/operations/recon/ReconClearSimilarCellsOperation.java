@@ -41,6 +41,7 @@ import org.json.JSONObject;
 import org.json.JSONWriter;
 
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.CellValueRowIndex;
 import com.google.refine.history.Change;
 import com.google.refine.model.AbstractOperation;
 import com.google.refine.model.Cell;
@@ -101,6 +102,11 @@ public class ReconClearSimilarCellsOperation extends EngineDependentMassCellOper
             _similarValue + "\" in column " + _columnName;
     }
 
+    @Override
+    protected int[] getCandidateRowIndices(Project project, Column column) {
+        return CellValueRowIndex.get(project, column).getRowIndices(_similarValue);
+    }
+
     @Override
     protected RowVisitor createRowVisitor(final Project project, final List<CellChange> cellChanges, final long historyEntryID) throws Exception {
         Column column = project.columnModel.getColumnByName(_columnName);
@@ -142,7 +148,7 @@ public class ReconClearSimilarCellsOperation extends EngineDependentMassCellOper
             cellChanges, 
             _columnName, 
             column.getReconConfig(),
-            null
+            ReconChange.updateReconStats(column, cellChanges)
         );
     }
 }
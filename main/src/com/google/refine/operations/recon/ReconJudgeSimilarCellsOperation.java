@@ -44,6 +44,7 @@ import org.json.JSONObject;
 import org.json.JSONWriter;
 
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.browsing.util.CellValueRowIndex;
 import com.google.refine.expr.ExpressionUtils;
 import com.google.refine.history.Change;
 import com.google.refine.model.AbstractOperation;
@@ -183,6 +184,11 @@ public class ReconJudgeSimilarCellsOperation extends EngineDependentMassCellOper
         throw new InternalError("Can't get here");
     }
 
+    @Override
+    protected int[] getCandidateRowIndices(Project project, Column column) {
+        return CellValueRowIndex.get(project, column).getRowIndices(_similarValue);
+    }
+
     @Override
     protected RowVisitor createRowVisitor(Project project, List<CellChange> cellChanges, long historyEntryID) throws Exception {
         Column column = project.columnModel.getColumnByName(_columnName);
@@ -291,7 +297,7 @@ public class ReconJudgeSimilarCellsOperation extends EngineDependentMassCellOper
             cellChanges, 
             _columnName, 
             column.getReconConfig(),
-            null
+            ReconChange.updateReconStats(column, cellChanges)
         );
     }
 }
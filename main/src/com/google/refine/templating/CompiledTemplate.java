@@ -0,0 +1,122 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.templating;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.refine.expr.Evaluable;
+import com.google.refine.expr.ExpressionUtils;
+
+/**
+ * A template flattened for repeated expansion. Adjacent static fragments are
+ * merged into a single char buffer, so expanding the template for one row is
+ * an alternation of buffer writes and expression evaluations, written
+ * straight to the output.
+ */
+public class CompiledTemplate {
+    /**
+     * Static text written before each expression; the last entry is the
+     * text following the final expression. Never null, but may be empty.
+     */
+    final protected char[][] _texts;
+    final protected Evaluable[] _evals;
+
+    CompiledTemplate(List<Fragment> fragments) {
+        List<char[]> texts = new ArrayList<char[]>();
+        List<Evaluable> evals = new ArrayList<Evaluable>();
+        StringBuilder sb = new StringBuilder();
+
+        for (Fragment f : fragments) {
+            if (f instanceof StaticFragment) {
+                sb.append(((StaticFragment) f).text);
+            } else {
+                texts.add(sb.toString().toCharArray());
+                evals.add(((DynamicFragment) f).eval);
+                sb.setLength(0);
+            }
+        }
+        texts.add(sb.toString().toCharArray());
+
+        _texts = texts.toArray(new char[texts.size()][]);
+        _evals = evals.toArray(new Evaluable[evals.size()]);
+    }
+
+    /**
+     * Expands the template against bindings that the caller has already
+     * bound to the current row.
+     */
+    public void write(Writer writer, Properties bindings) throws IOException {
+        for (int i = 0; i < _evals.length; i++) {
+            writeText(writer, _texts[i]);
+
+            Object value = _evals[i].evaluate(bindings);
+            if (value != null && ExpressionUtils.isArrayOrCollection(value)) {
+                if (ExpressionUtils.isArray(value)) {
+                    for (Object v : (Object[]) value) {
+                        writeValue(writer, v);
+                    }
+                } else {
+                    Collection<Object> a = ExpressionUtils.toObjectCollection(value);
+                    for (Object v : a) {
+                        writeValue(writer, v);
+                    }
+                }
+            } else {
+                writeValue(writer, value);
+            }
+        }
+        writeText(writer, _texts[_evals.length]);
+    }
+
+    static protected void writeText(Writer writer, char[] text) throws IOException {
+        if (text.length > 0) {
+            writer.write(text, 0, text.length);
+        }
+    }
+
+    static public void writeValue(Writer writer, Object v) throws IOException {
+        if (v == null || ExpressionUtils.isError(v)) {
+            writer.write("null");
+        } else if (v instanceof String) {
+            writer.write((String) v);
+        } else {
+            writer.write(v.toString());
+        }
+    }
+}
@@ -35,7 +35,6 @@ package com.google.refine.templating;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 
@@ -52,11 +51,19 @@ public class Template {
     protected String _separator;
 
     protected List<Fragment> _fragments;
+    protected CompiledTemplate _compiled;
 
     public Template(List<Fragment> fragments) {
         _fragments = fragments;
     }
 
+    public CompiledTemplate compile() {
+        if (_compiled == null) {
+            _compiled = new CompiledTemplate(_fragments);
+        }
+        return _compiled;
+    }
+
     public void setPrefix(String prefix) {
         _prefix = prefix;
     }
@@ -84,6 +91,7 @@ public class Template {
     protected class RowWritingVisitor implements RowVisitor, RecordVisitor {
         final protected int limit;
         final protected Writer writer;
+        final protected CompiledTemplate compiled;
         protected Properties bindings;
 
         public int total;
@@ -91,6 +99,7 @@ public class Template {
         public RowWritingVisitor(Writer writer, int limit) {
             this.limit = limit;
             this.writer = writer;
+            this.compiled = compile();
         }
 
         @Override
@@ -138,16 +147,7 @@ public class Template {
         }
 
         protected void writeValue(Object v) throws IOException {
-            if (v == null) {
-                writer.write("null");
-            } else if (ExpressionUtils.isError(v)) {
-                writer.write("null");
-                //writer.write("[Error: " + ((EvalError) v).message);
-            } else if (v instanceof String) {
-                writer.write((String) v);
-            } else {
-                writer.write(v.toString());
-            }
+            CompiledTemplate.writeValue(writer, v);
         }
 
         public boolean internalVisit(Project project, int rowIndex, Row row) {
@@ -157,31 +157,7 @@ public class Template {
                 }
 
                 ExpressionUtils.bind(bindings, row, rowIndex, null, null);
-                for (Fragment f : _fragments) {
-                    if (f instanceof StaticFragment) {
-                        writer.write(((StaticFragment) f).text);
-                    } else {
-                        DynamicFragment df = (DynamicFragment) f;
-                        Object value = df.eval.evaluate(bindings);
-
-                        if (value != null && ExpressionUtils.isArrayOrCollection(value)) {
-                            if (ExpressionUtils.isArray(value)) {
-                                Object[] a = (Object[]) value;
-                                for (Object v : a) {
-                                    writeValue(v);
-                                }
-                            } else {
-                                Collection<Object> a = ExpressionUtils.toObjectCollection(value);
-                                for (Object v : a) {
-                                    writeValue(v);
-                                }
-                            }
-                            continue;
-                        }
-
-                        writeValue(value);
-                    }
-                }
+                compiled.write(writer, bindings);
             } catch (IOException e) {
                 // ignore
             }
@@ -0,0 +1,98 @@
+/*
+
+Copyright 2010, Google Inc.
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+    * Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above
+copyright notice, this list of conditions and the following disclaimer
+in the documentation and/or other materials provided with the
+distribution.
+    * Neither the name of Google Inc. nor the names of its
+contributors may be used to endorse or promote products derived from
+this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,           
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY           
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package com.google.refine.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written through it and flushes the underlying stream
+ * every {@code flushInterval} bytes, so that a long response goes out in
+ * steady chunks instead of piling up in the container's buffers.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+    final protected long flushInterval;
+    final protected long startTime = System.currentTimeMillis();
+
+    protected long bytesWritten;
+    protected long unflushed;
+
+    public MeteredOutputStream(OutputStream out) {
+        this(out, 0);
+    }
+
+    /**
+     * @param flushInterval number of bytes between flushes, or 0 to only
+     *        flush when asked to
+     */
+    public MeteredOutputStream(OutputStream out, long flushInterval) {
+        super(out);
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        track(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        track(len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        unflushed = 0;
+        out.flush();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    protected void track(int len) throws IOException {
+        bytesWritten += len;
+        unflushed += len;
+        if (flushInterval > 0 && unflushed >= flushInterval) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.google.refine.tests.clustering.binning;
+
+import java.io.StringWriter;
+import java.util.Properties;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.clustering.binning.BinningClusterer;
+import com.google.refine.model.Project;
+import com.google.refine.tests.RefineTest;
+
+public class BinningClustererTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    private JSONArray computeClusters(Project project, String config) throws Exception {
+        BinningClusterer clusterer = new BinningClusterer();
+        clusterer.initializeFromJSON(project, new JSONObject(config));
+        clusterer.computeClusters(new Engine(project));
+
+        StringWriter writer = new StringWriter();
+        clusterer.write(new JSONWriter(writer), new Properties());
+        return new JSONArray(writer.toString());
+    }
+
+    @Test
+    public void testFingerprintClusters() throws Exception {
+        Project project = createCSVProject(
+                "column\n"
+              + "a b\n"
+              + "b a\n"
+              + "a b\n"
+              + "A B.\n"
+              + "c\n"
+              + "d\n");
+        
+        JSONArray clusters = computeClusters(project,
+                "{\"type\":\"binning\",\"function\":\"fingerprint\",\"column\":\"column\",\"params\":{}}");
+        
+        Assert.assertEquals(clusters.length(), 1);
+        JSONArray cluster = clusters.getJSONArray(0);
+        Assert.assertEquals(cluster.length(), 3);
+        // values are sorted by decreasing number of occurrences
+        Assert.assertEquals(cluster.getJSONObject(0).getString("v"), "a b");
+        Assert.assertEquals(cluster.getJSONObject(0).getInt("c"), 2);
+        Assert.assertEquals(cluster.getJSONObject(1).getInt("c"), 1);
+        Assert.assertEquals(cluster.getJSONObject(2).getInt("c"), 1);
+    }
+
+    @Test
+    public void testNGramFingerprintClustersWithParams() throws Exception {
+        Project project = createCSVProject(
+                "column\n"
+              + "abcd\n"
+              + "ab cd\n"
+              + "abdc\n");
+        
+        JSONArray clusters = computeClusters(project,
+                "{\"type\":\"binning\",\"function\":\"ngram-fingerprint\",\"column\":\"column\",\"params\":{\"ngram-size\":1}}");
+        
+        Assert.assertEquals(clusters.length(), 1);
+        Assert.assertEquals(clusters.getJSONArray(0).length(), 3);
+    }
+}
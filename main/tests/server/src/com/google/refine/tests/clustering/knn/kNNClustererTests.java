@@ -0,0 +1,141 @@
+package com.google.refine.tests.clustering.knn;
+
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONWriter;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.clustering.knn.FastJaroDistance;
+import com.google.refine.clustering.knn.MinHashClusterer;
+import com.google.refine.clustering.knn.MyersLevenshteinDistance;
+import com.google.refine.clustering.knn.kNNClusterer;
+import com.google.refine.model.Project;
+import com.google.refine.tests.RefineTest;
+
+import edu.mit.simile.vicino.distances.Distance;
+import edu.mit.simile.vicino.distances.JaroDistance;
+import edu.mit.simile.vicino.distances.JaroWinklerDistance;
+import edu.mit.simile.vicino.distances.LevenshteinDistance;
+
+public class kNNClustererTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    private JSONArray computeClusters(Project project, String config) throws Exception {
+        kNNClusterer clusterer = config.contains("\"minhash\"") ? new MinHashClusterer() : new kNNClusterer();
+        clusterer.initializeFromJSON(project, new JSONObject(config));
+        clusterer.computeClusters(new Engine(project));
+
+        StringWriter writer = new StringWriter();
+        clusterer.write(new JSONWriter(writer), new Properties());
+        return new JSONArray(writer.toString());
+    }
+
+    private String[] samplePairs() {
+        Random random = new Random(1234);
+        String alphabet = "abcAB éЖ";
+        String[] values = new String[200];
+        for (int i = 0; i < values.length; i++) {
+            int length = i < 100 ? random.nextInt(12) : random.nextInt(150);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            values[i] = sb.toString();
+        }
+        return values;
+    }
+
+    private void assertSameDistances(Distance expected, Distance actual) {
+        String[] values = samplePairs();
+        for (int i = 0; i + 1 < values.length; i++) {
+            Assert.assertEquals(actual.d(values[i], values[i + 1]), expected.d(values[i], values[i + 1]), 1e-9,
+                    "'" + values[i] + "' / '" + values[i + 1] + "'");
+        }
+        Assert.assertEquals(actual.d("martha", "marhta"), expected.d("martha", "marhta"), 1e-9);
+        Assert.assertEquals(actual.d("", ""), expected.d("", ""), 1e-9);
+        Assert.assertEquals(actual.d("Ab", "ab"), expected.d("Ab", "ab"), 1e-9);
+    }
+
+    @Test
+    public void testLevenshteinMatchesVicino() {
+        assertSameDistances(new LevenshteinDistance(), new MyersLevenshteinDistance());
+        Assert.assertEquals(new MyersLevenshteinDistance().d("kitten", "sitting"), 3.0);
+    }
+
+    @Test
+    public void testLevenshteinStopsAboveRadius() {
+        MyersLevenshteinDistance distance = new MyersLevenshteinDistance();
+        char[] a = distance.prepare("kitten");
+        char[] b = distance.prepare("sitting");
+        Assert.assertEquals(distance.d(a, b, 3), 3.0);
+        Assert.assertTrue(distance.d(a, b, 2) > 2);
+    }
+
+    @Test
+    public void testJaroMatchesVicino() {
+        assertSameDistances(new JaroDistance(), new FastJaroDistance(false));
+        assertSameDistances(new JaroWinklerDistance(), new FastJaroDistance(true));
+    }
+
+    @Test
+    public void testLevenshteinClusters() throws Exception {
+        Project project = createCSVProject(
+                "column\n"
+              + "Paris\n"
+              + "Paris\n"
+              + "Pariss\n"
+              + "Parris\n"
+              + "London\n"
+              + "Londen\n"
+              + "Berlin\n");
+        
+        JSONArray clusters = computeClusters(project,
+                "{\"type\":\"knn\",\"function\":\"levenshtein\",\"column\":\"column\","
+              + "\"params\":{\"radius\":1,\"blocking-ngram-size\":2}}");
+        
+        Assert.assertEquals(clusters.length(), 2);
+        JSONArray paris = clusters.getJSONArray(0);
+        Assert.assertEquals(paris.length(), 3);
+        Assert.assertEquals(paris.getJSONObject(0).getString("v"), "Paris");
+        Assert.assertEquals(paris.getJSONObject(0).getInt("c"), 2);
+        Assert.assertEquals(clusters.getJSONArray(1).length(), 2);
+    }
+
+    @Test
+    public void testMinHashClusters() throws Exception {
+        Project project = createCSVProject(
+                "column\n"
+              + "International Business Machines\n"
+              + "International Business Machines\n"
+              + "International Business Machine\n"
+              + "international business machines.\n"
+              + "Google\n"
+              + "General Electric Company\n"
+              + "General Electric Co\n");
+        
+        JSONArray clusters = computeClusters(project,
+                "{\"type\":\"minhash\",\"function\":\"levenshtein\",\"column\":\"column\","
+              + "\"params\":{\"radius\":2,\"bands\":20,\"rows\":2}}");
+        
+        // like kNN clusters, each value is grouped with its neighbors, so
+        // the two closest values also form a cluster of their own
+        Assert.assertEquals(clusters.length(), 2);
+        JSONArray cluster = clusters.getJSONArray(0);
+        Assert.assertEquals(cluster.length(), 3);
+        Assert.assertEquals(cluster.getJSONObject(0).getString("v"), "International Business Machines");
+        Assert.assertEquals(cluster.getJSONObject(0).getInt("c"), 2);
+    }
+}
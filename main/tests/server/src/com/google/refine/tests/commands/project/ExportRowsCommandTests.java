@@ -0,0 +1,114 @@
+package com.google.refine.tests.commands.project;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.commands.project.ExportRowsCommand;
+import com.google.refine.model.Project;
+import com.google.refine.tests.RefineTest;
+import com.google.refine.tests.io.ZstdOutputStreamTests;
+
+public class ExportRowsCommandTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void unsupportedCompressionIsRejected() throws ServletException, IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(request.getParameter("compression")).thenReturn("br");
+
+        new ExportRowsCommand().doPost(request, response);
+
+        verify(response).sendError(HttpStatus.SC_BAD_REQUEST, "Unsupported compression: br");
+        verify(response, never()).getOutputStream();
+    }
+
+    @Test
+    public void gzipCompressionEncodesTheSameExport() throws ServletException, IOException {
+        Project project = createCSVProject("a,b\n1,\u00e9t\u00e9\n2,hiver\n");
+        
+        byte[] plain = export(project, null);
+        
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        byte[] compressed = export(project, "gzip", response);
+        verify(response).setHeader("Content-Encoding", "gzip");
+        
+        byte[] decoded = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+        Assert.assertEquals(new String(decoded, "UTF-8"), "a,b\n1,\u00e9t\u00e9\n2,hiver\n");
+        Assert.assertEquals(decoded, plain);
+    }
+
+    @Test
+    public void zstdCompressionEncodesTheSameExport() throws ServletException, IOException {
+        Project project = createCSVProject("a,b\n1,\u00e9t\u00e9\n2,hiver\n");
+        
+        byte[] plain = export(project, null);
+        
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        byte[] compressed = export(project, "zstd", response);
+        verify(response).setHeader("Content-Encoding", "zstd");
+        
+        Assert.assertEquals(ZstdOutputStreamTests.decode(compressed), plain);
+    }
+
+    private byte[] export(Project project, String compression) throws ServletException, IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        byte[] body = export(project, compression, response);
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        return body;
+    }
+
+    private byte[] export(Project project, String compression, HttpServletResponse response)
+            throws ServletException, IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter("project")).thenReturn(String.valueOf(project.id));
+        when(request.getParameter("format")).thenReturn("csv");
+        when(request.getParameter("compression")).thenReturn(compression);
+        List<String> names = new ArrayList<String>(Arrays.asList("project", "format"));
+        if (compression != null) {
+            names.add("compression");
+        }
+        when(request.getParameterNames()).thenReturn(Collections.enumeration(names));
+        
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+        });
+        
+        new ExportRowsCommand().doPost(request, response);
+        return body.toByteArray();
+    }
+}
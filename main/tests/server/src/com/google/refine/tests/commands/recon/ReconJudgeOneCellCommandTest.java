@@ -20,10 +20,14 @@ import org.testng.annotations.Test;
 import com.google.refine.ProjectManager;
 import com.google.refine.commands.Command;
 import com.google.refine.commands.recon.ReconJudgeOneCellCommand;
+import com.google.refine.history.Change;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
 import com.google.refine.model.Recon;
+import com.google.refine.model.ReconStats;
+import com.google.refine.model.changes.CellChange;
+import com.google.refine.model.changes.ReconChange;
 import com.google.refine.model.recon.ReconConfig;
 import com.google.refine.model.recon.StandardReconConfig;
 import com.google.refine.tests.RefineTest;
@@ -102,4 +106,46 @@ public class ReconJudgeOneCellCommandTest extends RefineTest {
         Assert.assertEquals("http://my.custom.space/id", cell.recon.identifierSpace);
         Assert.assertEquals("http://my.custom.space/schema", cell.recon.schemaSpace);
     }
+    
+    @Test
+    public void testReconStatsAreUpdatedIncrementally() throws Exception {
+        Column reconciled = project.columnModel.columns.get(0);
+        // deliberately different from what a full rescan would give
+        reconciled.setReconStats(new ReconStats(10, 3, 4));
+
+        when(request.getParameter("row")).thenReturn("0");
+        when(request.getParameter("cell")).thenReturn("0");
+        when(request.getParameter("judgment")).thenReturn("new");
+        command.doPost(request, response);
+        
+        ReconStats stats = reconciled.getReconStats();
+        Assert.assertEquals(stats.nonBlanks, 10);
+        Assert.assertEquals(stats.newTopics, 4);
+        Assert.assertEquals(stats.matchedTopics, 4);
+        
+        project.history.undoRedo(0);
+        stats = reconciled.getReconStats();
+        Assert.assertEquals(stats.newTopics, 3);
+    }
+    
+    @Test
+    public void testChangesWithoutStatsRescanTheColumn() throws Exception {
+        Column reconciled = project.columnModel.columns.get(0);
+        reconciled.setReconStats(new ReconStats(10, 3, 4));
+        
+        Cell cell = project.rows.get(0).getCell(0);
+        Recon recon = new Recon(0, null, null);
+        recon.judgment = Recon.Judgment.New;
+        Change change = new ReconChange(
+                new CellChange(0, 0, cell, new Cell(cell.value, recon)),
+                reconciled.getName(),
+                reconciled.getReconConfig(),
+                null);
+        change.apply(project);
+        
+        ReconStats stats = reconciled.getReconStats();
+        Assert.assertEquals(stats.nonBlanks, 2);
+        Assert.assertEquals(stats.newTopics, 1);
+        Assert.assertEquals(stats.matchedTopics, 0);
+    }
 }
@@ -0,0 +1,114 @@
+package com.google.refine.tests.exporters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.browsing.Engine;
+import com.google.refine.exporters.CustomizableTabularExporterUtilities;
+import com.google.refine.exporters.TabularSerializer;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.ModelException;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.tests.RefineTest;
+
+public class CustomizableTabularExporterUtilitiesTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    Project project;
+    Engine engine;
+
+    @BeforeMethod
+    public void SetUp() throws ModelException {
+        project = new Project();
+        engine = new Engine(project);
+        for (int i = 0; i < 3; i++) {
+            project.columnModel.addColumn(i, new Column(i, "column" + i), true);
+        }
+        for (int i = 0; i < 5000; i++) {
+            Row row = new Row(3);
+            row.cells.add(new Cell("row" + i, null));
+            row.cells.add(i % 7 == 0 ? null : new Cell(i, null));
+            row.cells.add(i % 11 == 0 ? null : new Cell(i % 2 == 0, null));
+            project.rows.add(row);
+        }
+        // entirely empty rows are skipped
+        project.rows.get(4200).cells.set(0, null);
+        project.rows.get(4200).cells.set(1, null);
+        project.rows.get(4200).cells.set(2, null);
+    }
+
+    @Test
+    public void parallelFormattingKeepsRowOrder() {
+        CollectingSerializer sequential = new CollectingSerializer();
+        CustomizableTabularExporterUtilities.exportRows(project, engine, null, sequential, 1);
+        CollectingSerializer parallel = new CollectingSerializer();
+        CustomizableTabularExporterUtilities.exportRows(project, engine, null, parallel, 4);
+
+        Assert.assertEquals(sequential.rows.size(), 5000);
+        Assert.assertEquals(sequential.rows.get(0), "column0|column1|column2");
+        Assert.assertEquals(sequential.rows.get(8), "row7|null|false");
+        Assert.assertEquals(parallel.rows, sequential.rows);
+        Assert.assertEquals(parallel.ended, 1);
+        Assert.assertEquals(parallel.threads.size(), 1);
+        Assert.assertEquals(parallel.threads.get(0), Thread.currentThread().getName());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void serializerErrorsReachTheCaller() {
+        CollectingSerializer failing = new CollectingSerializer() {
+            @Override
+            public void addRow(List<CellData> cells, boolean isHeader) {
+                if (rows.size() == 2000) {
+                    throw new IllegalStateException();
+                }
+                super.addRow(cells, isHeader);
+            }
+        };
+        CustomizableTabularExporterUtilities.exportRows(project, engine, null, failing, 4);
+    }
+
+    static class CollectingSerializer implements TabularSerializer {
+        List<String> rows = new ArrayList<String>();
+        List<String> threads = new ArrayList<String>();
+        int ended = 0;
+
+        @Override
+        public void startFile(JSONObject options) {
+        }
+
+        @Override
+        public void endFile() {
+            ended++;
+        }
+
+        @Override
+        public void addRow(List<CellData> cells, boolean isHeader) {
+            String name = Thread.currentThread().getName();
+            if (!threads.contains(name)) {
+                threads.add(name);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (CellData cellData : cells) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(cellData == null ? "null" : cellData.text);
+            }
+            rows.add(sb.toString());
+        }
+    }
+}
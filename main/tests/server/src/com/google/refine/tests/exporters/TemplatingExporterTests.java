@@ -216,6 +216,30 @@ public class TemplatingExporterTests extends RefineTest {
 
     }
     
+    @Test
+    public void exportTemplateWithEscapesAndArrays(){
+        CreateGrid(2, 2);
+        // the escapes split the leading text into several static fragments
+        String template = "\\{\\$" + rowPrefix + "${column0}{{[cells.column1.value, 1]}}{{null}}";
+
+        when(options.getProperty("template")).thenReturn(template);
+        when(options.getProperty("prefix")).thenReturn(prefix);
+        when(options.getProperty("suffix")).thenReturn(suffix);
+        when(options.getProperty("separator")).thenReturn(rowSeparator);
+
+        try {
+            SUT.export(project, options, engine, writer);
+        } catch (IOException e) {
+            Assert.fail();
+        }
+
+        Assert.assertEquals(writer.toString(),
+                prefix
+                + "{$" + rowPrefix + "row0cell0" + "row0cell1" + "1" + "null" + rowSeparator
+                + "{$" + rowPrefix + "row1cell0" + "row1cell1" + "1" + "null"
+                + suffix);
+    }
+
     //helper methods
 
     protected void CreateColumns(int noOfColumns){
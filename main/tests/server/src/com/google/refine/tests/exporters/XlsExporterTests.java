@@ -38,11 +38,15 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.Properties;
 
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -136,6 +140,32 @@ public class XlsExporterTests extends RefineTest {
         Assert.assertEquals(stream.size(),4096);
     }
 
+    @Test
+    public void exportSplitsSheetsPastRowLimit() throws IOException {
+        CreateGrid(5, 2);
+        SUT = new XlsExporter(false) {
+            @Override
+            protected int getMaxRowsPerSheet() {
+                return 3;
+            }
+        };
+
+        SUT.export(project, options, engine, stream);
+
+        Workbook wb = new HSSFWorkbook(new ByteArrayInputStream(stream.toByteArray()));
+        Assert.assertEquals(wb.getNumberOfSheets(), 3);
+        Assert.assertEquals(wb.getSheetName(0), TEST_PROJECT_NAME);
+        Assert.assertEquals(wb.getSheetName(2), TEST_PROJECT_NAME + " (3)");
+        Sheet second = wb.getSheetAt(1);
+        Assert.assertEquals(second.getLastRowNum(), 2);
+        Assert.assertEquals(second.getRow(0).getCell(1).getStringCellValue(), "column1");
+        Assert.assertEquals(second.getRow(1).getCell(0).getStringCellValue(), "row2cell0");
+        Sheet third = wb.getSheetAt(2);
+        Assert.assertEquals(third.getLastRowNum(), 1);
+        Assert.assertEquals(third.getRow(1).getCell(1).getStringCellValue(), "row4cell1");
+        wb.close();
+    }
+
     @Test(enabled=false)
     public void exportSimpleXlsNoHeader(){
         CreateGrid(2, 2);
@@ -360,6 +360,50 @@ public class SqlExporterTests extends RefineTest {
 
     }
   
+    @Test
+    public void testExportSqlInBatches(){
+        createGrid(5, 2);
+        String tableName = "sql_table_test";
+        JSONObject optionsJson = createOptionsFromProject(tableName, null, null);
+        optionsJson.put("includeStructure", false);
+        optionsJson.put("insertBatchSize", 2);
+        when(options.getProperty("options")).thenReturn(optionsJson.toString());
+
+        try {
+            SUT.export(project, options, engine, writer);
+        } catch (IOException e) {
+            Assert.fail();
+        }
+        
+        String result = writer.toString();
+        Assert.assertEquals(countWordInString(result, "INSERT INTO " + tableName), 3);
+        Assert.assertEquals(countWordInString(result, ";\n"), 3);
+        Assert.assertTrue(result.contains("( 'row4cell0','row4cell1' );\n"));
+    }
+    
+    @Test
+    public void testExportSqlAsPostgresCopy(){
+        createGridWithNullFields(2, 2, 1);
+        project.rows.get(1).cells.set(1, new Cell("tab\there", null));
+        String tableName = "sql_table_test";
+        JSONObject optionsJson = createOptionsFromProject(tableName, null, null);
+        optionsJson.put("includeStructure", false);
+        optionsJson.put("usePostgresCopy", true);
+        when(options.getProperty("options")).thenReturn(optionsJson.toString());
+
+        try {
+            SUT.export(project, options, engine, writer);
+        } catch (IOException e) {
+            Assert.fail();
+        }
+        
+        Assert.assertEquals(writer.toString(),
+                "COPY sql_table_test (column0,column1) FROM STDIN;\n"
+                + "\\N\trow0cell1\n"
+                + "row1cell0\ttab\\there\n"
+                + "\\.\n");
+    }
+  
     //helper methods
     
    public int countWordInString(String input, String word){
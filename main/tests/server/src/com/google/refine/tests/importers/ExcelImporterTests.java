@@ -36,6 +36,7 @@ package com.google.refine.tests.importers;
 
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -44,9 +45,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
@@ -64,6 +71,7 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.google.refine.importers.ExcelImporter;
+import com.google.refine.importers.ImporterUtilities;
 import com.google.refine.util.JSONUtilities;
 
 public class ExcelImporterTests extends ImporterTest {
@@ -144,6 +152,155 @@ public class ExcelImporterTests extends ImporterTest {
         }
     }
     
+    @Test
+    public void readXlsx() throws IOException, JSONException {
+        String sheet =
+            "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+          + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+          + "<dimension ref=\"A1:C3\"/><sheetData>"
+          + "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"B1\"><v>2.5</v></c>"
+          + "<c r=\"C1\" s=\"1\"><v>42005</v></c></row>"
+          + "<row r=\"3\"><c r=\"A3\" t=\"b\"><v>1</v></c><c r=\"B3\"><f>B1*2</f><v>5</v></c>"
+          + "<c r=\"C3\" t=\"str\"><f>A1&amp;\"!\"</f><v>linked!</v></c>"
+          + "<c r=\"D3\" t=\"inlineStr\"><is><t>inline</t></is></c><c r=\"E3\" t=\"e\"><v>#DIV/0!</v></c>"
+          + "<c r=\"F3\" t=\"s\"><v>1</v></c><c r=\"G3\" s=\"1\"/></row>"
+          + "</sheetData><mergeCells count=\"1\"><mergeCell ref=\"F3:G3\"/></mergeCells>"
+          + "<hyperlinks><hyperlink ref=\"C3\" r:id=\"rId1\"/></hyperlinks></worksheet>";
+        File file = createXlsx(sheet, "<si><t>linked</t></si><si><r><t>mer</t></r><r><t>ged</t></r></si>",
+            "http://www.freebase.com/view/en/linked");
+        
+        JSONArray sheets = new JSONArray();
+        JSONUtilities.append(sheets, 
+                new JSONObject("{name: \"file-source#Data\", fileNameAndSheetIndex: \"file-source#0\", rows: 3, selected: true}"));
+        whenGetArrayOption("sheets", options, sheets);
+        whenGetIntegerOption("ignoreLines", options, 0);
+        whenGetIntegerOption("headerLines", options, 0);
+        whenGetIntegerOption("skipDataLines", options, 0);
+        whenGetIntegerOption("limit", options, -1);
+        whenGetBooleanOption("storeBlankRows", options, true);
+        whenGetBooleanOption("storeBlankCellsAsNulls",options,true);
+        
+        InputStream stream = new FileInputStream(file);
+        try {
+            parseOneFile(SUT, stream);
+        } finally {
+            stream.close();
+        }
+        
+        Assert.assertEquals(project.rows.size(), 3);
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), "linked");
+        Assert.assertEquals(project.rows.get(0).getCellValue(1), 2.5);
+        Assert.assertTrue(project.rows.get(0).getCellValue(2) instanceof Date);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime((Date) project.rows.get(0).getCellValue(2));
+        Assert.assertEquals(calendar.get(Calendar.YEAR), 2015);
+        
+        // missing rows are kept as blank rows
+        Assert.assertEquals(project.rows.get(1).cells.size(), 0);
+        
+        com.google.refine.model.Row row = project.rows.get(2);
+        Assert.assertEquals(row.getCellValue(0), true);
+        Assert.assertEquals(row.getCellValue(1), 5.0);
+        Assert.assertEquals(row.getCellValue(2), "linked!");
+        Assert.assertEquals(row.getCell(2).recon.match.id, "/en/linked");
+        Assert.assertEquals(row.getCellValue(3), "inline");
+        Assert.assertNull(row.getCellValue(4));
+        Assert.assertEquals(row.getCellValue(5), "merged");
+        Assert.assertNull(row.getCellValue(6));
+    }
+    
+    @Test
+    public void readXlsxFromFileRecord() throws IOException, JSONException {
+        String sheet =
+            "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>"
+          + "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c></row>"
+          + "<row r=\"2\"><c r=\"A2\"><v>1</v></c></row>"
+          + "</sheetData></worksheet>";
+        File file = createXlsx(sheet, "<si><t>header</t></si>", "http://example.com/");
+        File rawDataDir = Files.createTempDirectory("openrefine-importer-test").toFile();
+        rawDataDir.deleteOnExit();
+        when(job.getRawDataDir()).thenReturn(rawDataDir);
+        File rawFile = new File(rawDataDir, "data.xlsx");
+        rawFile.deleteOnExit();
+        FileUtils.copyFile(file, rawFile);
+        JSONObject fileRecord = new JSONObject("{location: \"data.xlsx\", fileName: \"data.xlsx\"}");
+        
+        JSONObject uiOptions = SUT.createParserUIInitializationData(job, Collections.singletonList(fileRecord), "excel");
+        JSONObject sheetRecord = uiOptions.getJSONArray("sheetRecords").getJSONObject(0);
+        Assert.assertEquals(sheetRecord.getString("name"), "data.xlsx#Data");
+        Assert.assertEquals(sheetRecord.getInt("rows"), 2);
+        
+        JSONArray sheets = new JSONArray();
+        JSONUtilities.append(sheets, 
+                new JSONObject("{name: \"data.xlsx#Data\", fileNameAndSheetIndex: \"data.xlsx#0\", rows: 2, selected: true}"));
+        whenGetArrayOption("sheets", options, sheets);
+        whenGetIntegerOption("ignoreLines", options, 0);
+        whenGetIntegerOption("headerLines", options, 1);
+        whenGetIntegerOption("skipDataLines", options, 0);
+        whenGetIntegerOption("limit", options, -1);
+        whenGetBooleanOption("storeBlankCellsAsNulls",options,true);
+        
+        SUT.parseOneFile(project, metadata, job, fileRecord, -1, options, new ArrayList<Exception>(),
+            ImporterUtilities.createMultiFileReadingProgress(job, Collections.singletonList(fileRecord)));
+        
+        Assert.assertEquals(project.columnModel.columns.get(0).getName(), "header");
+        Assert.assertEquals(project.rows.size(), 1);
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), 1.0);
+    }
+    
+    private static File createXlsx(String sheet, String sharedStrings, String link) throws IOException {
+        File file = File.createTempFile("openrefine-importer-test", ".xlsx");
+        file.deleteOnExit();
+        
+        String relationships = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+        String contentTypes = "application/vnd.openxmlformats-officedocument.spreadsheetml";
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            writeZipEntry(zip, "[Content_Types].xml",
+                "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+              + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+              + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+              + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + contentTypes + ".sheet.main+xml\"/>"
+              + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"" + contentTypes + ".worksheet+xml\"/>"
+              + "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"" + contentTypes + ".sharedStrings+xml\"/>"
+              + "<Override PartName=\"/xl/styles.xml\" ContentType=\"" + contentTypes + ".styles+xml\"/>"
+              + "</Types>");
+            writeZipEntry(zip, "_rels/.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+              + "<Relationship Id=\"rId1\" Type=\"" + relationships + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+              + "</Relationships>");
+            writeZipEntry(zip, "xl/workbook.xml",
+                "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" xmlns:r=\"" + relationships + "\">"
+              + "<sheets><sheet name=\"Data\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+            writeZipEntry(zip, "xl/_rels/workbook.xml.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+              + "<Relationship Id=\"rId1\" Type=\"" + relationships + "/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+              + "<Relationship Id=\"rId2\" Type=\"" + relationships + "/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+              + "<Relationship Id=\"rId3\" Type=\"" + relationships + "/styles\" Target=\"styles.xml\"/>"
+              + "</Relationships>");
+            writeZipEntry(zip, "xl/worksheets/sheet1.xml", sheet);
+            writeZipEntry(zip, "xl/worksheets/_rels/sheet1.xml.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+              + "<Relationship Id=\"rId1\" Type=\"" + relationships + "/hyperlink\" Target=\"" + link + "\" TargetMode=\"External\"/>"
+              + "</Relationships>");
+            writeZipEntry(zip, "xl/sharedStrings.xml",
+                "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">" + sharedStrings + "</sst>");
+            writeZipEntry(zip, "xl/styles.xml",
+                "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+              + "<cellXfs count=\"2\"><xf numFmtId=\"0\"/><xf numFmtId=\"14\" applyNumberFormat=\"1\"/></cellXfs>"
+              + "</styleSheet>");
+        } finally {
+            zip.close();
+        }
+        return file;
+    }
+    
+    private static void writeZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes("UTF-8"));
+        zip.closeEntry();
+    }
+    
     private static File createSpreadsheet(boolean xml) {
 
         final Workbook wb = xml ? new XSSFWorkbook() : new HSSFWorkbook();
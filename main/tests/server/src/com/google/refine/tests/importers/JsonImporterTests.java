@@ -53,6 +53,7 @@ import com.google.refine.importers.JsonImporter.JSONTreeReader;
 import com.google.refine.importers.tree.TreeImportingParserBase;
 import com.google.refine.importers.tree.TreeReader.Token;
 import com.google.refine.importing.ImportingJob;
+import com.google.refine.model.Project;
 import com.google.refine.model.Row;
 import com.google.refine.util.JSONUtilities;
 
@@ -370,7 +371,75 @@ public class JsonImporterTests extends ImporterTest {
         assertProjectCreated(project, 63, 63, 8);
     }   
     
+    @Test
+    public void jsonLinesMatchTreeImport() {
+        String sample = getJsonLinesSample(10000);
+        JSONObject options = getJsonLinesOptions(job, SUT);
+        
+        // a JSON import of the same values goes through the tree import
+        RunTest(sample, options);
+        Project treeProject = project;
+        
+        project = new Project();
+        SUT = new JsonImporter(JsonImporter.Mode.JSON_LINES) {
+            @Override
+            protected int getParsingThreads() {
+                return 4;
+            }
+        };
+        RunTest(sample, options);
+        
+        Assert.assertEquals(project.columnModel.getColumnNames(), treeProject.columnModel.getColumnNames());
+        Assert.assertEquals(project.rows.size(), treeProject.rows.size());
+        for (int c = 0; c < project.columnModel.columns.size(); c++) {
+            int cellIndex = project.columnModel.columns.get(c).getCellIndex();
+            Assert.assertEquals(cellIndex, treeProject.columnModel.columns.get(c).getCellIndex());
+            for (int r = 0; r < project.rows.size(); r++) {
+                Assert.assertEquals(project.rows.get(r).getCellValue(cellIndex),
+                        treeProject.rows.get(r).getCellValue(cellIndex), "row " + r + ", column " + c);
+            }
+        }
+        Assert.assertEquals(project.rows.get(2).getCellValue(0), Long.valueOf(2));
+    }
+    
+    @Test
+    public void jsonLinesHonourLimit() {
+        SUT = new JsonImporter(JsonImporter.Mode.JSON_LINES);
+        JSONObject options = getJsonLinesOptions(job, SUT);
+        JSONUtilities.safePut(options, "limit", 5);
+        RunTest(getJsonLinesSample(100), options);
+        
+        Assert.assertEquals(project.rows.size(), 5);
+    }
+    
     //------------helper methods---------------
+    
+    private static String getJsonLinesSample(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i % 97 == 5) {
+                sb.append(getElementWithDuplicateSubElement(i));
+            } else if (i % 89 == 7) {
+                sb.append("{\"id\":" + i + ",\"title\":\"\",\"note\":null,\"id\":" + -i + "}");
+            } else if (i % 83 == 3) {
+                sb.append("{\"id\":" + i + ",\"price\":" + i + ".5,\"genre\":\"New genre\",\"instock\":true}");
+            } else {
+                sb.append(getTypicalElement(i));
+            }
+            sb.append(i % 500 == 0 ? "\n\n" : "\n");
+        }
+        return sb.toString();
+    }
+    
+    private static JSONObject getJsonLinesOptions(ImportingJob job, TreeImportingParserBase parser) {
+        JSONObject options = getOptions(job, parser, JsonImporter.ANONYMOUS);
+        JSONArray path = new JSONArray();
+        JSONUtilities.append(path, JsonImporter.ANONYMOUS);
+        JSONUtilities.safePut(options, "recordPath", path);
+        JSONUtilities.safePut(options, "guessCellValueTypes", true);
+        JSONUtilities.safePut(options, "storeEmptyStrings", false);
+        return options;
+    }
 
     private static String getTypicalElement(int id){
         return "{ \"id\" : " + id + "," +
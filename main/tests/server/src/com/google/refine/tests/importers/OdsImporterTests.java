@@ -0,0 +1,208 @@
+package com.google.refine.tests.importers;
+
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.importers.ImporterUtilities;
+import com.google.refine.importers.OdsImporter;
+import com.google.refine.model.Recon;
+import com.google.refine.util.JSONUtilities;
+
+public class OdsImporterTests extends ImporterTest {
+    
+    private static final String CONTENT_HEADER =
+        "<office:document-content"
+      + " xmlns:office=\"urn:oasis:names:tc:opendocument:xmlns:office:1.0\""
+      + " xmlns:table=\"urn:oasis:names:tc:opendocument:xmlns:table:1.0\""
+      + " xmlns:text=\"urn:oasis:names:tc:opendocument:xmlns:text:1.0\""
+      + " xmlns:xlink=\"http://www.w3.org/1999/xlink\">"
+      + "<office:body><office:spreadsheet>";
+    private static final String CONTENT_FOOTER = "</office:spreadsheet></office:body></office:document-content>";
+    
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    //System Under Test
+    OdsImporter SUT = null;
+
+    @Override
+    @BeforeMethod
+    public void setUp(){
+        super.setUp();
+        SUT = new OdsImporter();
+    }
+
+    @Override
+    @AfterMethod
+    public void tearDown(){
+        SUT = null;
+        super.tearDown();
+    }
+    
+    @Test
+    public void readOds() throws IOException, JSONException {
+        byte[] ods = createOds(
+            "<table:table table:name=\"Empty\"><table:table-row table:number-rows-repeated=\"1048576\">"
+          + "<table:table-cell table:number-columns-repeated=\"1024\"/></table:table-row></table:table>"
+          + "<table:table table:name=\"Data\">"
+          + "<table:table-column table:number-columns-repeated=\"1024\"/>"
+          + "<table:table-header-rows><table:table-row>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>name</text:p></table:table-cell>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>value</text:p></table:table-cell>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>date</text:p></table:table-cell>"
+          + "<table:table-cell table:number-columns-repeated=\"1021\"/>"
+          + "</table:table-row></table:table-header-rows>"
+          + "<table:table-row>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>two<text:s text:c=\"2\"/>lines</text:p><text:p>here</text:p></table:table-cell>"
+          + "<table:table-cell office:value-type=\"float\" office:value=\"1.5\"><text:p>1.50</text:p></table:table-cell>"
+          + "<table:table-cell office:value-type=\"date\" office:date-value=\"2012-03-04\"><text:p>04/03/12</text:p></table:table-cell>"
+          + "</table:table-row>"
+          + "<table:table-row table:number-rows-repeated=\"2\">"
+          + "<table:table-cell office:value-type=\"string\"><text:p><text:a xlink:href=\"http://www.freebase.com/view/en/paris\">Paris</text:a></text:p></table:table-cell>"
+          + "<table:table-cell/>"
+          + "<table:table-cell office:value-type=\"boolean\" office:boolean-value=\"true\"><text:p>TRUE</text:p></table:table-cell>"
+          + "</table:table-row>"
+          + "<table:table-row table:number-rows-repeated=\"3\"><table:table-cell/></table:table-row>"
+          + "<table:table-row>"
+          + "<table:table-cell table:number-columns-repeated=\"2\" office:value-type=\"float\" office:value=\"7\"><text:p>7</text:p></table:table-cell>"
+          + "</table:table-row>"
+          + "<table:table-row table:number-rows-repeated=\"1048570\"><table:table-cell table:number-columns-repeated=\"1024\"/></table:table-row>"
+          + "</table:table>");
+        
+        JSONArray sheets = new JSONArray();
+        JSONUtilities.append(sheets, 
+                new JSONObject("{name: \"file-source#Data\", fileNameAndSheetIndex: \"file-source#1\", rows: 8, selected: true}"));
+        whenGetArrayOption("sheets", options, sheets);
+        whenGetIntegerOption("ignoreLines", options, 0);
+        whenGetIntegerOption("headerLines", options, 1);
+        whenGetIntegerOption("skipDataLines", options, 0);
+        whenGetIntegerOption("limit", options, -1);
+        whenGetBooleanOption("storeBlankRows",options,true);
+        whenGetBooleanOption("storeBlankCellsAsNulls",options,true);
+        
+        try {
+            parseOneFile(SUT, new ByteArrayInputStream(ods));
+        } catch (Exception e) {
+            Assert.fail(e.getMessage());
+        }
+        
+        Assert.assertEquals(project.columnModel.columns.size(), 3);
+        Assert.assertEquals(project.columnModel.columns.get(0).getName(), "name");
+        Assert.assertEquals(project.rows.size(), 7);
+        
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), "two  lines\nhere");
+        Assert.assertEquals(((Number) project.rows.get(0).getCellValue(1)).doubleValue(), 1.5);
+        Calendar date = (Calendar) project.rows.get(0).getCellValue(2);
+        Assert.assertEquals(date.get(Calendar.YEAR), 2012);
+        Assert.assertEquals(date.get(Calendar.MONTH), Calendar.MARCH);
+        
+        for (int row = 1; row <= 2; row++) {
+            Assert.assertEquals(project.rows.get(row).getCellValue(0), "Paris");
+            Assert.assertNull(project.rows.get(row).getCellValue(1));
+            Assert.assertEquals(project.rows.get(row).getCellValue(2), Boolean.TRUE);
+            Recon recon = project.rows.get(row).getCell(0).recon;
+            Assert.assertNotNull(recon);
+            Assert.assertEquals(recon.match.id, "/en/paris");
+        }
+        
+        for (int row = 3; row <= 5; row++) {
+            Assert.assertNull(project.rows.get(row).getCellValue(0));
+        }
+        Assert.assertEquals(((Number) project.rows.get(6).getCellValue(0)).doubleValue(), 7.0);
+        Assert.assertEquals(((Number) project.rows.get(6).getCellValue(1)).doubleValue(), 7.0);
+    }
+    
+    @Test
+    public void readOdsFromFileRecord() throws IOException, JSONException {
+        byte[] ods = createOds(
+            "<table:table table:name=\"First\"><table:table-row>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>first</text:p></table:table-cell>"
+          + "</table:table-row></table:table>"
+          + "<table:table table:name=\"Second\"><table:table-row>"
+          + "<table:table-cell office:value-type=\"string\"><text:p>second</text:p></table:table-cell>"
+          + "</table:table-row><table:table-row table:number-rows-repeated=\"2\">"
+          + "<table:table-cell office:value-type=\"float\" office:value=\"2\"><text:p>2</text:p></table:table-cell>"
+          + "</table:table-row></table:table>");
+        File rawDataDir = Files.createTempDirectory("openrefine-importer-test").toFile();
+        rawDataDir.deleteOnExit();
+        when(job.getRawDataDir()).thenReturn(rawDataDir);
+        File rawFile = new File(rawDataDir, "data.ods");
+        rawFile.deleteOnExit();
+        FileUtils.writeByteArrayToFile(rawFile, ods);
+        JSONObject fileRecord = new JSONObject("{location: \"data.ods\", fileName: \"data.ods\"}");
+        
+        JSONObject uiOptions = SUT.createParserUIInitializationData(job, Collections.singletonList(fileRecord), "ods");
+        JSONArray sheetRecords = uiOptions.getJSONArray("sheetRecords");
+        Assert.assertEquals(sheetRecords.length(), 2);
+        Assert.assertEquals(sheetRecords.getJSONObject(1).getString("name"), "data.ods#Second");
+        Assert.assertEquals(sheetRecords.getJSONObject(1).getInt("rows"), 3);
+        
+        // sheets selected out of document order
+        JSONArray sheets = new JSONArray();
+        JSONUtilities.append(sheets, 
+                new JSONObject("{name: \"data.ods#Second\", fileNameAndSheetIndex: \"data.ods#1\", rows: 3, selected: true}"));
+        JSONUtilities.append(sheets, 
+                new JSONObject("{name: \"data.ods#First\", fileNameAndSheetIndex: \"data.ods#0\", rows: 1, selected: true}"));
+        whenGetArrayOption("sheets", options, sheets);
+        whenGetIntegerOption("ignoreLines", options, 0);
+        whenGetIntegerOption("headerLines", options, 0);
+        whenGetIntegerOption("skipDataLines", options, 0);
+        whenGetIntegerOption("limit", options, -1);
+        whenGetBooleanOption("storeBlankRows",options,true);
+        whenGetBooleanOption("storeBlankCellsAsNulls",options,true);
+        
+        SUT.parseOneFile(project, metadata, job, fileRecord, -1, options, new ArrayList<Exception>(),
+                ImporterUtilities.createMultiFileReadingProgress(job, Collections.singletonList(fileRecord)));
+        
+        Assert.assertEquals(project.rows.size(), 4);
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), "second");
+        Assert.assertEquals(project.rows.get(3).getCellValue(0), "first");
+    }
+    
+    private static byte[] createOds(String tables) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        try {
+            writeZipEntry(zip, "mimetype", "application/vnd.oasis.opendocument.spreadsheet");
+            writeZipEntry(zip, "META-INF/manifest.xml",
+                "<manifest:manifest xmlns:manifest=\"urn:oasis:names:tc:opendocument:xmlns:manifest:1.0\">"
+              + "<manifest:file-entry manifest:full-path=\"/\" manifest:media-type=\"application/vnd.oasis.opendocument.spreadsheet\"/>"
+              + "<manifest:file-entry manifest:full-path=\"content.xml\" manifest:media-type=\"text/xml\"/>"
+              + "</manifest:manifest>");
+            writeZipEntry(zip, "content.xml", CONTENT_HEADER + tables + CONTENT_FOOTER);
+        } finally {
+            zip.close();
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static void writeZipEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes("UTF-8"));
+        zip.closeEntry();
+    }
+}
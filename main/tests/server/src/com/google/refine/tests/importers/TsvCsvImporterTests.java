@@ -35,10 +35,21 @@ package com.google.refine.tests.importers;
 
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
@@ -48,6 +59,10 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.google.refine.importers.SeparatorBasedImporter;
+import com.google.refine.importing.ImportingJob;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.metadata.ProjectMetadata;
 
 public class TsvCsvImporterTests extends ImporterTest {
 
@@ -559,6 +574,270 @@ public class TsvCsvImporterTests extends ImporterTest {
         verifyOptions();
     }
 
+    @Test
+    public void readCsvInParallelBlocks() {
+        StringBuilder sb = new StringBuilder("id,text,number\n");
+        for (int i = 0; i < 20000; i++) {
+            if (i == 3000) {
+                // quoted value spanning more than a whole block of lines
+                sb.append(i).append(",\"");
+                for (int j = 0; j < 5000; j++) {
+                    sb.append("line ").append(j).append("\n");
+                }
+                sb.append("\",1\n");
+            } else if (i % 97 == 0) {
+                sb.append(i).append(",\"multi\nline, \"\"quoted\"\"\nvalue\",").append(i * 0.5).append("\n");
+            } else {
+                sb.append(i).append(",value ").append(i).append(",").append(i % 10 == 0 ? "" : "0" + i).append("\n");
+            }
+        }
+        sb.append("20000,\"unterminated\nquote");
+        String input = sb.toString();
+        
+        prepareOptions(",", -1, 3, -1, 1, true, false);
+        SeparatorBasedImporter sequential = new SeparatorBasedImporter() {
+            @Override
+            protected int getParsingThreads() {
+                return 1;
+            }
+        };
+        SeparatorBasedImporter parallel = new SeparatorBasedImporter() {
+            @Override
+            protected int getParsingThreads() {
+                return 4;
+            }
+        };
+        
+        parseOneFile(sequential, new StringReader(input));
+        Project expected = project;
+        project = new Project();
+        parseOneFile(parallel, new StringReader(input));
+        
+        Assert.assertEquals(project.columnModel.columns.size(), expected.columnModel.columns.size());
+        Assert.assertEquals(project.rows.size(), expected.rows.size());
+        Assert.assertEquals(project.rows.size(), 20001 - 3);
+        for (int r = 0; r < project.rows.size(); r++) {
+            for (int c = 0; c < project.columnModel.columns.size(); c++) {
+                Assert.assertEquals(project.rows.get(r).getCellValue(c), expected.rows.get(r).getCellValue(c));
+            }
+        }
+        Assert.assertEquals(project.rows.get(0).getCellValue(2), 3L);
+    }
+
+    @Test
+    public void readCsvInParallelBlocksWithLimit() {
+        StringBuilder sb = new StringBuilder("id,value\n");
+        for (int i = 0; i < 50000; i++) {
+            sb.append(i).append(",v").append(i).append("\n");
+        }
+        
+        prepareOptions(",", 10000, 0, -1, 1, false, false);
+        SeparatorBasedImporter parallel = new SeparatorBasedImporter() {
+            @Override
+            protected int getParsingThreads() {
+                return 4;
+            }
+        };
+        parseOneFile(parallel, new StringReader(sb.toString()), 10000);
+        
+        Assert.assertEquals(project.rows.size(), 10000);
+        Assert.assertEquals(project.rows.get(9999).getCellValue(1), "v9999");
+    }
+
+    @Test
+    public void limitedReadsDoNotParseAhead() {
+        StringBuilder sb = new StringBuilder("id,value\n");
+        for (int i = 0; i < 50000; i++) {
+            sb.append(i).append(",v").append(i).append("\n");
+        }
+        final int[] charsRead = { 0 };
+        Reader reader = new FilterReader(new StringReader(sb.toString())) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                charsRead[0] += Math.max(0, n);
+                return n;
+            }
+        };
+        
+        prepareOptions(",", 100, 0, -1, 1, false, false);
+        SeparatorBasedImporter parallel = new SeparatorBasedImporter() {
+            @Override
+            protected int getParsingThreads() {
+                return 4;
+            }
+        };
+        parseOneFile(parallel, reader, 100);
+        
+        Assert.assertEquals(project.rows.size(), 100);
+        Assert.assertTrue(charsRead[0] < 64 * 1024, "read " + charsRead[0] + " characters");
+    }
+
+    @Test
+    public void readMultipleFilesConcurrently() throws IOException, JSONException {
+        File rawDataDir = Files.createTempDirectory("openrefine-importer-test").toFile();
+        rawDataDir.deleteOnExit();
+        when(job.getRawDataDir()).thenReturn(rawDataDir);
+        String[] contents = { "a,b\n1,2\n", "b,c\n3,4\n5,6\n", "a\n7\n", "c,a,d\n8,9,10\n" };
+        List<JSONObject> fileRecords = new ArrayList<JSONObject>();
+        for (int i = 0; i < contents.length; i++) {
+            File file = new File(rawDataDir, "part" + i + ".csv");
+            file.deleteOnExit();
+            FileUtils.writeStringToFile(file, contents[i], "UTF-8");
+            fileRecords.add(new JSONObject("{location: \"part" + i + ".csv\", fileName: \"part" + i + ".csv\"}"));
+        }
+        JSONObject options = new JSONObject(
+            "{separator: \",\", headerLines: 1, ignoreLines: -1, skipDataLines: 0, limit: -1, includeFileSources: true}");
+        
+        SeparatorBasedImporter sequential = new SeparatorBasedImporter() {
+            @Override
+            protected int getFileParsingThreads() {
+                return 1;
+            }
+        };
+        SeparatorBasedImporter concurrent = new SeparatorBasedImporter() {
+            @Override
+            protected int getFileParsingThreads() {
+                return 3;
+            }
+        };
+        
+        List<Exception> exceptions = new ArrayList<Exception>();
+        sequential.parse(project, metadata, job, fileRecords, "text/line-based/*sv", -1, options, exceptions);
+        Project expected = project;
+        expected.columnModel.update();
+        project = new Project();
+        ProjectMetadata concurrentMetadata = new ProjectMetadata();
+        concurrent.parse(project, concurrentMetadata, job, fileRecords, "text/line-based/*sv", -1, options, exceptions);
+        project.columnModel.update();
+        Assert.assertTrue(exceptions.isEmpty());
+        
+        Assert.assertEquals(project.columnModel.getColumnNames(), expected.columnModel.getColumnNames());
+        Assert.assertEquals(project.columnModel.getColumnNames(), Arrays.asList("File", "a", "b", "c", "d"));
+        Assert.assertEquals(project.rows.size(), 5);
+        for (int r = 0; r < project.rows.size(); r++) {
+            for (Column column : project.columnModel.columns) {
+                Column expectedColumn = expected.columnModel.getColumnByName(column.getName());
+                Assert.assertEquals(project.rows.get(r).getCellValue(column.getCellIndex()),
+                        expected.rows.get(r).getCellValue(expectedColumn.getCellIndex()));
+            }
+        }
+        Assert.assertEquals(project.rows.get(2).getCellValue(0), "part1.csv");
+        Assert.assertEquals(concurrentMetadata.getImportOptionMetadata().length(), contents.length);
+        Assert.assertEquals(concurrentMetadata.getImportOptionMetadata().getJSONObject(3).getString("fileSource"),
+                "part3.csv");
+    }
+
+    @Test
+    public void filesParsedConcurrentlyAreEachParsedOnOneThread() throws IOException, JSONException {
+        File rawDataDir = Files.createTempDirectory("openrefine-importer-test").toFile();
+        when(job.getRawDataDir()).thenReturn(rawDataDir);
+        StringBuilder sb = new StringBuilder("id,value\n");
+        for (int i = 0; i < 300000; i++) {
+            sb.append(i).append(",v").append(i).append("\n");
+        }
+        List<JSONObject> fileRecords = new ArrayList<JSONObject>();
+        for (int i = 0; i < 3; i++) {
+            FileUtils.writeStringToFile(new File(rawDataDir, "part" + i + ".csv"), sb.toString(), "UTF-8");
+            fileRecords.add(new JSONObject("{location: \"part" + i + ".csv\", fileName: \"part" + i + ".csv\"}"));
+        }
+        JSONObject options = new JSONObject(
+            "{separator: \",\", headerLines: 1, ignoreLines: -1, skipDataLines: 0, limit: -1}");
+        
+        final int[] maxThreads = { 0, 0 };
+        SeparatorBasedImporter importer = new SeparatorBasedImporter() {
+            @Override
+            protected int getFileParsingThreads() {
+                return 3;
+            }
+            
+            @Override
+            protected int getParsingThreads() {
+                return 4;
+            }
+            
+            @Override
+            public void parseOneFile(Project project, ProjectMetadata metadata, ImportingJob job,
+                    String fileSource, Reader reader, int limit, JSONObject options, List<Exception> exceptions) {
+                super.parseOneFile(project, metadata, job, fileSource, new FilterReader(reader) {
+                    @Override
+                    public int read(char[] cbuf, int off, int len) throws IOException {
+                        countThreads(maxThreads);
+                        return super.read(cbuf, off, len);
+                    }
+                }, limit, options, exceptions);
+            }
+        };
+        
+        List<Exception> exceptions = new ArrayList<Exception>();
+        importer.parse(project, metadata, job, fileRecords, "text/line-based/*sv", -1, options, exceptions);
+        Assert.assertTrue(exceptions.isEmpty());
+        Assert.assertEquals(project.rows.size(), 3 * 300000);
+        Assert.assertTrue(maxThreads[0] <= 3, maxThreads[0] + " threads parsing files");
+        Assert.assertEquals(maxThreads[1], 0, "threads parsing blocks of a file");
+        
+        // a single file is still parsed on several threads
+        project = new Project();
+        importer.parse(project, metadata, job, fileRecords.subList(0, 1), "text/line-based/*sv", -1, options,
+                exceptions);
+        Assert.assertEquals(project.rows.size(), 300000);
+        Assert.assertTrue(maxThreads[1] > 0 && maxThreads[1] <= 4, maxThreads[1] + " threads parsing blocks");
+        FileUtils.deleteDirectory(rawDataDir);
+    }
+    
+    /**
+     * Record the largest number of live threads parsing files concurrently
+     * and parsing the blocks of a file seen so far.
+     */
+    static private void countThreads(int[] maxThreads) {
+        int files = 0;
+        int blocks = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("importing-parser".equals(thread.getName())) {
+                files++;
+            } else if ("separator-based-importer".equals(thread.getName())) {
+                blocks++;
+            }
+        }
+        maxThreads[0] = Math.max(maxThreads[0], files);
+        maxThreads[1] = Math.max(maxThreads[1], blocks);
+    }
+
+    @Test
+    public void previewReusesRecordsWhileOnlyRowOptionsChange() throws JSONException {
+        JSONObject options = new JSONObject("{separator: \",\", headerLines: 1, ignoreLines: -1, skipDataLines: 0}");
+        List<Exception> exceptions = new ArrayList<Exception>();
+        SUT.parseOneFile(project, metadata, job, "file-source", new StringReader("a,b\n1,2\n3,4\n"),
+                100, options, exceptions);
+        Assert.assertEquals(project.rows.size(), 2);
+        
+        // the records of the first preview are used instead of the changed file
+        options.put("headerLines", 0);
+        options.put("guessCellValueTypes", true);
+        project = new Project();
+        SUT.parseOneFile(project, metadata, job, "file-source", new StringReader("x,y\n"),
+                100, options, exceptions);
+        Assert.assertEquals(project.rows.size(), 3);
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), "a");
+        Assert.assertEquals(project.rows.get(2).getCellValue(1), 4L);
+        
+        // other options change how the file is split, so it is read again
+        options.put("separator", ";");
+        project = new Project();
+        SUT.parseOneFile(project, metadata, job, "file-source", new StringReader("x;y\n"),
+                100, options, exceptions);
+        Assert.assertEquals(project.rows.size(), 1);
+        Assert.assertEquals(project.rows.get(0).getCellValue(1), "y");
+        
+        job.dispose();
+        project = new Project();
+        options.put("separator", ",");
+        SUT.parseOneFile(project, metadata, job, "file-source", new StringReader("x,y\n"),
+                100, options, exceptions);
+        Assert.assertEquals(project.rows.get(0).getCellValue(0), "x");
+        Assert.assertTrue(exceptions.isEmpty());
+    }
+
     //--helpers--
     /**
      * Used for parameterized testing for both SeparatorParser and TsvCsvParser.
@@ -570,6 +849,11 @@ public class TsvCsvImporterTests extends ImporterTest {
         };
     }
     
+    private void parseOneFile(SeparatorBasedImporter parser, Reader reader, int limit) {
+        parser.parseOneFile(project, metadata, job, "file-source", reader, limit, options, new ArrayList<Exception>());
+        project.update();
+    }
+    
     protected void prepareOptions(
             String sep, int limit, int skip, int ignoreLines,
             int headerLines, boolean guessValueType, boolean ignoreQuotes) {
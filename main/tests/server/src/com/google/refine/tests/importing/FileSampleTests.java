@@ -0,0 +1,52 @@
+package com.google.refine.tests.importing;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.importing.FileSample;
+
+public class FileSampleTests {
+
+    @Test
+    public void sampleStopsAtTheEndOfALine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (sb.length() < 3 * FileSample.SAMPLE_SIZE) {
+            sb.append("line ").append(i++).append(",a,b\n");
+        }
+        File file = File.createTempFile("openrefine-sample", ".csv");
+        try {
+            FileUtils.writeStringToFile(file, sb.toString(), "UTF-8");
+
+            FileSample sample = FileSample.get(file, "UTF-8");
+            String text = sample.getText();
+            Assert.assertTrue(text.length() >= FileSample.SAMPLE_SIZE);
+            Assert.assertTrue(text.length() < 2 * FileSample.SAMPLE_SIZE);
+            Assert.assertTrue(text.endsWith("\n"));
+            Assert.assertTrue(sb.toString().startsWith(text));
+
+            // guessers reading the same file share one sample
+            Assert.assertSame(FileSample.get(file, "UTF-8"), sample);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void changedFileIsSampledAgain() throws IOException {
+        File file = File.createTempFile("openrefine-sample", ".txt");
+        try {
+            FileUtils.writeStringToFile(file, "a\tb\n", "UTF-8");
+            Assert.assertEquals(FileSample.get(file, "UTF-8").getText(), "a\tb\n");
+
+            FileUtils.writeStringToFile(file, "a,b,c\n", "UTF-8");
+            Assert.assertEquals(FileSample.get(file, "UTF-8").getText(), "a,b,c\n");
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -1,11 +1,22 @@
 
 package com.google.refine.tests.importing;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import java.util.LinkedList;
 
+import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -15,7 +26,9 @@ import com.google.refine.importers.tree.TreeImportingParserBase;
 import com.google.refine.importing.ImportingJob;
 import com.google.refine.importing.ImportingManager;
 import com.google.refine.importing.ImportingUtilities;
+import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
+import com.google.refine.model.Row;
 import com.google.refine.model.metadata.ProjectMetadata;
 import com.google.refine.tests.importers.ImporterTest;
 import com.google.refine.util.JSONUtilities;
@@ -55,12 +68,133 @@ public class ImportingUtilitiesTests extends ImporterTest {
                 options);
         
         ImportingUtilities.inferColumnType(project);
-        
         Assert.assertTrue(project.columnModel.columns.size() == 58);
         Assert.assertTrue(project.columnModel.getColumnByName("result - source_id").getType().equals("string"));
-        Assert.assertTrue(project.columnModel.getColumnByName("result - person - sexe").getType().equals("boolean"));
+        // the first rows are blank in this column, the others hold M or F
+        Assert.assertTrue(project.columnModel.getColumnByName("result - person - sexe").getType().equals("string"));
+    }
+    
+    @Test
+    public void inferColumnTypeSamplesWholeProject() throws Exception {
+        project.columnModel.addColumn(0, new Column(project.columnModel.allocateNewCellIndex(), "key"), false);
+        project.columnModel.addColumn(1, new Column(project.columnModel.allocateNewCellIndex(), "sorted"), false);
+        for (int i = 0; i < 5000; i++) {
+            Row row = new Row(2);
+            row.setCell(0, new Cell("k" + i, null));
+            // the first rows alone would make this an integer column
+            row.setCell(1, new Cell(i < 200 ? Integer.toString(i) : "value " + i, null));
+            project.rows.add(row);
+        }
+        project.columnModel.getColumnByName("key").setType("string");
+        
+        ImportingUtilities.inferColumnType(project, metadata);
+        
+        Assert.assertEquals(project.columnModel.getColumnByName("sorted").getType(), "string");
+        JSONObject inferred = new JSONObject(
+                (String) metadata.getCustomMetadata(ImportingUtilities.INFERRED_COLUMN_TYPES));
+        Assert.assertFalse(inferred.has("key"));
+        Assert.assertEquals(inferred.getJSONObject("sorted").getString("type"), "string");
+        
+        // recorded types are reused rather than inferred again
+        inferred.getJSONObject("sorted").put("type", "integer");
+        metadata.setCustomMetadata(ImportingUtilities.INFERRED_COLUMN_TYPES, inferred.toString());
+        project.columnModel.getColumnByName("sorted").setType("");
+        ImportingUtilities.inferColumnType(project, metadata);
+        Assert.assertEquals(project.columnModel.getColumnByName("sorted").getType(), "integer");
     }
     
+    @Test
+    public void saveStreamToFileCopiesStreamsAndFiles() throws IOException {
+        // larger than one transfer chunk
+        byte[] data = new byte[5 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(data);
+
+        File source = File.createTempFile("openrefine-save", ".bin");
+        File target = File.createTempFile("openrefine-save", ".bin");
+        try {
+            Assert.assertEquals(ImportingUtilities.saveStreamToFile(new ByteArrayInputStream(data), source, null), data.length);
+            Assert.assertEquals(Files.readAllBytes(source.toPath()), data);
+
+            FileInputStream fis = new FileInputStream(source);
+            try {
+                Assert.assertEquals(ImportingUtilities.saveStreamToFile(fis, target, null), data.length);
+            } finally {
+                fis.close();
+            }
+            Assert.assertEquals(Files.readAllBytes(target.toPath()), data);
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+
+    @Test
+    public void zipMembersAreExtractedWhenRead() throws IOException {
+        File rawDataDir = Files.createTempDirectory("openrefine-raw-data").toFile();
+        Mockito.when(job.getRawDataDir()).thenReturn(rawDataDir);
+        try {
+            File zip = new File(rawDataDir, "archive.zip");
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+            zos.putNextEntry(new ZipEntry("a.csv"));
+            zos.write("a,b\n1,2\n".getBytes("UTF-8"));
+            zos.putNextEntry(new ZipEntry("dir/"));
+            zos.putNextEntry(new ZipEntry("dir/b.csv"));
+            zos.write("c\n3\n".getBytes("UTF-8"));
+            zos.close();
+
+            JSONObject archiveRecord = new JSONObject();
+            JSONUtilities.safePut(archiveRecord, "fileName", "archive.zip");
+            JSONArray fileRecords = new JSONArray();
+            Assert.assertTrue(ImportingUtilities.postProcessRetrievedFile(rawDataDir, zip, archiveRecord, fileRecords, null));
+            Assert.assertEquals(fileRecords.length(), 2);
+
+            JSONObject first = fileRecords.getJSONObject(0);
+            JSONObject second = fileRecords.getJSONObject(1);
+            Assert.assertEquals(first.getString("fileName"), "a.csv");
+            Assert.assertEquals(first.getLong("size"), 8);
+            Assert.assertEquals(first.getString("archiveFileName"), "archive.zip");
+            // nothing is decompressed until a member is read
+            File secondFile = new File(rawDataDir, second.getString("location"));
+            Assert.assertTrue(secondFile.exists());
+            Assert.assertEquals(secondFile.length(), 0);
+
+            File file = ImportingUtilities.getFile(job, second);
+            Assert.assertEquals(new String(Files.readAllBytes(file.toPath()), "UTF-8"), "c\n3\n");
+            Assert.assertFalse(second.has("archiveEntry"));
+            Assert.assertEquals(new File(rawDataDir, first.getString("location")).length(), 0);
+        } finally {
+            FileUtils.deleteQuietly(rawDataDir);
+        }
+    }
+
+    @Test
+    public void failedZipExtractionIsReported() throws IOException {
+        File rawDataDir = Files.createTempDirectory("openrefine-raw-data").toFile();
+        Mockito.when(job.getRawDataDir()).thenReturn(rawDataDir);
+        try {
+            File zip = new File(rawDataDir, "archive.zip");
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+            zos.putNextEntry(new ZipEntry("a.csv"));
+            zos.write("a,b\n1,2\n".getBytes("UTF-8"));
+            zos.close();
+
+            JSONObject archiveRecord = new JSONObject();
+            JSONUtilities.safePut(archiveRecord, "fileName", "archive.zip");
+            JSONArray fileRecords = new JSONArray();
+            Assert.assertTrue(ImportingUtilities.postProcessRetrievedFile(rawDataDir, zip, archiveRecord, fileRecords, null));
+            Assert.assertTrue(zip.delete());
+
+            try {
+                ImportingUtilities.getFile(job, fileRecords.getJSONObject(0));
+                Assert.fail("the empty placeholder of a.csv was returned");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("a.csv"), e.getMessage());
+            }
+        } finally {
+            FileUtils.deleteQuietly(rawDataDir);
+        }
+    }
+
     private JSONObject getNestedOptions(ImportingJob job, TreeImportingParserBase parser) {
         JSONObject options = parser.createParserUIInitializationData(
                 job, new LinkedList<JSONObject>(), "text/json");
@@ -0,0 +1,67 @@
+package com.google.refine.tests.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.io.ParallelGZIPOutputStream;
+import com.google.refine.tests.RefineTest;
+
+public class ParallelGZIPOutputStreamTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void outputIsOneReadableGzipStream() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("row ").append(i).append(",some repeated text\n");
+        }
+        byte[] text = sb.toString().getBytes("UTF-8");
+        byte[] noise = new byte[100000];
+        new Random(42).nextBytes(noise);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream gos = new ParallelGZIPOutputStream(compressed, 3, 32 * 1024);
+        gos.write(text, 0, 1000);
+        gos.setLevel(Deflater.NO_COMPRESSION);
+        gos.write(noise);
+        gos.setLevel(Deflater.DEFAULT_COMPRESSION);
+        gos.write(text, 1000, text.length - 1000);
+        gos.write('!');
+        gos.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(text, 0, 1000);
+        expected.write(noise);
+        expected.write(text, 1000, text.length - 1000);
+        expected.write('!');
+
+        byte[] actual = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+        Assert.assertEquals(actual, expected.toByteArray());
+        // the text still compresses well across block boundaries
+        Assert.assertTrue(compressed.size() < noise.length + text.length / 4);
+    }
+
+    @Test
+    public void emptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGZIPOutputStream(compressed).close();
+
+        byte[] actual = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+        Assert.assertEquals(actual.length, 0);
+    }
+}
@@ -0,0 +1,73 @@
+package com.google.refine.tests.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.io.ProjectUtilities;
+import com.google.refine.model.Cell;
+import com.google.refine.model.ChunkedRowStore;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+import com.google.refine.tests.RefineTest;
+import com.google.refine.util.Pool;
+
+public class ProjectUtilitiesTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    @Test
+    public void rowsOnDiskAreLoadedIntoARowStore() throws IOException {
+        File dir = Files.createTempDirectory("openrefine-project").toFile();
+        try {
+            Project project = new Project();
+            for (int i = 0; i < 25; i++) {
+                Row row = new Row(1);
+                row.setCell(0, new Cell("v" + i, null));
+                project.rows.add(row);
+            }
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(dir, "data.zip")));
+            Pool pool = new Pool();
+            out.putNextEntry(new ZipEntry("data.txt"));
+            project.saveToOutputStream(out, pool);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("pool.txt"));
+            pool.save(out);
+            out.closeEntry();
+            out.close();
+
+            File rowStoreDir = new File(dir, "rows");
+            rowStoreDir.mkdirs();
+            // left over from an earlier session
+            FileUtils.writeStringToFile(new File(rowStoreDir, "chunk-7.rows"), "stale", "UTF-8");
+
+            Project loaded = ProjectUtilities.load(dir, project.id, rowStoreDir);
+            Assert.assertTrue(loaded.rows instanceof ChunkedRowStore);
+            Assert.assertEquals(loaded.rows.size(), 25);
+            for (int i = 0; i < 25; i++) {
+                Assert.assertEquals(loaded.rows.get(i).getCellValue(0), "v" + i);
+            }
+            Assert.assertFalse(new File(rowStoreDir, "chunk-7.rows").exists());
+
+            loaded.dispose();
+            Assert.assertFalse(rowStoreDir.exists());
+
+            Assert.assertFalse(ProjectUtilities.load(dir, project.id).rows instanceof ChunkedRowStore);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.google.refine.tests.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.io.ZstdOutputStream;
+import com.google.refine.tests.RefineTest;
+
+public class ZstdOutputStreamTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+
+    /**
+     * zstd-two-blocks.zst was written by this encoder and checked by
+     * decompressing it with the reference libzstd, so this test keeps the
+     * output readable by other decoders.
+     */
+    @Test
+    public void outputMatchesGoldenFrame() throws IOException {
+        StringBuilder first = new StringBuilder();
+        StringBuilder second = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            (i < 1000 ? first : second).append("row ").append(i).append(",value ").append(i % 10).append("\n");
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ZstdOutputStream zos = new ZstdOutputStream(compressed);
+        zos.write(first.toString().getBytes("UTF-8"));
+        zos.flush();
+        zos.write(second.toString().getBytes("UTF-8"));
+        zos.close();
+
+        InputStream in = getClass().getClassLoader().getResourceAsStream("zstd-two-blocks.zst");
+        try {
+            Assert.assertEquals(compressed.toByteArray(), IOUtils.toByteArray(in));
+        } finally {
+            in.close();
+        }
+        Assert.assertEquals(new String(decode(compressed.toByteArray()), "UTF-8"), first.toString() + second);
+    }
+
+    @Test
+    public void outputDecodesToTheInput() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("row ").append(i).append(",some repeated text\n");
+        }
+        byte[] text = sb.toString().getBytes("UTF-8");
+        byte[] noise = new byte[100000];
+        new Random(42).nextBytes(noise);
+        byte[] zeros = new byte[300000];
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ZstdOutputStream zos = new ZstdOutputStream(compressed);
+        zos.write(text, 0, 1000);
+        zos.flush();
+        zos.write(noise);
+        zos.write(text, 1000, text.length - 1000);
+        zos.write(zeros);
+        zos.write('!');
+        zos.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(text, 0, 1000);
+        expected.write(noise);
+        expected.write(text, 1000, text.length - 1000);
+        expected.write(zeros);
+        expected.write('!');
+
+        Assert.assertEquals(decode(compressed.toByteArray()), expected.toByteArray());
+        // the noise is stored raw, the text and zeros compress well
+        Assert.assertTrue(compressed.size() < noise.length + text.length / 3, compressed.size() + " bytes");
+    }
+
+    @Test
+    public void flushEndsABlock() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ZstdOutputStream zos = new ZstdOutputStream(compressed);
+        zos.write("first rows\n".getBytes("UTF-8"));
+        zos.flush();
+        int flushed = compressed.size();
+        zos.flush();
+        Assert.assertEquals(compressed.size(), flushed);
+
+        // a frame cut after the flush still holds everything written before it
+        byte[] frame = Arrays.copyOf(compressed.toByteArray(), flushed + 3);
+        frame[flushed] = 1; // last, empty raw block
+        Assert.assertEquals(new String(decode(frame), "UTF-8"), "first rows\n");
+        zos.close();
+    }
+
+    @Test
+    public void emptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ZstdOutputStream(compressed).close();
+
+        Assert.assertEquals(decode(compressed.toByteArray()).length, 0);
+    }
+
+    static final private int[] LL_BASELINES = {
+        0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+        16, 18, 20, 22, 24, 28, 32, 40, 48, 64, 128, 256, 512, 1024, 2048, 4096,
+        8192, 16384, 32768, 65536
+    };
+    static final private int[] LL_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 6, 7, 8, 9, 10, 11, 12,
+        13, 14, 15, 16
+    };
+    static final private int[] ML_BASELINES = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18,
+        19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34,
+        35, 37, 39, 41, 43, 47, 51, 59, 67, 83, 99, 131, 259, 515, 1027, 2051,
+        4099, 8195, 16387, 32771, 65539
+    };
+    static final private int[] ML_BITS = {
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 2, 2, 3, 3, 4, 4, 5, 7, 8, 9, 10, 11,
+        12, 13, 14, 15, 16
+    };
+    static final private int[][] LL_TABLE = decodingTable(6, new int[] {
+        4, 3, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 1, 1, 1,
+        2, 2, 2, 2, 2, 2, 2, 2, 2, 3, 2, 1, 1, 1, 1, 1,
+        -1, -1, -1, -1
+    });
+    static final private int[][] ML_TABLE = decodingTable(6, new int[] {
+        1, 4, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, -1, -1,
+        -1, -1, -1, -1, -1
+    });
+    static final private int[][] OF_TABLE = decodingTable(5, new int[] {
+        1, 1, 1, 1, 1, 1, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, -1, -1, -1, -1, -1
+    });
+
+    /**
+     * Decodes a Zstandard frame made of the parts ZstdOutputStream writes:
+     * raw and compressed blocks, raw literals and sequences coded with the
+     * predefined tables, without repeat offsets.
+     */
+    static public byte[] decode(byte[] frame) throws IOException {
+        Assert.assertEquals(Arrays.copyOf(frame, 5), new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0 });
+        int windowLog = 10 + ((frame[5] & 0xff) >> 3);
+        int pos = 6;
+        byte[] out = new byte[0];
+        int length = 0;
+        boolean last = false;
+        while (!last) {
+            int header = (frame[pos] & 0xff) | (frame[pos + 1] & 0xff) << 8 | (frame[pos + 2] & 0xff) << 16;
+            pos += 3;
+            last = (header & 1) == 1;
+            int type = (header >> 1) & 3;
+            int size = header >>> 3;
+            Assert.assertTrue(size <= 128 * 1024);
+            if (type == 0) {
+                out = ensure(out, length + size);
+                System.arraycopy(frame, pos, out, length, size);
+                length += size;
+            } else {
+                Assert.assertEquals(type, 2, "block type");
+                int end = pos + size;
+                int p = pos;
+                int sizeFormat = (frame[p] >> 2) & 3;
+                Assert.assertEquals(frame[p] & 3, 0, "literals block type");
+                int literalsSize;
+                if ((sizeFormat & 1) == 0) {
+                    literalsSize = (frame[p] & 0xff) >> 3;
+                    p += 1;
+                } else if (sizeFormat == 1) {
+                    literalsSize = ((frame[p] & 0xff) >> 4) | (frame[p + 1] & 0xff) << 4;
+                    p += 2;
+                } else {
+                    literalsSize = ((frame[p] & 0xff) >> 4) | (frame[p + 1] & 0xff) << 4 | (frame[p + 2] & 0xff) << 12;
+                    p += 3;
+                }
+                int literals = p;
+                p += literalsSize;
+
+                int sequences = frame[p++] & 0xff;
+                if (sequences == 255) {
+                    sequences = (frame[p] & 0xff) + ((frame[p + 1] & 0xff) << 8) + 0x7f00;
+                    p += 2;
+                } else if (sequences >= 128) {
+                    sequences = ((sequences - 128) << 8) + (frame[p++] & 0xff);
+                }
+                if (sequences > 0) {
+                    Assert.assertEquals(frame[p++], 0, "symbol compression modes");
+                }
+                BitReader bits = new BitReader(frame, p, end);
+                int llState = bits.read(6);
+                int ofState = bits.read(5);
+                int mlState = bits.read(6);
+                int literalsEnd = literals + literalsSize;
+                for (int i = 0; i < sequences; i++) {
+                    int ofCode = OF_TABLE[0][ofState];
+                    int mlCode = ML_TABLE[0][mlState];
+                    int llCode = LL_TABLE[0][llState];
+                    int offsetValue = (1 << ofCode) + bits.read(ofCode);
+                    int matchLength = ML_BASELINES[mlCode] + bits.read(ML_BITS[mlCode]);
+                    int literalLength = LL_BASELINES[llCode] + bits.read(LL_BITS[llCode]);
+                    if (i < sequences - 1) {
+                        llState = LL_TABLE[2][llState] + bits.read(LL_TABLE[1][llState]);
+                        mlState = ML_TABLE[2][mlState] + bits.read(ML_TABLE[1][mlState]);
+                        ofState = OF_TABLE[2][ofState] + bits.read(OF_TABLE[1][ofState]);
+                    }
+                    Assert.assertTrue(offsetValue > 3, "repeat offset");
+                    int offset = offsetValue - 3;
+                    Assert.assertTrue(offset <= length + literalLength && offset <= 1 << windowLog, "offset");
+
+                    out = ensure(out, length + literalLength + matchLength);
+                    System.arraycopy(frame, literals, out, length, literalLength);
+                    literals += literalLength;
+                    length += literalLength;
+                    for (int j = 0; j < matchLength; j++) {
+                        out[length] = out[length - offset];
+                        length++;
+                    }
+                }
+                Assert.assertEquals(bits.remaining(), 0, "bits left in the sequences");
+                Assert.assertTrue(literals <= literalsEnd);
+                out = ensure(out, length + literalsEnd - literals);
+                System.arraycopy(frame, literals, out, length, literalsEnd - literals);
+                length += literalsEnd - literals;
+            }
+            pos += size;
+        }
+        Assert.assertEquals(pos, frame.length, "bytes after the last block");
+        return Arrays.copyOf(out, length);
+    }
+
+    static private byte[] ensure(byte[] out, int length) {
+        return length <= out.length ? out : Arrays.copyOf(out, Math.max(length, out.length * 2));
+    }
+
+    /**
+     * @return the symbol, number of bits and baseline of each state
+     */
+    static private int[][] decodingTable(int accuracyLog, int[] distribution) {
+        int size = 1 << accuracyLog;
+        int[][] table = new int[3][size];
+        int[] next = new int[distribution.length];
+        int highThreshold = size - 1;
+        for (int s = 0; s < distribution.length; s++) {
+            if (distribution[s] == -1) {
+                table[0][highThreshold--] = s;
+                next[s] = 1;
+            } else {
+                next[s] = distribution[s];
+            }
+        }
+        int position = 0;
+        for (int s = 0; s < distribution.length; s++) {
+            for (int i = 0; i < distribution[s]; i++) {
+                table[0][position] = s;
+                do {
+                    position = (position + (size >> 1) + (size >> 3) + 3) & (size - 1);
+                } while (position > highThreshold);
+            }
+        }
+        for (int state = 0; state < size; state++) {
+            int n = next[table[0][state]]++;
+            table[1][state] = accuracyLog - (31 - Integer.numberOfLeadingZeros(n));
+            table[2][state] = (n << table[1][state]) - size;
+        }
+        return table;
+    }
+
+    /**
+     * Reads bits backwards from the end of a bitstream, after its end marker.
+     */
+    static private class BitReader {
+        final byte[] data;
+        final int start;
+        int bit;
+
+        BitReader(byte[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            int lastByte = data[end - 1] & 0xff;
+            Assert.assertTrue(lastByte != 0, "end marker");
+            bit = (end - 1 - start) * 8 + (31 - Integer.numberOfLeadingZeros(lastByte));
+        }
+
+        int read(int n) {
+            bit -= n;
+            Assert.assertTrue(bit >= 0, "bitstream overflow");
+            int value = 0;
+            for (int i = 0; i < n; i++) {
+                int b = bit + i;
+                value |= ((data[start + (b >> 3)] >> (b & 7)) & 1) << i;
+            }
+            return value;
+        }
+
+        int remaining() {
+            return bit;
+        }
+    }
+}
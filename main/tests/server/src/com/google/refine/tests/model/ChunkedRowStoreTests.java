@@ -0,0 +1,151 @@
+package com.google.refine.tests.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.ChunkedRowStore;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+import com.google.refine.tests.RefineTest;
+
+public class ChunkedRowStoreTests extends RefineTest {
+
+    @Override
+    @BeforeTest
+    public void init() {
+        logger = LoggerFactory.getLogger(this.getClass());
+    }
+    
+    File dir;
+    ChunkedRowStore rows;
+    
+    @BeforeMethod
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("openrefine-rows-test").toFile();
+        // small chunks, of which only two stay in memory
+        rows = new ChunkedRowStore(dir, 4, 2);
+    }
+    
+    @AfterMethod
+    public void tearDown() {
+        rows.dispose();
+    }
+    
+    private static Row row(Object value) {
+        Row row = new Row(1);
+        row.setCell(0, new Cell((java.io.Serializable) value, null));
+        return row;
+    }
+    
+    @Test
+    public void pagesChunksInAndOut() {
+        List<Row> expected = new ArrayList<Row>();
+        for (int i = 0; i < 25; i++) {
+            rows.add(row("v" + i));
+            expected.add(row("v" + i));
+        }
+        Assert.assertEquals(rows.size(), 25);
+        Assert.assertTrue(dir.listFiles().length >= 4);
+        
+        for (int i = 24; i >= 0; i--) {
+            Assert.assertEquals(rows.get(i).getCellValue(0), "v" + i);
+        }
+        int i = 0;
+        for (Row row : rows) {
+            Assert.assertEquals(row.getCellValue(0), expected.get(i++).getCellValue(0));
+        }
+        Assert.assertEquals(i, 25);
+    }
+    
+    @Test
+    public void keepsChangesMadeInPlace() {
+        for (int i = 0; i < 20; i++) {
+            rows.add(row((long) i));
+        }
+        // changed while its chunk is in memory, then paged out
+        rows.beginChanges();
+        rows.get(1).setCell(0, new Cell("changed", null));
+        rows.get(1).flagged = true;
+        rows.get(19);
+        rows.get(15);
+        Assert.assertEquals(rows.get(1).getCellValue(0), "changed");
+        Assert.assertTrue(rows.get(1).flagged);
+        Assert.assertEquals(rows.get(2).getCellValue(0), 2L);
+        
+        Recon recon = new Recon(0, null, null);
+        rows.get(3).setCell(0, new Cell("reconciled", recon));
+        rows.get(19);
+        rows.get(15);
+        rows.endChanges();
+        Assert.assertSame(rows.get(3).getCell(0).recon, recon);
+    }
+    
+    @Test
+    public void cleanChunksAreNotRewritten() {
+        for (int i = 0; i < 20; i++) {
+            rows.add(row((long) i));
+        }
+        // page every chunk out, so all of them have been written
+        for (int i = 0; i < 20; i++) {
+            rows.get(i);
+        }
+        for (int i = 0; i < 8; i++) {
+            rows.get(i);
+        }
+        Assert.assertEquals(dir.listFiles().length, 5);
+        for (File file : dir.listFiles()) {
+            Assert.assertTrue(file.setLastModified(0));
+        }
+        for (int i = 19; i >= 0; i--) {
+            Assert.assertEquals(rows.get(i).getCellValue(0), (long) i);
+        }
+        for (int i = 0; i < 20; i++) {
+            rows.get(i);
+        }
+        for (File file : dir.listFiles()) {
+            Assert.assertEquals(file.lastModified(), 0);
+        }
+    }
+    
+    @Test
+    public void insertsAndRemovesAcrossChunks() {
+        List<Row> expected = new ArrayList<Row>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row("v" + i));
+            expected.add(row("v" + i));
+        }
+        for (int i = 0; i < 8; i++) {
+            rows.add(5, row("new" + i));
+            expected.add(5, row("new" + i));
+        }
+        rows.remove(0);
+        expected.remove(0);
+        for (int i = 0; i < 4; i++) {
+            rows.remove(8);
+            expected.remove(8);
+        }
+        rows.set(2, row("set"));
+        expected.set(2, row("set"));
+        
+        Assert.assertEquals(rows.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(rows.get(i).getCellValue(0), expected.get(i).getCellValue(0));
+        }
+        
+        rows.clear();
+        Assert.assertEquals(rows.size(), 0);
+        rows.add(row("again"));
+        Assert.assertEquals(rows.get(0).getCellValue(0), "again");
+    }
+}
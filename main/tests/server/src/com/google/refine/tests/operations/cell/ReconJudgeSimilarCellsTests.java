@@ -1,7 +1,9 @@
 package com.google.refine.tests.operations.cell;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.Collections;
 import java.util.Properties;
@@ -11,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import com.google.refine.browsing.util.CellValueRowIndex;
 import com.google.refine.model.AbstractOperation;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
@@ -63,4 +66,50 @@ public class ReconJudgeSimilarCellsTests extends RefineTest {
         assertEquals("http://my.database/entity/", cell.recon.identifierSpace);
         assertNull(project.rows.get(1).cells.get(0).recon);
     }
+    
+    @Test
+    public void testJudgeSimilarCellsRespectsFacets() throws Exception {
+        Project project = createCSVProject(
+                "A,B\n"
+              + "foo,x\n"
+              + "bar,x\n"
+              + "foo,y\n"
+              + "foo,x\n");
+        
+        JSONObject engineConfig = new JSONObject("{\"facets\":[{\"type\":\"list\",\"name\":\"B\",\"columnName\":\"B\","
+                + "\"expression\":\"value\",\"omitBlank\":false,\"omitError\":false,\"selection\":[{\"v\":{\"v\":\"x\",\"l\":\"x\"}}],"
+                + "\"selectBlank\":false,\"selectError\":false,\"invert\":false}],\"mode\":\"row-based\"}");
+        
+        AbstractOperation op = new ReconJudgeSimilarCellsOperation(
+            engineConfig,
+            "A",
+            "foo",
+            Recon.Judgment.New,
+            null, true);
+        Process process = op.createProcess(project, new Properties());
+        process.performImmediate();
+        
+        assertEquals(Recon.Judgment.New, project.rows.get(0).cells.get(0).recon.judgment);
+        assertNull(project.rows.get(1).cells.get(0).recon);
+        assertNull(project.rows.get(2).cells.get(0).recon);
+        assertEquals(Recon.Judgment.New, project.rows.get(3).cells.get(0).recon.judgment);
+        assertEquals(2, project.rows.get(3).cells.get(0).recon.judgmentBatchSize);
+        
+        // the value index survives judgments, which leave cell values untouched
+        Column column = project.columnModel.columns.get(0);
+        Object index = column.getPrecompute(CellValueRowIndex.PRECOMPUTE_KEY);
+        assertNotNull(index);
+        
+        op = new ReconJudgeSimilarCellsOperation(
+            ENGINE_CONFIG,
+            "A",
+            "bar",
+            Recon.Judgment.New,
+            null, true);
+        process = op.createProcess(project, new Properties());
+        process.performImmediate();
+        
+        assertEquals(Recon.Judgment.New, project.rows.get(1).cells.get(0).recon.judgment);
+        assertSame(index, column.getPrecompute(CellValueRowIndex.PRECOMPUTE_KEY));
+    }
 }
@@ -0,0 +1,47 @@
+package com.google.refine.tests.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.refine.util.MeteredOutputStream;
+
+public class MeteredOutputStreamTests {
+
+    static class CountingFlushes extends ByteArrayOutputStream {
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    @Test
+    public void flushesEveryInterval() throws IOException {
+        CountingFlushes out = new CountingFlushes();
+        MeteredOutputStream stream = new MeteredOutputStream(out, 10);
+
+        stream.write(new byte[25]);
+        Assert.assertEquals(out.flushes, 1);
+        stream.write(new byte[9]);
+        Assert.assertEquals(out.flushes, 1);
+        stream.write('x');
+        Assert.assertEquals(out.flushes, 2);
+
+        Assert.assertEquals(stream.getBytesWritten(), 35);
+        Assert.assertEquals(out.size(), 35);
+    }
+
+    @Test
+    public void noIntervalMeansNoExtraFlushes() throws IOException {
+        CountingFlushes out = new CountingFlushes();
+        MeteredOutputStream stream = new MeteredOutputStream(out);
+
+        stream.write(new byte[100000]);
+        Assert.assertEquals(out.flushes, 0);
+        Assert.assertEquals(stream.getBytesWritten(), 100000);
+    }
+}
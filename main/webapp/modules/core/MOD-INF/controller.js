@@ -219,10 +219,13 @@ function registerImporting() {
   IM.registerFormat("text/xml/ods", "Open Document Format spreadsheets (.ods)", "ExcelParserUI", new Packages.com.google.refine.importers.OdsImporter());
   IM.registerFormat("text/xml/rdf", "RDF/XML files", "RdfTriplesParserUI", new Packages.com.google.refine.importers.RdfXmlTripleImporter());
   IM.registerFormat("text/json", "JSON files", "JsonParserUI", new Packages.com.google.refine.importers.JsonImporter());
+  IM.registerFormat("text/json/jsonl", "JSON lines files", "JsonParserUI",
+          new Packages.com.google.refine.importers.JsonImporter(Packages.com.google.refine.importers.JsonImporter.Mode.JSON_LINES));
   IM.registerFormat("text/marc", "MARC files", "XmlParserUI", new Packages.com.google.refine.importers.MarcImporter());
   IM.registerFormat("text/wiki", "Wikitext", "WikitextParserUI", new Packages.com.google.refine.importers.WikitextImporter());
 
   IM.registerFormat("binary", "Binary files"); // generic format, no parser to handle it
+  IM.registerFormat("binary/arrow", "Apache Arrow files", "ArrowParserUI", new Packages.com.google.refine.importers.ArrowImporter());
 
   IM.registerFormat("service", "Services"); // generic format, no parser to handle it
 
@@ -238,6 +241,8 @@ function registerImporting() {
 
   IM.registerExtension(".json", "text/json");
   IM.registerExtension(".js", "text/json");
+  IM.registerExtension(".jsonl", "text/json/jsonl");
+  IM.registerExtension(".ndjson", "text/json/jsonl");
 
   IM.registerExtension(".xls", "binary/text/xml/xls/xlsx");
   IM.registerExtension(".xlsx", "binary/text/xml/xls/xlsx");
@@ -251,6 +256,9 @@ function registerImporting() {
 
   IM.registerExtension(".wiki", "text/wiki");
 
+  IM.registerExtension(".arrow", "binary/arrow");
+  IM.registerExtension(".arrows", "binary/arrow");
+
   /*
    *  Mime type to format mappings
    */
@@ -276,10 +284,14 @@ function registerImporting() {
   IM.registerMimeType("application/json", "text/json");
   IM.registerMimeType("application/javascript", "text/json");
   IM.registerMimeType("text/json", "text/json");
+  IM.registerMimeType("application/x-ndjson", "text/json/jsonl");
 
   IM.registerMimeType("application/rdf+xml", "text/xml/rdf");
 
   IM.registerMimeType("application/marc", "text/marc");
+
+  IM.registerMimeType("application/vnd.apache.arrow.stream", "binary/arrow");
+  IM.registerMimeType("application/vnd.apache.arrow.file", "binary/arrow");
   
   IM.registerUrlRewriter(new Packages.com.google.refine.model.metadata.DataPackageUrlRewriter());
 
@@ -365,6 +377,7 @@ function init() {
       "scripts/index/parser-interfaces/json-parser-ui.js",
       "scripts/index/parser-interfaces/rdf-triples-parser-ui.js",
       "scripts/index/parser-interfaces/wikitext-parser-ui.js",
+      "scripts/index/parser-interfaces/arrow-parser-ui.js",
 
       "scripts/reconciliation/recon-manager.js", // so that reconciliation functions are available to importers
       "scripts/index/edit-metadata-dialog.js",
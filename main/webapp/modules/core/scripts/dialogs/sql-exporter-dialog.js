@@ -68,6 +68,8 @@ function SqlExporterDialog(options) {
     this._elmts.includeIfExistDropStatementLabel.html($.i18n._('core-dialogs')["for-include-if-exist-drop-stmt-checkbox"]);
     
     this._elmts.nullCellValueToEmptyStringLabel.html($.i18n._('core-dialogs')["for-null-cell-value-to-empty-str-label"]);
+    this._elmts.usePostgresCopyLabel.html($.i18n._('core-dialogs')["for-use-postgres-copy-checkbox"]);
+    this._elmts.insertBatchSizeLabel.html($.i18n._('core-dialogs')["for-insert-batch-size-input"]);
   
     this._elmts.sqlExportIgnoreFacetsLabel.html($.i18n._('core-dialogs')["sqlExporterIgnoreFacets"]);
     this._elmts.sqlExportTrimAllColumnsLabel.html($.i18n._('core-dialogs')["sqlExporterTrimColumns"]);
@@ -279,8 +281,12 @@ function SqlExporterDialog(options) {
         var checked =  $(this).is(':checked');
         if(checked == true){
             $('#nullCellValueToEmptyStringCheckboxId').removeAttr("disabled");
+            $('#usePostgresCopyCheckboxId').removeAttr("disabled");
+            $('#insertBatchSizeInputId').removeAttr("disabled");
         }else{
             $('#nullCellValueToEmptyStringCheckboxId').attr("disabled", true);
+            $('#usePostgresCopyCheckboxId').attr("disabled", true);
+            $('#insertBatchSizeInputId').attr("disabled", true);
           
         }
     });
@@ -450,6 +456,11 @@ function SqlExporterDialog(options) {
     
     options.convertNulltoEmptyString = this._elmts.nullCellValueToEmptyStringCheckbox[0].checked;
     options.includeIfExistWithDropStatement = this._elmts.includeIfExistDropStatementCheckbox[0].checked;
+    options.usePostgresCopy = this._elmts.usePostgresCopyCheckbox[0].checked;
+    var batchSize = parseInt(this._elmts.insertBatchSizeInput.val(), 10);
+    if (!isNaN(batchSize)) {
+      options.insertBatchSize = batchSize;
+    }
      
         
     options.columns = [];
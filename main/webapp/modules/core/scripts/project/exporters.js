@@ -78,6 +78,11 @@ ExporterManager.MenuItems = [
     "label": $.i18n._('core-project')["odf"],
     "click": function() { ExporterManager.handlers.exportRows("ods", "ods"); }
   },
+  {
+    "id" : "core/export-arrow",
+    "label": $.i18n._('core-project')["arrow"],
+    "click": function() { ExporterManager.handlers.exportRows("arrow", "arrows"); }
+  },
   {},
   {
     "id" : "core/export-custom-tabular",